@@ -1,13 +1,16 @@
 package com.adieser.conntest.configurations;
 
 import com.adieser.conntest.interceptors.RequestLoggingInterceptor;
+import org.slf4j.Logger;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import java.lang.reflect.Method;
 import java.time.Clock;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Global configurations
@@ -17,23 +20,55 @@ public class AppConfig implements WebMvcConfigurer {
     private static final int CORE_POOL_SIZE = 4;
     private static final int MAX_POOL_SIZE = 5;
     private static final long KEEP_ALIVE_TIME = 60L;
+    public static final String VIRTUAL_PROBE_EXECUTOR = "virtual";
+    public static final String AUTO_PROBE_EXECUTOR = "auto";
+    static final long PROBE_THREAD_STACK_SIZE = 256L * 1024L;
 
     private final RequestLoggingInterceptor requestLoggingInterceptor;
+    private final AppProperties appProperties;
+    private final Logger logger;
 
-    public AppConfig(RequestLoggingInterceptor requestLoggingInterceptor) {
+    public AppConfig(RequestLoggingInterceptor requestLoggingInterceptor, AppProperties appProperties, Logger logger) {
         this.requestLoggingInterceptor = requestLoggingInterceptor;
+        this.appProperties = appProperties;
+        this.logger = logger;
     }
 
     /**
      * Makes a {@link ThreadPoolExecutor} available for CDI.
-     * {@link ThreadPoolExecutor} is used for handle a ping sessions in parallel, each one in a different thread
-     * @return {@link ThreadPoolExecutor} for handling parallel ping sessions
+     * {@link ThreadPoolExecutor} is used for background services, such as the ping log writer
+     * @return {@link ThreadPoolExecutor} for handling background services
      */
     @Bean
     public ExecutorService threadPoolExecutor() {
         return new ThreadPoolExecutor(CORE_POOL_SIZE, MAX_POOL_SIZE, KEEP_ALIVE_TIME, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
     }
 
+    /**
+     * Makes the probe {@link ExecutorService} available for CDI.
+     * Every ping session gets its own task and none of them waits in a queue, so the amount of targets is not
+     * bounded by a pool size. Virtual threads are used when {@code conntest.probe-executor} is {@code auto} or
+     * {@code virtual} and the runtime supports them, otherwise an unbounded pool of small-stack daemon threads is used.
+     * Only an explicit {@code virtual} warns about falling back.
+     * @return {@link ExecutorService} for handling ping sessions
+     */
+    @Bean
+    public ExecutorService probeExecutor() {
+        String probeExecutor = appProperties.getProbeExecutor();
+        boolean auto = AUTO_PROBE_EXECUTOR.equalsIgnoreCase(probeExecutor);
+        if (auto || VIRTUAL_PROBE_EXECUTOR.equalsIgnoreCase(probeExecutor)) {
+            ExecutorService virtualExecutor = newVirtualThreadPerTaskExecutor();
+            if (virtualExecutor != null)
+                return virtualExecutor;
+
+            if (!auto)
+                logger.warn("Virtual threads are not supported by Java {}, using platform threads for ping sessions",
+                        Runtime.version().feature());
+        }
+
+        return newPlatformProbeExecutor();
+    }
+
     /**
      * Makes a {@link ScheduledExecutorService} available for CDI.
      * {@link ScheduledExecutorService} is used for handle a ping sessions in parallel, each one in a different thread
@@ -54,6 +89,38 @@ public class AppConfig implements WebMvcConfigurer {
         return Clock.systemDefaultZone();
     }
 
+    /**
+     * Create a virtual-thread-per-task executor. It is looked up reflectively so the application still runs on
+     * Java versions without virtual threads.
+     * @return the executor, or null if virtual threads are not available
+     */
+    static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Create an unbounded pool of daemon threads with a reduced stack size. Idle threads are reclaimed after
+     * {@code KEEP_ALIVE_TIME} seconds.
+     * @return the executor
+     */
+    static ExecutorService newPlatformProbeExecutor() {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(null, runnable, "probe-" + threadCount.incrementAndGet(),
+                    PROBE_THREAD_STACK_SIZE);
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        return new ThreadPoolExecutor(0, Integer.MAX_VALUE, KEEP_ALIVE_TIME, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), threadFactory);
+    }
+
     /**
      * Adds the {@link RequestLoggingInterceptor} to the interceptor registry.
      * This interceptor will log the request and response details.
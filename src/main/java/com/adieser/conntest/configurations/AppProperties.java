@@ -1,9 +1,13 @@
 package com.adieser.conntest.configurations;
 
+import com.adieser.conntest.models.utils.simulator.ScenarioProfile;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * This class is used to read the properties from the application.properties file.
  * It is annotated with @ConfigurationProperties to bind the properties with the prefix "conntest".
@@ -18,5 +22,54 @@ public class AppProperties {
     private Long fileMaxSizeRows;
     private Long fileMaxSizeKbytes;
     private String simulator;
+    private String probeExecutor = "auto";
+    private Integer maxTargets = 5000;
+    private String probeBackend = "icmp";
+    private Integer tcpProbePort = 443;
+    private Long dnsCacheTtlSeconds = 30L;
+    private Long dnsCacheNegativeTtlSeconds = 5L;
+    private String writerMode = "batch";
+    private Integer writerBatchSize = 1000;
+    private Long writerBatchMaxDelayMillis = 50L;
+    private Integer writerQueueCapacity = 100000;
+    private String writerOverflowPolicy = "spill";
+    private String writerQueue = "blocking";
+    private String writerWaitStrategy = "park";
+    private String writerEncoder = "direct";
+    private String writerOutput = "stream";
+    private Integer writerSegmentMbytes = 16;
+    private String writerDurability = "none";
+    private Long writerSyncIntervalMillis = 1000L;
+    private String pinglogFormat = "csv";
+    private Integer binaryHeaderKbytes = 64;
+    private Integer columnarBlockSize = 1024;
+    private String pinglogSharding = "none";
+    private Integer writerPartitions = 0;
+    private Integer writerOpenShards = 256;
+    private String rotatedCompression = "none";
+    private Integer compressionBlockKbytes = 256;
+    private String rotationInterval = "none";
+    private Long retentionDays = 0L;
+    private Long retentionMaxMbytes = 0L;
+    private Long compactionTargetMbytes = 0L;
+    private Integer compactionMinFiles = 8;
+    private Long compactionRateKbytes = 4096L;
+    private String csvReader = "scanner";
+    private Integer indexIntervalRows = 1024;
+    private Long memoryStoreMbytes = 64L;
+    private String statistics = "running";
+    private Simulation simulation = new Simulation();
+
+    /**
+     * Virtual-clock load simulation, run when {@code conntest.simulator = virtual}
+     */
+    @Data
+    public static class Simulation {
+        private Integer targets = 1000;
+        private Long durationSeconds = 86400L;
+        private String profile = "wan";
+        private Integer parallelism = 4;
+        private Map<String, ScenarioProfile> profiles = new HashMap<>();
+    }
 }
 
@@ -1,38 +1,90 @@
 package com.adieser.conntest.configurations;
 
+import com.adieser.conntest.models.BinaryPingLogRepository;
+import com.adieser.conntest.models.ColumnarPingLogRepository;
 import com.adieser.conntest.models.CsvPingLogRepository;
+import com.adieser.conntest.models.InMemoryPingLogRepository;
 import com.adieser.conntest.models.PingLogRepository;
+import com.adieser.conntest.models.ShardedPingLogRepository;
+import com.adieser.conntest.models.StatisticsPingLogRepository;
+import com.adieser.conntest.models.memory.PingLogMemoryStore;
+import com.adieser.conntest.models.memory.PingLogStatistics;
 import com.adieser.conntest.models.utils.PingLogFileValidator;
 import com.adieser.conntest.service.writer.FileWriterService;
 import org.slf4j.Logger;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Clock;
+
 /**
  * Repository-related configurations
  */
 @Configuration
 public class PingLogRepositoryConfiguration {
+    public static final String BINARY_FORMAT = "binary";
+    public static final String COLUMNAR_FORMAT = "columnar";
+    public static final String TARGET_SHARDING = "target";
+    public static final String RUNNING_STATISTICS = "running";
+
     private final Logger logger;
     private final FileWriterService fileWriterService;
     private final AppProperties appProperties;
     private final PingLogFileValidator pingLogFileValidator;
+    private final Clock clock;
 
     public PingLogRepositoryConfiguration(Logger logger,
                                           FileWriterService fileWriterService,
-                                          AppProperties appProperties, PingLogFileValidator pingLogFileValidator) {
+                                          AppProperties appProperties, PingLogFileValidator pingLogFileValidator,
+                                          Clock clock) {
         this.logger = logger;
         this.fileWriterService = fileWriterService;
         this.appProperties = appProperties;
         this.pingLogFileValidator = pingLogFileValidator;
+        this.clock = clock;
     }
 
     /**
-     * Makes a {@link CsvPingLogRepository} available for CDI.
-     * @return {@link PingLogRepository} for handling persistence in CVS file located in conntest.pinglogs.path
+     * Makes the repository of the format in conntest.pinglog-format available for CDI.
+     * @return {@link PingLogRepository} for handling persistence in the file located in conntest.pinglogs.path: a
+     * {@link BinaryPingLogRepository} for the binary format, a {@link ColumnarPingLogRepository} for the columnar one,
+     * a {@link ShardedPingLogRepository} for the CSV format sharded by target (conntest.pinglog-sharding = target),
+     * a {@link CsvPingLogRepository} otherwise. With conntest.memory-store-mbytes set, it is wrapped by an
+     * {@link InMemoryPingLogRepository} loaded from the file, and with conntest.statistics = running by a
+     * {@link StatisticsPingLogRepository}. Both follow the rotations of the file.
      */
     @Bean
-    public PingLogRepository csvPingLogRepository(){
+    public PingLogRepository pingLogRepository(){
+        PingLogRepository repository = fileRepository();
+        Long memoryStoreMbytes = appProperties.getMemoryStoreMbytes();
+        if (memoryStoreMbytes != null && memoryStoreMbytes > 0) {
+            InMemoryPingLogRepository inMemoryRepository = new InMemoryPingLogRepository(repository,
+                    new PingLogMemoryStore(memoryStoreMbytes * 1024 * 1024, PingLogMemoryStore.DEFAULT_CHUNK_SIZE),
+                    logger, clock);
+            inMemoryRepository.load();
+            fileWriterService.addRotationListener(inMemoryRepository::rotated);
+            repository = inMemoryRepository;
+        }
+        if (RUNNING_STATISTICS.equalsIgnoreCase(appProperties.getStatistics())) {
+            // loaded from the memory if it has every ping
+            StatisticsPingLogRepository statisticsRepository = new StatisticsPingLogRepository(repository,
+                    new PingLogStatistics(), logger);
+            statisticsRepository.load();
+            fileWriterService.addRotationListener(statisticsRepository::rotated);
+            repository = statisticsRepository;
+        }
+
+        return repository;
+    }
+
+    private PingLogRepository fileRepository() {
+        if (BINARY_FORMAT.equalsIgnoreCase(appProperties.getPinglogFormat()))
+            return new BinaryPingLogRepository(pingLogFileValidator, appProperties, logger, fileWriterService);
+        if (COLUMNAR_FORMAT.equalsIgnoreCase(appProperties.getPinglogFormat()))
+            return new ColumnarPingLogRepository(pingLogFileValidator, appProperties, logger, fileWriterService);
+        if (TARGET_SHARDING.equalsIgnoreCase(appProperties.getPinglogSharding()))
+            return new ShardedPingLogRepository(pingLogFileValidator, appProperties, logger, fileWriterService);
+
         return new CsvPingLogRepository(pingLogFileValidator, appProperties, logger, fileWriterService);
     }
 }
@@ -24,7 +24,7 @@ import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.List;
 
-import static com.adieser.conntest.controllers.responses.ErrorResponse.MAX_IP_ADDRESSES_EXCEEDED;
+import static com.adieser.conntest.controllers.responses.ErrorResponse.maxIpAddressesExceeded;
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.afford;
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.linkTo;
 import static org.springframework.hateoas.server.mvc.WebMvcLinkBuilder.methodOn;
@@ -65,7 +65,7 @@ public class ConnTestController {
     }
 
     /**
-     * Trigger up to 3 custom ip addresses ping sessions to test connection
+     * Trigger up to conntest.max-targets custom ip addresses ping sessions to test connection
      */
     @PostMapping(value = "/test-custom-ips", produces = {"application/json"})
     @Operation(summary = "Test connection to custom IP addresses")
@@ -76,8 +76,8 @@ public class ConnTestController {
             @RequestBody List<String> ipAddresses) {
         HttpStatus httpStatus = HttpStatus.OK;
 
-        if(ipAddresses.size() > 3)
-            return ResponseEntity.badRequest().body(MAX_IP_ADDRESSES_EXCEEDED);
+        if(ipAddresses.size() > appProperties.getMaxTargets())
+            return ResponseEntity.badRequest().body(maxIpAddressesExceeded(appProperties.getMaxTargets()));
 
         connTestService.testCustomIps(ipAddresses);
         PingTestResponse pingResponse = new PingTestResponse();
@@ -7,11 +7,20 @@ import lombok.Getter;
 @Builder
 public class ErrorResponse {
 
-    public static final ErrorResponse MAX_IP_ADDRESSES_EXCEEDED = ErrorResponse.builder()
-            .errorCode(1L)
-            .errorMessage("Max IP Addresses exceeded (3)")
-            .build();
+    public static final String MAX_IP_ADDRESSES_EXCEEDED_MSG = "Max IP Addresses exceeded (%d)";
 
     private Long errorCode;
     private String errorMessage;
+
+    /**
+     * Error returned when more IP addresses than allowed are requested to be tested
+     * @param maxIpAddresses max amount of IP addresses allowed (conntest.max-targets)
+     * @return the error response
+     */
+    public static ErrorResponse maxIpAddressesExceeded(int maxIpAddresses) {
+        return ErrorResponse.builder()
+                .errorCode(1L)
+                .errorMessage(String.format(MAX_IP_ADDRESSES_EXCEEDED_MSG, maxIpAddresses))
+                .build();
+    }
 }
@@ -0,0 +1,55 @@
+package com.adieser.conntest.models;
+
+import com.adieser.conntest.configurations.AppProperties;
+import com.adieser.conntest.models.binary.BinaryPingLogFormat;
+import com.adieser.conntest.models.binary.BinaryPingLogReader;
+import com.adieser.conntest.models.utils.PingLogFileValidator;
+import com.adieser.conntest.service.writer.FileWriterService;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Repository for pings stored in a binary file of fixed-width records, see {@link BinaryPingLogFormat}. Queries on a
+ * datetime range only read the records around the range, found with a binary search.
+ */
+public class BinaryPingLogRepository extends FilePingLogRepository {
+
+    public BinaryPingLogRepository(PingLogFileValidator pingLogFileValidator, AppProperties appProperties, Logger logger, FileWriterService fileWriterService) {
+        super(pingLogFileValidator, appProperties, logger, fileWriterService);
+    }
+
+    /**
+     * The file is cleared by the writer, which keeps the dictionary of its header
+     */
+    @Override
+    public void clearPingLogFile() throws InterruptedException {
+        try {
+            fileWriterService.clear();
+        } catch (IOException e) {
+            logger.error(CLEAN_PINGLOG_FILE_MSG, e);
+            throw new InterruptedException(CLEAN_PINGLOG_FILE_MSG);
+        }
+    }
+
+    @Override
+    protected List<PingLog> readAll() throws IOException {
+        try (BinaryPingLogReader reader = getReader()) {
+            return reader.readAll();
+        }
+    }
+
+    @Override
+    protected List<PingLog> readRange(LocalDateTime start, LocalDateTime end) throws IOException {
+        try (BinaryPingLogReader reader = getReader()) {
+            return reader.readRange(start, end);
+        }
+    }
+
+    BinaryPingLogReader getReader() throws IOException {
+        return new BinaryPingLogReader(Path.of(appProperties.getPingLogsPath() + "/" + appProperties.getPinglogsFilename()));
+    }
+}
@@ -0,0 +1,198 @@
+package com.adieser.conntest.models;
+
+import com.adieser.conntest.configurations.AppProperties;
+import com.adieser.conntest.models.binary.BinaryPingLogFormat;
+import com.adieser.conntest.models.columnar.ColumnarBlock;
+import com.adieser.conntest.models.columnar.ColumnarPingLogReader;
+import com.adieser.conntest.models.columnar.PingLogAggregate;
+import com.adieser.conntest.models.utils.PingLogFileValidator;
+import com.adieser.conntest.service.writer.FileWriterService;
+import org.slf4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Repository for pings stored in compressed blocks by target, see {@link ColumnarBlock}. The averages, lost pings
+ * and max/min ping times are taken from the headers of the blocks, only the blocks partially within a datetime range
+ * are decoded. The pings not in a block yet are taken from the writer, along with the end of the file, so a block
+ * written meanwhile is not missed nor read twice.
+ * <p>
+ * Up to {@code conntest.columnar-block-size} pings of every target are only in the memory of the writer until their
+ * block is written, and are lost if the application crashes, whatever {@code conntest.writer-durability} says.
+ */
+public class ColumnarPingLogRepository extends FilePingLogRepository {
+
+    public ColumnarPingLogRepository(PingLogFileValidator pingLogFileValidator, AppProperties appProperties, Logger logger, FileWriterService fileWriterService) {
+        super(pingLogFileValidator, appProperties, logger, fileWriterService);
+    }
+
+    /**
+     * The file is cleared by the writer, which also drops the pings not in a block yet
+     */
+    @Override
+    public void clearPingLogFile() throws InterruptedException {
+        try {
+            fileWriterService.clear();
+        } catch (IOException e) {
+            logger.error(CLEAN_PINGLOG_FILE_MSG, e);
+            throw new InterruptedException(CLEAN_PINGLOG_FILE_MSG);
+        }
+    }
+
+    @Override
+    public BigDecimal findAvgLatencyByIp(String ipAddress) throws IOException {
+        return BigDecimal.valueOf(aggregate(ipAddress, null, null).getAverageWithLost())
+                .setScale(2, RoundingMode.HALF_UP);
+    }
+
+    @Override
+    public BigDecimal findAvgLatencyByDateTimeRangeByIp(LocalDateTime start, LocalDateTime end, String ipAddress) throws IOException {
+        return BigDecimal.valueOf(aggregate(ipAddress, start, end).getAverage())
+                .setScale(2, RoundingMode.HALF_UP);
+    }
+
+    @Override
+    public List<PingLog> findMaxMinPingLogOfAll(String ipAddress) throws IOException {
+        return aggregate(ipAddress, null, null).getMinMax();
+    }
+
+    @Override
+    public List<PingLog> findMaxMinPingLogByDateTimeRangeByIp(LocalDateTime start, LocalDateTime end, String ipAddress) throws IOException {
+        return aggregate(ipAddress, start, end).getMinMax();
+    }
+
+    @Override
+    public BigDecimal findLostPingLogsAvgByIP(String ipAddress) throws IOException {
+        return lostAverage(aggregate(ipAddress, null, null));
+    }
+
+    @Override
+    public BigDecimal findLostPingLogsAvgByDateTimeRangeByIp(LocalDateTime start, LocalDateTime end, String ipAddress) throws IOException {
+        return lostAverage(aggregate(ipAddress, start, end));
+    }
+
+    /**
+     * The blocks hold the pings by target, so they are sorted by datetime
+     */
+    @Override
+    protected List<PingLog> readAll() throws IOException {
+        List<PingLog> pingLogs;
+        try (Snapshot snapshot = snapshot()) {
+            pingLogs = snapshot.reader().readAll();
+            pingLogs.addAll(snapshot.pending());
+        }
+        pingLogs.sort(Comparator.comparing(PingLog::getDateTime));
+
+        return pingLogs;
+    }
+
+    @Override
+    protected List<PingLog> readRange(LocalDateTime start, LocalDateTime end) throws IOException {
+        long from = fromSecond(start);
+        long to = toSecond(end);
+        List<PingLog> pingLogs = new ArrayList<>();
+        try (Snapshot snapshot = snapshot()) {
+            for (ColumnarBlock block : snapshot.reader().readBlocks(block -> block.overlaps(from, to))) {
+                if (block.overlaps(from, to))
+                    pingLogs.addAll(block.decode());
+            }
+            pingLogs.addAll(snapshot.pending());
+        }
+        pingLogs.sort(Comparator.comparing(PingLog::getDateTime));
+
+        return pingLogs;
+    }
+
+    /**
+     * Aggregate the pings of a target within a datetime range, from the headers of the blocks within the range and the
+     * decoded pings of the blocks partially within it
+     * @param start start of the range, null for no start
+     * @param end end of the range, null for no end
+     */
+    private PingLogAggregate aggregate(String ipAddress, LocalDateTime start, LocalDateTime end) throws IOException {
+        long from = start != null ? fromSecond(start) : Long.MIN_VALUE;
+        long to = end != null ? toSecond(end) : Long.MAX_VALUE;
+        PingLogAggregate aggregate = new PingLogAggregate(ipAddress);
+        try (Snapshot snapshot = snapshot()) {
+            List<ColumnarBlock> blocks = snapshot.reader().readBlocks(block ->
+                    block.getTarget().equals(ipAddress) && block.overlaps(from, to) && !block.isWithin(from, to));
+            for (ColumnarBlock block : blocks) {
+                if (!block.getTarget().equals(ipAddress) || !block.overlaps(from, to))
+                    continue;
+
+                if (block.isWithin(from, to)) {
+                    aggregate.add(block);
+                } else {
+                    for (PingLog pingLog : block.decode())
+                        addIfWithin(aggregate, pingLog, start, end);
+                }
+            }
+            for (PingLog pingLog : snapshot.pending()) {
+                if (ipAddress.equals(pingLog.getIpAddress()))
+                    addIfWithin(aggregate, pingLog, start, end);
+            }
+        }
+
+        return aggregate;
+    }
+
+    private static void addIfWithin(PingLogAggregate aggregate, PingLog pingLog, LocalDateTime start, LocalDateTime end) {
+        if ((start == null || !pingLog.getDateTime().isBefore(start)) && (end == null || !pingLog.getDateTime().isAfter(end)))
+            aggregate.add(pingLog);
+    }
+
+    private static BigDecimal lostAverage(PingLogAggregate aggregate) {
+        if (aggregate.getCount() == 0)
+            return BigDecimal.ZERO;
+
+        return BigDecimal.valueOf(aggregate.getLost()).divide(
+                BigDecimal.valueOf(aggregate.getCount()),
+                2,
+                RoundingMode.CEILING);
+    }
+
+    /**
+     * @return first epoch second not before a datetime
+     */
+    private static long fromSecond(LocalDateTime start) {
+        long second = BinaryPingLogFormat.toEpochSecond(start);
+        return start.getNano() > 0 ? second + 1 : second;
+    }
+
+    /**
+     * @return last epoch second not after a datetime
+     */
+    private static long toSecond(LocalDateTime end) {
+        return BinaryPingLogFormat.toEpochSecond(end);
+    }
+
+    /**
+     * @return a reader of the blocks in the file and the pings pending in the writer at the same point
+     */
+    private Snapshot snapshot() throws IOException {
+        return fileWriterService.openWithPending(pending -> new Snapshot(getReader(), pending));
+    }
+
+    ColumnarPingLogReader getReader() throws IOException {
+        return new ColumnarPingLogReader(Path.of(appProperties.getPingLogsPath() + "/" + appProperties.getPinglogsFilename()));
+    }
+
+    /**
+     * Reader of the blocks in the file, which only sees the blocks written when it was opened, and the pings pending
+     * in the writer then
+     */
+    private record Snapshot(ColumnarPingLogReader reader, List<PingLog> pending) implements Closeable {
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+}
@@ -1,31 +1,56 @@
 package com.adieser.conntest.models;
 
+import com.adieser.conntest.models.utils.PingUtils;
 import com.adieser.conntest.models.utils.Reachable;
+import com.adieser.conntest.service.scheduler.ProbeScheduler;
 import lombok.Getter;
 import org.slf4j.Logger;
 
 import java.time.LocalDateTime;
-import java.util.concurrent.ExecutorService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Handles the connection test to a specific IP address. It has the capability of triggering and stopping a
- * ping session.
+ * ping session. The session is paced by the {@link ProbeScheduler}, which fires one tick per second.
+ * <p>
+ * Every tick sends a probe, even if earlier probes are still pending, so the cadence survives outages. Each probe
+ * gets the sequence number of its tick and a deadline; a probe still pending after its deadline is saved as lost.
+ * Probes are saved in sequence order.
  */
-@SuppressWarnings("BusyWait")
 public class ConnTest implements Pingable {
     public static final String PING_SESSION_INTERRUPTED_MSG = "Ping session was interrupted";
-    private final ExecutorService threadPoolExecutor;
-    protected boolean running = false;
+    public static final long PING_PERIOD_MILLIS = 1000L;
+    static final long PROBE_DEADLINE_NANOS = TimeUnit.MILLISECONDS.toNanos(PingUtils.TIMEOUT + PING_PERIOD_MILLIS);
+    private final ProbeScheduler probeScheduler;
+    protected volatile boolean running = false;
     private final Logger logger;
     private final PingLogRepository pingLogRepository;
     private final Reachable pingUtils;
+    private ProbeScheduler.Registration registration;
+
+    /**
+     * Probes sent and not saved yet, by sequence number. Also used as the lock to save them in order
+     */
+    private final NavigableMap<Long, Probe> inFlight = new TreeMap<>();
+
+    /**
+     * Pings the repository did not accept, guarded by {@code inFlight}
+     */
+    private long rejectedPings;
+    private boolean rejecting;
 
     @Getter
     private final String ipAddress;
 
-    public ConnTest(ExecutorService threadPoolExecutor, String ipAddress, Logger logger,
+    public ConnTest(ProbeScheduler probeScheduler, String ipAddress, Logger logger,
                     PingLogRepository pingLogRepository, Reachable pingUtils) {
-        this.threadPoolExecutor = threadPoolExecutor;
+        this.probeScheduler = probeScheduler;
         this.ipAddress = ipAddress;
         this.logger = logger;
         this.pingLogRepository = pingLogRepository;
@@ -33,64 +58,158 @@ public class ConnTest implements Pingable {
     }
 
     @Override
-    public void startPingSession() {
-        threadPoolExecutor.execute(this::pingSession);
+    public synchronized void startPingSession() {
+        running = true;
+        registration = probeScheduler.register(PING_PERIOD_MILLIS, this::onTick);
         logger.info("Ping session for IP {} started...", ipAddress);
     }
 
     @Override
-    public void stopPingSession() {
+    public synchronized void stopPingSession() {
         running = false;
+        if (registration != null) {
+            registration.cancel();
+            registration = null;
+        }
         logger.info("Ping session for IP {} stopped.", ipAddress);
     }
 
     /**
-     * Ping task running in a loop only stoppable by changing the value of {@code running} variable to false.
-     * Each ping is triggered once per second if the ping takes less than 1 second
+     * Ping task executed on every scheduler tick. The ping log is timestamped with the time the tick was scheduled
+     * for, so all the sessions share the same second boundaries. The probe is sent without waiting for the previous
+     * ones.
+     * @param tick tick fired by the {@link ProbeScheduler}
      */
-    void pingSession() {
-        running = true;
-        try {
-            while(running) {
-                long startTime = System.currentTimeMillis();
+    void onTick(ProbeScheduler.Tick tick) {
+        if (!running)
+            return;
 
-                PingLog ping = buildPingLog();
-                long pingTime = ping();
-                ping.setPingTime(pingTime);
+        if (tick.missedBefore() > 0)
+            logger.warn("{} ticks missed for IP {}", tick.missedBefore(), ipAddress);
 
-                pingLogRepository.savePingLog(ping);
-                long elapsedTime = System.currentTimeMillis() - startTime;
+        Probe probe = new Probe(tick.sequence(), buildPingLog(tick.dateTime()),
+                tick.scheduledNanos() + PROBE_DEADLINE_NANOS);
+        synchronized (inFlight) {
+            inFlight.put(probe.sequence, probe);
+        }
 
-                long sleepTime = 1000 - elapsedTime;
+        // save the probes that expired while this one was being sent
+        saveCompletedProbes();
 
-                if (sleepTime > 0)
-                    Thread.sleep(sleepTime); // sleep only if the ping took less than 1 second
-            }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            logger.warn(PING_SESSION_INTERRUPTED_MSG);
-        }
+        ping().whenComplete((pingTime, e) -> {
+            if (e != null)
+                logger.error("Ping to IP {} failed", ipAddress, e);
+            complete(probe, e == null ? pingTime : -1.0);
+        });
     }
 
-    PingLog buildPingLog() {
+    PingLog buildPingLog(LocalDateTime dateTime) {
         return PingLog.builder()
-                .dateTime(LocalDateTime.now())
+                .dateTime(dateTime)
                 .ipAddress(ipAddress)
                 .build();
     }
 
     /**
-     * Check if a connection is reachable and save the time it takes to do it.
-     * @return the time (milliseconds) it takes to check if an ip address is reachable.
-     * If it's not reachable it returns -1
+     * Check if a connection is reachable and save the time it takes to do it. The time is measured with the
+     * monotonic clock by the {@link Reachable}.
+     * @return future completed with the time (milliseconds, microsecond resolution) it takes to check if an ip
+     * address is reachable. If it's not reachable it is completed with -1
+     */
+    CompletableFuture<Double> ping(){
+        return pingUtils.probeAsync(ipAddress)
+                .thenApply(nanos -> nanos < 0 ? -1.0 : PingLog.toPingTime(nanos));
+    }
+
+    /**
+     * Set the result of a probe and save every probe that can be saved in order
+     * @param probe probe to complete
+     * @param pingTime the time (milliseconds) of the probe, -1 if lost
+     */
+    void complete(Probe probe, double pingTime) {
+        synchronized (inFlight) {
+            if (!probe.done) {
+                probe.pingLog.setPingTime(pingTime);
+                probe.done = true;
+            }
+        }
+
+        saveCompletedProbes();
+    }
+
+    /**
+     * Save, in sequence order, the probes at the head of the in-flight window that are completed. A probe past its
+     * deadline is saved as lost, so a probe that never returns does not hold back the ones after it.
+     */
+    void saveCompletedProbes() {
+        synchronized (inFlight) {
+            long now = System.nanoTime();
+            List<PingLog> completed = new ArrayList<>();
+
+            Map.Entry<Long, Probe> head;
+            while ((head = inFlight.firstEntry()) != null) {
+                Probe probe = head.getValue();
+                if (!probe.done && now - probe.deadlineNanos < 0)
+                    break;
+
+                if (!probe.done) {
+                    probe.pingLog.setPingTime(-1.0);
+                    probe.done = true;
+                }
+                inFlight.pollFirstEntry();
+                completed.add(probe.pingLog);
+            }
+
+            try {
+                for (PingLog pingLog : completed) {
+                    if (pingLogRepository.savePingLog(pingLog)) {
+                        rejecting = false;
+                    } else {
+                        rejectedPings++;
+                        // warn once per run of rejections, the repository logs every one of them
+                        if (!rejecting)
+                            logger.warn("Pings of IP {} are not being saved", ipAddress);
+                        rejecting = true;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.warn(PING_SESSION_INTERRUPTED_MSG);
+            }
+        }
+    }
+
+    /**
+     * @return amount of probes sent and not saved yet
      */
-    long ping(){
-        long time = -1L;
+    int getProbesInFlight() {
+        synchronized (inFlight) {
+            return inFlight.size();
+        }
+    }
 
-        long currentTime = System.currentTimeMillis();
-        if(pingUtils.isReachable(ipAddress))
-            time = System.currentTimeMillis() - currentTime;
+    /**
+     * @return amount of pings the repository did not accept
+     */
+    public long getRejectedPings() {
+        synchronized (inFlight) {
+            return rejectedPings;
+        }
+    }
 
-        return time;
+    /**
+     * Probe sent on a tick
+     */
+    static final class Probe {
+        private final long sequence;
+        private final PingLog pingLog;
+        private final long deadlineNanos;
+        private boolean done;
+
+        Probe(long sequence, PingLog pingLog, long deadlineNanos) {
+            this.sequence = sequence;
+            this.pingLog = pingLog;
+            this.deadlineNanos = deadlineNanos;
+        }
     }
 }
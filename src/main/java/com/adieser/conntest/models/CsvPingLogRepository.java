@@ -1,26 +1,31 @@
 package com.adieser.conntest.models;
 
 import com.adieser.conntest.configurations.AppProperties;
+import com.adieser.conntest.models.binary.BinaryPingLogFormat;
+import com.adieser.conntest.models.utils.CompressedPingLog;
 import com.adieser.conntest.models.utils.PingLogFileValidator;
+import com.adieser.conntest.models.utils.PingLogIndex;
+import com.adieser.conntest.models.utils.PingLogScanner;
+import com.adieser.conntest.models.utils.PingLogSegment;
 import com.adieser.conntest.service.writer.FileWriterService;
 import com.opencsv.bean.CsvToBean;
 import com.opencsv.bean.CsvToBeanBuilder;
 import org.slf4j.Logger;
 
-import java.io.BufferedReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.io.Writer;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDateTime;
-import java.util.Comparator;
+import java.util.DoubleSummaryStatistics;
 import java.util.List;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  *  Repository for pings stored in a text file. Pings are in CSV format
@@ -28,256 +33,260 @@ import java.util.stream.Stream;
  *  Format: timestamp,ipAddress,time
  *
  *  Ex:
- *  2023-09-27 01:17:26,192.168.1.1,0
+ *  2023-09-27 01:17:26,192.168.1.1,0.412
+ *  2023-09-27 01:17:26,8.8.8.8,13
  *  2023-09-27 01:17:26,131.100.65.1,-1
  *  </pre>
+ *  The queries parse the pings one by one as they are filtered, so they take the same memory whatever the size of the
+ *  file, and close it when they are done. With {@code conntest.csv-reader = scanner} the file is mapped and read by a
+ *  {@link PingLogScanner}, which only builds the pings of the target and range of a query, and the averages only parse
+ *  the ping times; otherwise, or if the file is compressed, the lines are parsed by opencsv. The scanner of a range
+ *  query seeks with the sparse time index of the file, if any, see {@link PingLogIndex}.
  */
-public class CsvPingLogRepository implements PingLogRepository {
-    public static final String SAVE_PING_ERROR_MSG = "Save Ping error";
-    public static final String CLEAN_PINGLOG_FILE_MSG = "Clear pinglog file error";
-
-    private final PingLogFileValidator pingLogFileValidator;
-
-    private final AppProperties appProperties;
-    private final Logger logger;
-    private final FileWriterService fileWriterService;
+public class CsvPingLogRepository extends FilePingLogRepository {
+    public static final String SCANNER_CSV_READER = "scanner";
 
     public CsvPingLogRepository(PingLogFileValidator pingLogFileValidator, AppProperties appProperties, Logger logger, FileWriterService fileWriterService) {
-        this.pingLogFileValidator = pingLogFileValidator;
-        this.appProperties = appProperties;
-        this.logger = logger;
-        this.fileWriterService = fileWriterService;
+        super(pingLogFileValidator, appProperties, logger, fileWriterService);
     }
 
+    /**
+     * A mapped ping log is cleared by the writer, as it must not be truncated under its mapping
+     */
     @Override
-    public void savePingLog(PingLog pingLog) {
-        fileWriterService.submit(pingLog);
-    }
+    public void clearPingLogFile() throws InterruptedException {
+        if (fileWriterService.isMapped()) {
+            try {
+                fileWriterService.clear();
+            } catch (IOException e) {
+                logger.error(CLEAN_PINGLOG_FILE_MSG, e);
+                throw new InterruptedException(CLEAN_PINGLOG_FILE_MSG);
+            }
+            return;
+        }
 
-    @Override
-    public List<PingLog> findAllPingLogs() throws IOException {
-       return readAll();
+        try (Writer writer  = getFileWriter(false)) {
+            writer.write("");
+            writer.flush();
+            fileWriterService.recount();
+        } catch (IOException e) {
+            logger.error(CLEAN_PINGLOG_FILE_MSG, e);
+            throw new InterruptedException(CLEAN_PINGLOG_FILE_MSG);
+        }
     }
 
-    @Override
-    public List<PingLog> findPingLogByIp(String ipAddress) throws IOException {
-        return getPingLogsByIpStream(readAll().stream(), ipAddress)
-                .toList();
+    FileWriter getFileWriter(boolean append) throws IOException {
+        return new FileWriter(appProperties.getPingLogsPath() + "/" + appProperties.getPinglogsFilename(), append);
     }
 
+    /**
+     * Retrieve all the pings from the CSV file
+     * @return List of pings
+     */
     @Override
-    public List<PingLog> findPingLogsByDateTimeRange(LocalDateTime start, LocalDateTime end) throws IOException {
-        return getPingLogsByDateTimeRangeStream(readAll().stream(), start, end)
-                .toList();
-    }
+    protected List<PingLog> readAll() throws IOException {
+        try (Reader reader = getReader()) {
+            CsvToBean<PingLog> cb = getCsvToBean(reader);
 
-    @Override
-    public List<PingLog> findPingLogsByDateTimeRangeByIp(LocalDateTime start, LocalDateTime end, String ipAddress) throws IOException {
-        return getPingLogsByDateTimeRangeByIpStream(readAll().stream(), start, end, ipAddress)
-                .toList();
+            return cb.parse();
+        }
     }
 
+    /**
+     * A compressed ping log only inflates the blocks with times within the range
+     */
     @Override
-    public List<PingLog> findLostPingsByIp(String ipAddress) throws IOException {
-        return getLostPingLogsStream(getPingLogsByIpStream(readAll().stream(), ipAddress))
-                .toList();
+    protected List<PingLog> readRange(LocalDateTime start, LocalDateTime end) throws IOException {
+        try (Stream<PingLog> pingLogs = streamRange(start, end)) {
+            return pingLogs.toList();
+        }
     }
 
     @Override
-    public List<PingLog> findLostPingsByDateTimeRangeByIp(LocalDateTime start, LocalDateTime end, String ipAddress) throws IOException {
-        return getLostPingLogsStream(getPingLogsByDateTimeRangeByIpStream(readAll().stream(), start, end, ipAddress))
-                .toList();
+    protected Stream<PingLog> streamRange(LocalDateTime start, LocalDateTime end) throws IOException {
+        Path path = getPath();
+        PingLogScanner scanner = openScanner(path, start, end);
+        if (scanner != null)
+            return scan(scanner, null, start, end);
+        if (!CompressedPingLog.isCompressed(path))
+            return stream(getReader());
+
+        // whole seconds around the range, the pings are filtered by the caller
+        return stream(CompressedPingLog.newReader(path, BinaryPingLogFormat.toEpochSecond(start),
+                BinaryPingLogFormat.toEpochSecond(end) + 1));
     }
 
     @Override
-    public List<PingLog> findMaxMinPingLogOfAll(String ipAddress) throws IOException {
-        return findMaxMinPingLog(getPingLogsByIpStream(readAll().stream(), ipAddress));
+    protected Stream<PingLog> streamByIp(String ipAddress) throws IOException {
+        PingLogScanner scanner = openScanner(getPath());
+        if (scanner != null)
+            return scan(scanner, ipAddress, null, null);
+
+        return stream(getReader());
     }
 
     @Override
-    public List<PingLog> findMaxMinPingLogByDateTimeRangeByIp(LocalDateTime start, LocalDateTime end, String ipAddress) throws IOException {
-        return findMaxMinPingLog(getPingLogsByDateTimeRangeByIpStream(readAll().stream(), start, end, ipAddress));
+    protected Stream<PingLog> streamRangeByIp(LocalDateTime start, LocalDateTime end, String ipAddress) throws IOException {
+        PingLogScanner scanner = openScanner(getPath(), start, end);
+        if (scanner != null)
+            return scan(scanner, ipAddress, start, end);
+
+        return streamRange(start, end);
     }
 
     @Override
     public BigDecimal findAvgLatencyByIp(String ipAddress) throws IOException {
-        double averagePingTime = getPingLogsByIpStream(readAll().stream(), ipAddress)
-                .map(PingLog::getPingTime)
-                .mapToLong(Long::longValue)
-                .average()
-                .orElse(0.0);
+        PingLogScanner scanner = openScanner(getPath(ipAddress));
+        if (scanner == null)
+            return super.findAvgLatencyByIp(ipAddress);
 
-        return BigDecimal.valueOf(averagePingTime).setScale(2, RoundingMode.HALF_UP);
-    }
+        DoubleSummaryStatistics pingTimes = new DoubleSummaryStatistics();
+        scanner.forEachPingTime(PingLogScanner.toBytes(ipAddress), Long.MIN_VALUE, Long.MAX_VALUE, pingTimes);
 
-    @Override
-    public BigDecimal findAvgLatencyByDateTimeRangeByIp(LocalDateTime start, LocalDateTime end, String ipAddress) throws IOException {
-        double averagePingTime = getPingLogsByDateTimeRangeByIpStream(readAll().stream(), start, end, ipAddress)
-                .map(PingLog::getPingTime)
-                .filter(time -> time != -1)
-                .mapToLong(Long::longValue)
-                .average()
-                .orElse(0.0);
-
-        return BigDecimal.valueOf(averagePingTime).setScale(2, RoundingMode.HALF_UP);
+        return BigDecimal.valueOf(pingTimes.getAverage()).setScale(2, RoundingMode.HALF_UP);
     }
 
-    /**
-     * Change the ping logs repository file
-     * @param newFileName new ping logs repository file to be used
-     */
     @Override
-    public void changeDatasource(Object newFileName) throws IOException, IllegalArgumentException, SecurityException {
-        String fileName = pingLogFileValidator.validateFileName(newFileName);
-        Path resolvedPath = pingLogFileValidator.resolveAndValidatePath(Path.of(appProperties.getPingLogsPath()), fileName);
-
-        pingLogFileValidator.validateFileProperties(resolvedPath);
-        appProperties.setPinglogsFilename(resolvedPath.getFileName().toString());
-        // bind the file again
-        fileWriterService.resetPath();
-
-        logger.info("Successfully changed ping log repository to: {}", resolvedPath.getFileName());
+    public BigDecimal findAvgLatencyByDateTimeRangeByIp(LocalDateTime start, LocalDateTime end, String ipAddress) throws IOException {
+        PingLogScanner scanner = openScanner(getPath(ipAddress), start, end);
+        if (scanner == null)
+            return super.findAvgLatencyByDateTimeRangeByIp(start, end, ipAddress);
+
+        DoubleSummaryStatistics pingTimes = new DoubleSummaryStatistics();
+        scanner.forEachPingTime(PingLogScanner.toBytes(ipAddress), PingLogScanner.toFirstEpochSecond(start),
+                BinaryPingLogFormat.toEpochSecond(end), pingTime -> {
+                    if (pingTime != -1)
+                        pingTimes.accept(pingTime);
+                });
+
+        return BigDecimal.valueOf(pingTimes.getAverage()).setScale(2, RoundingMode.HALF_UP);
     }
 
     @Override
     public BigDecimal findLostPingLogsAvgByIP(String ipAddress) throws IOException {
+        PingLogScanner scanner = openScanner(getPath(ipAddress));
+        if (scanner == null)
+            return super.findLostPingLogsAvgByIP(ipAddress);
 
-        List<PingLog> pingLogsByIp = getPingLogsByIpStream(readAll().stream(), ipAddress).toList();
-
-        long lost = getLostPingLogsStream(pingLogsByIp.stream())
-                .count();
-
-        if(pingLogsByIp.isEmpty())
-            return BigDecimal.ZERO;
-        else
-            return BigDecimal.valueOf(lost).divide(
-                    BigDecimal.valueOf(pingLogsByIp.size()),
-                    2,
-                    RoundingMode.CEILING);
+        return getLostPingLogsAvg(scanner, ipAddress, Long.MIN_VALUE, Long.MAX_VALUE);
     }
 
     @Override
     public BigDecimal findLostPingLogsAvgByDateTimeRangeByIp(LocalDateTime start, LocalDateTime end, String ipAddress) throws IOException {
-        List<PingLog> pingLogsInDateTimeRange = getPingLogsByDateTimeRangeByIpStream(readAll().stream(), start, end, ipAddress)
-                .toList();
-
-        long lost = getLostPingLogsStream(pingLogsInDateTimeRange.stream())
-                .count();
-
-        if(pingLogsInDateTimeRange.isEmpty())
-            return BigDecimal.ZERO;
-        else
-            return BigDecimal.valueOf(lost).divide(
-                    BigDecimal.valueOf(pingLogsInDateTimeRange.size()),
-                    2,
-                    RoundingMode.CEILING);
-    }
+        PingLogScanner scanner = openScanner(getPath(ipAddress), start, end);
+        if (scanner == null)
+            return super.findLostPingLogsAvgByDateTimeRangeByIp(start, end, ipAddress);
 
-    @Override
-    public void clearPingLogFile() throws InterruptedException {
-        try (Writer writer  = getFileWriter(false)) {
-            writer.write("");
-            writer.flush();
-        } catch (IOException e) {
-            logger.error(CLEAN_PINGLOG_FILE_MSG, e);
-            throw new InterruptedException(CLEAN_PINGLOG_FILE_MSG);
-        }
+        return getLostPingLogsAvg(scanner, ipAddress, PingLogScanner.toFirstEpochSecond(start),
+                BinaryPingLogFormat.toEpochSecond(end));
     }
 
-    FileWriter getFileWriter(boolean append) throws IOException {
-        return new FileWriter(appProperties.getPingLogsPath() + "/" + appProperties.getPinglogsFilename(), append);
+    private static BigDecimal getLostPingLogsAvg(PingLogScanner scanner, String ipAddress, long from, long to) {
+        // total and lost pings
+        long[] counts = new long[2];
+        scanner.forEachPingTime(PingLogScanner.toBytes(ipAddress), from, to, pingTime -> {
+            counts[0]++;
+            if (pingTime < 0)
+                counts[1]++;
+        });
+
+        return getLostPingLogsAvg(counts[1], counts[0]);
     }
 
     /**
-     * Retrieve all the pings from the CSV file
-     * @return List of pings
+     * Map a ping log to scan it, if the scanner is enabled
+     * @param path ping log
+     * @return the scanner, null if it is disabled, the file does not exist or it cannot be mapped
      */
-    protected List<PingLog> readAll() throws IOException {
-        Reader reader = getReader();
-        CsvToBean<PingLog> cb = getCsvToBean(reader);
-
-        return cb.parse();
-    }
-
-    BufferedReader getReader() throws IOException {
-        return Files.newBufferedReader(Path.of(appProperties.getPingLogsPath() + "/" + appProperties.getPinglogsFilename()));
-    }
+    PingLogScanner openScanner(Path path) throws IOException {
+        if (!SCANNER_CSV_READER.equalsIgnoreCase(appProperties.getCsvReader()) || !Files.isRegularFile(path))
+            return null;
 
-    CsvToBean<PingLog> getCsvToBean(Reader reader) {
-        return new CsvToBeanBuilder<PingLog>(reader)
-                .withType(PingLog.class)
-                .build();
+        return PingLogScanner.open(path);
     }
 
     /**
-     * Get a Stream of pings, applying a filter for retrieving only those pings related to a given ipAddress
-     * @param st stream to apply the filtering
-     * @param ipAddress IP address for filtering
-     * @return Stream of pings with a filter applied
+     * Map a ping log to scan the pings of a range. With {@code conntest.index-interval-rows} set, only the blocks of
+     * its {@link PingLogIndex} that may have pings within the range are scanned, and the lines not indexed yet.
+     * @param path ping log
+     * @param start start date and time of the range
+     * @param end end date in the range
+     * @return the scanner, null if it is disabled, the file does not exist or it cannot be mapped
      */
-    protected Stream<PingLog> getPingLogsByIpStream(Stream<PingLog> st, String ipAddress){
-        return st
-                .filter(pingLog -> pingLog.getIpAddress().equals(ipAddress));
+    PingLogScanner openScanner(Path path, LocalDateTime start, LocalDateTime end) throws IOException {
+        PingLogScanner scanner = openScanner(path);
+        Integer indexIntervalRows = appProperties.getIndexIntervalRows();
+        if (scanner == null || indexIntervalRows == null || indexIntervalRows <= 0)
+            return scanner;
+
+        PingLogIndex index = PingLogIndex.read(path, scanner.size());
+        if (index != null)
+            scanner.restrict(index.getRanges(PingLogScanner.toFirstEpochSecond(start),
+                    BinaryPingLogFormat.toEpochSecond(end), scanner.size()));
+
+        return scanner;
     }
 
     /**
-     * Get a Stream of pings, applying a filter for retrieving only those pings related to a given ipAddress, within
-     * a datetime range
-     * @param st stream to apply the filtering
-     * @param start start date and time of the range
-     * @param end end date in the range
-     * @param ipAddress IP address for filtering
-     * @return Stream of pings with a filter applied
+     * Stream the pings of a target and range from a scanner
+     * @param ipAddress IP address of the pings, null for any
+     * @param start start date and time of the range, null for no range
+     * @param end end date in the range, null for no range
      */
-    protected Stream<PingLog> getPingLogsByDateTimeRangeByIpStream(Stream<PingLog> st, LocalDateTime start, LocalDateTime end, String ipAddress){
-        return getPingLogsByDateTimeRangeStream(
-                getPingLogsByIpStream(st, ipAddress),
-                start,
-                end
-        );
+    Stream<PingLog> scan(PingLogScanner scanner, String ipAddress, LocalDateTime start, LocalDateTime end) {
+        return scanner.stream(ipAddress != null ? PingLogScanner.toBytes(ipAddress) : null,
+                start != null ? PingLogScanner.toFirstEpochSecond(start) : Long.MIN_VALUE,
+                end != null ? BinaryPingLogFormat.toEpochSecond(end) : Long.MAX_VALUE);
     }
 
     /**
-     * Get a Stream of pings, applying a filter for retrieving only those pings that have failed
-     * @param st stream to apply the filtering
-     * @return Stream of pings with a filter applied
+     * Parse the pings lazily, one line at a time
+     * @param reader reader of the lines, closed with the stream
+     * @return Stream of pings
      */
-    protected Stream<PingLog> getLostPingLogsStream(Stream<PingLog> st){
-        return st
-                .filter(pingLog -> pingLog.getPingTime() < 0);
+    Stream<PingLog> stream(Reader reader) {
+        try {
+            return StreamSupport.stream(getCsvToBean(reader).spliterator(), false)
+                    .onClose(() -> {
+                        try {
+                            reader.close();
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+        } catch (RuntimeException e) {
+            try {
+                reader.close();
+            } catch (IOException closeException) {
+                e.addSuppressed(closeException);
+            }
+            throw e;
+        }
     }
 
     /**
-     * Get a Stream of pings, applying a filter for retrieving only those pings that have failed within a
-     * datetime range
-     * @param st stream to apply the filtering
-     * @param start start date and time of the range
-     * @param end end date in the range
-     * @return Stream of pings with a filter applied
+     * A ping log segment is read in place from a mapping, up to its committed length, and a compressed ping log is
+     * inflated
      */
-    protected Stream<PingLog> getPingLogsByDateTimeRangeStream(Stream<PingLog> st, LocalDateTime start, LocalDateTime end){
-        return st
-                .filter(pingLog ->
-                        (pingLog.getDateTime().isAfter(start) && pingLog.getDateTime().isBefore(end))
-                        || pingLog.getDateTime().isEqual(start) || pingLog.getDateTime().isEqual(end)
-                );
+    Reader getReader() throws IOException {
+        return PingLogSegment.newReader(getPath());
+    }
+
+    private Path getPath() {
+        return Path.of(appProperties.getPingLogsPath() + "/" + appProperties.getPinglogsFilename());
     }
 
     /**
-     * Get the minimum and maximum ping times of a ping list. Lost pings are not taken into account.
-     * If one of the pings is null, it means both are, so an empty list is returned.
-     * @param pingLogStream stream of pings
-     * @return List of two pings, the first one is the minimum and the second one is the maximum ping time
+     * @param ipAddress IP address of a target
+     * @return the file with the pings of the target
      */
-    private List<PingLog> findMaxMinPingLog(Stream<PingLog> pingLogStream) {
-        return pingLogStream
-                .filter(pingLog -> pingLog.getPingTime() != -1)
-                .collect(Collectors.teeing(
-                        Collectors.minBy(Comparator.comparingLong(PingLog::getPingTime)),
-                        Collectors.maxBy(Comparator.comparingLong(PingLog::getPingTime)),
-                        (min, max) ->
-                            //if one is empty, return an empty list
-                            min.map(pingLog -> List.of(pingLog, max.get())).orElseGet(List::of)
-                ));
+    protected Path getPath(String ipAddress) {
+        return getPath();
+    }
+
+    CsvToBean<PingLog> getCsvToBean(Reader reader) {
+        return new CsvToBeanBuilder<PingLog>(reader)
+                .withType(PingLog.class)
+                .build();
     }
 }
@@ -0,0 +1,344 @@
+package com.adieser.conntest.models;
+
+import com.adieser.conntest.configurations.AppProperties;
+import com.adieser.conntest.models.utils.PingLogFileValidator;
+import com.adieser.conntest.service.writer.FileWriterService;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Base of the repositories of pings stored in a file written by the {@link FileWriterService}. The queries are done
+ * on the pings read by {@link #readAll()}, or by {@link #readRange} for the ones on a datetime range, and by
+ * {@link #readByIp} and {@link #readRangeByIp} for the ones of a target.
+ * <p>
+ * Every query but {@link #findAllPingLogs()} consumes the pings through the {@code stream} hooks, by default over the
+ * lists read, so a repository can parse the pings lazily as they are filtered, and close its file once the query is
+ * done, by overriding them.
+ */
+public abstract class FilePingLogRepository implements PingLogRepository {
+    public static final String SAVE_PING_ERROR_MSG = "Save Ping error";
+    public static final String CLEAN_PINGLOG_FILE_MSG = "Clear pinglog file error";
+
+    protected final PingLogFileValidator pingLogFileValidator;
+
+    protected final AppProperties appProperties;
+    protected final Logger logger;
+    protected final FileWriterService fileWriterService;
+
+    protected FilePingLogRepository(PingLogFileValidator pingLogFileValidator, AppProperties appProperties, Logger logger, FileWriterService fileWriterService) {
+        this.pingLogFileValidator = pingLogFileValidator;
+        this.appProperties = appProperties;
+        this.logger = logger;
+        this.fileWriterService = fileWriterService;
+    }
+
+    @Override
+    public boolean savePingLog(PingLog pingLog) {
+        return fileWriterService.submit(pingLog);
+    }
+
+    @Override
+    public List<PingLog> findAllPingLogs() throws IOException {
+       return readAll();
+    }
+
+    @Override
+    public List<PingLog> findPingLogByIp(String ipAddress) throws IOException {
+        try (Stream<PingLog> pingLogs = streamByIp(ipAddress)) {
+            return getPingLogsByIpStream(pingLogs, ipAddress)
+                    .toList();
+        }
+    }
+
+    @Override
+    public List<PingLog> findPingLogsByDateTimeRange(LocalDateTime start, LocalDateTime end) throws IOException {
+        try (Stream<PingLog> pingLogs = streamRange(start, end)) {
+            return getPingLogsByDateTimeRangeStream(pingLogs, start, end)
+                    .toList();
+        }
+    }
+
+    @Override
+    public List<PingLog> findPingLogsByDateTimeRangeByIp(LocalDateTime start, LocalDateTime end, String ipAddress) throws IOException {
+        try (Stream<PingLog> pingLogs = streamRangeByIp(start, end, ipAddress)) {
+            return getPingLogsByDateTimeRangeByIpStream(pingLogs, start, end, ipAddress)
+                    .toList();
+        }
+    }
+
+    @Override
+    public List<PingLog> findLostPingsByIp(String ipAddress) throws IOException {
+        try (Stream<PingLog> pingLogs = streamByIp(ipAddress)) {
+            return getLostPingLogsStream(getPingLogsByIpStream(pingLogs, ipAddress))
+                    .toList();
+        }
+    }
+
+    @Override
+    public List<PingLog> findLostPingsByDateTimeRangeByIp(LocalDateTime start, LocalDateTime end, String ipAddress) throws IOException {
+        try (Stream<PingLog> pingLogs = streamRangeByIp(start, end, ipAddress)) {
+            return getLostPingLogsStream(getPingLogsByDateTimeRangeByIpStream(pingLogs, start, end, ipAddress))
+                    .toList();
+        }
+    }
+
+    @Override
+    public List<PingLog> findMaxMinPingLogOfAll(String ipAddress) throws IOException {
+        try (Stream<PingLog> pingLogs = streamByIp(ipAddress)) {
+            return findMaxMinPingLog(getPingLogsByIpStream(pingLogs, ipAddress));
+        }
+    }
+
+    @Override
+    public List<PingLog> findMaxMinPingLogByDateTimeRangeByIp(LocalDateTime start, LocalDateTime end, String ipAddress) throws IOException {
+        try (Stream<PingLog> pingLogs = streamRangeByIp(start, end, ipAddress)) {
+            return findMaxMinPingLog(getPingLogsByDateTimeRangeByIpStream(pingLogs, start, end, ipAddress));
+        }
+    }
+
+    @Override
+    public BigDecimal findAvgLatencyByIp(String ipAddress) throws IOException {
+        double averagePingTime;
+        try (Stream<PingLog> pingLogs = streamByIp(ipAddress)) {
+            averagePingTime = getPingLogsByIpStream(pingLogs, ipAddress)
+                    .mapToDouble(PingLog::getPingTime)
+                    .average()
+                    .orElse(0.0);
+        }
+
+        return BigDecimal.valueOf(averagePingTime).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    @Override
+    public BigDecimal findAvgLatencyByDateTimeRangeByIp(LocalDateTime start, LocalDateTime end, String ipAddress) throws IOException {
+        double averagePingTime;
+        try (Stream<PingLog> pingLogs = streamRangeByIp(start, end, ipAddress)) {
+            averagePingTime = getPingLogsByDateTimeRangeByIpStream(pingLogs, start, end, ipAddress)
+                    .mapToDouble(PingLog::getPingTime)
+                    .filter(time -> time != -1)
+                    .average()
+                    .orElse(0.0);
+        }
+
+        return BigDecimal.valueOf(averagePingTime).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Change the ping logs repository file
+     * @param newFileName new ping logs repository file to be used
+     */
+    @Override
+    public void changeDatasource(Object newFileName) throws IOException, IllegalArgumentException, SecurityException {
+        String fileName = pingLogFileValidator.validateFileName(newFileName);
+        Path resolvedPath = pingLogFileValidator.resolveAndValidatePath(Path.of(appProperties.getPingLogsPath()), fileName);
+
+        pingLogFileValidator.validateFileProperties(resolvedPath);
+        appProperties.setPinglogsFilename(resolvedPath.getFileName().toString());
+        // bind the file again
+        fileWriterService.resetPath();
+
+        logger.info("Successfully changed ping log repository to: {}", resolvedPath.getFileName());
+    }
+
+    @Override
+    public BigDecimal findLostPingLogsAvgByIP(String ipAddress) throws IOException {
+        try (Stream<PingLog> pingLogs = streamByIp(ipAddress)) {
+            return getLostPingLogsAvg(getPingLogsByIpStream(pingLogs, ipAddress));
+        }
+    }
+
+    @Override
+    public BigDecimal findLostPingLogsAvgByDateTimeRangeByIp(LocalDateTime start, LocalDateTime end, String ipAddress) throws IOException {
+        try (Stream<PingLog> pingLogs = streamRangeByIp(start, end, ipAddress)) {
+            return getLostPingLogsAvg(getPingLogsByDateTimeRangeByIpStream(pingLogs, start, end, ipAddress));
+        }
+    }
+
+    /**
+     * Get the ratio of lost pings in a single pass, without keeping the pings
+     * @param pingLogStream stream of pings
+     * @return lost pings over all the pings, zero if there are no pings
+     */
+    private BigDecimal getLostPingLogsAvg(Stream<PingLog> pingLogStream) {
+        // total and lost pings
+        long[] counts = pingLogStream.collect(() -> new long[2],
+                (count, pingLog) -> {
+                    count[0]++;
+                    if (pingLog.getPingTime() < 0)
+                        count[1]++;
+                },
+                (count, other) -> {
+                    count[0] += other[0];
+                    count[1] += other[1];
+                });
+
+        return getLostPingLogsAvg(counts[1], counts[0]);
+    }
+
+    /**
+     * @param lost amount of lost pings
+     * @param total amount of pings
+     * @return lost pings over all the pings, zero if there are no pings
+     */
+    protected static BigDecimal getLostPingLogsAvg(long lost, long total) {
+        if(total == 0)
+            return BigDecimal.ZERO;
+        else
+            return BigDecimal.valueOf(lost).divide(
+                    BigDecimal.valueOf(total),
+                    2,
+                    RoundingMode.CEILING);
+    }
+
+    /**
+     * Retrieve all the pings from the file
+     * @return List of pings
+     */
+    protected abstract List<PingLog> readAll() throws IOException;
+
+    /**
+     * Retrieve the pings that may be within a datetime range. They are filtered by the caller, so it can return more
+     * pings than the ones in the range, by default all of them.
+     * @param start start date and time of the range
+     * @param end end date in the range
+     * @return List of pings, including the ones within the range
+     */
+    protected List<PingLog> readRange(LocalDateTime start, LocalDateTime end) throws IOException {
+        return readAll();
+    }
+
+    /**
+     * Retrieve the pings that may be of a target. They are filtered by the caller, by default all of them are read.
+     * @param ipAddress IP address of the target
+     * @return List of pings, including the ones of the target
+     */
+    protected List<PingLog> readByIp(String ipAddress) throws IOException {
+        return readAll();
+    }
+
+    /**
+     * Retrieve the pings that may be of a target within a datetime range. They are filtered by the caller, by default
+     * the ones of {@link #readRange} are read.
+     * @param start start date and time of the range
+     * @param end end date in the range
+     * @param ipAddress IP address of the target
+     * @return List of pings, including the ones of the target within the range
+     */
+    protected List<PingLog> readRangeByIp(LocalDateTime start, LocalDateTime end, String ipAddress) throws IOException {
+        return readRange(start, end);
+    }
+
+    /**
+     * Stream the pings that may be within a datetime range, by default the ones of {@link #readRange}. The caller
+     * closes the stream.
+     * @param start start date and time of the range
+     * @param end end date in the range
+     * @return Stream of pings, including the ones within the range
+     */
+    protected Stream<PingLog> streamRange(LocalDateTime start, LocalDateTime end) throws IOException {
+        return readRange(start, end).stream();
+    }
+
+    /**
+     * Stream the pings that may be of a target, by default the ones of {@link #readByIp}. The caller closes the
+     * stream.
+     * @param ipAddress IP address of the target
+     * @return Stream of pings, including the ones of the target
+     */
+    protected Stream<PingLog> streamByIp(String ipAddress) throws IOException {
+        return readByIp(ipAddress).stream();
+    }
+
+    /**
+     * Stream the pings that may be of a target within a datetime range, by default the ones of
+     * {@link #readRangeByIp}. The caller closes the stream.
+     * @param start start date and time of the range
+     * @param end end date in the range
+     * @param ipAddress IP address of the target
+     * @return Stream of pings, including the ones of the target within the range
+     */
+    protected Stream<PingLog> streamRangeByIp(LocalDateTime start, LocalDateTime end, String ipAddress) throws IOException {
+        return readRangeByIp(start, end, ipAddress).stream();
+    }
+
+    /**
+     * Get a Stream of pings, applying a filter for retrieving only those pings related to a given ipAddress
+     * @param st stream to apply the filtering
+     * @param ipAddress IP address for filtering
+     * @return Stream of pings with a filter applied
+     */
+    protected Stream<PingLog> getPingLogsByIpStream(Stream<PingLog> st, String ipAddress){
+        return st
+                .filter(pingLog -> pingLog.getIpAddress().equals(ipAddress));
+    }
+
+    /**
+     * Get a Stream of pings, applying a filter for retrieving only those pings related to a given ipAddress, within
+     * a datetime range
+     * @param st stream to apply the filtering
+     * @param start start date and time of the range
+     * @param end end date in the range
+     * @param ipAddress IP address for filtering
+     * @return Stream of pings with a filter applied
+     */
+    protected Stream<PingLog> getPingLogsByDateTimeRangeByIpStream(Stream<PingLog> st, LocalDateTime start, LocalDateTime end, String ipAddress){
+        return getPingLogsByDateTimeRangeStream(
+                getPingLogsByIpStream(st, ipAddress),
+                start,
+                end
+        );
+    }
+
+    /**
+     * Get a Stream of pings, applying a filter for retrieving only those pings that have failed
+     * @param st stream to apply the filtering
+     * @return Stream of pings with a filter applied
+     */
+    protected Stream<PingLog> getLostPingLogsStream(Stream<PingLog> st){
+        return st
+                .filter(pingLog -> pingLog.getPingTime() < 0);
+    }
+
+    /**
+     * Get a Stream of pings, applying a filter for retrieving only those pings that have failed within a
+     * datetime range
+     * @param st stream to apply the filtering
+     * @param start start date and time of the range
+     * @param end end date in the range
+     * @return Stream of pings with a filter applied
+     */
+    protected Stream<PingLog> getPingLogsByDateTimeRangeStream(Stream<PingLog> st, LocalDateTime start, LocalDateTime end){
+        return st
+                .filter(pingLog ->
+                        (pingLog.getDateTime().isAfter(start) && pingLog.getDateTime().isBefore(end))
+                        || pingLog.getDateTime().isEqual(start) || pingLog.getDateTime().isEqual(end)
+                );
+    }
+
+    /**
+     * Get the minimum and maximum ping times of a ping list. Lost pings are not taken into account.
+     * If one of the pings is null, it means both are, so an empty list is returned.
+     * @param pingLogStream stream of pings
+     * @return List of two pings, the first one is the minimum and the second one is the maximum ping time
+     */
+    private List<PingLog> findMaxMinPingLog(Stream<PingLog> pingLogStream) {
+        return pingLogStream
+                .filter(pingLog -> pingLog.getPingTime() != -1)
+                .collect(Collectors.teeing(
+                        Collectors.minBy(Comparator.comparingDouble(PingLog::getPingTime)),
+                        Collectors.maxBy(Comparator.comparingDouble(PingLog::getPingTime)),
+                        (min, max) ->
+                            //if one is empty, return an empty list
+                            min.map(pingLog -> List.of(pingLog, max.get())).orElseGet(List::of)
+                ));
+    }
+}
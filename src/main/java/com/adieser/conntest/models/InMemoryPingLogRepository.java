@@ -0,0 +1,305 @@
+package com.adieser.conntest.models;
+
+import com.adieser.conntest.models.binary.BinaryPingLogFormat;
+import com.adieser.conntest.models.memory.PingLogMemoryStore;
+import com.adieser.conntest.models.memory.PingLogSeries;
+import com.adieser.conntest.models.utils.PingLogScanner;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.DoubleSummaryStatistics;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Repository answering the queries from the recent pings kept in memory by target, see {@link PingLogMemoryStore}.
+ * The pings are saved to the memory and to the file repository it wraps, which keeps them for durability and answers
+ * the queries on pings no longer in memory. The memory is loaded from the file on startup and when the datasource
+ * changes.
+ * <p>
+ * The memory has the pings of the active file, as the file repository answers: when the file of a target is rotated,
+ * see {@link #rotated(String)}, its pings are dropped, and the memory covers the target since the second after the
+ * latest ping saved. The pings saved before, even if they are written to the new file, are then read from it.
+ * <p>
+ * A query on a datetime range is answered by a binary search on the times of the target, without reading the file;
+ * a query on all the pings of a target is answered from memory while none of its pings was evicted.
+ */
+public class InMemoryPingLogRepository implements PingLogRepository {
+    private final PingLogRepository fileRepository;
+    private final PingLogMemoryStore store;
+    private final Logger logger;
+    private final Clock clock;
+    /** Latest epoch second of the pings saved */
+    private final AtomicLong lastSaved = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * @param fileRepository repository of the file the pings are saved to
+     * @param store pings kept in memory
+     * @param logger logger
+     * @param clock clock of the pings, to know since when the memory has them if the file cannot be loaded
+     */
+    public InMemoryPingLogRepository(PingLogRepository fileRepository, PingLogMemoryStore store, Logger logger,
+                                     Clock clock) {
+        this.fileRepository = fileRepository;
+        this.store = store;
+        this.logger = logger;
+        this.clock = clock;
+    }
+
+    /**
+     * Load the pings of the file into memory, evicting the oldest ones if they do not fit. If the file cannot be
+     * read, only the pings saved from now on are answered from memory.
+     */
+    public void load() {
+        store.clear(Long.MIN_VALUE);
+        try {
+            List<PingLog> pingLogs = fileRepository.findAllPingLogs();
+            for (PingLog pingLog : pingLogs) {
+                lastSaved.accumulateAndGet(BinaryPingLogFormat.toEpochSecond(pingLog.getDateTime()), Math::max);
+                store.add(pingLog);
+            }
+            logger.info("Loaded {} pings into memory, {} bytes", pingLogs.size(), store.getBytes());
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to load the pings into memory: {}", e.getMessage());
+            store.clear(BinaryPingLogFormat.toEpochSecond(LocalDateTime.now(clock)));
+        }
+    }
+
+    @Override
+    public boolean savePingLog(PingLog data) throws InterruptedException {
+        boolean accepted = fileRepository.savePingLog(data);
+        if (accepted) {
+            // before the ping is kept, so a rotation in between does not take the memory as covering its time
+            lastSaved.accumulateAndGet(BinaryPingLogFormat.toEpochSecond(data.getDateTime()), Math::max);
+            store.add(data);
+        }
+
+        return accepted;
+    }
+
+    /**
+     * Drop the pings of the rotated file, see {@link com.adieser.conntest.service.writer.FileWriterService}
+     * @param ipAddress target whose file was rotated, null if the file of every target was
+     */
+    public void rotated(String ipAddress) {
+        long saved = lastSaved.get();
+        long coveredFrom = saved == Long.MIN_VALUE ? Long.MIN_VALUE : saved + 1;
+        if (ipAddress == null)
+            store.clear(coveredFrom);
+        else
+            store.clear(ipAddress, coveredFrom);
+    }
+
+    @Override
+    public List<PingLog> findPingLogByIp(String ipAddress) throws IOException {
+        if (!store.covers(ipAddress, Long.MIN_VALUE))
+            return fileRepository.findPingLogByIp(ipAddress);
+
+        return getPingLogs(ipAddress, Long.MIN_VALUE, Long.MAX_VALUE, false);
+    }
+
+    @Override
+    public List<PingLog> findAllPingLogs() throws IOException {
+        if (!store.covers(Long.MIN_VALUE))
+            return fileRepository.findAllPingLogs();
+
+        return getPingLogs(Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    @Override
+    public List<PingLog> findPingLogsByDateTimeRange(LocalDateTime start, LocalDateTime end) throws IOException {
+        long from = PingLogScanner.toFirstEpochSecond(start);
+        if (!store.covers(from))
+            return fileRepository.findPingLogsByDateTimeRange(start, end);
+
+        return getPingLogs(from, BinaryPingLogFormat.toEpochSecond(end));
+    }
+
+    @Override
+    public List<PingLog> findPingLogsByDateTimeRangeByIp(LocalDateTime start, LocalDateTime end, String ipAddress) throws IOException {
+        long from = PingLogScanner.toFirstEpochSecond(start);
+        if (!store.covers(ipAddress, from))
+            return fileRepository.findPingLogsByDateTimeRangeByIp(start, end, ipAddress);
+
+        return getPingLogs(ipAddress, from, BinaryPingLogFormat.toEpochSecond(end), false);
+    }
+
+    @Override
+    public BigDecimal findLostPingLogsAvgByIP(String ipAddress) throws IOException {
+        if (!store.covers(ipAddress, Long.MIN_VALUE))
+            return fileRepository.findLostPingLogsAvgByIP(ipAddress);
+
+        return getLostPingLogsAvg(ipAddress, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    @Override
+    public BigDecimal findLostPingLogsAvgByDateTimeRangeByIp(LocalDateTime start, LocalDateTime end, String ipAddress) throws IOException {
+        long from = PingLogScanner.toFirstEpochSecond(start);
+        if (!store.covers(ipAddress, from))
+            return fileRepository.findLostPingLogsAvgByDateTimeRangeByIp(start, end, ipAddress);
+
+        return getLostPingLogsAvg(ipAddress, from, BinaryPingLogFormat.toEpochSecond(end));
+    }
+
+    /**
+     * The file is cleared by its repository, and the memory then
+     */
+    @Override
+    public void clearPingLogFile() throws InterruptedException {
+        fileRepository.clearPingLogFile();
+        store.clear(Long.MIN_VALUE);
+    }
+
+    @Override
+    public List<PingLog> findLostPingsByIp(String ipAddress) throws IOException {
+        if (!store.covers(ipAddress, Long.MIN_VALUE))
+            return fileRepository.findLostPingsByIp(ipAddress);
+
+        return getPingLogs(ipAddress, Long.MIN_VALUE, Long.MAX_VALUE, true);
+    }
+
+    @Override
+    public List<PingLog> findLostPingsByDateTimeRangeByIp(LocalDateTime start, LocalDateTime end, String ipAddress) throws IOException {
+        long from = PingLogScanner.toFirstEpochSecond(start);
+        if (!store.covers(ipAddress, from))
+            return fileRepository.findLostPingsByDateTimeRangeByIp(start, end, ipAddress);
+
+        return getPingLogs(ipAddress, from, BinaryPingLogFormat.toEpochSecond(end), true);
+    }
+
+    @Override
+    public List<PingLog> findMaxMinPingLogOfAll(String ipAddress) throws IOException {
+        if (!store.covers(ipAddress, Long.MIN_VALUE))
+            return fileRepository.findMaxMinPingLogOfAll(ipAddress);
+
+        return getMaxMinPingLog(ipAddress, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    @Override
+    public List<PingLog> findMaxMinPingLogByDateTimeRangeByIp(LocalDateTime start, LocalDateTime end, String ipAddress) throws IOException {
+        long from = PingLogScanner.toFirstEpochSecond(start);
+        if (!store.covers(ipAddress, from))
+            return fileRepository.findMaxMinPingLogByDateTimeRangeByIp(start, end, ipAddress);
+
+        return getMaxMinPingLog(ipAddress, from, BinaryPingLogFormat.toEpochSecond(end));
+    }
+
+    /**
+     * Lost pings count as -1 in the average, as in the file repositories
+     */
+    @Override
+    public BigDecimal findAvgLatencyByIp(String ipAddress) throws IOException {
+        if (!store.covers(ipAddress, Long.MIN_VALUE))
+            return fileRepository.findAvgLatencyByIp(ipAddress);
+
+        DoubleSummaryStatistics pingTimes = new DoubleSummaryStatistics();
+        forEach(ipAddress, Long.MIN_VALUE, Long.MAX_VALUE,
+                (epochSecond, micros) -> pingTimes.accept(BinaryPingLogFormat.fromMicros(micros)));
+
+        return BigDecimal.valueOf(pingTimes.getAverage()).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    @Override
+    public BigDecimal findAvgLatencyByDateTimeRangeByIp(LocalDateTime start, LocalDateTime end, String ipAddress) throws IOException {
+        long from = PingLogScanner.toFirstEpochSecond(start);
+        if (!store.covers(ipAddress, from))
+            return fileRepository.findAvgLatencyByDateTimeRangeByIp(start, end, ipAddress);
+
+        DoubleSummaryStatistics pingTimes = new DoubleSummaryStatistics();
+        forEach(ipAddress, from, BinaryPingLogFormat.toEpochSecond(end), (epochSecond, micros) -> {
+            if (micros >= 0)
+                pingTimes.accept(BinaryPingLogFormat.fromMicros(micros));
+        });
+
+        return BigDecimal.valueOf(pingTimes.getAverage()).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * The datasource is changed by the file repository, and the memory loaded from the new file
+     */
+    @Override
+    public void changeDatasource(Object newDatasource) throws IOException {
+        fileRepository.changeDatasource(newDatasource);
+        load();
+    }
+
+    private List<PingLog> getPingLogs(String ipAddress, long from, long to, boolean lostOnly) {
+        List<PingLog> pingLogs = new ArrayList<>();
+        forEach(ipAddress, from, to, (epochSecond, micros) -> {
+            if (!lostOnly || micros < 0)
+                pingLogs.add(toPingLog(epochSecond, ipAddress, micros));
+        });
+
+        return pingLogs;
+    }
+
+    /**
+     * Pings of every target, sorted by datetime
+     */
+    private List<PingLog> getPingLogs(long from, long to) {
+        List<PingLog> pingLogs = new ArrayList<>();
+        for (String ipAddress : store.getIpAddresses())
+            pingLogs.addAll(getPingLogs(ipAddress, from, to, false));
+        pingLogs.sort(Comparator.comparing(PingLog::getDateTime));
+
+        return pingLogs;
+    }
+
+    private BigDecimal getLostPingLogsAvg(String ipAddress, long from, long to) {
+        // total and lost pings
+        long[] counts = new long[2];
+        forEach(ipAddress, from, to, (epochSecond, micros) -> {
+            counts[0]++;
+            if (micros < 0)
+                counts[1]++;
+        });
+
+        return FilePingLogRepository.getLostPingLogsAvg(counts[1], counts[0]);
+    }
+
+    /**
+     * The first ping with the lowest ping time and the first one with the highest, lost pings are not taken into
+     * account
+     */
+    private List<PingLog> getMaxMinPingLog(String ipAddress, long from, long to) {
+        // epoch second and ping time of the min and the max
+        long[] min = {0, Long.MAX_VALUE};
+        long[] max = {0, -1};
+        forEach(ipAddress, from, to, (epochSecond, micros) -> {
+            if (micros < 0)
+                return;
+            if (micros < min[1]) {
+                min[0] = epochSecond;
+                min[1] = micros;
+            }
+            if (micros > max[1]) {
+                max[0] = epochSecond;
+                max[1] = micros;
+            }
+        });
+
+        if (max[1] < 0)
+            return List.of();
+        return List.of(toPingLog(min[0], ipAddress, (int) min[1]), toPingLog(max[0], ipAddress, (int) max[1]));
+    }
+
+    private void forEach(String ipAddress, long from, long to, PingLogSeries.PingConsumer consumer) {
+        PingLogSeries series = store.getSeries(ipAddress);
+        if (series != null && from <= to)
+            series.forEach(from, to, consumer);
+    }
+
+    private static PingLog toPingLog(long epochSecond, String ipAddress, int micros) {
+        return PingLog.builder()
+                .dateTime(BinaryPingLogFormat.fromEpochSecond(epochSecond))
+                .ipAddress(ipAddress)
+                .pingTime(BinaryPingLogFormat.fromMicros(micros))
+                .build();
+    }
+}
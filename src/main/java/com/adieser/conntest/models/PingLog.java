@@ -1,6 +1,8 @@
 package com.adieser.conntest.models;
 
+import com.adieser.conntest.models.utils.PingTimeCsvConverter;
 import com.opencsv.bean.CsvBindByPosition;
+import com.opencsv.bean.CsvCustomBindByPosition;
 import com.opencsv.bean.CsvDate;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -9,6 +11,7 @@ import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 import org.springframework.hateoas.RepresentationModel;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 /**
@@ -35,8 +38,31 @@ public class PingLog extends RepresentationModel<PingLog> {
     private String ipAddress;
 
     /**
-     * time it took to ping the ip address (milliseconds)
+     * time it took to ping the ip address (milliseconds, with microsecond resolution). -1 if the ping was lost
      */
-    @CsvBindByPosition(position = 2)
-    private long pingTime;
+    @CsvCustomBindByPosition(position = 2, converter = PingTimeCsvConverter.class)
+    private double pingTime;
+
+    /**
+     * Convert a ping duration to a ping time
+     * @param nanos duration of the ping in nanoseconds
+     * @return the duration in milliseconds, truncated to microseconds
+     */
+    public static double toPingTime(long nanos) {
+        return (nanos / 1000L) / 1000.0;
+    }
+
+    /**
+     * Format a ping time in milliseconds with up to 3 decimals (microseconds). Whole milliseconds are formatted
+     * without decimals, as they were written when ping times had millisecond resolution.
+     * @param pingTime ping time in milliseconds
+     * @return the formatted ping time, e.g. 13, 0.412 or -1
+     */
+    public static String formatPingTime(double pingTime) {
+        long micros = Math.round(pingTime * 1000.0);
+        if (micros % 1000L == 0)
+            return Long.toString(micros / 1000L);
+
+        return BigDecimal.valueOf(micros, 3).stripTrailingZeros().toPlainString();
+    }
 }
@@ -0,0 +1,57 @@
+package com.adieser.conntest.models;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Appends pings to a ping log file of a record format, as opposed to the CSV lines written by the
+ * {@link com.adieser.conntest.service.writer.FileWriterService} itself. Not thread-safe.
+ */
+public interface PingLogRecordWriter extends Closeable {
+
+    /**
+     * Append pings, in order
+     * @param pingLogs pings to append. They may be reused by the caller once this returns
+     * @return amount of pings appended. Fewer than the pings given if the file has no room for the rest, which need
+     * a new file
+     * @throws IOException if the file could not be written
+     */
+    int write(List<PingLog> pingLogs) throws IOException;
+
+    /**
+     * @return amount of pings appended to the file, including the pending ones
+     */
+    long getRecordCount();
+
+    /**
+     * @return size of the file, in bytes
+     */
+    long size();
+
+    /**
+     * Remove every ping from the file
+     * @throws IOException if the file could not be written
+     */
+    void clear() throws IOException;
+
+    /**
+     * Write the pending pings to the file, for the formats that buffer them
+     * @throws IOException if the file could not be written
+     */
+    default void flush() throws IOException {
+    }
+
+    /**
+     * Force the pings in the file to the disk
+     * @throws IOException if the file could not be forced
+     */
+    void sync() throws IOException;
+
+    /**
+     * @return pings appended but not in the file yet, for the formats that buffer them
+     */
+    default List<PingLog> getPending() {
+        return List.of();
+    }
+}
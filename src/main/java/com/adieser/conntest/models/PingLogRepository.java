@@ -16,8 +16,9 @@ public interface PingLogRepository {
     /**
      * Persist a ping
      * @param data ping to be persisted
+     * @return true if the ping was accepted, false if it was dropped
      */
-    void savePingLog(PingLog data) throws InterruptedException;
+    boolean savePingLog(PingLog data) throws InterruptedException;
 
     /**
      * Retrieve all pings by IP address
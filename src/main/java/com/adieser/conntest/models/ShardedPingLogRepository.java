@@ -0,0 +1,131 @@
+package com.adieser.conntest.models;
+
+import com.adieser.conntest.configurations.AppProperties;
+import com.adieser.conntest.models.utils.PingLogFileValidator;
+import com.adieser.conntest.models.utils.PingLogScanner;
+import com.adieser.conntest.models.utils.PingLogSegment;
+import com.adieser.conntest.models.utils.PingLogShards;
+import com.adieser.conntest.service.writer.FileWriterService;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Repository for pings stored in CSV files by target, see {@link PingLogShards}. The queries on a target only read
+ * the file of the target; the other ones read every file and merge their pings by datetime.
+ */
+public class ShardedPingLogRepository extends CsvPingLogRepository {
+
+    public ShardedPingLogRepository(PingLogFileValidator pingLogFileValidator, AppProperties appProperties, Logger logger, FileWriterService fileWriterService) {
+        super(pingLogFileValidator, appProperties, logger, fileWriterService);
+    }
+
+    /**
+     * The files are cleared by the writer, which keeps them open
+     */
+    @Override
+    public void clearPingLogFile() throws InterruptedException {
+        try {
+            fileWriterService.clear();
+        } catch (IOException e) {
+            logger.error(CLEAN_PINGLOG_FILE_MSG, e);
+            throw new InterruptedException(CLEAN_PINGLOG_FILE_MSG);
+        }
+    }
+
+    /**
+     * Retrieve the pings of every target, sorted by datetime
+     * @return List of pings
+     */
+    @Override
+    protected List<PingLog> readAll() throws IOException {
+        List<PingLog> pingLogs = new ArrayList<>();
+        for (Path file : PingLogShards.listShardFiles(getShardsDirectory(), appProperties.getPinglogsFilename()))
+            pingLogs.addAll(read(file));
+        pingLogs.sort(Comparator.comparing(PingLog::getDateTime));
+
+        return pingLogs;
+    }
+
+    @Override
+    protected List<PingLog> readRange(LocalDateTime start, LocalDateTime end) throws IOException {
+        return readAll();
+    }
+
+    /**
+     * Retrieve the pings from the file of a target only
+     */
+    @Override
+    protected List<PingLog> readByIp(String ipAddress) throws IOException {
+        Path file = getPath(ipAddress);
+        if (!Files.isRegularFile(file))
+            return List.of();
+
+        return read(file);
+    }
+
+    @Override
+    protected List<PingLog> readRangeByIp(LocalDateTime start, LocalDateTime end, String ipAddress) throws IOException {
+        return readByIp(ipAddress);
+    }
+
+    /**
+     * The pings of every target are merged by datetime, so they are read as a list
+     */
+    @Override
+    protected Stream<PingLog> streamRange(LocalDateTime start, LocalDateTime end) throws IOException {
+        return readRange(start, end).stream();
+    }
+
+    /**
+     * Stream the pings from the file of a target only
+     */
+    @Override
+    protected Stream<PingLog> streamByIp(String ipAddress) throws IOException {
+        Path file = getPath(ipAddress);
+        if (!Files.isRegularFile(file))
+            return Stream.empty();
+        PingLogScanner scanner = openScanner(file);
+        if (scanner != null)
+            return scan(scanner, ipAddress, null, null);
+
+        return stream(PingLogSegment.newReader(file));
+    }
+
+    @Override
+    protected Stream<PingLog> streamRangeByIp(LocalDateTime start, LocalDateTime end, String ipAddress) throws IOException {
+        Path file = getPath(ipAddress);
+        PingLogScanner scanner = openScanner(file, start, end);
+        if (scanner != null)
+            return scan(scanner, ipAddress, start, end);
+
+        return streamByIp(ipAddress);
+    }
+
+    /**
+     * @return the file of the target
+     */
+    @Override
+    protected Path getPath(String ipAddress) {
+        return PingLogShards.getShardDirectory(getShardsDirectory(), ipAddress)
+                .resolve(appProperties.getPinglogsFilename());
+    }
+
+    private List<PingLog> read(Path file) throws IOException {
+        try (Reader reader = PingLogSegment.newReader(file)) {
+            return getCsvToBean(reader).parse();
+        }
+    }
+
+    private Path getShardsDirectory() {
+        return PingLogShards.getShardsDirectory(appProperties.getPingLogsPath());
+    }
+}
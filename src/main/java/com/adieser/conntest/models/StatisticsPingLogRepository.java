@@ -0,0 +1,210 @@
+package com.adieser.conntest.models;
+
+import com.adieser.conntest.models.memory.PingLogStatistics;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Repository answering the all-time statistics of a target, its average latency, ratio of lost pings and lowest and
+ * highest pings, from running {@link PingLogStatistics} in constant time, instead of reading the pings of the target.
+ * The statistics are loaded from the repository it wraps on startup, updated with every ping it accepts, cleared with
+ * the file and loaded again when the datasource changes. Any other query is answered by the wrapped repository.
+ * <p>
+ * The statistics are the ones of the pings of the active file, as the file repositories answer: when the file of a
+ * target is rotated, see {@link #rotated(String)}, its statistics restart. The pings saved but still waiting for the
+ * writer at that point, usually the ones of less than a batch, are written to the new file but were counted before,
+ * so they are not in the statistics.
+ * <p>
+ * Saving a ping and counting it, loading the statistics, and clearing the file with them exclude each other, so a ping
+ * is neither counted twice, by its save and by a load that finds it in the file, nor lost between the file being
+ * cleared and the statistics. The rotation does not take part: it is told on the writer thread, which the saves may be
+ * waiting for.
+ * <p>
+ * If the statistics cannot be loaded, the wrapped repository answers them too, until they are loaded.
+ */
+public class StatisticsPingLogRepository implements PingLogRepository {
+    private final PingLogRepository repository;
+    private final PingLogStatistics statistics;
+    private final Logger logger;
+    private volatile boolean loaded;
+    /** Shared by the saves, exclusive to the loads and clears */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * @param repository repository of the pings
+     * @param statistics running statistics of the pings
+     * @param logger logger
+     */
+    public StatisticsPingLogRepository(PingLogRepository repository, PingLogStatistics statistics, Logger logger) {
+        this.repository = repository;
+        this.statistics = statistics;
+        this.logger = logger;
+    }
+
+    /**
+     * Load the statistics from every ping of the repository
+     */
+    public void load() {
+        lock.writeLock().lock();
+        try {
+            loadLocked();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void loadLocked() {
+        loaded = false;
+        statistics.clear();
+        try {
+            List<PingLog> pingLogs = repository.findAllPingLogs();
+            for (PingLog pingLog : pingLogs)
+                statistics.add(pingLog);
+            loaded = true;
+            logger.info("Loaded the statistics of {} pings", pingLogs.size());
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to load the statistics of the pings: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean savePingLog(PingLog data) throws InterruptedException {
+        lock.readLock().lock();
+        try {
+            boolean accepted = repository.savePingLog(data);
+            if (accepted)
+                statistics.add(data);
+
+            return accepted;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<PingLog> findPingLogByIp(String ipAddress) throws IOException {
+        return repository.findPingLogByIp(ipAddress);
+    }
+
+    @Override
+    public List<PingLog> findAllPingLogs() throws IOException {
+        return repository.findAllPingLogs();
+    }
+
+    @Override
+    public List<PingLog> findPingLogsByDateTimeRange(LocalDateTime start, LocalDateTime end) throws IOException {
+        return repository.findPingLogsByDateTimeRange(start, end);
+    }
+
+    @Override
+    public List<PingLog> findPingLogsByDateTimeRangeByIp(LocalDateTime start, LocalDateTime end, String ipAddress) throws IOException {
+        return repository.findPingLogsByDateTimeRangeByIp(start, end, ipAddress);
+    }
+
+    @Override
+    public BigDecimal findLostPingLogsAvgByIP(String ipAddress) throws IOException {
+        if (!loaded)
+            return repository.findLostPingLogsAvgByIP(ipAddress);
+
+        PingLogStatistics.Snapshot target = statistics.get(ipAddress);
+        return FilePingLogRepository.getLostPingLogsAvg(target.lost(), target.count());
+    }
+
+    @Override
+    public BigDecimal findLostPingLogsAvgByDateTimeRangeByIp(LocalDateTime start, LocalDateTime end, String ipAddress) throws IOException {
+        return repository.findLostPingLogsAvgByDateTimeRangeByIp(start, end, ipAddress);
+    }
+
+    /**
+     * Restart the statistics of the rotated file, see {@link com.adieser.conntest.service.writer.FileWriterService}
+     * @param ipAddress target whose file was rotated, null if the file of every target was
+     */
+    public void rotated(String ipAddress) {
+        if (ipAddress == null)
+            statistics.clear();
+        else
+            statistics.clear(ipAddress);
+    }
+
+    /**
+     * The file is cleared by the wrapped repository, and the statistics with it
+     */
+    @Override
+    public void clearPingLogFile() throws InterruptedException {
+        lock.writeLock().lock();
+        try {
+            repository.clearPingLogFile();
+            statistics.clear();
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<PingLog> findLostPingsByIp(String ipAddress) throws IOException {
+        return repository.findLostPingsByIp(ipAddress);
+    }
+
+    @Override
+    public List<PingLog> findLostPingsByDateTimeRangeByIp(LocalDateTime start, LocalDateTime end, String ipAddress) throws IOException {
+        return repository.findLostPingsByDateTimeRangeByIp(start, end, ipAddress);
+    }
+
+    /**
+     * The first ping with the lowest ping time and the first one with the highest, lost pings are not taken into
+     * account
+     */
+    @Override
+    public List<PingLog> findMaxMinPingLogOfAll(String ipAddress) throws IOException {
+        if (!loaded)
+            return repository.findMaxMinPingLogOfAll(ipAddress);
+
+        PingLogStatistics.Snapshot target = statistics.get(ipAddress);
+        if (target.min() == null)
+            return List.of();
+        return List.of(target.min(), target.max());
+    }
+
+    @Override
+    public List<PingLog> findMaxMinPingLogByDateTimeRangeByIp(LocalDateTime start, LocalDateTime end, String ipAddress) throws IOException {
+        return repository.findMaxMinPingLogByDateTimeRangeByIp(start, end, ipAddress);
+    }
+
+    /**
+     * Lost pings count as -1 in the average, as in the file repositories
+     */
+    @Override
+    public BigDecimal findAvgLatencyByIp(String ipAddress) throws IOException {
+        if (!loaded)
+            return repository.findAvgLatencyByIp(ipAddress);
+
+        return BigDecimal.valueOf(statistics.get(ipAddress).average()).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    @Override
+    public BigDecimal findAvgLatencyByDateTimeRangeByIp(LocalDateTime start, LocalDateTime end, String ipAddress) throws IOException {
+        return repository.findAvgLatencyByDateTimeRangeByIp(start, end, ipAddress);
+    }
+
+    /**
+     * The datasource is changed by the wrapped repository, and the statistics loaded from the new one
+     */
+    @Override
+    public void changeDatasource(Object newDatasource) throws IOException {
+        lock.writeLock().lock();
+        try {
+            repository.changeDatasource(newDatasource);
+            loadLocked();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.adieser.conntest.models.binary;
+
+import com.adieser.conntest.models.PingLog;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.adieser.conntest.models.binary.BinaryPingLogFormat.MAX_DISORDER_SECONDS;
+import static com.adieser.conntest.models.binary.BinaryPingLogFormat.RECORD_SIZE;
+
+/**
+ * Reads a binary ping log file, see {@link BinaryPingLogFormat}. It sees the records written when it was opened.
+ */
+public final class BinaryPingLogReader implements Closeable {
+    private static final int RECORDS_PER_READ = 4096;
+
+    private final FileChannel channel;
+    private final int headerSize;
+    private final String[] targets;
+    private final long recordCount;
+
+    /**
+     * @param file file to read
+     * @throws IOException if the file could not be opened or is not a binary ping log
+     */
+    public BinaryPingLogReader(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            // the size is taken before the header, so the dictionary has every target of the records within it
+            long size = channel.size();
+            if (size == 0) {
+                this.headerSize = 0;
+                this.targets = new String[0];
+                this.recordCount = 0;
+            } else {
+                BinaryPingLogFormat.Header header = BinaryPingLogFormat.readHeader(channel);
+                this.headerSize = header.headerSize();
+                this.targets = header.targets().toArray(String[]::new);
+                this.recordCount = Math.max(0, size - headerSize) / RECORD_SIZE;
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return amount of records in the file
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * @return every ping in the file, in file order
+     */
+    public List<PingLog> readAll() throws IOException {
+        return read(0, recordCount);
+    }
+
+    /**
+     * Read the pings that may be within a datetime range, found with a binary search. The range is widened by
+     * {@link BinaryPingLogFormat#MAX_DISORDER_SECONDS}, so the result has to be filtered by the caller.
+     * @param start start date and time of the range
+     * @param end end date and time of the range
+     * @return pings around the range, in file order
+     */
+    public List<PingLog> readRange(LocalDateTime start, LocalDateTime end) throws IOException {
+        long from = lowerBound(BinaryPingLogFormat.toEpochSecond(start) - MAX_DISORDER_SECONDS);
+        long to = lowerBound(BinaryPingLogFormat.toEpochSecond(end) + MAX_DISORDER_SECONDS + 1);
+
+        return read(from, Math.max(from, to));
+    }
+
+    /**
+     * Read the records in a range of positions
+     * @param from index of the first record
+     * @param to index after the last record
+     * @return the pings, in file order
+     */
+    public List<PingLog> read(long from, long to) throws IOException {
+        List<PingLog> pingLogs = new ArrayList<>((int) Math.min(Integer.MAX_VALUE - 8, Math.max(0, to - from)));
+        ByteBuffer buffer = ByteBuffer.allocate(RECORDS_PER_READ * RECORD_SIZE);
+        for (long index = from; index < to; index += RECORDS_PER_READ) {
+            int records = (int) Math.min(RECORDS_PER_READ, to - index);
+            buffer.clear().limit(records * RECORD_SIZE);
+            BinaryPingLogFormat.readFully(channel, buffer, position(index));
+            for (int i = 0; i < records; i++)
+                pingLogs.add(BinaryPingLogFormat.getRecord(buffer, i * RECORD_SIZE, targets));
+        }
+
+        return pingLogs;
+    }
+
+    /**
+     * Binary search of a time
+     * @param epochSecond time to look for
+     * @return index of the first record at or after the time, or the amount of records if there is none
+     */
+    public long lowerBound(long epochSecond) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+        long low = 0;
+        long high = recordCount;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            buffer.clear();
+            BinaryPingLogFormat.readFully(channel, buffer, position(middle));
+            if (buffer.getLong(0) < epochSecond)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+
+        return low;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private long position(long index) {
+        return headerSize + index * RECORD_SIZE;
+    }
+}
@@ -0,0 +1,149 @@
+package com.adieser.conntest.models.binary;
+
+import com.adieser.conntest.models.PingLog;
+import com.adieser.conntest.models.PingLogRecordWriter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.adieser.conntest.models.binary.BinaryPingLogFormat.RECORD_SIZE;
+import static com.adieser.conntest.models.binary.BinaryPingLogFormat.TARGET_COUNT_OFFSET;
+
+/**
+ * Appends pings to a binary ping log file, see {@link BinaryPingLogFormat}. A target seen for the first time is added
+ * to the dictionary in the header before its first record is written, so a reader never finds a record of a target
+ * it does not know. Not thread-safe.
+ */
+public final class BinaryPingLogWriter implements PingLogRecordWriter {
+    private static final int RECORDS_PER_WRITE = 1024;
+
+    private final FileChannel channel;
+    private final int headerSize;
+    private final Map<String, Integer> targetIds = new HashMap<>();
+    private final ByteBuffer records = ByteBuffer.allocate(RECORDS_PER_WRITE * RECORD_SIZE);
+    private int dictionaryEnd;
+    private long position;
+
+    /**
+     * Open a file to append pings to it. A new or empty file gets an empty header. Of an existing file, a partially
+     * written record at its end is discarded.
+     * @param file file to write
+     * @param headerSize size of the header of a new file, it bounds the size of the dictionary
+     * @throws IOException if the file could not be opened or is not a binary ping log
+     */
+    public BinaryPingLogWriter(Path file, int headerSize) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                BinaryPingLogFormat.writeHeader(channel, headerSize);
+                this.headerSize = headerSize;
+                this.dictionaryEnd = BinaryPingLogFormat.DICTIONARY_OFFSET;
+            } else {
+                BinaryPingLogFormat.Header header = BinaryPingLogFormat.readHeader(channel);
+                this.headerSize = header.headerSize();
+                this.dictionaryEnd = header.dictionaryEnd();
+                for (String target : header.targets())
+                    targetIds.put(target, targetIds.size());
+            }
+
+            long records = Math.max(0, channel.size() - this.headerSize) / RECORD_SIZE;
+            this.position = this.headerSize + records * RECORD_SIZE;
+            channel.truncate(position);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int write(List<PingLog> pingLogs) throws IOException {
+        int written = 0;
+        records.clear();
+        for (PingLog pingLog : pingLogs) {
+            int targetId = targetId(pingLog.getIpAddress());
+            if (targetId < 0)
+                break;
+
+            if (!records.hasRemaining())
+                writeRecords();
+            BinaryPingLogFormat.putRecord(records, pingLog, targetId);
+            written++;
+        }
+        writeRecords();
+
+        return written;
+    }
+
+    @Override
+    public long getRecordCount() {
+        return (position - headerSize) / RECORD_SIZE;
+    }
+
+    @Override
+    public long size() {
+        return position;
+    }
+
+    @Override
+    public void clear() throws IOException {
+        channel.truncate(0);
+        BinaryPingLogFormat.writeHeader(channel, headerSize);
+        targetIds.clear();
+        dictionaryEnd = BinaryPingLogFormat.DICTIONARY_OFFSET;
+        position = headerSize;
+    }
+
+    @Override
+    public void sync() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Find the id of a target, adding it to the dictionary if it is not there
+     * @return the id, or -1 if the dictionary is full
+     */
+    private int targetId(String ipAddress) throws IOException {
+        String target = ipAddress != null ? ipAddress : "";
+        Integer id = targetIds.get(target);
+        if (id != null)
+            return id;
+
+        byte[] bytes = target.getBytes(StandardCharsets.UTF_8);
+        if (dictionaryEnd + 2 + bytes.length > headerSize)
+            return -1;
+
+        ByteBuffer entry = ByteBuffer.allocate(2 + bytes.length);
+        entry.putShort((short) bytes.length).put(bytes).flip();
+        BinaryPingLogFormat.writeFully(channel, entry, dictionaryEnd);
+        dictionaryEnd += entry.limit();
+
+        int newId = targetIds.size();
+        targetIds.put(target, newId);
+        ByteBuffer count = ByteBuffer.allocate(Integer.BYTES);
+        count.putInt(targetIds.size()).flip();
+        BinaryPingLogFormat.writeFully(channel, count, TARGET_COUNT_OFFSET);
+
+        return newId;
+    }
+
+    private void writeRecords() throws IOException {
+        records.flip();
+        int length = records.limit();
+        BinaryPingLogFormat.writeFully(channel, records, position);
+        position += length;
+        records.clear();
+    }
+}
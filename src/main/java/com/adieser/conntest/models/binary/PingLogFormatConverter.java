@@ -0,0 +1,107 @@
+package com.adieser.conntest.models.binary;
+
+import com.adieser.conntest.models.PingLog;
+import com.adieser.conntest.models.utils.PingLogSegment;
+import com.opencsv.bean.CsvToBeanBuilder;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts ping log files between the CSV and the binary format. The conversion is lossless both ways: ping times
+ * have microsecond resolution in both formats.
+ */
+public final class PingLogFormatConverter {
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int BATCH_SIZE = 4096;
+
+    private PingLogFormatConverter() {
+    }
+
+    /**
+     * Convert a CSV ping log to a new binary ping log
+     * @param csv CSV file to read
+     * @param binary binary file to write, it must not exist
+     * @param headerSize size of the header of the binary file
+     * @return amount of pings converted
+     * @throws IOException if a file could not be read or written, or the targets do not fit in the header
+     */
+    public static long csvToBinary(Path csv, Path binary, int headerSize) throws IOException {
+        if (Files.exists(binary))
+            throw new IOException("File already exists: " + binary);
+
+        long converted = 0;
+        try (Reader reader = PingLogSegment.newReader(csv);
+             BinaryPingLogWriter writer = new BinaryPingLogWriter(binary, headerSize)) {
+            List<PingLog> batch = new ArrayList<>(BATCH_SIZE);
+            for (PingLog pingLog : new CsvToBeanBuilder<PingLog>(reader).withType(PingLog.class).build()) {
+                batch.add(pingLog);
+                if (batch.size() == BATCH_SIZE)
+                    converted += write(writer, batch);
+            }
+            converted += write(writer, batch);
+        }
+
+        return converted;
+    }
+
+    /**
+     * Convert a binary ping log to a new CSV ping log, in the format written by the application
+     * @param binary binary file to read
+     * @param csv CSV file to write, it must not exist
+     * @return amount of pings converted
+     * @throws IOException if a file could not be read or written
+     */
+    public static long binaryToCsv(Path binary, Path csv) throws IOException {
+        if (Files.exists(csv))
+            throw new IOException("File already exists: " + csv);
+
+        try (BinaryPingLogReader reader = new BinaryPingLogReader(binary);
+             BufferedWriter writer = Files.newBufferedWriter(csv)) {
+            long count = reader.getRecordCount();
+            for (long from = 0; from < count; from += BATCH_SIZE) {
+                for (PingLog pingLog : reader.read(from, Math.min(count, from + BATCH_SIZE))) {
+                    writer.write(DATE_TIME_FORMATTER.format(pingLog.getDateTime()));
+                    writer.write(',');
+                    writer.write(pingLog.getIpAddress());
+                    writer.write(',');
+                    writer.write(PingLog.formatPingTime(pingLog.getPingTime()));
+                    writer.write('\n');
+                }
+            }
+
+            return count;
+        }
+    }
+
+    /**
+     * Command line entry point
+     * @param args {@code csv-to-binary <csv file> <binary file>} or {@code binary-to-csv <binary file> <csv file>}
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 3 && "csv-to-binary".equals(args[0])) {
+            long converted = csvToBinary(Path.of(args[1]), Path.of(args[2]), BinaryPingLogFormat.DEFAULT_HEADER_SIZE);
+            System.out.println("Converted " + converted + " pings");
+        } else if (args.length == 3 && "binary-to-csv".equals(args[0])) {
+            long converted = binaryToCsv(Path.of(args[1]), Path.of(args[2]));
+            System.out.println("Converted " + converted + " pings");
+        } else {
+            System.err.println("Usage: csv-to-binary <csv file> <binary file> | binary-to-csv <binary file> <csv file>");
+        }
+    }
+
+    private static int write(BinaryPingLogWriter writer, List<PingLog> batch) throws IOException {
+        int written = writer.write(batch);
+        if (written < batch.size())
+            throw new IOException("Too many targets for the header of the binary ping log");
+        batch.clear();
+
+        return written;
+    }
+}
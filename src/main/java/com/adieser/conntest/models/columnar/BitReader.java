@@ -0,0 +1,30 @@
+package com.adieser.conntest.models.columnar;
+
+/**
+ * Reads the bits written by a {@link BitWriter}
+ */
+final class BitReader {
+    private final byte[] bytes;
+    private long position;
+
+    BitReader(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    boolean readBit() {
+        boolean bit = (bytes[(int) (position >>> 3)] & (0x80 >>> (position & 7))) != 0;
+        position++;
+        return bit;
+    }
+
+    /**
+     * @param count amount of bits, 0 to 64
+     * @return the bits read, as the lowest bits of the value
+     */
+    long readBits(int count) {
+        long value = 0;
+        for (int i = 0; i < count; i++)
+            value = (value << 1) | (readBit() ? 1 : 0);
+        return value;
+    }
+}
@@ -0,0 +1,42 @@
+package com.adieser.conntest.models.columnar;
+
+import java.util.Arrays;
+
+/**
+ * Writes bits, most significant first, into a growing byte array
+ */
+final class BitWriter {
+    private byte[] bytes;
+    private long bitLength;
+
+    BitWriter(int initialCapacity) {
+        this.bytes = new byte[Math.max(8, initialCapacity)];
+    }
+
+    void writeBit(boolean bit) {
+        writeBits(bit ? 1 : 0, 1);
+    }
+
+    /**
+     * Write the lowest bits of a value
+     * @param value value to write
+     * @param count amount of bits, 0 to 64
+     */
+    void writeBits(long value, int count) {
+        for (int i = count - 1; i >= 0; i--) {
+            int index = (int) (bitLength >>> 3);
+            if (index == bytes.length)
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+            if (((value >>> i) & 1L) != 0)
+                bytes[index] |= (byte) (0x80 >>> (bitLength & 7));
+            bitLength++;
+        }
+    }
+
+    /**
+     * @return the bits written, padded with zeros to a whole byte
+     */
+    byte[] toByteArray() {
+        return Arrays.copyOf(bytes, (int) ((bitLength + 7) >>> 3));
+    }
+}
@@ -0,0 +1,312 @@
+package com.adieser.conntest.models.columnar;
+
+import com.adieser.conntest.models.PingLog;
+import com.adieser.conntest.models.binary.BinaryPingLogFormat;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Block of consecutive pings of a target, stored by column and compressed:
+ * <ul>
+ *     <li>times, in epoch seconds, as delta-of-delta: a ping a second after a ping a second after the previous one
+ *     takes a single bit</li>
+ *     <li>ping times, in microseconds, as the XOR with the previous one: a repeated value takes a single bit, and
+ *     otherwise only the bits that changed are stored</li>
+ *     <li>lost pings as a bitmap. A lost ping repeats the previous ping time in the ping time column</li>
+ * </ul>
+ * The header of the block has the range of times and the aggregates of the pings, so queries over whole blocks do not
+ * need to decode them.
+ */
+@Getter
+public final class ColumnarBlock {
+    private final String target;
+    private final int count;
+    private final int lost;
+    private final long minTime;
+    private final long maxTime;
+
+    /**
+     * Sum of the ping times of the pings not lost, in microseconds
+     */
+    private final long sumMicros;
+
+    /**
+     * Min and max ping times of the pings not lost, in microseconds, and the time of their first ping. -1 if every
+     * ping was lost
+     */
+    private final int minMicros;
+    private final long minMicrosTime;
+    private final int maxMicros;
+    private final long maxMicrosTime;
+
+    /**
+     * Encoded columns, null if the block was read without them
+     */
+    @Getter(AccessLevel.NONE)
+    private final byte[] payload;
+
+    @SuppressWarnings("java:S107")
+    private ColumnarBlock(String target, int count, int lost, long minTime, long maxTime, long sumMicros,
+                          int minMicros, long minMicrosTime, int maxMicros, long maxMicrosTime, byte[] payload) {
+        this.target = target;
+        this.count = count;
+        this.lost = lost;
+        this.minTime = minTime;
+        this.maxTime = maxTime;
+        this.sumMicros = sumMicros;
+        this.minMicros = minMicros;
+        this.minMicrosTime = minMicrosTime;
+        this.maxMicros = maxMicros;
+        this.maxMicrosTime = maxMicrosTime;
+        this.payload = payload;
+    }
+
+    /**
+     * Encode pings of a target
+     * @param target IP address of the pings
+     * @param pingLogs pings, at least one
+     * @return the block
+     */
+    public static ColumnarBlock encode(String target, List<PingLog> pingLogs) {
+        int count = pingLogs.size();
+        long[] times = new long[count];
+        int[] micros = new int[count];
+        for (int i = 0; i < count; i++) {
+            times[i] = BinaryPingLogFormat.toEpochSecond(pingLogs.get(i).getDateTime());
+            micros[i] = BinaryPingLogFormat.toMicros(pingLogs.get(i).getPingTime());
+        }
+
+        int lost = 0;
+        long minTime = Long.MAX_VALUE;
+        long maxTime = Long.MIN_VALUE;
+        long sumMicros = 0;
+        int minMicros = -1;
+        long minMicrosTime = 0;
+        int maxMicros = -1;
+        long maxMicrosTime = 0;
+        for (int i = 0; i < count; i++) {
+            minTime = Math.min(minTime, times[i]);
+            maxTime = Math.max(maxTime, times[i]);
+            if (micros[i] < 0) {
+                lost++;
+                continue;
+            }
+            sumMicros += micros[i];
+            if (minMicros < 0 || micros[i] < minMicros) {
+                minMicros = micros[i];
+                minMicrosTime = times[i];
+            }
+            if (micros[i] > maxMicros) {
+                maxMicros = micros[i];
+                maxMicrosTime = times[i];
+            }
+        }
+
+        BitWriter bits = new BitWriter(count * 3);
+        writeTimes(bits, times);
+        writePingTimes(bits, micros);
+        for (int value : micros)
+            bits.writeBit(value < 0);
+
+        return new ColumnarBlock(target, count, lost, minTime, maxTime, sumMicros, minMicros, minMicrosTime,
+                maxMicros, maxMicrosTime, bits.toByteArray());
+    }
+
+    /**
+     * @return the pings of the block, in the order they were encoded
+     * @throws IllegalStateException if the block was read without its columns
+     */
+    public List<PingLog> decode() {
+        if (payload == null)
+            throw new IllegalStateException("Block read without its pings");
+
+        BitReader bits = new BitReader(payload);
+        long[] times = readTimes(bits, count);
+        int[] micros = readPingTimes(bits, count);
+        List<PingLog> pingLogs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            boolean isLost = bits.readBit();
+            pingLogs.add(PingLog.builder()
+                    .dateTime(BinaryPingLogFormat.fromEpochSecond(times[i]))
+                    .ipAddress(target)
+                    .pingTime(isLost ? -1 : BinaryPingLogFormat.fromMicros(micros[i]))
+                    .build());
+        }
+
+        return pingLogs;
+    }
+
+    /**
+     * @return true if the block has pings within a range of epoch seconds, both included
+     */
+    public boolean overlaps(long from, long to) {
+        return minTime <= to && maxTime >= from;
+    }
+
+    /**
+     * @return true if every ping of the block is within a range of epoch seconds, both included
+     */
+    public boolean isWithin(long from, long to) {
+        return minTime >= from && maxTime <= to;
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+        out.writeUTF(target);
+        out.writeInt(count);
+        out.writeInt(lost);
+        out.writeLong(minTime);
+        out.writeLong(maxTime);
+        out.writeLong(sumMicros);
+        out.writeInt(minMicros);
+        out.writeLong(minMicrosTime);
+        out.writeInt(maxMicros);
+        out.writeLong(maxMicrosTime);
+        out.writeInt(payload.length);
+        out.write(payload);
+    }
+
+    /**
+     * Read a block written by {@link #writeTo}
+     * @param in source of the block
+     * @param withPings tells from the header if the columns are needed, otherwise they are skipped
+     * @return the block
+     * @throws EOFException if the block is incomplete
+     */
+    static ColumnarBlock readFrom(DataInput in, Predicate<ColumnarBlock> withPings) throws IOException {
+        ColumnarBlock header = new ColumnarBlock(in.readUTF(), in.readInt(), in.readInt(), in.readLong(),
+                in.readLong(), in.readLong(), in.readInt(), in.readLong(), in.readInt(), in.readLong(), null);
+        int length = in.readInt();
+        if (!withPings.test(header)) {
+            if (in.skipBytes(length) < length)
+                throw new EOFException();
+            return header;
+        }
+
+        byte[] columns = new byte[length];
+        in.readFully(columns);
+        return new ColumnarBlock(header.target, header.count, header.lost, header.minTime, header.maxTime,
+                header.sumMicros, header.minMicros, header.minMicrosTime, header.maxMicros, header.maxMicrosTime,
+                columns);
+    }
+
+    private static void writeTimes(BitWriter bits, long[] times) {
+        bits.writeBits(times[0], 64);
+        long previousDelta = 0;
+        for (int i = 1; i < times.length; i++) {
+            long delta = times[i] - times[i - 1];
+            long deltaOfDelta = delta - previousDelta;
+            previousDelta = delta;
+            if (deltaOfDelta == 0) {
+                bits.writeBit(false);
+            } else if (deltaOfDelta >= -63 && deltaOfDelta <= 64) {
+                bits.writeBits(0b10, 2);
+                bits.writeBits(deltaOfDelta + 63, 7);
+            } else if (deltaOfDelta >= -255 && deltaOfDelta <= 256) {
+                bits.writeBits(0b110, 3);
+                bits.writeBits(deltaOfDelta + 255, 9);
+            } else if (deltaOfDelta >= -2047 && deltaOfDelta <= 2048) {
+                bits.writeBits(0b1110, 4);
+                bits.writeBits(deltaOfDelta + 2047, 12);
+            } else {
+                bits.writeBits(0b1111, 4);
+                bits.writeBits(deltaOfDelta, 64);
+            }
+        }
+    }
+
+    private static long[] readTimes(BitReader bits, int count) {
+        long[] times = new long[count];
+        times[0] = bits.readBits(64);
+        long previousDelta = 0;
+        for (int i = 1; i < count; i++) {
+            long deltaOfDelta;
+            if (!bits.readBit())
+                deltaOfDelta = 0;
+            else if (!bits.readBit())
+                deltaOfDelta = bits.readBits(7) - 63;
+            else if (!bits.readBit())
+                deltaOfDelta = bits.readBits(9) - 255;
+            else if (!bits.readBit())
+                deltaOfDelta = bits.readBits(12) - 2047;
+            else
+                deltaOfDelta = bits.readBits(64);
+            previousDelta += deltaOfDelta;
+            times[i] = times[i - 1] + previousDelta;
+        }
+
+        return times;
+    }
+
+    /**
+     * Ping times as the XOR with the previous one: 0 if it is the same, 10 and the changed bits if they fit in the
+     * window of the previous value, 11, 5 bits of leading zeros, 5 bits of length and the changed bits otherwise
+     */
+    private static void writePingTimes(BitWriter bits, int[] micros) {
+        int previous = 0;
+        int leading = -1;
+        int trailing = 0;
+        for (int i = 0; i < micros.length; i++) {
+            // a lost ping repeats the previous value, it is in the loss bitmap
+            int value = micros[i] < 0 ? previous : micros[i];
+            if (i == 0) {
+                bits.writeBits(value, 32);
+                previous = value;
+                continue;
+            }
+
+            int xor = value ^ previous;
+            previous = value;
+            if (xor == 0) {
+                bits.writeBit(false);
+                continue;
+            }
+
+            bits.writeBit(true);
+            int newLeading = Integer.numberOfLeadingZeros(xor);
+            int newTrailing = Integer.numberOfTrailingZeros(xor);
+            if (leading >= 0 && newLeading >= leading && newTrailing >= trailing) {
+                bits.writeBit(false);
+                bits.writeBits(xor >>> trailing, Integer.SIZE - leading - trailing);
+            } else {
+                leading = newLeading;
+                trailing = newTrailing;
+                int length = Integer.SIZE - leading - trailing;
+                bits.writeBit(true);
+                bits.writeBits(leading, 5);
+                bits.writeBits(length - 1L, 5);
+                bits.writeBits(xor >>> trailing, length);
+            }
+        }
+    }
+
+    private static int[] readPingTimes(BitReader bits, int count) {
+        int[] micros = new int[count];
+        micros[0] = (int) bits.readBits(32);
+        int leading = 0;
+        int trailing = 0;
+        for (int i = 1; i < count; i++) {
+            if (!bits.readBit()) {
+                micros[i] = micros[i - 1];
+                continue;
+            }
+
+            if (bits.readBit()) {
+                leading = (int) bits.readBits(5);
+                int length = (int) bits.readBits(5) + 1;
+                trailing = Integer.SIZE - leading - length;
+            }
+            int xor = (int) bits.readBits(Integer.SIZE - leading - trailing) << trailing;
+            micros[i] = micros[i - 1] ^ xor;
+        }
+
+        return micros;
+    }
+}
@@ -0,0 +1,130 @@
+package com.adieser.conntest.models.columnar;
+
+import com.adieser.conntest.models.PingLog;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Reads a columnar ping log file: a header with {@link #MAGIC} and {@link #VERSION}, followed by
+ * {@link ColumnarBlock}s. It sees the blocks written when it was opened, an incomplete block at the end is ignored.
+ */
+public final class ColumnarPingLogReader implements Closeable {
+    public static final int MAGIC = 0x43545043;
+    public static final short VERSION = 1;
+    static final int HEADER_SIZE = Integer.BYTES + Short.BYTES;
+
+    private final FileChannel channel;
+    private final long size;
+    private long end = HEADER_SIZE;
+
+    /**
+     * @param file file to read
+     * @throws IOException if the file could not be opened or is not a columnar ping log
+     */
+    public ColumnarPingLogReader(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.size = channel.size();
+    }
+
+    /**
+     * Read the blocks of the file, in file order
+     * @param withPings tells from the header of a block if its pings are needed, otherwise only the header is read
+     * @return the blocks
+     * @throws IOException if the file could not be read or is not a columnar ping log
+     */
+    public List<ColumnarBlock> readBlocks(Predicate<ColumnarBlock> withPings) throws IOException {
+        List<ColumnarBlock> blocks = new ArrayList<>();
+        if (size == 0)
+            return blocks;
+
+        LimitedInputStream limited = new LimitedInputStream(
+                new BufferedInputStream(Channels.newInputStream(channel.position(0))), size);
+        DataInputStream in = new DataInputStream(limited);
+        if (size < HEADER_SIZE || in.readInt() != MAGIC || in.readShort() != VERSION)
+            throw new IOException("Not a columnar ping log");
+
+        while (true) {
+            try {
+                blocks.add(ColumnarBlock.readFrom(in, withPings));
+            } catch (EOFException e) {
+                return blocks;
+            }
+            end = size - limited.remaining;
+        }
+    }
+
+    /**
+     * @return every ping in the file, by block
+     */
+    public List<PingLog> readAll() throws IOException {
+        List<PingLog> pingLogs = new ArrayList<>();
+        for (ColumnarBlock block : readBlocks(block -> true))
+            pingLogs.addAll(block.decode());
+
+        return pingLogs;
+    }
+
+    /**
+     * @return position after the last complete block read
+     */
+    long getEnd() {
+        return end;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Stream that ends at the size the file had when it was opened, and tells how much of it was consumed
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0)
+                return -1;
+            int read = super.read();
+            if (read >= 0)
+                remaining--;
+            return read;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0)
+                return -1;
+            int read = super.read(b, off, (int) Math.min(len, remaining));
+            if (read > 0)
+                remaining -= read;
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+    }
+}
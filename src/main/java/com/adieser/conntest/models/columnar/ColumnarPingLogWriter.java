@@ -0,0 +1,148 @@
+package com.adieser.conntest.models.columnar;
+
+import com.adieser.conntest.models.PingLog;
+import com.adieser.conntest.models.PingLogRecordWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.adieser.conntest.models.columnar.ColumnarPingLogReader.HEADER_SIZE;
+
+/**
+ * Appends pings to a columnar ping log file, see {@link ColumnarPingLogReader}. The pings of every target are kept
+ * until there are enough of them for a block, then the block is compressed and appended. The pending pings are
+ * appended when the writer is closed. Not thread-safe.
+ */
+public final class ColumnarPingLogWriter implements PingLogRecordWriter {
+    private final FileChannel channel;
+    private final int blockSize;
+    private final Map<String, List<PingLog>> pending = new LinkedHashMap<>();
+    private final ByteArrayOutputStream block = new ByteArrayOutputStream();
+    private long position;
+    private long recordCount;
+
+    /**
+     * Open a file to append pings to it. A new or empty file gets a header. Of an existing file, an incomplete block
+     * at its end is discarded.
+     * @param file file to write
+     * @param blockSize pings of a target per block
+     * @throws IOException if the file could not be opened or is not a columnar ping log
+     */
+    public ColumnarPingLogWriter(Path file, int blockSize) throws IOException {
+        this.blockSize = Math.max(1, blockSize);
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                writeHeader();
+            } else {
+                try (ColumnarPingLogReader reader = new ColumnarPingLogReader(file)) {
+                    for (ColumnarBlock existing : reader.readBlocks(header -> false))
+                        recordCount += existing.getCount();
+                    position = reader.getEnd();
+                }
+                channel.truncate(position);
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int write(List<PingLog> pingLogs) throws IOException {
+        for (PingLog pingLog : pingLogs) {
+            String target = pingLog.getIpAddress() != null ? pingLog.getIpAddress() : "";
+            List<PingLog> targetPingLogs = pending.computeIfAbsent(target, key -> new ArrayList<>(blockSize));
+            // the pings given may be reused
+            targetPingLogs.add(PingLog.builder()
+                    .dateTime(pingLog.getDateTime())
+                    .ipAddress(target)
+                    .pingTime(pingLog.getPingTime())
+                    .build());
+            recordCount++;
+            if (targetPingLogs.size() >= blockSize)
+                writeBlock(target, targetPingLogs);
+        }
+
+        return pingLogs.size();
+    }
+
+    @Override
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    @Override
+    public long size() {
+        return position;
+    }
+
+    @Override
+    public void clear() throws IOException {
+        pending.clear();
+        recordCount = 0;
+        channel.truncate(0);
+        writeHeader();
+    }
+
+    @Override
+    public List<PingLog> getPending() {
+        List<PingLog> pingLogs = new ArrayList<>();
+        for (List<PingLog> targetPingLogs : pending.values())
+            pingLogs.addAll(targetPingLogs);
+
+        return pingLogs;
+    }
+
+    /**
+     * Append the pending pings of every target as blocks
+     */
+    @Override
+    public void flush() throws IOException {
+        for (Map.Entry<String, List<PingLog>> entry : pending.entrySet()) {
+            if (!entry.getValue().isEmpty())
+                writeBlock(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public void sync() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void writeBlock(String target, List<PingLog> pingLogs) throws IOException {
+        block.reset();
+        ColumnarBlock.encode(target, pingLogs).writeTo(new DataOutputStream(block));
+        ByteBuffer buffer = ByteBuffer.wrap(block.toByteArray());
+        while (buffer.hasRemaining())
+            position += channel.write(buffer, position);
+        pingLogs.clear();
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(ColumnarPingLogReader.MAGIC).putShort(ColumnarPingLogReader.VERSION).flip();
+        position = 0;
+        while (header.hasRemaining())
+            position += channel.write(header, position);
+    }
+}
@@ -0,0 +1,90 @@
+package com.adieser.conntest.models.columnar;
+
+import com.adieser.conntest.models.PingLog;
+import com.adieser.conntest.models.binary.BinaryPingLogFormat;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Aggregates of the pings of a target, added from the headers of whole {@link ColumnarBlock}s or ping by ping. Pings
+ * have to be added in order: on ties, the min and max are the first pings with the value.
+ */
+@Getter
+public final class PingLogAggregate {
+    private final String ipAddress;
+    private long count;
+    private long lost;
+    private long sumMicros;
+    private int minMicros = -1;
+    private long minMicrosTime;
+    private int maxMicros = -1;
+    private long maxMicrosTime;
+
+    public PingLogAggregate(String ipAddress) {
+        this.ipAddress = ipAddress;
+    }
+
+    public void add(ColumnarBlock block) {
+        count += block.getCount();
+        lost += block.getLost();
+        sumMicros += block.getSumMicros();
+        if (block.getMinMicros() >= 0)
+            addMinMax(block.getMinMicros(), block.getMinMicrosTime(), block.getMaxMicros(), block.getMaxMicrosTime());
+    }
+
+    public void add(PingLog pingLog) {
+        count++;
+        int micros = BinaryPingLogFormat.toMicros(pingLog.getPingTime());
+        if (micros < 0) {
+            lost++;
+            return;
+        }
+        sumMicros += micros;
+        long time = BinaryPingLogFormat.toEpochSecond(pingLog.getDateTime());
+        addMinMax(micros, time, micros, time);
+    }
+
+    /**
+     * @return average ping time in milliseconds, counting lost pings as -1
+     */
+    public double getAverageWithLost() {
+        return count == 0 ? 0.0 : (sumMicros / 1000.0 - lost) / count;
+    }
+
+    /**
+     * @return average ping time in milliseconds of the pings not lost
+     */
+    public double getAverage() {
+        return count == lost ? 0.0 : sumMicros / 1000.0 / (count - lost);
+    }
+
+    /**
+     * @return the pings with the min and max ping times, or an empty list if every ping was lost
+     */
+    public List<PingLog> getMinMax() {
+        if (minMicros < 0)
+            return List.of();
+
+        return List.of(pingLog(minMicrosTime, minMicros), pingLog(maxMicrosTime, maxMicros));
+    }
+
+    private void addMinMax(int min, long minTime, int max, long maxTime) {
+        if (minMicros < 0 || min < minMicros) {
+            minMicros = min;
+            minMicrosTime = minTime;
+        }
+        if (max > maxMicros) {
+            maxMicros = max;
+            maxMicrosTime = maxTime;
+        }
+    }
+
+    private PingLog pingLog(long time, int micros) {
+        return PingLog.builder()
+                .dateTime(BinaryPingLogFormat.fromEpochSecond(time))
+                .ipAddress(ipAddress)
+                .pingTime(BinaryPingLogFormat.fromMicros(micros))
+                .build();
+    }
+}
@@ -0,0 +1,152 @@
+package com.adieser.conntest.models.memory;
+
+import com.adieser.conntest.models.PingLog;
+import com.adieser.conntest.models.binary.BinaryPingLogFormat;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Recent pings of every target in memory, as a {@link PingLogSeries} by target. The chunks of all the series take at
+ * most the bytes given: when a new chunk exceeds them, the oldest chunks of all are evicted. The chunks of a series
+ * grow up to the chunk size, so the bytes are shared by many targets pinged a few times as well as by a few targets
+ * pinged for long. Thread-safe.
+ */
+public final class PingLogMemoryStore {
+    public static final int DEFAULT_CHUNK_SIZE = 4096;
+    /**
+     * Bytes of a ping in a chunk: its epoch second and its ping time
+     */
+    private static final int PING_BYTES = Long.BYTES + Integer.BYTES;
+
+    private final Map<String, PingLogSeries> series = new ConcurrentHashMap<>();
+    private final ArrayDeque<PingLogSeries.Chunk> chunks = new ArrayDeque<>();
+    private final int chunkSize;
+    private final long maxBytes;
+    /** Bytes of the chunks, guarded by them */
+    private long bytes;
+    private volatile long coveredFrom = Long.MIN_VALUE;
+
+    /**
+     * @param maxBytes max bytes of the chunks, at least one chunk is kept
+     * @param chunkSize max pings per chunk
+     */
+    public PingLogMemoryStore(long maxBytes, int chunkSize) {
+        this.chunkSize = chunkSize;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Keep a ping, evicting the oldest chunk if the store is full
+     */
+    public void add(PingLog pingLog) {
+        long epochSecond = BinaryPingLogFormat.toEpochSecond(pingLog.getDateTime());
+        PingLogSeries target = series.computeIfAbsent(pingLog.getIpAddress(),
+                ip -> new PingLogSeries(chunkSize, coveredFrom));
+        PingLogSeries.Chunk allocated = target.append(epochSecond, BinaryPingLogFormat.toMicros(pingLog.getPingTime()));
+        if (allocated == null)
+            return;
+
+        synchronized (chunks) {
+            chunks.addLast(allocated);
+            bytes += getBytes(allocated);
+            while (bytes > maxBytes && chunks.size() > 1) {
+                PingLogSeries.Chunk oldest = chunks.removeFirst();
+                bytes -= getBytes(oldest);
+                oldest.getSeries().evict(oldest);
+            }
+        }
+    }
+
+    /**
+     * @return the pings of a target, null if there are none
+     */
+    public PingLogSeries getSeries(String ipAddress) {
+        return series.get(ipAddress);
+    }
+
+    /**
+     * @return the pings of every target
+     */
+    public Collection<PingLogSeries> getSeries() {
+        return series.values();
+    }
+
+    /**
+     * @return the targets with pings
+     */
+    public Collection<String> getIpAddresses() {
+        return series.keySet();
+    }
+
+    /**
+     * @param ipAddress IP address of a target
+     * @param from epoch second
+     * @return true if the store has every ping of the target since the time
+     */
+    public boolean covers(String ipAddress, long from) {
+        PingLogSeries target = series.get(ipAddress);
+        return from >= (target != null ? target.getCoveredFrom() : coveredFrom);
+    }
+
+    /**
+     * @param from epoch second
+     * @return true if the store has every ping of every target since the time
+     */
+    public boolean covers(long from) {
+        if (from < coveredFrom)
+            return false;
+        for (PingLogSeries target : series.values()) {
+            if (from < target.getCoveredFrom())
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Drop every ping
+     * @param coveredFrom epoch second since which the store will have every ping, as the ones before are not loaded
+     */
+    public void clear(long coveredFrom) {
+        synchronized (chunks) {
+            this.coveredFrom = coveredFrom;
+            series.clear();
+            chunks.clear();
+            bytes = 0;
+        }
+    }
+
+    /**
+     * Drop the pings of a target
+     * @param ipAddress IP address of the target
+     * @param coveredFrom epoch second since which the store will have every ping of the target
+     */
+    public void clear(String ipAddress, long coveredFrom) {
+        synchronized (chunks) {
+            PingLogSeries dropped = series.put(ipAddress, new PingLogSeries(chunkSize, coveredFrom));
+            if (dropped == null)
+                return;
+            chunks.removeIf(chunk -> {
+                if (chunk.getSeries() != dropped)
+                    return false;
+                bytes -= getBytes(chunk);
+                return true;
+            });
+        }
+    }
+
+    /**
+     * @return bytes taken by the chunks
+     */
+    public long getBytes() {
+        synchronized (chunks) {
+            return bytes;
+        }
+    }
+
+    private static long getBytes(PingLogSeries.Chunk chunk) {
+        return (long) chunk.getCapacity() * PING_BYTES;
+    }
+}
@@ -0,0 +1,167 @@
+package com.adieser.conntest.models.memory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pings of a target kept in memory as struct-of-arrays: epoch seconds and ping times in microseconds (see
+ * {@link com.adieser.conntest.models.binary.BinaryPingLogFormat#toMicros}), in chunks sorted by time. The first chunk
+ * holds {@value #INITIAL_CHUNK_SIZE} pings and every next one twice the previous one, up to the max chunk size, so a
+ * target pinged a few times does not take a full chunk. The series has every ping of its target since
+ * {@link #getCoveredFrom()}: the pings before it were evicted, or never loaded. Thread-safe.
+ */
+public final class PingLogSeries {
+    static final int INITIAL_CHUNK_SIZE = 64;
+
+    private final List<Chunk> chunks = new ArrayList<>();
+    private final int chunkSize;
+    private long coveredFrom;
+
+    /**
+     * Consumer of the pings of a series
+     */
+    @FunctionalInterface
+    public interface PingConsumer {
+        void accept(long epochSecond, int micros);
+    }
+
+    /**
+     * @param chunkSize max pings per chunk
+     * @param coveredFrom epoch second since which the series has every ping of its target
+     */
+    PingLogSeries(int chunkSize, long coveredFrom) {
+        this.chunkSize = chunkSize;
+        this.coveredFrom = coveredFrom;
+    }
+
+    /**
+     * Append a ping. A ping older than the last one is not kept, and the series no longer covers its time.
+     * @return the chunk allocated for the ping, null if it went into the last one or it was not kept
+     */
+    synchronized Chunk append(long epochSecond, int micros) {
+        Chunk last = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+        if (last != null && last.size > 0 && epochSecond < last.times[last.size - 1]) {
+            coveredFrom = Math.max(coveredFrom, epochSecond + 1);
+            return null;
+        }
+
+        Chunk allocated = null;
+        if (last == null || last.size == last.times.length) {
+            int capacity = last == null ? INITIAL_CHUNK_SIZE : last.times.length * 2;
+            allocated = new Chunk(this, Math.min(chunkSize, capacity));
+            chunks.add(allocated);
+            last = allocated;
+        }
+        last.times[last.size] = epochSecond;
+        last.micros[last.size] = micros;
+        last.size++;
+
+        return allocated;
+    }
+
+    /**
+     * Drop the oldest chunk, the series then covers the time after it
+     */
+    synchronized void evict(Chunk chunk) {
+        if (chunks.isEmpty() || chunks.get(0) != chunk)
+            return;
+
+        chunks.remove(0);
+        if (chunk.size > 0)
+            coveredFrom = Math.max(coveredFrom, chunk.times[chunk.size - 1] + 1);
+    }
+
+    /**
+     * @return epoch second since which the series has every ping of its target
+     */
+    public synchronized long getCoveredFrom() {
+        return coveredFrom;
+    }
+
+    /**
+     * Pass the pings within a range, in time order
+     * @param from first epoch second, inclusive
+     * @param to last epoch second, inclusive
+     * @param consumer receives the pings, under the lock of the series
+     */
+    public synchronized void forEach(long from, long to, PingConsumer consumer) {
+        for (int c = firstChunk(from); c < chunks.size(); c++) {
+            Chunk chunk = chunks.get(c);
+            for (int i = chunk.indexOf(from); i < chunk.size; i++) {
+                if (chunk.times[i] > to)
+                    return;
+                consumer.accept(chunk.times[i], chunk.micros[i]);
+            }
+        }
+    }
+
+    /**
+     * @return amount of pings kept
+     */
+    public synchronized int size() {
+        int size = 0;
+        for (Chunk chunk : chunks)
+            size += chunk.size;
+        return size;
+    }
+
+    /**
+     * Index of the first chunk that may have pings since a time, by binary search on their last times
+     */
+    private int firstChunk(long from) {
+        int low = 0;
+        int high = chunks.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            Chunk chunk = chunks.get(middle);
+            if (chunk.times[chunk.size - 1] < from)
+                low = middle + 1;
+            else
+                high = middle - 1;
+        }
+        return low;
+    }
+
+    /**
+     * Pings of a series, allocated at once
+     */
+    static final class Chunk {
+        private final PingLogSeries series;
+        private final long[] times;
+        private final int[] micros;
+        private int size;
+
+        private Chunk(PingLogSeries series, int capacity) {
+            this.series = series;
+            this.times = new long[capacity];
+            this.micros = new int[capacity];
+        }
+
+        PingLogSeries getSeries() {
+            return series;
+        }
+
+        /**
+         * @return pings the chunk can hold
+         */
+        int getCapacity() {
+            return times.length;
+        }
+
+        /**
+         * @return index of the first ping not before a time, by binary search
+         */
+        private int indexOf(long from) {
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (times[middle] < from)
+                    low = middle + 1;
+                else
+                    high = middle - 1;
+            }
+            return low;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.adieser.conntest.models.memory;
+
+import com.adieser.conntest.models.PingLog;
+
+import java.util.DoubleSummaryStatistics;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Running statistics of the pings of every target: amount of pings, lost pings, sum of the ping times and the first
+ * pings with the lowest and the highest ping time. They are updated with every ping, so the all-time statistics of a
+ * target are read in constant time. Thread-safe.
+ */
+public final class PingLogStatistics {
+    private final Map<String, Target> targets = new ConcurrentHashMap<>();
+
+    /**
+     * Add a ping to the statistics of its target
+     */
+    public void add(PingLog pingLog) {
+        targets.computeIfAbsent(pingLog.getIpAddress(), ip -> new Target()).add(pingLog);
+    }
+
+    /**
+     * @return the statistics of a target, empty ones if it has no pings
+     */
+    public Snapshot get(String ipAddress) {
+        Target target = targets.get(ipAddress);
+        return target != null ? target.snapshot() : new Snapshot(0, 0, 0, null, null);
+    }
+
+    /**
+     * Drop the statistics of every target
+     */
+    public void clear() {
+        targets.clear();
+    }
+
+    /**
+     * Drop the statistics of a target
+     */
+    public void clear(String ipAddress) {
+        targets.remove(ipAddress);
+    }
+
+    /**
+     * Statistics of a target at some point
+     * @param count amount of pings
+     * @param lost amount of lost pings
+     * @param average average ping time, lost pings included as -1, zero if there are no pings
+     * @param min first ping with the lowest ping time, lost pings excluded, null if there is none
+     * @param max first ping with the highest ping time, lost pings excluded, null if there is none
+     */
+    public record Snapshot(long count, long lost, double average, PingLog min, PingLog max) {
+    }
+
+    private static final class Target {
+        // summed as the file repositories average the ping times, so the averages are the same
+        private final DoubleSummaryStatistics pingTimes = new DoubleSummaryStatistics();
+        private long lost;
+        private PingLog min;
+        private PingLog max;
+
+        synchronized void add(PingLog pingLog) {
+            double pingTime = pingLog.getPingTime();
+            pingTimes.accept(pingTime);
+            if (pingTime < 0)
+                lost++;
+            if (pingTime == -1)
+                return;
+            if (min == null || pingTime < min.getPingTime())
+                min = pingLog;
+            if (max == null || pingTime > max.getPingTime())
+                max = pingLog;
+        }
+
+        synchronized Snapshot snapshot() {
+            return new Snapshot(pingTimes.getCount(), lost, pingTimes.getAverage(), min, max);
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package com.adieser.conntest.models.utils;
+
+import com.adieser.conntest.models.binary.BinaryPingLogFormat;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compressed ping log: the lines of a CSV ping log in blocks compressed with Deflate, followed by an index with the
+ * range of times of every block, so the blocks of a time range can be read without inflating the rest.
+ * <pre>
+ * Header (8 bytes): magic "CTDEFLT1"
+ * Blocks: whole lines, raw Deflate
+ * Index: int amount of blocks, then per block (big-endian):
+ *   long offset | int compressed length | int raw length | long min time | long max time
+ * Footer (8 bytes): long offset of the index
+ * </pre>
+ * Times are epoch seconds of the local date and time of the lines taken as UTC, as in the binary format. A block with a
+ * line without a valid time has the widest range, so it is always read.
+ * <p>
+ * A compressed ping log keeps the name of the file it replaces, and {@link PingLogSegment#newReader} reads it as any
+ * other ping log.
+ */
+public final class CompressedPingLog {
+    public static final long MAGIC = 0x4354_4445_464C_5431L;
+    public static final int HEADER_SIZE = 8;
+    public static final int DEFAULT_BLOCK_BYTES = 256 * 1024;
+    private static final int FOOTER_SIZE = 8;
+    private static final int INDEX_ENTRY_SIZE = 32;
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int DATE_TIME_LENGTH = 19;
+
+    private CompressedPingLog() {
+    }
+
+    /**
+     * @return true if the buffer starts with the header of a compressed ping log
+     */
+    public static boolean isCompressed(ByteBuffer buffer) {
+        return buffer.limit() >= HEADER_SIZE && buffer.getLong(0) == MAGIC;
+    }
+
+    /**
+     * @return true if the file is a compressed ping log, false if it is not or does not exist
+     */
+    public static boolean isCompressed(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            return channel.read(header, 0) == HEADER_SIZE && isCompressed(header);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Compress the lines of a ping log, plain or segment, into a new file
+     * @param source ping log to compress
+     * @param target file to write, replaced if it exists
+     * @param blockBytes raw bytes of lines per block, a block ends with the line that reaches it
+     * @return amount of blocks written
+     * @throws IOException if a file could not be read or written
+     */
+    public static int compress(Path source, Path target, int blockBytes) throws IOException {
+        List<long[]> index = new ArrayList<>();
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try (BufferedReader reader = new BufferedReader(PingLogSegment.newReader(source));
+             FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(channel, ByteBuffer.allocate(HEADER_SIZE).putLong(0, MAGIC));
+
+            ByteArrayOutputStream block = new ByteArrayOutputStream(blockBytes + 128);
+            long minTime = Long.MAX_VALUE;
+            long maxTime = Long.MIN_VALUE;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                long time = parseTime(line);
+                minTime = Math.min(minTime, time);
+                maxTime = Math.max(maxTime, time == Long.MIN_VALUE ? Long.MAX_VALUE : time);
+                block.writeBytes(line.getBytes(StandardCharsets.UTF_8));
+                block.write('\n');
+                if (block.size() >= blockBytes) {
+                    index.add(writeBlock(channel, deflater, block.toByteArray(), minTime, maxTime));
+                    block.reset();
+                    minTime = Long.MAX_VALUE;
+                    maxTime = Long.MIN_VALUE;
+                }
+            }
+            if (block.size() > 0)
+                index.add(writeBlock(channel, deflater, block.toByteArray(), minTime, maxTime));
+
+            long indexOffset = channel.position();
+            ByteBuffer indexBuffer = ByteBuffer.allocate(4 + index.size() * INDEX_ENTRY_SIZE + FOOTER_SIZE);
+            indexBuffer.putInt(index.size());
+            for (long[] entry : index) {
+                indexBuffer.putLong(entry[0]).putInt((int) entry[1]).putInt((int) entry[2])
+                        .putLong(entry[3]).putLong(entry[4]);
+            }
+            indexBuffer.putLong(indexOffset).flip();
+            writeFully(channel, indexBuffer);
+            channel.force(false);
+        } finally {
+            deflater.end();
+        }
+
+        return index.size();
+    }
+
+    /**
+     * Open a compressed ping log for reading all its lines
+     * @param file compressed ping log
+     * @return reader of the lines
+     * @throws IOException if the file could not be read or is not a compressed ping log
+     */
+    public static Reader newReader(Path file) throws IOException {
+        return newReader(file, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Open a compressed ping log for reading the lines of the blocks within a range of times. The blocks may have
+     * lines out of the range, which must be filtered by the caller.
+     * @param file compressed ping log
+     * @param from first epoch second of the range
+     * @param to last epoch second of the range
+     * @return reader of the lines of the blocks with times within the range
+     * @throws IOException if the file could not be read or is not a compressed ping log
+     */
+    public static Reader newReader(Path file, long from, long to) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE + 4L + FOOTER_SIZE)
+                throw new EOFException("Compressed ping log too short: " + file);
+
+            ByteBuffer header = readFully(channel, 0, HEADER_SIZE);
+            if (!isCompressed(header))
+                throw new IOException("Not a compressed ping log: " + file);
+
+            long indexOffset = readFully(channel, size - FOOTER_SIZE, FOOTER_SIZE).getLong(0);
+            ByteBuffer index = readFully(channel, indexOffset, (int) (size - FOOTER_SIZE - indexOffset));
+            int count = index.getInt();
+            List<byte[]> blocks = new ArrayList<>();
+            List<Integer> rawLengths = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                long offset = index.getLong();
+                int compressedLength = index.getInt();
+                int rawLength = index.getInt();
+                long minTime = index.getLong();
+                long maxTime = index.getLong();
+                if (minTime <= to && maxTime >= from) {
+                    blocks.add(readFully(channel, offset, compressedLength).array());
+                    rawLengths.add(rawLength);
+                }
+            }
+
+            return new InputStreamReader(new BlockInputStream(blocks, rawLengths), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * @return the epoch second of a line, Long.MIN_VALUE if it does not start with a valid date and time
+     */
+    private static long parseTime(String line) {
+        if (line.length() < DATE_TIME_LENGTH)
+            return Long.MIN_VALUE;
+
+        try {
+            return BinaryPingLogFormat.toEpochSecond(
+                    LocalDateTime.parse(line.substring(0, DATE_TIME_LENGTH), DATE_TIME_FORMATTER));
+        } catch (DateTimeParseException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    private static long[] writeBlock(FileChannel channel, Deflater deflater, byte[] raw, long minTime, long maxTime)
+            throws IOException {
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 4 + 64);
+        byte[] buffer = new byte[8192];
+        while (!deflater.finished()) {
+            int length = deflater.deflate(buffer);
+            compressed.write(buffer, 0, length);
+        }
+
+        long offset = channel.position();
+        writeFully(channel, ByteBuffer.wrap(compressed.toByteArray()));
+        return new long[] {offset, compressed.size(), raw.length, minTime, maxTime};
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new EOFException("Compressed ping log truncated");
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Stream of the inflated blocks, one after the other. Only one block is inflated at a time.
+     */
+    private static final class BlockInputStream extends InputStream {
+        private final List<byte[]> blocks;
+        private final List<Integer> rawLengths;
+        private final Inflater inflater = new Inflater(true);
+        private int next;
+        private byte[] current = new byte[0];
+        private int position;
+
+        private BlockInputStream(List<byte[]> blocks, List<Integer> rawLengths) {
+            this.blocks = blocks;
+            this.rawLengths = rawLengths;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0)
+                return 0;
+
+            while (position == current.length) {
+                if (next == blocks.size())
+                    return -1;
+                inflateNext();
+            }
+
+            int read = Math.min(len, current.length - position);
+            System.arraycopy(current, position, b, off, read);
+            position += read;
+            return read;
+        }
+
+        private void inflateNext() throws IOException {
+            byte[] raw = new byte[rawLengths.get(next)];
+            inflater.reset();
+            inflater.setInput(blocks.get(next));
+            try {
+                int length = 0;
+                while (length < raw.length && !inflater.finished()) {
+                    int inflated = inflater.inflate(raw, length, raw.length - length);
+                    if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                        throw new EOFException("Compressed ping log block truncated");
+                    length += inflated;
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt compressed ping log block", e);
+            }
+            // the block is released once inflated
+            blocks.set(next++, null);
+            current = raw;
+            position = 0;
+        }
+
+        @Override
+        public void close() {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.adieser.conntest.models.utils;
+
+import com.adieser.conntest.configurations.AppProperties;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Cache of the name resolutions of the probe targets, so a probe does not pay a resolver round trip every second.
+ * <p>
+ * Resolutions are kept for {@code conntest.dns-cache-ttl-seconds}, failed resolutions for
+ * {@code conntest.dns-cache-negative-ttl-seconds}. An expired entry is still served while it is refreshed in the
+ * background, so only the first resolution of a target blocks the probe. If a refresh fails, the last known address
+ * is kept and the refresh is retried after the negative ttl.
+ */
+@Component
+public class DnsCache implements MeterBinder {
+    private final AppProperties appProperties;
+    private final ExecutorService threadPoolExecutor;
+    private final Logger logger;
+    private final LongSupplier nanoClock;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+
+    @Autowired
+    public DnsCache(AppProperties appProperties, ExecutorService threadPoolExecutor, Logger logger) {
+        this(appProperties, threadPoolExecutor, logger, System::nanoTime);
+    }
+
+    DnsCache(AppProperties appProperties, ExecutorService threadPoolExecutor, Logger logger, LongSupplier nanoClock) {
+        this.appProperties = appProperties;
+        this.threadPoolExecutor = threadPoolExecutor;
+        this.logger = logger;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Resolve a host name or ip address
+     * @param host host name or ip address
+     * @return the address of the host, it may be stale while it is refreshed in the background
+     * @throws UnknownHostException if the host could not be resolved
+     */
+    public InetAddress resolve(String host) throws UnknownHostException {
+        Entry entry = entries.get(host);
+
+        if (entry == null) {
+            misses.increment();
+            // resolved outside of the map, a slow resolver must not block the lookups of other hosts
+            Entry loaded = load(host);
+            entry = entries.putIfAbsent(host, loaded);
+            if (entry == null)
+                entry = loaded;
+        } else {
+            hits.increment();
+            if (entry.expiresAtNanos - nanoClock.getAsLong() <= 0) {
+                staleHits.increment();
+                refreshAsync(host, entry);
+            }
+        }
+
+        if (entry.address == null)
+            throw new UnknownHostException(host);
+
+        return entry.address;
+    }
+
+    /**
+     * Remove all the entries
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return amount of hits served with an expired entry while it was refreshed
+     */
+    public long getStaleHits() {
+        return staleHits.sum();
+    }
+
+    public long getRefreshes() {
+        return refreshes.sum();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("conntest.dns.cache.requests", this, DnsCache::getHits)
+                .tag("result", "hit")
+                .description("Target resolutions served from the cache")
+                .register(registry);
+        FunctionCounter.builder("conntest.dns.cache.requests", this, DnsCache::getMisses)
+                .tag("result", "miss")
+                .description("Target resolutions that blocked the probe on the resolver")
+                .register(registry);
+        FunctionCounter.builder("conntest.dns.cache.stale", this, DnsCache::getStaleHits)
+                .description("Target resolutions served with an expired entry while it was refreshed")
+                .register(registry);
+        FunctionCounter.builder("conntest.dns.cache.refreshes", this, DnsCache::getRefreshes)
+                .description("Background refreshes of expired entries")
+                .register(registry);
+    }
+
+    /**
+     * Resolve a host with the system resolver
+     */
+    InetAddress lookup(String host) throws UnknownHostException {
+        return InetAddress.getByName(host);
+    }
+
+    private Entry load(String host) {
+        try {
+            return new Entry(lookup(host), expiresAt(appProperties.getDnsCacheTtlSeconds()));
+        } catch (UnknownHostException e) {
+            logger.warn("Could not resolve {}", host);
+            return new Entry(null, expiresAt(appProperties.getDnsCacheNegativeTtlSeconds()));
+        }
+    }
+
+    private void refreshAsync(String host, Entry stale) {
+        if (!stale.refreshing.compareAndSet(false, true))
+            return;
+
+        try {
+            threadPoolExecutor.execute(() -> refresh(host, stale));
+        } catch (RejectedExecutionException e) {
+            stale.refreshing.set(false);
+            logger.error("Refresh of {} rejected", host, e);
+        }
+    }
+
+    /**
+     * Replace the stale entry with a new resolution. The entry can be refreshed again afterwards whatever happens, so
+     * an unexpected failure of the resolver does not leave it stale forever.
+     */
+    private void refresh(String host, Entry stale) {
+        refreshes.increment();
+        try {
+            Entry refreshed = load(host);
+
+            // keep serving the last known address if the host can no longer be resolved
+            if (refreshed.address == null && stale.address != null)
+                refreshed = new Entry(stale.address, refreshed.expiresAtNanos);
+
+            entries.replace(host, stale, refreshed);
+        } catch (RuntimeException e) {
+            logger.error("Refresh of {} failed", host, e);
+        } finally {
+            stale.refreshing.set(false);
+        }
+    }
+
+    private long expiresAt(long ttlSeconds) {
+        return nanoClock.getAsLong() + TimeUnit.SECONDS.toNanos(ttlSeconds);
+    }
+
+    /**
+     * Resolution of a host. The address is null if the host could not be resolved.
+     */
+    private static final class Entry {
+        private final InetAddress address;
+        private final long expiresAtNanos;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        private Entry(InetAddress address, long expiresAtNanos) {
+            this.address = address;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.adieser.conntest.models.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Sparse time index of a CSV ping log, {@code <ping log>.idx}. The lines of the ping log are split in blocks of about
+ * the same amount of rows, and the index has the byte range and the min and max epoch seconds of every block, so a
+ * range query only scans the blocks that may have pings in its range, and the lines after the last block, not indexed
+ * yet. The blocks are found by binary search on the max epoch seconds, and the blocks after the range are skipped, so
+ * the pings slightly out of order across blocks are still found.
+ * <pre>
+ * Header (8 bytes): magic "CTINDEX1"
+ * Entry (32 bytes): start offset | end offset | min epoch second | max epoch second, as big-endian longs
+ * </pre>
+ * The offsets are of the lines of the ping log, after the header of a segment. The blocks follow each other from the
+ * first line: an index that does not match its ping log, as the one of a file cleared by someone else, is ignored.
+ */
+public final class PingLogIndex {
+    public static final long MAGIC = 0x4354_494E_4445_5831L;
+    public static final int HEADER_SIZE = 8;
+    public static final int ENTRY_SIZE = 32;
+    private static final String SUFFIX = ".idx";
+
+    private final long[] starts;
+    private final long[] ends;
+    private final long[] mins;
+    private final long[] maxs;
+    /**
+     * Max epoch second of every block and the ones before, which grows with the blocks
+     */
+    private final long[] maxSoFar;
+
+    private PingLogIndex(int blocks) {
+        starts = new long[blocks];
+        ends = new long[blocks];
+        mins = new long[blocks];
+        maxs = new long[blocks];
+        maxSoFar = new long[blocks];
+    }
+
+    /**
+     * @return the index file of a ping log
+     */
+    public static Path getPath(Path pingLog) {
+        return pingLog.resolveSibling(pingLog.getFileName() + SUFFIX);
+    }
+
+    /**
+     * Read the index of a ping log. An entry being written is not read.
+     * @param pingLog ping log
+     * @param size bytes of lines of the ping log
+     * @return the index, null if there is none or it does not match the size of the ping log
+     * @throws IOException if the index could not be read
+     */
+    public static PingLogIndex read(Path pingLog, long size) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(getPath(pingLog), StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length < HEADER_SIZE || length > Integer.MAX_VALUE)
+                return null;
+            buffer = ByteBuffer.allocate((int) (length - (length - HEADER_SIZE) % ENTRY_SIZE));
+            while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) > 0)
+                ;
+            buffer.flip();
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        if (buffer.limit() < HEADER_SIZE || buffer.getLong(0) != MAGIC)
+            return null;
+
+        PingLogIndex index = new PingLogIndex((buffer.limit() - HEADER_SIZE) / ENTRY_SIZE);
+        long end = 0;
+        long max = Long.MIN_VALUE;
+        for (int i = 0; i < index.starts.length; i++) {
+            int entry = HEADER_SIZE + i * ENTRY_SIZE;
+            index.starts[i] = buffer.getLong(entry);
+            index.ends[i] = buffer.getLong(entry + 8);
+            index.mins[i] = buffer.getLong(entry + 16);
+            index.maxs[i] = buffer.getLong(entry + 24);
+            if (index.starts[i] != end || index.ends[i] <= end || index.ends[i] > size)
+                return null;
+            end = index.ends[i];
+            max = Math.max(max, index.maxs[i]);
+            index.maxSoFar[i] = max;
+        }
+
+        return index;
+    }
+
+    /**
+     * @return the header of an empty index
+     */
+    public static ByteBuffer newHeader() {
+        return ByteBuffer.allocate(HEADER_SIZE).putLong(0, MAGIC);
+    }
+
+    /**
+     * Put the entry of a block into a buffer
+     */
+    public static void putEntry(ByteBuffer buffer, long start, long end, long min, long max) {
+        buffer.putLong(start).putLong(end).putLong(min).putLong(max);
+    }
+
+    /**
+     * @return amount of blocks indexed
+     */
+    public int getBlockCount() {
+        return starts.length;
+    }
+
+    /**
+     * @return the offset after the last block, where the lines not indexed yet start
+     */
+    public long getEnd() {
+        return ends.length > 0 ? ends[ends.length - 1] : 0;
+    }
+
+    /**
+     * Byte ranges of the ping log that may have pings within a time range: the blocks that overlap it, merged when
+     * adjacent, and the lines after the last block
+     * @param from first epoch second, inclusive
+     * @param to last epoch second, inclusive
+     * @param size bytes of lines of the ping log
+     * @return start and end offsets of every range
+     */
+    public long[] getRanges(long from, long to, long size) {
+        long[] ranges = new long[2 * (starts.length + 1)];
+        int count = 0;
+        for (int i = firstBlock(from); i < starts.length; i++) {
+            if (mins[i] > to || maxs[i] < from)
+                continue;
+            if (count > 0 && ranges[count - 1] == starts[i]) {
+                ranges[count - 1] = ends[i];
+            } else {
+                ranges[count++] = starts[i];
+                ranges[count++] = ends[i];
+            }
+        }
+        long end = getEnd();
+        if (end < size) {
+            if (count > 0 && ranges[count - 1] == end) {
+                ranges[count - 1] = size;
+            } else {
+                ranges[count++] = end;
+                ranges[count++] = size;
+            }
+        }
+
+        long[] result = new long[count];
+        System.arraycopy(ranges, 0, result, 0, count);
+        return result;
+    }
+
+    /**
+     * Index of the first block with pings since a time, by binary search on the max epoch seconds so far
+     */
+    private int firstBlock(long from) {
+        int low = 0;
+        int high = maxSoFar.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (maxSoFar[middle] < from)
+                low = middle + 1;
+            else
+                high = middle - 1;
+        }
+        return low;
+    }
+}
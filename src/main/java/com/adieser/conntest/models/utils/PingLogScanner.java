@@ -0,0 +1,360 @@
+package com.adieser.conntest.models.utils;
+
+import com.adieser.conntest.models.PingLog;
+import com.adieser.conntest.models.binary.BinaryPingLogFormat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Scanner of the lines of a CSV ping log, {@code yyyy-MM-dd HH:mm:ss,ipAddress,pingTime}, straight from a mapping of
+ * the file. The fields of a line are found by their byte offsets, and only the ones a query needs are parsed: IP
+ * addresses are compared as bytes, the datetime is parsed into epoch seconds only for a time predicate, and no string
+ * or {@link PingLog} is built unless a line matches.
+ * <p>
+ * A malformed line throws an {@link IllegalArgumentException}, as the opencsv reader does, but for an unterminated
+ * last line, which is skipped as it may still be being written. The scanner may be restricted to some byte ranges of
+ * the lines, as the ones of a {@link PingLogIndex}. Not thread-safe.
+ */
+public final class PingLogScanner {
+    private static final int DATE_TIME_LENGTH = 19;
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12,
+            1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    private final ByteBuffer bytes;
+    private int next;
+    private int limit;
+    private long[] ranges;
+    private int range;
+    private int lineStart;
+    private int firstComma;
+    private int secondComma;
+    private int lineEnd;
+
+    /**
+     * @param bytes lines to scan, from its position to its limit
+     */
+    public PingLogScanner(ByteBuffer bytes) {
+        this.bytes = bytes;
+        this.next = bytes.position();
+        this.limit = bytes.limit();
+    }
+
+    /**
+     * Map a ping log to scan it. A segment is scanned up to its committed length.
+     * @param file plain or segment ping log
+     * @return the scanner, null if the file cannot be mapped, as a {@link CompressedPingLog} or a file over 2 GB
+     * @throws IOException if the file could not be mapped
+     */
+    public static PingLogScanner open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE)
+                return null;
+
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (CompressedPingLog.isCompressed(mapped))
+                return null;
+            if (PingLogSegment.isSegment(mapped)) {
+                long committed = Math.min(size, Math.max(PingLogSegment.HEADER_SIZE, PingLogSegment.getCommitted(mapped)));
+                return new PingLogScanner(mapped.slice(PingLogSegment.HEADER_SIZE,
+                        (int) committed - PingLogSegment.HEADER_SIZE));
+            }
+
+            return new PingLogScanner(mapped);
+        }
+    }
+
+    /**
+     * @return the bytes of an IP address, to match it with {@link #isIpAddress(byte[])}
+     */
+    public static byte[] toBytes(String ipAddress) {
+        return ipAddress.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the first epoch second not before a datetime, as the pings are logged in whole seconds
+     */
+    public static long toFirstEpochSecond(LocalDateTime start) {
+        long epochSecond = BinaryPingLogFormat.toEpochSecond(start);
+        return start.getNano() > 0 ? epochSecond + 1 : epochSecond;
+    }
+
+    /**
+     * Scan only some byte ranges of the lines, from the next line on
+     * @param ranges start and end offsets of every range, in order, each starting and ending at a line
+     * @return false if a range does not start at a line, and the scanner is not restricted
+     */
+    public boolean restrict(long[] ranges) {
+        for (int i = 0; i < ranges.length; i += 2) {
+            if (ranges[i] < getOffset() || ranges[i + 1] > size() || !isLineStart(ranges[i]))
+                return false;
+        }
+
+        this.ranges = ranges;
+        this.range = 0;
+        this.limit = next;
+        return true;
+    }
+
+    /**
+     * @return true if a line starts at an offset, as the first one and the ones after a line feed
+     */
+    public boolean isLineStart(long offset) {
+        return offset == 0 || (offset > 0 && offset <= size() && bytes.get(bytes.position() + (int) offset - 1) == '\n');
+    }
+
+    /**
+     * @return bytes of lines to scan, from the start
+     */
+    public int size() {
+        return bytes.limit() - bytes.position();
+    }
+
+    /**
+     * @return offset of the line after the current one
+     */
+    public int getOffset() {
+        return next - bytes.position();
+    }
+
+    /**
+     * Move to the next line
+     * @return false if there are no more lines
+     * @throws IllegalArgumentException if the line is malformed
+     */
+    public boolean next() {
+        while (next < limit || nextRange()) {
+            lineStart = next;
+            int end = lineStart;
+            firstComma = -1;
+            secondComma = -1;
+            while (end < limit) {
+                byte b = bytes.get(end);
+                if (b == '\n')
+                    break;
+                if (b == ',') {
+                    if (firstComma < 0)
+                        firstComma = end;
+                    else if (secondComma < 0)
+                        secondComma = end;
+                }
+                end++;
+            }
+            boolean terminated = end < limit;
+            next = end + 1;
+            lineEnd = end > lineStart && bytes.get(end - 1) == '\r' ? end - 1 : end;
+            if (lineEnd == lineStart)
+                continue;
+
+            if (secondComma < 0 || firstComma - lineStart != DATE_TIME_LENGTH || secondComma + 1 >= lineEnd) {
+                if (!terminated)
+                    return false;
+                throw new IllegalArgumentException("Malformed ping log line at byte " + lineStart);
+            }
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Move to the next range, if the scanner is restricted
+     */
+    private boolean nextRange() {
+        if (ranges == null || range >= ranges.length)
+            return false;
+
+        next = bytes.position() + (int) ranges[range];
+        limit = bytes.position() + (int) ranges[range + 1];
+        range += 2;
+        return true;
+    }
+
+    /**
+     * @param ipAddress bytes of an IP address, see {@link #toBytes(String)}
+     * @return true if the line is of the IP address
+     */
+    public boolean isIpAddress(byte[] ipAddress) {
+        int start = firstComma + 1;
+        if (secondComma - start != ipAddress.length)
+            return false;
+
+        for (int i = 0; i < ipAddress.length; i++) {
+            if (bytes.get(start + i) != ipAddress[i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the datetime of the line, in epoch seconds
+     * @throws IllegalArgumentException if the datetime is malformed
+     */
+    public long getEpochSecond() {
+        int p = lineStart;
+        if (bytes.get(p + 4) != '-' || bytes.get(p + 7) != '-' || bytes.get(p + 10) != ' '
+                || bytes.get(p + 13) != ':' || bytes.get(p + 16) != ':')
+            throw new IllegalArgumentException("Malformed ping log datetime at byte " + lineStart);
+
+        long year = digits(p, 4);
+        int month = (int) digits(p + 5, 2);
+        int day = (int) digits(p + 8, 2);
+        int hour = (int) digits(p + 11, 2);
+        int minute = (int) digits(p + 14, 2);
+        int second = (int) digits(p + 17, 2);
+        if (month < 1 || month > 12 || day < 1 || day > 31 || hour > 23 || minute > 59 || second > 59)
+            throw new IllegalArgumentException("Malformed ping log datetime at byte " + lineStart);
+
+        return toEpochDay(year, month, day) * 86400 + hour * 3600L + minute * 60L + second;
+    }
+
+    /**
+     * @return the IP address of the line
+     */
+    public String getIpAddress() {
+        return string(firstComma + 1, secondComma);
+    }
+
+    /**
+     * @return the ping time of the line, the same value {@link PingTimeCsvConverter} reads
+     * @throws IllegalArgumentException if the ping time is malformed
+     */
+    public double getPingTime() {
+        int p = secondComma + 1;
+        boolean negative = bytes.get(p) == '-';
+        if (negative)
+            p++;
+
+        // exact integer over an exact power of ten is rounded as Double.parseDouble does
+        long mantissa = 0;
+        int digits = 0;
+        int decimals = -1;
+        for (; p < lineEnd; p++) {
+            byte b = bytes.get(p);
+            if (b == '.' && decimals < 0) {
+                decimals = 0;
+            } else if (b >= '0' && b <= '9' && digits < 15) {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (decimals >= 0)
+                    decimals++;
+            } else {
+                return parsePingTime();
+            }
+        }
+        if (digits == 0)
+            return parsePingTime();
+
+        double value = decimals > 0 ? mantissa / POWERS_OF_TEN[decimals] : mantissa;
+        return negative ? -value : value;
+    }
+
+    /**
+     * @return the line as a ping
+     */
+    public PingLog toPingLog() {
+        return PingLog.builder()
+                .dateTime(BinaryPingLogFormat.fromEpochSecond(getEpochSecond()))
+                .ipAddress(getIpAddress())
+                .pingTime(getPingTime())
+                .build();
+    }
+
+    /**
+     * Stream the remaining lines that match, as pings
+     * @param ipAddress bytes of the IP address of the pings, null for any
+     * @param from first epoch second of the pings, inclusive
+     * @param to last epoch second of the pings, inclusive
+     * @return Stream of the pings that match
+     */
+    public Stream<PingLog> stream(byte[] ipAddress, long from, long to) {
+        return StreamSupport.stream(new Spliterators.AbstractSpliterator<PingLog>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super PingLog> action) {
+                while (next()) {
+                    if (matches(ipAddress, from, to)) {
+                        action.accept(toPingLog());
+                        return true;
+                    }
+                }
+                return false;
+            }
+        }, false);
+    }
+
+    /**
+     * Pass the ping times of the remaining lines that match, without building their pings
+     * @param ipAddress bytes of the IP address of the pings, null for any
+     * @param from first epoch second of the pings, inclusive
+     * @param to last epoch second of the pings, inclusive
+     * @param action receives the ping times
+     */
+    public void forEachPingTime(byte[] ipAddress, long from, long to, DoubleConsumer action) {
+        while (next()) {
+            if (matches(ipAddress, from, to))
+                action.accept(getPingTime());
+        }
+    }
+
+    private boolean matches(byte[] ipAddress, long from, long to) {
+        if (ipAddress != null && !isIpAddress(ipAddress))
+            return false;
+        if (from == Long.MIN_VALUE && to == Long.MAX_VALUE)
+            return true;
+
+        long epochSecond = getEpochSecond();
+        return epochSecond >= from && epochSecond <= to;
+    }
+
+    private double parsePingTime() {
+        String value = string(secondComma + 1, lineEnd);
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid ping time: " + value, e);
+        }
+    }
+
+    private long digits(int start, int count) {
+        long value = 0;
+        for (int i = start; i < start + count; i++) {
+            byte b = bytes.get(i);
+            if (b < '0' || b > '9')
+                throw new IllegalArgumentException("Malformed ping log datetime at byte " + lineStart);
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+
+    private String string(int start, int end) {
+        byte[] value = new byte[end - start];
+        bytes.get(start, value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Days from the epoch of a date of the proleptic Gregorian calendar
+     */
+    private static long toEpochDay(long year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153L * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+}
@@ -0,0 +1,133 @@
+package com.adieser.conntest.models.utils;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Ping log segment: a CSV ping log written through a memory mapping, preceded by a header with the length committed
+ * by the writer. The file is preallocated, so past the committed length there may be padding, and readers must only
+ * read below it.
+ * <pre>
+ * Header (16 bytes): magic "CTSEGMT1" | committed length, as a big-endian long, including the header
+ * </pre>
+ * The committed length is published with release semantics and read with acquire semantics, so everything below it
+ * is visible to a reader mapping the same file.
+ */
+public final class PingLogSegment {
+    public static final long MAGIC = 0x4354_5345_474D_5431L;
+    public static final int HEADER_SIZE = 16;
+    private static final int COMMITTED_OFFSET = 8;
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private PingLogSegment() {
+    }
+
+    /**
+     * @return true if the buffer starts with the header of a segment
+     */
+    public static boolean isSegment(ByteBuffer buffer) {
+        return buffer.limit() >= HEADER_SIZE && buffer.getLong(0) == MAGIC;
+    }
+
+    /**
+     * @return true if the file is a segment, false if it is not or does not exist
+     */
+    public static boolean isSegment(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            return channel.read(header, 0) == HEADER_SIZE && isSegment(header);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Write the header of an empty segment
+     */
+    public static void initialize(ByteBuffer buffer) {
+        buffer.putLong(0, MAGIC);
+        commit(buffer, HEADER_SIZE);
+    }
+
+    /**
+     * @return the committed length of a segment, including the header
+     */
+    public static long getCommitted(ByteBuffer buffer) {
+        return (long) LONGS.getAcquire(buffer, COMMITTED_OFFSET);
+    }
+
+    /**
+     * Publish the length written to a segment, including the header
+     */
+    public static void commit(ByteBuffer buffer, long committed) {
+        LONGS.setRelease(buffer, COMMITTED_OFFSET, committed);
+    }
+
+    /**
+     * Open a ping log for reading. A segment is mapped and read in place, up to its committed length, a
+     * {@link CompressedPingLog} is inflated block by block; any other file is read as plain text.
+     * @param file ping log to read
+     * @return reader of the CSV lines of the file
+     * @throws IOException if the file could not be opened
+     */
+    public static Reader newReader(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            if (size >= HEADER_SIZE && channel.read(header, 0) == HEADER_SIZE && isSegment(header)) {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                long committed = Math.min(size, Math.max(HEADER_SIZE, getCommitted(mapped)));
+                return new MappedReader(mapped.slice(HEADER_SIZE, (int) (committed - HEADER_SIZE)));
+            }
+            header.flip();
+            if (CompressedPingLog.isCompressed(header))
+                return CompressedPingLog.newReader(file);
+        }
+
+        return Files.newBufferedReader(file);
+    }
+
+    /**
+     * Reader decoding the lines straight from the mapping
+     */
+    private static final class MappedReader extends Reader {
+        private final ByteBuffer bytes;
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
+
+        private MappedReader(ByteBuffer bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            if (len == 0)
+                return 0;
+
+            CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+            CoderResult result = decoder.decode(bytes, out, true);
+            if (result.isError())
+                result.throwException();
+
+            int read = out.position() - off;
+            return read == 0 && !bytes.hasRemaining() ? -1 : read;
+        }
+
+        @Override
+        public void close() {
+            // the mapping is released by the garbage collector
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.adieser.conntest.models.utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Layout of a ping log sharded by target: every target has its own directory, named after its IP address, with its
+ * active file and its rotated files.
+ * <pre>
+ * &lt;pinglogs-path&gt;/targets/192.168.1.1/ping.log
+ * &lt;pinglogs-path&gt;/targets/8.8.8.8/ping.log
+ * &lt;pinglogs-path&gt;/targets/2001_db8__1/ping.log
+ * </pre>
+ * The characters of an address not valid in a file name, as the colons of IPv6, are replaced by underscores, and so are
+ * the dots of a name made only of dots, so no target resolves to the directory of the targets or its parent. The
+ * lines of the files keep the address, so the name of the directory is only used to find them.
+ */
+public final class PingLogShards {
+    public static final String SHARDS_DIRECTORY = "targets";
+
+    private PingLogShards() {
+    }
+
+    /**
+     * @param pingLogsPath directory of the ping logs
+     * @return directory with the directories of the targets
+     */
+    public static Path getShardsDirectory(String pingLogsPath) {
+        return Path.of(pingLogsPath).resolve(SHARDS_DIRECTORY);
+    }
+
+    /**
+     * @param shardsDirectory directory with the directories of the targets
+     * @param ipAddress IP address of the target
+     * @return directory of the files of the target
+     */
+    public static Path getShardDirectory(Path shardsDirectory, String ipAddress) {
+        String name = ipAddress.replaceAll("[^A-Za-z0-9.\\-]", "_");
+        // "", "." and ".." are not directories of their own
+        if (name.chars().allMatch(c -> c == '.'))
+            name = "_".repeat(Math.max(1, name.length()));
+        return shardsDirectory.resolve(name);
+    }
+
+    /**
+     * @param shardsDirectory directory with the directories of the targets
+     * @param filename name of the active file of every target
+     * @return the active files of the targets, empty if there are none
+     * @throws IOException if the directory could not be listed
+     */
+    public static List<Path> listShardFiles(Path shardsDirectory, String filename) throws IOException {
+        if (!Files.isDirectory(shardsDirectory))
+            return List.of();
+
+        try (Stream<Path> directories = Files.list(shardsDirectory)) {
+            return directories
+                    .map(directory -> directory.resolve(filename))
+                    .filter(Files::isRegularFile)
+                    .sorted()
+                    .toList();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.adieser.conntest.models.utils;
+
+import com.adieser.conntest.models.PingLog;
+import com.opencsv.bean.AbstractBeanField;
+import com.opencsv.exceptions.CsvDataTypeMismatchException;
+
+/**
+ * Converts the ping time column of the ping log CSV files. Ping times are written in milliseconds with up to 3
+ * decimals (microseconds). Files written when ping times were whole milliseconds are read as they are.
+ */
+public class PingTimeCsvConverter extends AbstractBeanField<PingLog, Integer> {
+
+    @Override
+    protected Object convert(String value) throws CsvDataTypeMismatchException {
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException | NullPointerException e) {
+            throw new CsvDataTypeMismatchException(value, Double.class, "Invalid ping time: " + value);
+        }
+    }
+
+    @Override
+    protected String convertToWrite(Object value) {
+        return PingLog.formatPingTime((Double) value);
+    }
+}
@@ -2,7 +2,7 @@ package com.adieser.conntest.models.utils;
 
 
 import org.slf4j.Logger;
-import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
@@ -10,14 +10,16 @@ import java.net.InetAddress;
 import java.net.UnknownHostException;
 
 @Component
-@ConditionalOnProperty(name = "conntest.simulator", havingValue = "disabled")
+@ConditionalOnExpression("'${conntest.simulator}' == 'disabled' and '${conntest.probe-backend:icmp}' == 'icmp'")
 public class PingUtils implements Reachable {
-    protected static final int TIMEOUT = 3000;
+    public static final int TIMEOUT = 3000;
 
     private final Logger logger;
+    private final DnsCache dnsCache;
 
-    public PingUtils(Logger logger) {
+    public PingUtils(Logger logger, DnsCache dnsCache) {
         this.logger = logger;
+        this.dnsCache = dnsCache;
     }
 
     /**
@@ -39,6 +41,6 @@ public class PingUtils implements Reachable {
     }
 
     InetAddress getInet(String ip) throws UnknownHostException {
-        return InetAddress.getByName(ip);
+        return dnsCache.resolve(ip);
     }
 }
@@ -2,7 +2,22 @@ package com.adieser.conntest.models.utils;
 
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.CompletableFuture;
+
 @Component
 public interface Reachable {
     boolean isReachable(String ip);
+
+    /**
+     * Check if an ip address is reachable and measure the round trip with the monotonic clock, without blocking the
+     * caller if the implementation supports it. By default the check runs in the calling thread.
+     * @param ip ip address to check connectivity
+     * @return future completed with the round trip in nanoseconds, or -1 if the ip address is not reachable
+     */
+    default CompletableFuture<Long> probeAsync(String ip) {
+        long startTime = System.nanoTime();
+        long roundTrip = isReachable(ip) ? System.nanoTime() - startTime : -1L;
+
+        return CompletableFuture.completedFuture(roundTrip);
+    }
 }
@@ -0,0 +1,288 @@
+package com.adieser.conntest.models.utils;
+
+import com.adieser.conntest.configurations.AppProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Reachable} implementation based on TCP connects. The connects are non-blocking and multiplexed by a single
+ * {@link Selector}, so one I/O thread keeps thousands of probes in flight and times their handshakes.
+ * <p>
+ * A refused connection counts as reachable: the host answered the SYN with a RST. Timeouts and network errors
+ * count as not reachable.
+ * <p>
+ * The futures are completed on the probe executor, so whatever runs on completion, as saving the ping, does not hold
+ * the I/O thread and the timing of the other probes.
+ */
+@Component
+@ConditionalOnExpression("'${conntest.simulator}' == 'disabled' and '${conntest.probe-backend:icmp}' == 'tcp'")
+public class TcpConnectReachable implements Reachable {
+    public static final long NOT_REACHABLE = -1L;
+    private static final String CONNECTION_REFUSED = "refused";
+
+    private final Logger logger;
+    private final AppProperties appProperties;
+    private final DnsCache dnsCache;
+    private final Executor probeExecutor;
+    private final Queue<PendingConnect> submitted = new ConcurrentLinkedQueue<>();
+    private final PriorityQueue<PendingConnect> inFlight =
+            new PriorityQueue<>((a, b) -> Long.compare(a.deadlineNanos, b.deadlineNanos));
+    private Selector selector;
+    private volatile boolean running;
+
+    public TcpConnectReachable(Logger logger, AppProperties appProperties, DnsCache dnsCache,
+                               ExecutorService probeExecutor) {
+        this.logger = logger;
+        this.appProperties = appProperties;
+        this.dnsCache = dnsCache;
+        this.probeExecutor = probeExecutor;
+    }
+
+    /**
+     * Open the selector and start the I/O thread
+     * @throws IOException if the selector cannot be opened
+     */
+    @PostConstruct
+    public synchronized void start() throws IOException {
+        if (running)
+            return;
+
+        selector = Selector.open();
+        running = true;
+        Thread ioThread = new Thread(this::run, "tcp-probe-io");
+        ioThread.setDaemon(true);
+        ioThread.start();
+    }
+
+    /**
+     * Stop the I/O thread. Probes in flight complete as not reachable.
+     */
+    @PreDestroy
+    public synchronized void stop() {
+        running = false;
+        if (selector != null)
+            selector.wakeup();
+    }
+
+    /**
+     * Check if an ip address is reachable through a TCP connect to {@code conntest.tcp-probe-port}. It blocks the
+     * caller until the handshake finishes or {@code PingUtils.TIMEOUT} ms elapse.
+     * @param ip ip address to check connectivity
+     * @return true if the ip address is reachable. False otherwise
+     */
+    @Override
+    public boolean isReachable(String ip) {
+        return connect(ip).join() != NOT_REACHABLE;
+    }
+
+    /**
+     * Check if an ip address is reachable through a TCP connect to {@code conntest.tcp-probe-port}, without blocking
+     * the caller. The round trip is the handshake time measured by the I/O thread.
+     * @param ip ip address to check connectivity
+     * @return future completed with the handshake time in nanoseconds, or {@code NOT_REACHABLE}
+     */
+    @Override
+    public CompletableFuture<Long> probeAsync(String ip) {
+        return connect(ip);
+    }
+
+    /**
+     * Start a non-blocking TCP connect to {@code conntest.tcp-probe-port}
+     * @param ip ip address or host name to connect to, resolved through the {@link DnsCache}
+     * @return future completed with the handshake time in nanoseconds, or {@code NOT_REACHABLE}
+     */
+    public CompletableFuture<Long> connect(String ip) {
+        InetAddress address;
+        try {
+            address = dnsCache.resolve(ip);
+        } catch (UnknownHostException e) {
+            return CompletableFuture.completedFuture(NOT_REACHABLE);
+        }
+
+        return connect(new InetSocketAddress(address, appProperties.getTcpProbePort()), PingUtils.TIMEOUT);
+    }
+
+    /**
+     * Start a non-blocking TCP connect
+     * @param address address to connect to
+     * @param timeoutMillis time to wait for the handshake
+     * @return future completed with the handshake time in nanoseconds, or {@code NOT_REACHABLE}
+     */
+    public CompletableFuture<Long> connect(InetSocketAddress address, long timeoutMillis) {
+        PendingConnect pending = new PendingConnect(address, TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+
+        if (!running || address.isUnresolved()) {
+            pending.future.complete(NOT_REACHABLE);
+            return pending.future;
+        }
+
+        submitted.add(pending);
+        selector.wakeup();
+
+        // stopped while submitting, the I/O thread may have already drained the queue
+        if (!running)
+            pending.future.complete(NOT_REACHABLE);
+
+        return pending.future;
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                openSubmitted();
+                selector.select(selectTimeoutMillis());
+                processSelectedKeys();
+                expireTimedOut();
+            }
+        } catch (IOException e) {
+            logger.error("TCP probe I/O thread failed", e);
+        } finally {
+            closeAll();
+        }
+    }
+
+    private void openSubmitted() {
+        PendingConnect pending;
+        while ((pending = submitted.poll()) != null) {
+            try {
+                pending.channel = SocketChannel.open();
+                pending.channel.configureBlocking(false);
+                pending.startNanos = System.nanoTime();
+                pending.deadlineNanos = pending.startNanos + pending.timeoutNanos;
+
+                if (pending.channel.connect(pending.address))
+                    complete(pending, System.nanoTime() - pending.startNanos);
+                else {
+                    pending.channel.register(selector, SelectionKey.OP_CONNECT, pending);
+                    inFlight.add(pending);
+                }
+            } catch (IOException e) {
+                completeExceptionally(pending, e);
+            }
+        }
+    }
+
+    private long selectTimeoutMillis() {
+        PendingConnect next = inFlight.peek();
+        if (next == null)
+            return 0; // no timeout, wait for a wakeup
+
+        long remainingMillis = TimeUnit.NANOSECONDS.toMillis(next.deadlineNanos - System.nanoTime());
+        return Math.max(1, remainingMillis);
+    }
+
+    private void processSelectedKeys() {
+        Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+        while (iterator.hasNext()) {
+            SelectionKey key = iterator.next();
+            iterator.remove();
+
+            PendingConnect pending = (PendingConnect) key.attachment();
+            try {
+                if (pending.channel.finishConnect())
+                    complete(pending, System.nanoTime() - pending.startNanos);
+            } catch (IOException e) {
+                completeExceptionally(pending, e);
+            }
+        }
+    }
+
+    private void expireTimedOut() {
+        long now = System.nanoTime();
+        PendingConnect pending;
+        while ((pending = inFlight.peek()) != null
+                && (pending.completed || pending.future.isDone() || pending.deadlineNanos - now <= 0)) {
+            inFlight.poll();
+            complete(pending, NOT_REACHABLE);
+        }
+    }
+
+    private void completeExceptionally(PendingConnect pending, IOException e) {
+        // a RST means the host is up, the port is just closed
+        if (e instanceof ConnectException && e.getMessage() != null && e.getMessage().contains(CONNECTION_REFUSED))
+            complete(pending, System.nanoTime() - pending.startNanos);
+        else {
+            logger.debug("TCP probe to {} failed: {}", pending.address, e.getMessage());
+            complete(pending, NOT_REACHABLE);
+        }
+    }
+
+    private void complete(PendingConnect pending, long handshakeNanos) {
+        if (pending.completed)
+            return;
+
+        pending.completed = true;
+        closeQuietly(pending);
+        try {
+            probeExecutor.execute(() -> pending.future.complete(handshakeNanos));
+        } catch (RejectedExecutionException e) {
+            // the executor is shut down with the application
+            pending.future.complete(handshakeNanos);
+        }
+    }
+
+    private void closeAll() {
+        PendingConnect pending;
+        while ((pending = inFlight.poll()) != null)
+            complete(pending, NOT_REACHABLE);
+        while ((pending = submitted.poll()) != null)
+            complete(pending, NOT_REACHABLE);
+
+        try {
+            selector.close();
+        } catch (IOException e) {
+            logger.error("Error closing the TCP probe selector", e);
+        }
+    }
+
+    private void closeQuietly(PendingConnect pending) {
+        if (pending.channel == null)
+            return;
+
+        try {
+            pending.channel.close();
+        } catch (IOException e) {
+            logger.debug("Error closing TCP probe channel to {}", pending.address, e);
+        }
+    }
+
+    /**
+     * TCP connect in flight
+     */
+    private static final class PendingConnect {
+        private final InetSocketAddress address;
+        private final long timeoutNanos;
+        private final CompletableFuture<Long> future = new CompletableFuture<>();
+        private SocketChannel channel;
+        private long startNanos;
+        private long deadlineNanos;
+        /** Completed by the I/O thread, its future may not be yet */
+        private boolean completed;
+
+        private PendingConnect(InetSocketAddress address, long timeoutNanos) {
+            this.address = address;
+            this.timeoutNanos = timeoutNanos;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.adieser.conntest.models.utils.simulator;
+
+import java.util.Map;
+
+/**
+ * Network conditions simulated by the {@link ScenarioReachable}
+ * @param baselineMillis typical round trip, in milliseconds
+ * @param jitterMillis standard deviation of the round trip around the baseline, in milliseconds
+ * @param lossBurstProbability probability of a probe starting a loss burst
+ * @param lossBurstSeconds duration of a loss burst, every probe of the target is lost during it
+ * @param outagePeriodSeconds period of the scheduled outages, 0 for no outages
+ * @param outageSeconds duration of a scheduled outage, at the end of every period. It affects every target
+ */
+public record ScenarioProfile(double baselineMillis,
+                              double jitterMillis,
+                              double lossBurstProbability,
+                              long lossBurstSeconds,
+                              long outagePeriodSeconds,
+                              long outageSeconds) {
+
+    public static final ScenarioProfile LAN = new ScenarioProfile(0.4, 0.1, 0.0005, 2, 0, 0);
+    public static final ScenarioProfile WAN = new ScenarioProfile(15, 4, 0.002, 5, 0, 0);
+    public static final ScenarioProfile FLAKY = new ScenarioProfile(40, 25, 0.02, 10, 0, 0);
+    public static final ScenarioProfile OUTAGE = new ScenarioProfile(15, 4, 0.002, 5, 3600, 120);
+
+    private static final Map<String, ScenarioProfile> BUILT_IN = Map.of(
+            "lan", LAN,
+            "wan", WAN,
+            "flaky", FLAKY,
+            "outage", OUTAGE
+    );
+
+    /**
+     * Find a profile by name
+     * @param name name of the profile
+     * @param custom profiles defined in {@code conntest.simulation.profiles}, they take precedence over the built-in
+     *               ones (lan, wan, flaky and outage)
+     * @return the profile
+     * @throws IllegalArgumentException if there is no profile with that name
+     */
+    public static ScenarioProfile of(String name, Map<String, ScenarioProfile> custom) {
+        ScenarioProfile profile = custom != null ? custom.get(name) : null;
+        if (profile == null)
+            profile = BUILT_IN.get(name);
+        if (profile == null)
+            throw new IllegalArgumentException("Unknown simulation profile: " + name);
+
+        return profile;
+    }
+
+    /**
+     * @param epochMillis virtual time
+     * @return true if a scheduled outage is in progress at that time
+     */
+    public boolean isOutage(long epochMillis) {
+        if (outagePeriodSeconds <= 0 || outageSeconds <= 0)
+            return false;
+
+        long secondOfPeriod = Math.floorMod(Math.floorDiv(epochMillis, 1000L), outagePeriodSeconds);
+        return secondOfPeriod >= outagePeriodSeconds - outageSeconds;
+    }
+}
@@ -0,0 +1,85 @@
+package com.adieser.conntest.models.utils.simulator;
+
+import com.adieser.conntest.configurations.AppProperties;
+import com.adieser.conntest.models.utils.Reachable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link Reachable} that computes the probe results from a {@link ScenarioProfile} instead of touching the network.
+ * The results depend on the time of the {@link Clock}, so with a {@link VirtualClock} it does not sleep and answers
+ * as fast as it is asked. Every target gets its own seeded random generator, so a run is reproducible.
+ */
+@Component
+@ConditionalOnProperty(name = "conntest.simulator", havingValue = "virtual")
+public class ScenarioReachable implements Reachable {
+    public static final long NOT_REACHABLE = -1L;
+    private static final long MIN_ROUND_TRIP_NANOS = 1_000L;
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+
+    private final ScenarioProfile profile;
+    private final Clock clock;
+    private final Map<String, Target> targets = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ScenarioReachable(AppProperties appProperties, Clock clock) {
+        this(ScenarioProfile.of(appProperties.getSimulation().getProfile(), appProperties.getSimulation().getProfiles()),
+                clock);
+    }
+
+    public ScenarioReachable(ScenarioProfile profile, Clock clock) {
+        this.profile = profile;
+        this.clock = clock;
+    }
+
+    @Override
+    public boolean isReachable(String ip) {
+        return probe(ip) != NOT_REACHABLE;
+    }
+
+    @Override
+    public CompletableFuture<Long> probeAsync(String ip) {
+        return CompletableFuture.completedFuture(probe(ip));
+    }
+
+    /**
+     * Simulate a probe at the current time of the clock
+     * @param ip target of the probe
+     * @return the round trip in nanoseconds, or {@code NOT_REACHABLE}
+     */
+    long probe(String ip) {
+        return targets.computeIfAbsent(ip, Target::new).probe(clock.millis());
+    }
+
+    /**
+     * Simulation state of a target
+     */
+    private final class Target {
+        private final SplittableRandom random;
+        private long lossBurstEndMillis = Long.MIN_VALUE;
+
+        private Target(String ip) {
+            this.random = new SplittableRandom(ip.hashCode());
+        }
+
+        private synchronized long probe(long nowMillis) {
+            if (profile.isOutage(nowMillis) || nowMillis < lossBurstEndMillis)
+                return NOT_REACHABLE;
+
+            if (random.nextDouble() < profile.lossBurstProbability()) {
+                lossBurstEndMillis = nowMillis + profile.lossBurstSeconds() * 1000L;
+                return NOT_REACHABLE;
+            }
+
+            double roundTripMillis = profile.baselineMillis() + profile.jitterMillis() * random.nextGaussian();
+            return Math.max(MIN_ROUND_TRIP_NANOS, (long) (roundTripMillis * NANOS_PER_MILLI));
+        }
+    }
+}
@@ -17,7 +17,7 @@ public interface ConnTestService {
     void testLocalISPInternet();
 
     /**
-     * Trigger a 3 custom Ip addresses in parallel
+     * Trigger a ping session for each custom Ip address in parallel
      * @param ipAddresses ip addresses to test connection to
      */
     void testCustomIps(List<String> ipAddresses);
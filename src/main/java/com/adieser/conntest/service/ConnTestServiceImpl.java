@@ -6,6 +6,7 @@ import com.adieser.conntest.models.PingLog;
 import com.adieser.conntest.models.PingLogRepository;
 import com.adieser.conntest.models.Pingable;
 import com.adieser.conntest.models.utils.Reachable;
+import com.adieser.conntest.service.scheduler.ProbeScheduler;
 import org.slf4j.Logger;
 import org.springframework.stereotype.Service;
 
@@ -16,12 +17,12 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.ExecutorService;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
- * ConnTestService implementation. It uses {@link ExecutorService} for multithreading.
+ * ConnTestService implementation. Ping sessions are paced by the {@link ProbeScheduler}, which runs every ping in
+ * the probe executor.
  * To automatically gather the local and ISP IP addresses it leverages the OS traceroute-like command
  */
 @Service
@@ -30,7 +31,7 @@ public class ConnTestServiceImpl implements ConnTestService {
     public static final String CLOUD_IP = "8.8.8.8";
     private final Logger logger;
     List<ConnTest> tests = new ArrayList<>();
-    private final ExecutorService threadPoolExecutor;
+    private final ProbeScheduler probeScheduler;
 
     private final TracertProvider tracertProvider;
 
@@ -43,12 +44,12 @@ public class ConnTestServiceImpl implements ConnTestService {
 
     private final Reachable pingUtils;
 
-    public ConnTestServiceImpl(ExecutorService threadPoolExecutor, Logger logger,
+    public ConnTestServiceImpl(ProbeScheduler probeScheduler, Logger logger,
                                TracertProvider tracertProvider,
                                PingLogRepository pingLogRepository,
                                Reachable pingUtils) {
         this.logger = logger;
-        this.threadPoolExecutor = threadPoolExecutor;
+        this.probeScheduler = probeScheduler;
         this.tracertProvider = tracertProvider;
         this.pingLogRepository = pingLogRepository;
         this.pingUtils = pingUtils;
@@ -238,7 +239,7 @@ public class ConnTestServiceImpl implements ConnTestService {
      */
     List<ConnTest> getConnTestsFromIpAddresses(List<String> ipAddresses) {
         return ipAddresses.stream()
-                .map(s -> new ConnTest(threadPoolExecutor, s, logger, pingLogRepository, pingUtils))
+                .map(s -> new ConnTest(probeScheduler, s, logger, pingLogRepository, pingUtils))
                 .toList();
     }
 
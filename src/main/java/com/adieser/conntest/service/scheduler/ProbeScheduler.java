@@ -0,0 +1,259 @@
+package com.adieser.conntest.service.scheduler;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Hashed wheel timer that fires the probe ticks of every ping session from a single thread.
+ * <p>
+ * Ticks are computed against the monotonic clock ({@link System#nanoTime()}) from an anchor aligned to a whole
+ * second, so every session with the same period ticks in phase, on exact second boundaries, and sleeping late never
+ * accumulates drift. The tick callbacks are dispatched to the probe executor, the wheel thread never runs a probe.
+ * If the wheel thread overruns by more than a whole period, the stale ticks are not fired; they are skipped and
+ * recorded as missed instead.
+ */
+@Component
+public class ProbeScheduler {
+    public static final long TICK_DURATION_MILLIS = 100L;
+    static final int WHEEL_SIZE = 64;
+    private static final long ANCHOR_MILLIS = 1000L;
+    private static final long TICK_DURATION_NANOS = TimeUnit.MILLISECONDS.toNanos(TICK_DURATION_MILLIS);
+
+    private final ExecutorService probeExecutor;
+    private final Clock clock;
+    private final Logger logger;
+
+    private final List<List<Registration>> wheel = new ArrayList<>(WHEEL_SIZE);
+    private final Queue<Registration> pendingRegistrations = new ConcurrentLinkedQueue<>();
+    private final AtomicLong missedTicks = new AtomicLong();
+
+    private volatile boolean running;
+    private Thread worker;
+    private long startNanos;
+    private long startEpochMillis;
+    private long currentTick;
+
+    public ProbeScheduler(ExecutorService probeExecutor, Clock clock, Logger logger) {
+        this.probeExecutor = probeExecutor;
+        this.clock = clock;
+        this.logger = logger;
+
+        for (int i = 0; i < WHEEL_SIZE; i++)
+            wheel.add(new ArrayList<>());
+    }
+
+    /**
+     * Start the wheel thread. The first tick is anchored to the next whole second of the {@link Clock}.
+     */
+    @PostConstruct
+    public synchronized void start() {
+        if (running)
+            return;
+
+        long nowMillis = clock.millis();
+        long nowNanos = System.nanoTime();
+        long delayMillis = ANCHOR_MILLIS - Math.floorMod(nowMillis, ANCHOR_MILLIS);
+
+        startEpochMillis = nowMillis + delayMillis;
+        startNanos = nowNanos + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        currentTick = 0;
+        running = true;
+
+        worker = new Thread(this::run, "probe-scheduler");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Stop the wheel thread. Pending ticks are discarded.
+     */
+    @PreDestroy
+    public synchronized void stop() {
+        running = false;
+        if (worker != null) {
+            LockSupport.unpark(worker);
+            worker = null;
+        }
+    }
+
+    /**
+     * Register a periodic probe. The first tick is fired on the next period boundary.
+     * @param periodMillis period of the ticks, it must be a multiple of {@code TICK_DURATION_MILLIS}
+     * @param onTick callback executed in the probe executor on every tick
+     * @return the registration, used to cancel the ticks
+     */
+    public Registration register(long periodMillis, Consumer<Tick> onTick) {
+        Registration registration = new Registration(periodTicks(periodMillis), onTick);
+        pendingRegistrations.add(registration);
+
+        return registration;
+    }
+
+    /**
+     * @param periodMillis period of a registration
+     * @return the period in ticks
+     * @throws IllegalArgumentException if the period is not a multiple of {@code TICK_DURATION_MILLIS}
+     */
+    static long periodTicks(long periodMillis) {
+        if (periodMillis < TICK_DURATION_MILLIS || periodMillis % TICK_DURATION_MILLIS != 0)
+            throw new IllegalArgumentException("Period must be a multiple of " + TICK_DURATION_MILLIS + " ms");
+
+        return periodMillis / TICK_DURATION_MILLIS;
+    }
+
+    /**
+     * @return amount of ticks skipped, among all the registrations, because the wheel thread overran
+     */
+    public long getMissedTicks() {
+        return missedTicks.get();
+    }
+
+    private void run() {
+        while (running) {
+            if (!waitUntil(tickNanos(currentTick)))
+                break;
+
+            transferPendingRegistrations();
+            processBucket();
+            currentTick++;
+        }
+    }
+
+    /**
+     * Park the wheel thread until the deadline is reached
+     * @return false if the scheduler was stopped while waiting
+     */
+    private boolean waitUntil(long deadlineNanos) {
+        long remaining;
+        while (running && (remaining = deadlineNanos - System.nanoTime()) > 0)
+            LockSupport.parkNanos(this, remaining);
+
+        return running;
+    }
+
+    private void transferPendingRegistrations() {
+        Registration registration;
+        while ((registration = pendingRegistrations.poll()) != null) {
+            if (registration.cancelled)
+                continue;
+
+            // first deadline aligned to the period, so sessions with the same period tick in phase
+            registration.deadlineTick = (currentTick / registration.periodTicks + 1) * registration.periodTicks;
+            bucketOf(registration.deadlineTick).add(registration);
+        }
+    }
+
+    private void processBucket() {
+        List<Registration> expired = new ArrayList<>();
+        Iterator<Registration> iterator = bucketOf(currentTick).iterator();
+        while (iterator.hasNext()) {
+            Registration registration = iterator.next();
+            if (registration.cancelled) {
+                iterator.remove();
+            } else if (registration.deadlineTick <= currentTick) {
+                iterator.remove();
+                expired.add(registration);
+            }
+        }
+
+        long nowNanos = System.nanoTime();
+        for (Registration registration : expired) {
+            fire(registration, nowNanos);
+            registration.deadlineTick += registration.periodTicks;
+            bucketOf(registration.deadlineTick).add(registration);
+        }
+    }
+
+    private void fire(Registration registration, long nowNanos) {
+        long periodNanos = registration.periodTicks * TICK_DURATION_NANOS;
+        long missed = (nowNanos - tickNanos(registration.deadlineTick)) / periodNanos;
+
+        if (missed > 0) {
+            registration.deadlineTick += missed * registration.periodTicks;
+            registration.sequence += missed;
+            registration.missedTicks.addAndGet(missed);
+            missedTicks.addAndGet(missed);
+            logger.warn("Probe scheduler overran, {} ticks missed", missed);
+        }
+
+        Tick tick = new Tick(registration.sequence++, tickNanos(registration.deadlineTick),
+                tickDateTime(registration.deadlineTick), missed);
+        try {
+            probeExecutor.execute(() -> registration.onTick.accept(tick));
+        } catch (RejectedExecutionException e) {
+            logger.error("Probe tick rejected by the probe executor", e);
+        }
+    }
+
+    private List<Registration> bucketOf(long tick) {
+        return wheel.get((int) (tick & (WHEEL_SIZE - 1)));
+    }
+
+    private long tickNanos(long tick) {
+        return startNanos + tick * TICK_DURATION_NANOS;
+    }
+
+    private LocalDateTime tickDateTime(long tick) {
+        return LocalDateTime.ofInstant(
+                Instant.ofEpochMilli(startEpochMillis + tick * TICK_DURATION_MILLIS),
+                clock.getZone());
+    }
+
+    /**
+     * A probe tick
+     * @param sequence sequence number of the tick within its registration, starting at 0
+     * @param scheduledNanos {@link System#nanoTime()} the tick was scheduled for
+     * @param dateTime date and time the tick was scheduled for, always on a period boundary
+     * @param missedBefore amount of ticks missed right before this one
+     */
+    public record Tick(long sequence, long scheduledNanos, LocalDateTime dateTime, long missedBefore) {
+    }
+
+    /**
+     * Periodic probe registered in the scheduler
+     */
+    public static final class Registration {
+        final long periodTicks;
+        final Consumer<Tick> onTick;
+        private final AtomicLong missedTicks = new AtomicLong();
+        volatile boolean cancelled;
+        private long deadlineTick;
+        long sequence;
+
+        Registration(long periodTicks, Consumer<Tick> onTick) {
+            this.periodTicks = periodTicks;
+            this.onTick = onTick;
+        }
+
+        /**
+         * Stop firing ticks. A tick already dispatched to the probe executor still runs.
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        /**
+         * @return amount of ticks of this registration skipped because the wheel thread overran
+         */
+        public long getMissedTicks() {
+            return missedTicks.get();
+        }
+    }
+}
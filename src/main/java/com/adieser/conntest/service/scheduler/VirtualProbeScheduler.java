@@ -0,0 +1,134 @@
+package com.adieser.conntest.service.scheduler;
+
+import com.adieser.conntest.models.utils.simulator.VirtualClock;
+import org.slf4j.Logger;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * {@link ProbeScheduler} driven by a {@link VirtualClock} instead of a wheel thread. Time only moves when
+ * {@link #advance(Duration)} is called, and every tick is fired as soon as the previous one is done, so the sessions
+ * registered in it produce a simulated day of pings as fast as the ping log pipeline can take them.
+ * <p>
+ * The registrations due on a tick are split among {@code parallelism} tasks of the worker executor. A registration
+ * always runs in a single task, so its ticks keep their order.
+ */
+public class VirtualProbeScheduler extends ProbeScheduler {
+    private final VirtualClock clock;
+    private final ExecutorService workers;
+    private final int parallelism;
+    private final Logger logger;
+
+    private final List<Registration> registrations = new ArrayList<>();
+    private long currentTick;
+
+    public VirtualProbeScheduler(VirtualClock clock, ExecutorService workers, int parallelism, Logger logger) {
+        super(workers, clock, logger);
+        this.clock = clock;
+        this.workers = workers;
+        this.parallelism = Math.max(1, parallelism);
+        this.logger = logger;
+    }
+
+    /**
+     * Nothing to start, ticks are fired by {@link #advance(Duration)}
+     */
+    @Override
+    public void start() {
+        // no wheel thread
+    }
+
+    /**
+     * Nothing to stop, ticks are fired by {@link #advance(Duration)}
+     */
+    @Override
+    public void stop() {
+        // no wheel thread
+    }
+
+    @Override
+    public Registration register(long periodMillis, Consumer<Tick> onTick) {
+        Registration registration = new Registration(periodTicks(periodMillis), onTick);
+        synchronized (registrations) {
+            registrations.add(registration);
+        }
+
+        return registration;
+    }
+
+    /**
+     * Move the virtual clock forward one tick at a time, firing the ticks due on the way
+     * @param duration virtual time to advance
+     * @return amount of ticks fired among all the registrations
+     * @throws InterruptedException if interrupted while waiting for the ticks to be processed
+     */
+    public long advance(Duration duration) throws InterruptedException {
+        long ticks = duration.toMillis() / TICK_DURATION_MILLIS;
+        long fired = 0;
+
+        for (long i = 0; i < ticks; i++) {
+            clock.advance(Duration.ofMillis(TICK_DURATION_MILLIS));
+            currentTick++;
+
+            List<Registration> due = dueRegistrations();
+            if (!due.isEmpty()) {
+                fire(due, LocalDateTime.ofInstant(clock.instant(), clock.getZone()));
+                fired += due.size();
+            }
+        }
+
+        return fired;
+    }
+
+    private List<Registration> dueRegistrations() {
+        List<Registration> due = new ArrayList<>();
+        synchronized (registrations) {
+            registrations.removeIf(registration -> registration.cancelled);
+            for (Registration registration : registrations)
+                if (currentTick % registration.periodTicks == 0)
+                    due.add(registration);
+        }
+
+        return due;
+    }
+
+    private void fire(List<Registration> due, LocalDateTime dateTime) throws InterruptedException {
+        int tasks = Math.min(parallelism, due.size());
+        if (tasks == 1) {
+            fire(due, dateTime, 0, due.size());
+            return;
+        }
+
+        int chunkSize = (due.size() + tasks - 1) / tasks;
+        List<Future<?>> futures = new ArrayList<>(tasks);
+        for (int from = 0; from < due.size(); from += chunkSize) {
+            int start = from;
+            int end = Math.min(from + chunkSize, due.size());
+            futures.add(workers.submit(() -> fire(due, dateTime, start, end)));
+        }
+
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                logger.error("Virtual probe tick failed", e.getCause());
+            }
+        }
+    }
+
+    private void fire(List<Registration> due, LocalDateTime dateTime, int start, int end) {
+        // the probes of a virtual tick are never late, their deadline is measured from now
+        long nowNanos = System.nanoTime();
+        for (int i = start; i < end; i++) {
+            Registration registration = due.get(i);
+            registration.onTick.accept(new Tick(registration.sequence++, nowNanos, dateTime, 0));
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.adieser.conntest.service.simulator;
+
+import com.adieser.conntest.configurations.AppProperties;
+import com.adieser.conntest.models.ConnTest;
+import com.adieser.conntest.models.PingLogRepository;
+import com.adieser.conntest.models.utils.simulator.ScenarioProfile;
+import com.adieser.conntest.models.utils.simulator.ScenarioReachable;
+import com.adieser.conntest.models.utils.simulator.VirtualClock;
+import com.adieser.conntest.service.scheduler.VirtualProbeScheduler;
+import org.slf4j.Logger;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load and soak test of the ping log pipeline. It runs ping sessions for thousands of simulated targets on a
+ * {@link VirtualClock}, so a day of pings is produced as fast as the pipeline takes it. The results go through the
+ * same path as real pings: {@link ConnTest}, {@link PingLogRepository#savePingLog} and the ping log writer.
+ * <p>
+ * It is started when the application is ready if {@code conntest.simulator = virtual}, configured by the
+ * {@code conntest.simulation.*} properties.
+ */
+@Service
+@ConditionalOnProperty(name = "conntest.simulator", havingValue = "virtual")
+public class VirtualLoadSimulator {
+    private final AppProperties appProperties;
+    private final PingLogRepository pingLogRepository;
+    private final ExecutorService probeExecutor;
+    private final Clock clock;
+    private final Logger logger;
+
+    public VirtualLoadSimulator(AppProperties appProperties,
+                                PingLogRepository pingLogRepository,
+                                ExecutorService probeExecutor,
+                                Clock clock,
+                                Logger logger) {
+        this.appProperties = appProperties;
+        this.pingLogRepository = pingLogRepository;
+        this.probeExecutor = probeExecutor;
+        this.clock = clock;
+        this.logger = logger;
+    }
+
+    /**
+     * Start the configured simulation in the background
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        Thread simulation = new Thread(this::runConfigured, "virtual-simulation");
+        simulation.setDaemon(true);
+        simulation.start();
+    }
+
+    private void runConfigured() {
+        AppProperties.Simulation simulation = appProperties.getSimulation();
+        ScenarioProfile profile = ScenarioProfile.of(simulation.getProfile(), simulation.getProfiles());
+        Duration duration = Duration.ofSeconds(simulation.getDurationSeconds());
+        // the simulated pings end now, so they can be queried as recent pings
+        Instant start = clock.instant().truncatedTo(ChronoUnit.SECONDS).minus(duration);
+
+        logger.info("Simulating {} of pings for {} targets with profile {}",
+                duration, simulation.getTargets(), simulation.getProfile());
+        try {
+            Result result = run(targets(simulation.getTargets()), start, duration, profile,
+                    simulation.getParallelism());
+            logger.info("Simulated {} pings in {} ms ({} pings/s)", result.samples(),
+                    TimeUnit.NANOSECONDS.toMillis(result.elapsedNanos()), Math.round(result.samplesPerSecond()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Simulation interrupted");
+        }
+    }
+
+    /**
+     * Run ping sessions on a virtual clock
+     * @param targets ip addresses to ping
+     * @param start virtual time of the start of the simulation, it should be a whole second
+     * @param duration virtual time to simulate
+     * @param profile network conditions
+     * @param parallelism amount of probe executor tasks the sessions are split among
+     * @return amount of pings and real time it took
+     * @throws InterruptedException if interrupted while simulating
+     */
+    public Result run(List<String> targets, Instant start, Duration duration, ScenarioProfile profile,
+                      int parallelism) throws InterruptedException {
+        VirtualClock virtualClock = new VirtualClock(start, clock.getZone());
+        VirtualProbeScheduler scheduler = new VirtualProbeScheduler(virtualClock, probeExecutor, parallelism, logger);
+        ScenarioReachable reachable = new ScenarioReachable(profile, virtualClock);
+
+        List<ConnTest> sessions = new ArrayList<>(targets.size());
+        for (String target : targets)
+            sessions.add(new ConnTest(scheduler, target, logger, pingLogRepository, reachable));
+        sessions.forEach(ConnTest::startPingSession);
+
+        long startNanos = System.nanoTime();
+        long samples;
+        try {
+            samples = scheduler.advance(duration);
+        } finally {
+            sessions.forEach(ConnTest::stopPingSession);
+        }
+
+        return new Result(samples, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Generate simulated target addresses
+     * @param amount amount of targets
+     * @return addresses 10.0.0.1, 10.0.0.2 and so on
+     */
+    static List<String> targets(int amount) {
+        List<String> targets = new ArrayList<>(amount);
+        for (int i = 1; i <= amount; i++)
+            targets.add("10." + ((i >> 16) & 0xFF) + "." + ((i >> 8) & 0xFF) + "." + (i & 0xFF));
+
+        return targets;
+    }
+
+    /**
+     * Outcome of a simulation
+     * @param samples amount of pings simulated
+     * @param elapsedNanos real time the simulation took
+     */
+    public record Result(long samples, long elapsedNanos) {
+        public double samplesPerSecond() {
+            return elapsedNanos > 0 ? samples * 1e9 / elapsedNanos : 0;
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package com.adieser.conntest.service.writer;
+
+import com.adieser.conntest.models.PingLog;
+import com.adieser.conntest.models.binary.BinaryPingLogFormat;
+import com.adieser.conntest.models.columnar.ColumnarPingLogReader;
+import com.adieser.conntest.models.utils.CompressedPingLog;
+import com.adieser.conntest.models.utils.PingLogSegment;
+import com.opencsv.CSVWriter;
+import com.opencsv.ICSVWriter;
+import com.opencsv.bean.ColumnPositionMappingStrategy;
+import com.opencsv.bean.StatefulBeanToCsv;
+import com.opencsv.bean.StatefulBeanToCsvBuilder;
+import com.opencsv.exceptions.CsvException;
+
+import java.io.BufferedWriter;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Sink of a CSV ping log. The pings are encoded by a {@link PingLogCsvEncoder}, which writes the same lines as opencsv
+ * without allocating, or written with opencsv. The lines are written to a stream, or stored in a memory mapping of the
+ * file, a {@link MappedSegmentWriter}.
+ * <p>
+ * With an index, the active file has a sparse time index, see {@link PingLogIndexWriter}. A compressed file set as the
+ * active one is decompressed before it is appended to.
+ */
+final class CsvPingLogSink extends PingLogFileSink {
+    private final PingLogCsvEncoder encoder;
+    private final long segmentBytes;
+    private final int indexRows;
+    BufferedWriter writer;
+    PingLogIndexWriter index;
+    private Writer countingWriter;
+    private StatefulBeanToCsv<PingLog> sbc;
+    private MappedSegmentWriter segment;
+    private FileChannel syncChannel;
+    private ColumnPositionMappingStrategy<PingLog> mappingStrategy;
+
+    /**
+     * @param settings what the sinks share
+     * @param encoder encoder of the lines, null to write them with opencsv
+     * @param segmentBytes bytes the mapping of the file is grown by, 0 to write the lines to a stream
+     * @param indexRows min rows of a block of the index, 0 for no index
+     */
+    CsvPingLogSink(Settings settings, PingLogCsvEncoder encoder, long segmentBytes, int indexRows) {
+        super(settings);
+        this.encoder = encoder;
+        this.segmentBytes = segmentBytes;
+        this.indexRows = indexRows;
+    }
+
+    @Override
+    String getFormat() {
+        return "CSV";
+    }
+
+    /**
+     * Plain, segment and compressed files are CSV ping logs, binary and columnar ones are not
+     */
+    @Override
+    boolean isOfFormat(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+            if (channel.read(header, 0) < Integer.BYTES)
+                return true;
+            int magic = header.getInt(0);
+            return magic != BinaryPingLogFormat.MAGIC && magic != ColumnarPingLogReader.MAGIC;
+        }
+    }
+
+    @Override
+    void openFile(Path file) throws IOException {
+        writer = getWriter();
+        index = indexRows > 0 ? new PingLogIndexWriter(file, indexRows) : null;
+        countingWriter = new CountingWriter(writer);
+        sbc = encoder == null ? getStatefulBeanToCsv(getCsvWriter(countingWriter)) : null;
+    }
+
+    @Override
+    int append(List<PingLog> pingLogs) throws IOException, CsvException {
+        if (encoder != null) {
+            for (PingLog pingLog : pingLogs)
+                encoder.encode(pingLog);
+            encoder.writeTo(countingWriter);
+        } else {
+            sbc.write(pingLogs);
+        }
+
+        if (index != null) {
+            for (PingLog pingLog : pingLogs)
+                index.add(BinaryPingLogFormat.toEpochSecond(pingLog.getDateTime()));
+            index.mark(byteCount);
+        }
+        return pingLogs.size();
+    }
+
+    @Override
+    void count() throws IOException {
+        if (segment != null) {
+            rowCount = segment.countLines();
+            byteCount = segment.getCommittedBytes();
+            return;
+        }
+        if (!Files.exists(filePath)) {
+            rowCount = 0;
+            byteCount = 0;
+            return;
+        }
+
+        try (Stream<String> lines = Files.lines(filePath)) {
+            rowCount = lines.count();
+        }
+        byteCount = Files.size(filePath);
+    }
+
+    @Override
+    void opened() throws IOException {
+        if (index != null)
+            index.open();
+    }
+
+    @Override
+    void flushFile() throws IOException {
+        writer.flush();
+        if (index != null)
+            index.flush();
+    }
+
+    @Override
+    void syncFile() throws IOException {
+        if (segment != null)
+            segment.sync();
+        else if (syncChannel != null && syncChannel.isOpen())
+            syncChannel.force(false);
+    }
+
+    /**
+     * The mapping must not be truncated under the writer, and the stream writer appends at the new end
+     */
+    @Override
+    void clearFile() throws IOException {
+        writer.flush();
+        if (segment != null)
+            segment.clear();
+        else
+            syncChannel.truncate(0);
+        if (index != null)
+            index.clear();
+    }
+
+    /**
+     * Flush and close the writer, with its channel or mapping, which is published and trimmed, and the index
+     */
+    @Override
+    void closeFile() throws IOException {
+        BufferedWriter closing = writer;
+        PingLogIndexWriter closingIndex = index;
+        writer = null;
+        index = null;
+        segment = null;
+        syncChannel = null;
+        if (closing == null)
+            return;
+
+        try {
+            closing.flush();
+            if (closingIndex != null)
+                closingIndex.flush();
+        } finally {
+            // the stream writer closes the channel with it
+            closing.close();
+        }
+    }
+
+    @Override
+    public boolean isMapped() {
+        return segment != null;
+    }
+
+    /**
+     * Method to get a CSVWriter instance.
+     * @param writer The writer to be used by the CSVWriter.
+     * @return The CSVWriter instance.
+     */
+    CSVWriter getCsvWriter(Writer writer) {
+        return new CSVWriter(writer,
+                ICSVWriter.DEFAULT_SEPARATOR,
+                ICSVWriter.NO_QUOTE_CHARACTER,
+                ICSVWriter.DEFAULT_ESCAPE_CHARACTER,
+                ICSVWriter.DEFAULT_LINE_END
+        );
+    }
+
+    /**
+     * Method to get a BufferedWriter instance. With a segment size it writes to a {@link MappedSegmentWriter},
+     * otherwise to a stream, and a segment written by an earlier run is converted back to a plain file first.
+     * @return The BufferedWriter instance.
+     * @throws IOException If an I/O error occurs.
+     */
+    BufferedWriter getWriter() throws IOException {
+        if (CompressedPingLog.isCompressed(filePath))
+            SegmentCompressor.decompress(filePath);
+
+        if (segmentBytes > 0) {
+            segment = new MappedSegmentWriter(filePath, segmentBytes);
+            return new BufferedWriter(segment);
+        }
+
+        // a segment left by the mmap output would be appended to after its padding, where readers do not look
+        if (PingLogSegment.isSegment(filePath))
+            MappedSegmentWriter.toPlain(filePath);
+
+        // the channel is kept to force the file to the disk
+        syncChannel = FileChannel.open(filePath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        return new BufferedWriter(Channels.newWriter(syncChannel, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Method to get a StatefulBeanToCsv instance.
+     * @param csvWriter The CSVWriter to be used by the StatefulBeanToCsv.
+     * @return The StatefulBeanToCsv instance.
+     */
+    StatefulBeanToCsv<PingLog> getStatefulBeanToCsv(CSVWriter csvWriter) {
+        return new StatefulBeanToCsvBuilder<PingLog>(csvWriter)
+                .withMappingStrategy(getMappingStrategy())
+                .build();
+    }
+
+    /**
+     * The mapping of {@link PingLog} to columns is built once and shared by the writers of every file, so neither the
+     * first ping nor the first ping after a rotation pays for introspecting it
+     * @return the mapping strategy
+     */
+    ColumnPositionMappingStrategy<PingLog> getMappingStrategy() {
+        if (mappingStrategy == null) {
+            ColumnPositionMappingStrategy<PingLog> strategy = new ColumnPositionMappingStrategy<>();
+            strategy.setType(PingLog.class);
+            mappingStrategy = strategy;
+        }
+
+        return mappingStrategy;
+    }
+
+    /**
+     * Writer that adds the characters written to the byte counter. The pings are ASCII, one character is one byte.
+     */
+    private final class CountingWriter extends FilterWriter {
+        private CountingWriter(Writer out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            out.write(c);
+            byteCount++;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            out.write(cbuf, off, len);
+            byteCount += len;
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            out.write(str, off, len);
+            byteCount += len;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.adieser.conntest.service.writer;
+
+import java.util.Locale;
+
+/**
+ * When the {@link FileWriterService} forces the ping log to the disk. Every mode flushes the written pings to the
+ * operating system after every batch; forcing them to the disk is what makes them survive a power loss.
+ */
+public enum Durability {
+    /**
+     * Never forced, the operating system writes the pings back when it decides to
+     */
+    NONE,
+    /**
+     * Forced after every batch
+     */
+    BATCH,
+    /**
+     * Forced after a batch if {@code conntest.writer-sync-interval-millis} have passed since the last time, and when
+     * the file is rotated or closed
+     */
+    INTERVAL,
+    /**
+     * Forced when the file is rotated or closed
+     */
+    ROTATION;
+
+    /**
+     * Find a mode by its property value
+     * @param name none, batch, interval or rotation. Case-insensitive
+     * @return the mode, {@link #NONE} if the name is not set
+     * @throws IllegalArgumentException if there is no mode with that name
+     */
+    public static Durability of(String name) {
+        if (name == null || name.isBlank())
+            return NONE;
+
+        return valueOf(name.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+    }
+}
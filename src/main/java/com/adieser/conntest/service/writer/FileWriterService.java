@@ -2,56 +2,174 @@ package com.adieser.conntest.service.writer;
 
 import com.adieser.conntest.configurations.AppProperties;
 import com.adieser.conntest.models.PingLog;
-import com.opencsv.CSVWriter;
-import com.opencsv.ICSVWriter;
-import com.opencsv.bean.StatefulBeanToCsv;
-import com.opencsv.bean.StatefulBeanToCsvBuilder;
-import com.opencsv.exceptions.CsvDataTypeMismatchException;
-import com.opencsv.exceptions.CsvRequiredFieldEmptyException;
+import com.adieser.conntest.models.binary.BinaryPingLogFormat;
+import com.adieser.conntest.models.binary.BinaryPingLogWriter;
+import com.adieser.conntest.models.columnar.ColumnarPingLogReader;
+import com.adieser.conntest.models.columnar.ColumnarPingLogWriter;
+import com.adieser.conntest.models.utils.CompressedPingLog;
+import com.adieser.conntest.models.utils.PingLogShards;
+import com.opencsv.exceptions.CsvException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
 import org.springframework.stereotype.Service;
 
-import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.Writer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
-import java.nio.file.StandardOpenOption;
 import java.time.Clock;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Stream;
 
+import static com.adieser.conntest.configurations.PingLogRepositoryConfiguration.BINARY_FORMAT;
+import static com.adieser.conntest.configurations.PingLogRepositoryConfiguration.COLUMNAR_FORMAT;
+import static com.adieser.conntest.configurations.PingLogRepositoryConfiguration.TARGET_SHARDING;
 import static com.adieser.conntest.models.CsvPingLogRepository.SAVE_PING_ERROR_MSG;
 
 /**
  * Service to write pings to a file.
+ * <p>
+ * With {@code conntest.writer-mode = batch} the pings are group-committed: everything available in the queue is
+ * drained, up to {@code conntest.writer-batch-size} pings or {@code conntest.writer-batch-max-delay-millis} after the
+ * first one, written as a whole and flushed once. Otherwise every ping is written and flushed on its own.
+ * <p>
+ * The pings are written to a {@link PingLogSink} chosen once, when the service is built, from the format, the sharding
+ * and the output of the ping log. The sinks of a single file track its rows and bytes in memory and rotate it on those
+ * counters, see {@link PingLogFileSink}. Every rotation is told to the {@link RotationListener}s on the thread that
+ * writes the file, so what is kept from the active file, as the memory and the running statistics, restarts with it.
+ * <p>
+ * With {@code conntest.writer-queue-capacity} the queue is bounded, and {@code conntest.writer-overflow-policy} decides
+ * what happens to a ping submitted while it is full, see {@link OverflowPolicy}. Spilled pings are written after the
+ * pings in the queue, so the pings of a target keep their order.
+ * <p>
+ * With {@code conntest.writer-queue = ring} the queue is a lock-free {@link PingLogRingBuffer} instead of a
+ * {@link LinkedBlockingQueue}, and {@code conntest.writer-wait-strategy} decides how the threads wait on it. The ring
+ * is always bounded, and cannot drop its oldest ping, so {@code drop-oldest} drops the newest one instead.
+ * <p>
+ * With {@code conntest.writer-encoder = direct} the pings are encoded by a {@link PingLogCsvEncoder}, which writes the
+ * same lines as opencsv without allocating. Otherwise they are written with opencsv. With
+ * {@code conntest.writer-output = mmap} the lines are stored in a memory mapping of the file, a
+ * {@link MappedSegmentWriter}, instead of being written to a stream. See {@link CsvPingLogSink}.
+ * <p>
+ * {@code conntest.writer-durability} decides when the file is forced to the disk, see {@link Durability}. The time
+ * spent forcing it is recorded as {@code conntest.writer.sync}.
+ * <p>
+ * With {@code conntest.pinglog-format = binary} the pings are written as records of a binary file instead, by a
+ * {@link BinaryPingLogWriter}. When the dictionary of its header is full, the file is rotated. With
+ * {@code conntest.pinglog-format = columnar} they are written in compressed blocks by target, by a
+ * {@link ColumnarPingLogWriter}, which keeps the pings of a block until it is full. See {@link RecordPingLogSink}.
+ * An active file found in another format on startup is moved aside as a rotated file.
+ * <p>
+ * With {@code conntest.pinglog-sharding = target} the CSV lines of every target are written to a file of its own by a
+ * {@link ShardedPingLogWriter}, on {@code conntest.writer-partitions} threads if set. The files are rotated and forced
+ * to the disk by that writer, the queue and its overflow policy stay the same.
+ * <p>
+ * With {@code conntest.rotated-compression = deflate} the rotated CSV files are compressed in the background by a
+ * {@link SegmentCompressor}, keeping their name, and so are the ones left plain by an earlier run. It is off by
+ * default, a compressed file is no longer a CSV file for other tools. A compressed file set as the active one is
+ * decompressed before it is appended to.
+ * <p>
+ * {@code conntest.rotation-interval} also rotates the file when the hour or the day changes, see
+ * {@link RotationInterval}. The rotated files are numbered after the ones already in their directory, and the
+ * {@link RetentionPolicy} deletes the old ones in the background after every rotation and on startup. With
+ * {@code conntest.compaction-target-mbytes} set, the small rotated files are then merged by the
+ * {@link SegmentCompactor}. The rotated files are maintained on a thread of their own, by a single task at a time that
+ * takes every file rotated since the previous one and only goes through their directories.
+ * <p>
+ * With {@code conntest.index-interval-rows} set, the active CSV file has a sparse time index, see
+ * {@link PingLogIndexWriter}, so its range queries only scan the blocks of their range. A rotated file is not queried,
+ * so its index is not kept.
  */
 @Slf4j
 @Service
-public class FileWriterService {
+public class FileWriterService implements MeterBinder {
 
     public static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss");
     public static final String ROTATED_FILENAME_FORMAT = "ping_%s_%d.log";
+    public static final String BATCH_WRITER_MODE = "batch";
+    public static final String RING_WRITER_QUEUE = "ring";
+    public static final String DIRECT_WRITER_ENCODER = "direct";
+    public static final String MMAP_WRITER_OUTPUT = "mmap";
+    public static final String DEFLATE_COMPRESSION = "deflate";
+    static final int DEFAULT_RING_CAPACITY = 1 << 16;
+    static final int DEFAULT_COLUMNAR_BLOCK_SIZE = 1024;
+    static final long DEFAULT_SEGMENT_BYTES = 16L * 1024 * 1024;
+    static final long DEFAULT_SYNC_INTERVAL_MILLIS = 1000;
+    static final int DEFAULT_COMPACTION_MIN_FILES = 8;
+    private static final long MAINTENANCE_TIMEOUT_SECONDS = 10;
+    private static final long RING_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long WRITE_RETRY_MILLIS = 1000;
+    private static final long DROP_WARNING_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
 
     private final Logger logger;
     protected BlockingQueue<PingLog> queue;
-    BufferedWriter writer;
     Path filePath;
-    int fileCount;
     protected volatile boolean running;
     private final ExecutorService threadPoolExecutor;
     private final AppProperties appProperties;
     Clock clock;
-    private StatefulBeanToCsv<PingLog> sbc;
+    private final Durability durability;
+    private volatile Timer syncTimer;
+    private final boolean sharded;
+    PingLogSink sink;
+    private final SegmentCompressor compressor;
+    private final RetentionPolicy retention;
+    private final SegmentCompactor compactor;
+    Executor maintenanceExecutor;
+    /** Time the writer waits after a failed write before going on */
+    long writeRetryMillis = WRITE_RETRY_MILLIS;
+    private final List<RotationListener> rotationListeners = new CopyOnWriteArrayList<>();
+    /** Files rotated and not yet maintained, guarded by itself, as the two flags */
+    private final Set<Path> rotatedPending = new LinkedHashSet<>();
+    private boolean maintainingAll;
+    private boolean maintenanceScheduled;
+
+    /**
+     * Lock of the sink: it is written by the writing thread, and also cleared, read, forced, reopened and closed by
+     * other threads
+     */
+    private final Object fileLock = new Object();
+    /**
+     * Set once the sink is closed for good, guarded by the file lock
+     */
+    private boolean closed;
+    private final List<PingLog> batch = new ArrayList<>();
+    private volatile DistributionSummary batchSizeSummary;
+    private volatile Timer flushTimer;
+    private volatile Timer submitTimer;
+    private final PingLogRingBuffer ring;
+    private final OverflowPolicy overflowPolicy;
+    private final SpillBuffer spillBuffer;
+    private final AtomicLong highWaterMark = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    /**
+     * Time of the next warning about the dropped pings, at most one per interval while they are dropped
+     */
+    private final AtomicLong nextDropWarningNanos = new AtomicLong(System.nanoTime());
+    private final AtomicLong droppedWarned = new AtomicLong();
+    private final LongAdder spilled = new LongAdder();
 
     public FileWriterService(Logger logger,
                              ExecutorService threadPoolExecutor,
@@ -61,20 +179,181 @@ public class FileWriterService {
         this.threadPoolExecutor = threadPoolExecutor;
         this.appProperties = appProperties;
         this.clock = clock;
-        this.queue = new LinkedBlockingQueue<>();
+        Integer capacity = appProperties.getWriterQueueCapacity();
+        boolean bounded = capacity != null && capacity > 0;
+        if (RING_WRITER_QUEUE.equalsIgnoreCase(appProperties.getWriterQueue())) {
+            this.ring = new PingLogRingBuffer(bounded ? capacity : DEFAULT_RING_CAPACITY,
+                    WaitStrategy.of(appProperties.getWriterWaitStrategy()));
+            this.queue = new LinkedBlockingQueue<>();
+            OverflowPolicy policy = OverflowPolicy.of(appProperties.getWriterOverflowPolicy());
+            this.overflowPolicy = policy == OverflowPolicy.DROP_OLDEST ? OverflowPolicy.DROP_NEWEST : policy;
+        } else {
+            this.ring = null;
+            this.queue = bounded ? new LinkedBlockingQueue<>(capacity) : new LinkedBlockingQueue<>();
+            this.overflowPolicy = bounded ? OverflowPolicy.of(appProperties.getWriterOverflowPolicy()) : null;
+        }
+        this.spillBuffer = overflowPolicy == OverflowPolicy.SPILL ? new SpillBuffer() : null;
+        this.durability = Durability.of(appProperties.getWriterDurability());
+        boolean recordFormat = BINARY_FORMAT.equalsIgnoreCase(appProperties.getPinglogFormat())
+                || COLUMNAR_FORMAT.equalsIgnoreCase(appProperties.getPinglogFormat());
+        this.sharded = !recordFormat && TARGET_SHARDING.equalsIgnoreCase(appProperties.getPinglogSharding());
+        this.sink = createSink();
+        Integer blockKbytes = appProperties.getCompressionBlockKbytes();
+        this.compressor = !recordFormat && DEFLATE_COMPRESSION.equalsIgnoreCase(appProperties.getRotatedCompression())
+                ? new SegmentCompressor(threadPoolExecutor, blockKbytes != null && blockKbytes > 0
+                        ? blockKbytes * 1024 : CompressedPingLog.DEFAULT_BLOCK_BYTES)
+                : null;
+        Long retentionDays = appProperties.getRetentionDays();
+        Long retentionMaxMbytes = appProperties.getRetentionMaxMbytes();
+        this.retention = new RetentionPolicy(retentionDays != null ? retentionDays : 0,
+                retentionMaxMbytes != null ? retentionMaxMbytes * 1024 * 1024 : 0);
+        Long compactionTargetMbytes = appProperties.getCompactionTargetMbytes();
+        Integer compactionMinFiles = appProperties.getCompactionMinFiles();
+        Long compactionRateKbytes = appProperties.getCompactionRateKbytes();
+        this.compactor = !recordFormat && compactionTargetMbytes != null && compactionTargetMbytes > 0
+                ? new SegmentCompactor(compactionTargetMbytes * 1024 * 1024,
+                        compactionMinFiles != null ? compactionMinFiles : DEFAULT_COMPACTION_MIN_FILES,
+                        compactionRateKbytes != null ? compactionRateKbytes * 1024 : 0,
+                        compressor != null ? compressor.getBlockBytes() : 0)
+                : null;
+        this.maintenanceExecutor = isMaintainingRotated() ? Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ping-log-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
         this.running = true;
-        this.fileCount = 1;
 
         setFilePathFromProperties();
     }
 
+    /**
+     * @return the sink of the format, sharding and output of the ping log
+     */
+    private PingLogSink createSink() {
+        Long syncIntervalMillis = appProperties.getWriterSyncIntervalMillis();
+        PingLogSink.Settings settings = new PingLogSink.Settings(appProperties, durability,
+                TimeUnit.MILLISECONDS.toNanos(syncIntervalMillis != null && syncIntervalMillis > 0
+                        ? syncIntervalMillis : DEFAULT_SYNC_INTERVAL_MILLIS),
+                () -> clock, this::recordSync, this::onRotated);
+        if (BINARY_FORMAT.equalsIgnoreCase(appProperties.getPinglogFormat())) {
+            Integer headerKbytes = appProperties.getBinaryHeaderKbytes();
+            int headerSize = headerKbytes != null && headerKbytes > 0
+                    ? headerKbytes * 1024 : BinaryPingLogFormat.DEFAULT_HEADER_SIZE;
+            return new RecordPingLogSink(settings, BINARY_FORMAT, BinaryPingLogFormat.MAGIC,
+                    file -> new BinaryPingLogWriter(file, headerSize));
+        }
+        if (COLUMNAR_FORMAT.equalsIgnoreCase(appProperties.getPinglogFormat())) {
+            Integer blockSize = appProperties.getColumnarBlockSize();
+            int columnarBlockSize = blockSize != null && blockSize > 0 ? blockSize : DEFAULT_COLUMNAR_BLOCK_SIZE;
+            return new RecordPingLogSink(settings, COLUMNAR_FORMAT, ColumnarPingLogReader.MAGIC,
+                    file -> new ColumnarPingLogWriter(file, columnarBlockSize));
+        }
+        if (sharded)
+            return new ShardedPingLogWriter(settings);
+
+        PingLogCsvEncoder encoder = DIRECT_WRITER_ENCODER.equalsIgnoreCase(appProperties.getWriterEncoder())
+                ? new PingLogCsvEncoder() : null;
+        Integer segmentMbytes = appProperties.getWriterSegmentMbytes();
+        long segmentBytes = !MMAP_WRITER_OUTPUT.equalsIgnoreCase(appProperties.getWriterOutput()) ? 0
+                : segmentMbytes != null && segmentMbytes > 0 ? segmentMbytes * 1024L * 1024L : DEFAULT_SEGMENT_BYTES;
+        Integer indexIntervalRows = appProperties.getIndexIntervalRows();
+        return new CsvPingLogSink(settings, encoder, segmentBytes,
+                indexIntervalRows != null && indexIntervalRows > 0 ? indexIntervalRows : 0);
+    }
+
     /**
      * Method to add data to the queue.
+     * If the queue is full the overflow policy applies, so this may block, drop an older ping or spill the data.
      * @param data The data to be added to the queue.
+     * @return true if the data was accepted, false if it was dropped
      */
-    public void submit(PingLog data) {
-        if(!queue.offer(data))
-            log.error("Failed to add data to the queue: {}", data);
+    public boolean submit(PingLog data) {
+        long start = System.nanoTime();
+        boolean accepted;
+        if (overflowPolicy == null) {
+            accepted = offer(data);
+        } else {
+            accepted = switch (overflowPolicy) {
+                case BLOCK -> offer(data) || put(data);
+                case DROP_OLDEST -> offerDroppingOldest(data);
+                case DROP_NEWEST -> offer(data);
+                case SPILL -> offerOrSpill(data);
+            };
+        }
+
+        if (accepted) {
+            int depth = getQueueDepth();
+            if (depth > highWaterMark.get())
+                highWaterMark.accumulateAndGet(depth, Math::max);
+        } else {
+            dropped.increment();
+            warnDropped();
+        }
+
+        Timer timer = submitTimer;
+        if (timer != null)
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return accepted;
+    }
+
+    private boolean offer(PingLog data) {
+        return ring != null ? ring.tryPublish(data) : queue.offer(data);
+    }
+
+    private boolean put(PingLog data) {
+        try {
+            if (ring != null)
+                ring.publish(data);
+            else
+                queue.put(data);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private boolean offerDroppingOldest(PingLog data) {
+        while (!queue.offer(data)) {
+            if (queue.poll() != null) {
+                dropped.increment();
+                warnDropped();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Warn about the pings dropped, at most once per {@link #DROP_WARNING_INTERVAL_NANOS}, so an overloaded writer
+     * does not flood the log. Every one of them is counted by {@code conntest.writer.queue.dropped}.
+     */
+    private void warnDropped() {
+        long now = System.nanoTime();
+        long next = nextDropWarningNanos.get();
+        if (now - next < 0 || !nextDropWarningNanos.compareAndSet(next, now + DROP_WARNING_INTERVAL_NANOS))
+            return;
+
+        long total = dropped.sum();
+        long sinceWarned = total - droppedWarned.getAndSet(total);
+        log.warn("{} pings dropped because the writer queue is full, {} in total", sinceWarned, total);
+    }
+
+    /**
+     * Once something is spilled, the following pings are spilled too until the writer drains the spill buffer, so
+     * they are not written before the spilled ones
+     */
+    private boolean offerOrSpill(PingLog data) {
+        if (spillBuffer.isEmpty() && offer(data))
+            return true;
+
+        try {
+            spillBuffer.append(data);
+            spilled.increment();
+            return true;
+        } catch (IOException e) {
+            log.error("Failed to spill data: {}", e.getMessage());
+            return false;
+        }
     }
 
     /**
@@ -84,103 +363,462 @@ public class FileWriterService {
     @PostConstruct
     public void init() throws IOException {
         createPingLogsDirectory();
-        setWriter();
+        openSink();
         threadPoolExecutor.execute(this::startWriting);
+        requestMaintenance(null);
+    }
+
+    private boolean isMaintainingRotated() {
+        return compressor != null || retention.isEnabled() || compactor != null;
+    }
+
+    /**
+     * Called with every file rotated, by this service or by the sharded writer, to notify the listeners and maintain
+     * the rotated files in the background
+     * @param ipAddress target of the file when sharded, null otherwise
+     */
+    private void onRotated(Path rotatedFile, String ipAddress) {
+        for (RotationListener listener : rotationListeners) {
+            try {
+                listener.rotated(ipAddress);
+            } catch (RuntimeException e) {
+                log.error("Rotation listener failed: {}", e.getMessage());
+            }
+        }
+        requestMaintenance(rotatedFile);
+    }
+
+    /**
+     * Register a listener of the rotations of the active files
+     * @param listener called on the thread writing the file, right after it is rotated
+     */
+    public void addRotationListener(RotationListener listener) {
+        rotationListeners.add(listener);
+    }
+
+    /**
+     * Schedule a maintenance of the rotated files, unless one is waiting to start, which takes the file too
+     * @param rotatedFile file just rotated, null to maintain all the rotated files, on startup
+     */
+    private void requestMaintenance(Path rotatedFile) {
+        if (maintenanceExecutor == null)
+            return;
+
+        synchronized (rotatedPending) {
+            if (rotatedFile != null)
+                rotatedPending.add(rotatedFile);
+            else
+                maintainingAll = true;
+            if (maintenanceScheduled)
+                return;
+            maintenanceScheduled = true;
+        }
+        maintenanceExecutor.execute(this::maintainRotated);
+    }
+
+    /**
+     * Compress the files rotated since the last maintenance, apply the retention policy and merge the small rotated
+     * files in their directories. On startup every directory is maintained, and the files left plain, as the ones
+     * rotated before the application stopped, are compressed. The retention policy limited by size goes through every
+     * directory, since it adds up all the rotated files.
+     */
+    private void maintainRotated() {
+        List<Path> rotatedFiles;
+        boolean all;
+        synchronized (rotatedPending) {
+            rotatedFiles = new ArrayList<>(rotatedPending);
+            rotatedPending.clear();
+            all = maintainingAll;
+            maintainingAll = false;
+            maintenanceScheduled = false;
+        }
+
+        try {
+            if (compressor != null) {
+                for (Path rotatedFile : rotatedFiles)
+                    compressor.compressQuietly(rotatedFile);
+            }
+            List<Path> directories = all ? getRotationDirectories() : rotatedFiles.stream()
+                    .map(file -> file.toAbsolutePath().getParent())
+                    .distinct()
+                    .toList();
+            if (retention.isEnabled()) {
+                retention.apply(retention.isSizeLimited() && !all ? getRotationDirectories() : directories,
+                        LocalDateTime.now(clock));
+            }
+            if (compactor != null) {
+                for (Path directory : directories)
+                    compactor.compact(directory, filePath);
+            }
+            if (compressor != null && all) {
+                for (Path directory : directories)
+                    compressor.compressRotated(directory);
+            }
+        } catch (IOException e) {
+            log.error("Failed to maintain the rotated files: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @return the directory of the active file, or the ones of the targets when sharded
+     */
+    private List<Path> getRotationDirectories() throws IOException {
+        if (!sharded)
+            return List.of(filePath.toAbsolutePath().getParent());
+
+        Path shardsDirectory = PingLogShards.getShardsDirectory(appProperties.getPingLogsPath());
+        if (!Files.isDirectory(shardsDirectory))
+            return List.of();
+        try (Stream<Path> directories = Files.list(shardsDirectory)) {
+            return directories.filter(Files::isDirectory).toList();
+        }
     }
 
     /**
      * Method to write data to the file asynchronously.
      * It checks the file size and rotates the file if necessary.
-     * It also handles the InterruptedException and IOException.
+     * A write that fails, as on a full disk, loses its pings and reopens the file, and the loop goes on, so the queue
+     * keeps being drained. It ends when the thread is interrupted.
      */
     protected void startWriting() {
+        boolean batching = BATCH_WRITER_MODE.equalsIgnoreCase(appProperties.getWriterMode());
         try {
             while (running) { // Controls the execution of the loop
-                PingLog data = queue.take();
-                checkFileSizeAndRotate();
-                sbc.write(data);
-                writer.flush();
+                try {
+                    if (batching)
+                        writeBatch();
+                    else
+                        writeRecord();
+                } catch (IOException | CsvException e) {
+                    log.error(SAVE_PING_ERROR_MSG, e);
+                    recoverSink();
+                }
             }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             log.error("File writing thread interrupted: {}", e.getMessage());
-        } catch (IOException | CsvRequiredFieldEmptyException | CsvDataTypeMismatchException e) {
-            log.error(SAVE_PING_ERROR_MSG, e);
         }
     }
 
     /**
-     * Method to check the file size and rotate the file if necessary.
-     * It rotates the file if the file size is greater than the maximum file size.
-     * It also handles the IOException.
+     * Drop the pings of the failed write, reopen the active file and wait a moment, so a failure that lasts, as a
+     * full disk, does not keep the writer spinning
      */
-    protected void checkFileSizeAndRotate() throws IOException {
-        try(final Stream<String> stream =
-                    Files.lines(Path.of(appProperties.getPingLogsPath() + "/" + appProperties.getPinglogsFilename()))
-        ) {
-            if (stream.count() >= appProperties.getFileMaxSizeRows()) {
-                writer.close();
-                String timestamp = LocalDateTime.now(clock).format(FORMATTER);
-
-                Path rotatedFile = Paths.get(filePath.getParent().toString() + "/" +
-                        String.format(ROTATED_FILENAME_FORMAT, timestamp, fileCount++));
-                Files.move(filePath, rotatedFile, StandardCopyOption.REPLACE_EXISTING);
+    private void recoverSink() throws InterruptedException {
+        if (!batch.isEmpty())
+            log.warn("{} pings were not written", batch.size());
+        batch.clear();
+        if (ring != null)
+            ring.release();
 
-                setWriter();
+        synchronized (fileLock) {
+            if (closed)
+                return;
 
-                log.info("Rotated file: {}", rotatedFile);
+            try {
+                sink.open(filePath);
+            } catch (IOException e) {
+                log.error("Failed to reopen the ping log: {}", e.getMessage());
             }
         }
+        Thread.sleep(writeRetryMillis);
+    }
+
+    /**
+     * Write the next ping in the queue and flush it
+     */
+    void writeRecord() throws InterruptedException, IOException, CsvException {
+        batch.clear();
+        fillBatch(1, 0);
+        if (batch.isEmpty())
+            return;
+
+        synchronized (fileLock) {
+            // the pings taken once the file is closed are lost, as the ones left in the queue
+            if (closed)
+                return;
+
+            sink.write(batch);
+        }
+        batch.clear();
+        flush(1);
+        if (ring != null)
+            ring.release();
+    }
+
+    /**
+     * Write the pings in the queue as a single batch and flush them once. It waits for the first ping, then drains
+     * the queue until the batch is full or the max delay since the first ping has elapsed.
+     */
+    void writeBatch() throws InterruptedException, IOException, CsvException {
+        int batchSize = Math.max(1, appProperties.getWriterBatchSize());
+        batch.clear();
+        fillBatch(batchSize, TimeUnit.MILLISECONDS.toNanos(appProperties.getWriterBatchMaxDelayMillis()));
+        if (batch.isEmpty())
+            return;
+
+        synchronized (fileLock) {
+            if (closed)
+                return;
+
+            sink.write(batch);
+        }
+        flush(batch.size());
+        batch.clear();
+        if (ring != null)
+            ring.release();
+    }
+
+    /**
+     * Fill the batch with the next pings. If there are spilled pings they are taken without waiting, after the ones
+     * in the queue, which are older.
+     * @param batchSize max amount of pings
+     * @param maxDelayNanos max time to wait for more pings after the first one
+     */
+    private void fillBatch(int batchSize, long maxDelayNanos) throws InterruptedException, IOException {
+        if (ring != null) {
+            fillBatchFromRing(batchSize, maxDelayNanos);
+            return;
+        }
+
+        if (spillBuffer != null && !spillBuffer.isEmpty()) {
+            queue.drainTo(batch, batchSize);
+            spillBuffer.drainTo(batch, batchSize - batch.size());
+            return;
+        }
+
+        batch.add(queue.take());
+        long deadline = System.nanoTime() + maxDelayNanos;
+
+        queue.drainTo(batch, batchSize - batch.size());
+        while (batch.size() < batchSize) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0)
+                break;
+
+            PingLog next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null)
+                break;
+            batch.add(next);
+            queue.drainTo(batch, batchSize - batch.size());
+        }
+    }
+
+    /**
+     * Fill the batch with slots of the ring, they are released once the batch is written. It gives up waiting for the
+     * first ping after a while, so the write loop can check if it was stopped.
+     */
+    private void fillBatchFromRing(int batchSize, long maxDelayNanos) throws InterruptedException, IOException {
+        if (spillBuffer != null && !spillBuffer.isEmpty()) {
+            ring.drainTo(batch, batchSize);
+            spillBuffer.drainTo(batch, batchSize - batch.size());
+            return;
+        }
+
+        if (!ring.await(RING_POLL_NANOS))
+            return;
+
+        long deadline = System.nanoTime() + maxDelayNanos;
+        ring.drainTo(batch, batchSize);
+        while (batch.size() < batchSize && ring.await(deadline - System.nanoTime()))
+            ring.drainTo(batch, batchSize - batch.size());
+    }
+
+    private void flush(int records) throws IOException {
+        long flushNanos;
+        synchronized (fileLock) {
+            if (closed)
+                return;
+
+            long start = System.nanoTime();
+            sink.flush();
+            flushNanos = System.nanoTime() - start;
+            sink.syncIfDue();
+        }
+
+        DistributionSummary summary = batchSizeSummary;
+        Timer timer = flushTimer;
+        if (summary != null && timer != null) {
+            summary.record(records);
+            timer.record(flushNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void recordSync(long nanos) {
+        Timer timer = syncTimer;
+        if (timer != null)
+            timer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        batchSizeSummary = DistributionSummary.builder("conntest.writer.batch.size")
+                .description("Pings written per flush")
+                .register(registry);
+        flushTimer = Timer.builder("conntest.writer.flush")
+                .description("Time to flush a batch of pings to the ping log file")
+                .register(registry);
+        syncTimer = Timer.builder("conntest.writer.sync")
+                .description("Time to force the ping log file to the disk")
+                .tag("durability", durability.name().toLowerCase())
+                .register(registry);
+        submitTimer = Timer.builder("conntest.writer.submit")
+                .description("Time a ping session spends handing a ping to the writer")
+                .register(registry);
+        Gauge.builder("conntest.writer.queue.depth", this, FileWriterService::getQueueDepth)
+                .description("Pings waiting in the writer queue")
+                .register(registry);
+        Gauge.builder("conntest.writer.queue.high.water", highWaterMark, AtomicLong::get)
+                .description("Max amount of pings that have been waiting in the writer queue")
+                .register(registry);
+        FunctionCounter.builder("conntest.writer.queue.dropped", dropped, LongAdder::sum)
+                .description("Pings dropped because the writer queue was full")
+                .tag("policy", overflowPolicy != null ? overflowPolicy.name().toLowerCase() : "unbounded")
+                .register(registry);
+        FunctionCounter.builder("conntest.writer.retention.deleted", retention, RetentionPolicy::getDeleted)
+                .description("Rotated files deleted by the retention policy")
+                .register(registry);
+        if (compactor != null) {
+            FunctionCounter.builder("conntest.writer.compaction.merged", compactor, SegmentCompactor::getMerged)
+                    .description("Rotated files merged into larger ones")
+                    .register(registry);
+        }
+        if (compressor != null) {
+            FunctionCounter.builder("conntest.writer.compression.raw.bytes", compressor, SegmentCompressor::getRawBytes)
+                    .description("Bytes of the rotated files compressed")
+                    .register(registry);
+            FunctionCounter.builder("conntest.writer.compression.compressed.bytes", compressor,
+                            SegmentCompressor::getCompressedBytes)
+                    .description("Bytes of the rotated files once compressed")
+                    .register(registry);
+        }
+        if (spillBuffer != null) {
+            FunctionCounter.builder("conntest.writer.queue.spilled", spilled, LongAdder::sum)
+                    .description("Pings spilled to disk because the writer queue was full")
+                    .register(registry);
+            Gauge.builder("conntest.writer.spill.depth", spillBuffer, SpillBuffer::size)
+                    .description("Spilled pings waiting to be written")
+                    .register(registry);
+        }
+    }
+
+    /**
+     * Empty the active file. The binary and columnar files and the mapped segments must be cleared through their
+     * writer, which keeps their header and drops its pending pings.
+     * @throws IOException if the file could not be written
+     */
+    public void clear() throws IOException {
+        synchronized (fileLock) {
+            sink.clear();
+        }
+    }
+
+    /**
+     * @return pings written but not in the file yet, as the ones of an incomplete columnar block
+     */
+    public List<PingLog> getPendingPingLogs() {
+        synchronized (fileLock) {
+            return sink.getPending();
+        }
+    }
+
+    /**
+     * Open something on the active file, such as a reader, along with the pings written but not in the file yet,
+     * holding the file lock. No ping is written meanwhile, so every ping is either in the file as it is when opened, or
+     * pending, never in both nor in none.
+     * @param opener opens a reader of the file as it is when opened, given the pending pings
+     * @return what the opener returns
+     * @throws IOException if the opener failed
+     */
+    public <T> T openWithPending(PendingOpener<T> opener) throws IOException {
+        synchronized (fileLock) {
+            return opener.open(sink.getPending());
+        }
+    }
+
+    /**
+     * @return amount of pings waiting in the queue
+     */
+    public int getQueueDepth() {
+        return ring != null ? ring.size() : queue.size();
+    }
+
+    /**
+     * @return max amount of pings that have been waiting in the queue
+     */
+    public long getHighWaterMark() {
+        return highWaterMark.get();
+    }
+
+    /**
+     * @return amount of pings dropped because the queue was full
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return amount of pings spilled to disk because the queue was full
+     */
+    public long getSpilled() {
+        return spilled.sum();
+    }
+
+    /**
+     * Make the writer count the rows and bytes of the file again before its next write. Used when the file is
+     * modified by someone else, e.g. when it is cleared.
+     */
+    public void recount() {
+        sink.recount();
     }
 
     /**
      * Method to clean up resources before bean destruction.
-     * It closes the file and stops the write loop.
+     * It stops the write loop, and closes the file holding the file lock, so the writing thread is not in the middle of
+     * a write. Whatever that thread takes afterwards is not written.
      */
     @PreDestroy
     public void cleanUp() {
         running = false; // Stops the loop in startWriting()
-        if (writer != null) {
+        synchronized (fileLock) {
+            closed = true;
             try {
                 log.info("Closing file before bean destruction...");
-                writer.close();
+                sink.close();
             } catch (IOException e) {
                 log.error("Error closing the file: {}", e.getMessage());
             }
         }
+        if (spillBuffer != null) {
+            try {
+                if (!spillBuffer.isEmpty())
+                    log.warn("Discarding {} spilled pings", spillBuffer.size());
+                spillBuffer.close();
+            } catch (IOException e) {
+                log.error("Error deleting the spill file: {}", e.getMessage());
+            }
+        }
+        if (maintenanceExecutor instanceof ExecutorService executor) {
+            // a maintenance left running would be writing files while the application stops
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(MAINTENANCE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    log.warn("Rotated files maintenance did not finish in {} seconds", MAINTENANCE_TIMEOUT_SECONDS);
+                    executor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
     }
 
     /**
-     * Method to get a CSVWriter instance.
-     * @param writer The writer to be used by the CSVWriter.
-     * @return The CSVWriter instance.
-     */
-    CSVWriter getCsvWriter(Writer writer) {
-        return new CSVWriter(writer,
-                ICSVWriter.DEFAULT_SEPARATOR,
-                ICSVWriter.NO_QUOTE_CHARACTER,
-                ICSVWriter.DEFAULT_ESCAPE_CHARACTER,
-                ICSVWriter.DEFAULT_LINE_END
-        );
-    }
-
-    /**
-     * Method to get a BufferedWriter instance.
-     * @return The BufferedWriter instance.
-     * @throws IOException If an I/O error occurs.
-     */
-    protected BufferedWriter getWriter() throws IOException {
-        return Files.newBufferedWriter(filePath, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
-    }
-
-    /**
-     * Method to get a StatefulBeanToCsv instance.
-     * @param csvWriter The CSVWriter to be used by the StatefulBeanToCsv.
-     * @return The StatefulBeanToCsv instance.
+     * @return true if the ping log is written through a memory mapping
      */
-    StatefulBeanToCsv<PingLog> getStatefulBeanToCsv(CSVWriter csvWriter) {
-        return new StatefulBeanToCsvBuilder<PingLog>(csvWriter)
-                .build();
+    public boolean isMapped() {
+        synchronized (fileLock) {
+            return sink.isMapped();
+        }
     }
 
     /**
@@ -210,7 +848,7 @@ public class FileWriterService {
      */
     public void resetPath() throws IOException {
         setFilePathFromProperties();
-        setWriter();
+        openSink();
     }
 
     /**
@@ -223,12 +861,33 @@ public class FileWriterService {
     }
 
     /**
-     * Method to set the writer and the StatefulBeanToCsv instance.
-     * It handles the IOException.
+     * Listener of the rotations of the active files
+     */
+    @FunctionalInterface
+    public interface RotationListener {
+        /**
+         * The active file was rotated, the pings written from now on go to a new one
+         * @param ipAddress target whose file was rotated when sharded, null if the single file of all the targets was
+         */
+        void rotated(String ipAddress);
+    }
+
+    /**
+     * Opens something on the active file, given the pings not in the file yet
+     */
+    @FunctionalInterface
+    public interface PendingOpener<T> {
+        T open(List<PingLog> pending) throws IOException;
+    }
+
+    /**
+     * Open the active file in the sink, which closes the previous one first, holding the file lock so the writing
+     * thread does not write meanwhile
      * @throws IOException If an I/O error occurs.
      */
-    private void setWriter() throws IOException {
-        writer = getWriter();
-        sbc = getStatefulBeanToCsv(getCsvWriter(writer));
+    private void openSink() throws IOException {
+        synchronized (fileLock) {
+            sink.open(filePath);
+        }
     }
 }
@@ -0,0 +1,253 @@
+package com.adieser.conntest.service.writer;
+
+import com.adieser.conntest.models.utils.PingLogSegment;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import static com.adieser.conntest.models.utils.PingLogSegment.HEADER_SIZE;
+
+/**
+ * Appends ping log lines to a {@link PingLogSegment} through a memory mapping of the file, preallocated in chunks.
+ * Writing stores the characters in the mapping and flushing publishes the committed length in the header, neither
+ * needs a system call. The mapping is only forced to the disk by {@link #sync()}, and closing the writer trims the
+ * padding after the committed length. The mappings are released as soon as they are replaced or the writer is closed,
+ * as some platforms, such as Windows, cannot truncate, rename or delete a file while it is mapped.
+ * <p>
+ * The lines are ASCII, one character is stored as one byte; other characters are encoded as UTF-8. Not thread-safe.
+ */
+@Slf4j
+final class MappedSegmentWriter extends Writer {
+    private static final String TEMPORARY_SUFFIX = ".plain.tmp";
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+    private final FileChannel channel;
+    private final long chunkSize;
+    private MappedByteBuffer buffer;
+    private int position;
+
+    static {
+        // looked up reflectively, Java has no public way to release a mapping before it is garbage collected
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafe = theUnsafe.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.debug("Ping log mappings are released when garbage collected: {}", e.getMessage());
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    /**
+     * Open a segment to append lines to it. A new or empty file becomes an empty segment, a CSV ping log written
+     * without mapping becomes a segment with its lines.
+     * @param file file to write
+     * @param chunkSize bytes the file is grown by when it is full
+     * @throws IOException if the file could not be opened or mapped
+     */
+    MappedSegmentWriter(Path file, long chunkSize) throws IOException {
+        this.chunkSize = Math.max(HEADER_SIZE, chunkSize);
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            long size = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            if (size >= HEADER_SIZE && channel.read(header, 0) == HEADER_SIZE && PingLogSegment.isSegment(header)) {
+                map(size);
+                position = (int) Math.min(size, Math.max(HEADER_SIZE, PingLogSegment.getCommitted(buffer)));
+            } else {
+                byte[] lines = readLines(size);
+                map(HEADER_SIZE + lines.length);
+                PingLogSegment.initialize(buffer);
+                buffer.put(HEADER_SIZE, lines);
+                position = HEADER_SIZE + lines.length;
+                PingLogSegment.commit(buffer, position);
+                if (lines.length > 0)
+                    log.info("Converted ping log to a segment: {}", file);
+            }
+        } catch (IOException | RuntimeException e) {
+            unmap();
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Convert a segment back to a plain ping log with its committed lines, so it is appended to without a mapping
+     * @param file segment to convert
+     * @throws IOException if it could not be converted, the file is left as it was
+     */
+    static void toPlain(Path file) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + TEMPORARY_SUFFIX);
+        try {
+            try (FileChannel segment = FileChannel.open(file, StandardOpenOption.READ);
+                 FileChannel plain = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                         StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                segment.read(header, 0);
+                long committed = Math.min(segment.size(), Math.max(HEADER_SIZE, PingLogSegment.getCommitted(header)));
+                long position = HEADER_SIZE;
+                while (position < committed)
+                    position += segment.transferTo(position, committed - position, plain);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Converted ping log segment to a plain ping log: {}", file);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        ensureCapacity(len);
+        for (int i = off; i < off + len; i++) {
+            char c = cbuf[i];
+            if (c < 0x80) {
+                buffer.put(position++, (byte) c);
+            } else {
+                byte[] encoded = String.valueOf(c).getBytes(StandardCharsets.UTF_8);
+                ensureCapacity(encoded.length + off + len - i);
+                buffer.put(position, encoded);
+                position += encoded.length;
+            }
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        ensureCapacity(len);
+        for (int i = off; i < off + len; i++) {
+            char c = str.charAt(i);
+            if (c < 0x80)
+                buffer.put(position++, (byte) c);
+            else
+                write(new char[] {c}, 0, 1);
+        }
+    }
+
+    /**
+     * Publish the lines written to the readers
+     */
+    @Override
+    public void flush() {
+        PingLogSegment.commit(buffer, position);
+    }
+
+    /**
+     * Force the committed lines to the disk
+     */
+    void sync() {
+        buffer.force();
+    }
+
+    /**
+     * Empty the segment
+     */
+    void clear() {
+        position = HEADER_SIZE;
+        flush();
+    }
+
+    /**
+     * @return bytes of lines committed, without the header
+     */
+    long getCommittedBytes() {
+        return PingLogSegment.getCommitted(buffer) - HEADER_SIZE;
+    }
+
+    /**
+     * @return amount of lines committed
+     */
+    long countLines() {
+        long lines = 0;
+        long committed = PingLogSegment.getCommitted(buffer);
+        for (int i = HEADER_SIZE; i < committed; i++) {
+            if (buffer.get(i) == '\n')
+                lines++;
+        }
+        return lines;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!channel.isOpen())
+            return;
+
+        try {
+            flush();
+            unmap();
+            try {
+                channel.truncate(position);
+            } catch (IOException e) {
+                // the readers may still map the file, they stop at the committed length anyway
+                log.debug("Ping log segment keeps its padding: {}", e.getMessage());
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void ensureCapacity(int bytes) throws IOException {
+        if ((long) position + bytes > buffer.capacity())
+            map(position + bytes);
+    }
+
+    /**
+     * Map the file with room for at least a size, rounded up to whole chunks. Mapping past the end grows the file.
+     */
+    private void map(long size) throws IOException {
+        long capacity = (size / chunkSize + 1) * chunkSize;
+        if (capacity > Integer.MAX_VALUE)
+            throw new IOException("Ping log segment too large to be mapped: " + capacity);
+        MappedByteBuffer previous = buffer;
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        release(previous);
+    }
+
+    /**
+     * Release the mapping, which is not used anymore
+     */
+    private void unmap() {
+        MappedByteBuffer mapped = buffer;
+        buffer = null;
+        release(mapped);
+    }
+
+    private static void release(MappedByteBuffer mapped) {
+        if (mapped == null || INVOKE_CLEANER == null)
+            return;
+
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, mapped);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.debug("Ping log mapping left to the garbage collector: {}", e.getMessage());
+        }
+    }
+
+    private byte[] readLines(long size) throws IOException {
+        if (size > Integer.MAX_VALUE - HEADER_SIZE)
+            throw new IOException("Ping log too large to be mapped: " + size);
+
+        ByteBuffer lines = ByteBuffer.allocate((int) size);
+        while (lines.hasRemaining() && channel.read(lines, lines.position()) >= 0) {
+            // read until the buffer is full
+        }
+        return lines.array();
+    }
+}
@@ -0,0 +1,38 @@
+package com.adieser.conntest.service.writer;
+
+import java.util.Locale;
+
+/**
+ * What the {@link FileWriterService} does with a ping submitted while its queue is full
+ */
+public enum OverflowPolicy {
+    /**
+     * The producer waits until there is room in the queue
+     */
+    BLOCK,
+    /**
+     * The oldest ping in the queue is dropped to make room for the new one
+     */
+    DROP_OLDEST,
+    /**
+     * The new ping is dropped
+     */
+    DROP_NEWEST,
+    /**
+     * The new ping is written to a temporary file, and written to the ping log once the queue drains
+     */
+    SPILL;
+
+    /**
+     * Find a policy by its property value
+     * @param name block, drop-oldest, drop-newest or spill. Case-insensitive
+     * @return the policy, {@link #BLOCK} if the name is not set
+     * @throws IllegalArgumentException if there is no policy with that name
+     */
+    public static OverflowPolicy of(String name) {
+        if (name == null || name.isBlank())
+            return BLOCK;
+
+        return valueOf(name.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+    }
+}
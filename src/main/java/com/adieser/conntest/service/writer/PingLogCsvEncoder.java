@@ -0,0 +1,170 @@
+package com.adieser.conntest.service.writer;
+
+import com.adieser.conntest.models.PingLog;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+
+/**
+ * Encodes pings as ping log lines, {@code dateTime,ipAddress,pingTime}, into a reusable buffer. The output is the
+ * same as the one of the opencsv writer, without reflection or temporary strings: once the buffer has grown to fit
+ * a batch, encoding does not allocate.
+ * <p>
+ * Pings are mostly written in bursts with the same timestamp, so the formatted date of the last second is kept and
+ * reused. Not thread-safe, it belongs to the writer thread.
+ */
+final class PingLogCsvEncoder {
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int DATE_TIME_LENGTH = 19;
+    private static final int MAX_DATE_TIME_LENGTH = 32;
+    private static final int INITIAL_CAPACITY = 8192;
+
+    private char[] buffer = new char[INITIAL_CAPACITY];
+    private int length;
+
+    private LocalDateTime cachedDateTime;
+    private final char[] cachedDate = new char[MAX_DATE_TIME_LENGTH];
+    private int cachedDateLength;
+
+    /**
+     * Append a ping to the buffer, as a line
+     * @param pingLog ping to encode
+     */
+    void encode(PingLog pingLog) {
+        // date, ip, ping time with its sign and up to 20 digits, separators and line end
+        String ip = pingLog.getIpAddress();
+        ensureCapacity(MAX_DATE_TIME_LENGTH + (ip != null ? ip.length() : 0) + 32);
+
+        appendDateTime(pingLog.getDateTime());
+        buffer[length++] = ',';
+        if (ip != null) {
+            ip.getChars(0, ip.length(), buffer, length);
+            length += ip.length();
+        }
+        buffer[length++] = ',';
+        appendPingTime(pingLog.getPingTime());
+        buffer[length++] = '\n';
+    }
+
+    /**
+     * Write the encoded lines and empty the buffer
+     * @param writer destination of the lines
+     * @throws IOException if the writer fails
+     */
+    void writeTo(Writer writer) throws IOException {
+        writer.write(buffer, 0, length);
+        length = 0;
+    }
+
+    /**
+     * @return amount of characters encoded and not written yet
+     */
+    int length() {
+        return length;
+    }
+
+    private void appendDateTime(LocalDateTime dateTime) {
+        if (dateTime == null)
+            return;
+
+        if (!dateTime.equals(cachedDateTime)) {
+            cachedDateLength = formatDateTime(dateTime, cachedDate);
+            cachedDateTime = dateTime;
+        }
+        System.arraycopy(cachedDate, 0, buffer, length, cachedDateLength);
+        length += cachedDateLength;
+    }
+
+    /**
+     * Same as {@link PingLog#formatPingTime}: whole milliseconds without decimals, otherwise up to 3 decimals
+     */
+    private void appendPingTime(double pingTime) {
+        long micros = Math.round(pingTime * 1000.0);
+        if (micros % 1000L == 0) {
+            appendLong(micros / 1000L);
+            return;
+        }
+
+        if (micros < 0)
+            buffer[length++] = '-';
+        long abs = Math.abs(micros);
+        appendLong(abs / 1000L);
+        buffer[length++] = '.';
+
+        int fraction = (int) (abs % 1000L);
+        int digits = 3;
+        while (fraction % 10 == 0) {
+            fraction /= 10;
+            digits--;
+        }
+        for (int divisor = digits == 3 ? 100 : digits == 2 ? 10 : 1; divisor > 0; divisor /= 10)
+            buffer[length++] = (char) ('0' + fraction / divisor % 10);
+    }
+
+    private void appendLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            String digits = Long.toString(value);
+            digits.getChars(0, digits.length(), buffer, length);
+            length += digits.length();
+            return;
+        }
+
+        if (value < 0) {
+            buffer[length++] = '-';
+            value = -value;
+        }
+        int start = length;
+        do {
+            buffer[length++] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+
+        // the digits were appended backwards
+        for (int i = start, j = length - 1; i < j; i++, j--) {
+            char digit = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = digit;
+        }
+    }
+
+    /**
+     * Format as {@code yyyy-MM-dd HH:mm:ss}
+     * @return amount of characters written
+     */
+    private static int formatDateTime(LocalDateTime dateTime, char[] target) {
+        int year = dateTime.getYear();
+        if (year < 1 || year > 9999) {
+            // the formatter writes the year of era, with a sign past 9999; not worth doing by hand
+            String formatted = DATE_TIME_FORMATTER.format(dateTime);
+            formatted.getChars(0, formatted.length(), target, 0);
+            return formatted.length();
+        }
+
+        twoDigits(target, 0, year / 100);
+        twoDigits(target, 2, year % 100);
+        target[4] = '-';
+        twoDigits(target, 5, dateTime.getMonthValue());
+        target[7] = '-';
+        twoDigits(target, 8, dateTime.getDayOfMonth());
+        target[10] = ' ';
+        twoDigits(target, 11, dateTime.getHour());
+        target[13] = ':';
+        twoDigits(target, 14, dateTime.getMinute());
+        target[16] = ':';
+        twoDigits(target, 17, dateTime.getSecond());
+        return DATE_TIME_LENGTH;
+    }
+
+    private static void twoDigits(char[] target, int offset, int value) {
+        target[offset] = (char) ('0' + value / 10);
+        target[offset + 1] = (char) ('0' + value % 10);
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > buffer.length)
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+    }
+}
@@ -0,0 +1,263 @@
+package com.adieser.conntest.service.writer;
+
+import com.adieser.conntest.configurations.AppProperties;
+import com.adieser.conntest.models.PingLog;
+import com.opencsv.exceptions.CsvException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static com.adieser.conntest.service.writer.FileWriterService.FORMATTER;
+import static com.adieser.conntest.service.writer.FileWriterService.ROTATED_FILENAME_FORMAT;
+
+/**
+ * Sink of a single active file, rotated in its directory. The rows and bytes of the file are tracked in memory and the
+ * file is rotated on those counters, or when {@link RotationInterval} says so. They are counted from the file only
+ * once, when the sink starts writing to a file or after {@link #recount()}. The file is forced to the disk according
+ * to the {@link Durability}, and before it is rotated or closed unless it is {@link Durability#NONE}.
+ * <p>
+ * A file found in another format when the sink is opened, as after {@code conntest.pinglog-format} changed, is moved
+ * aside under the name of a rotated file, and a new one is started.
+ * <p>
+ * The subclasses write the file in their format.
+ */
+@Slf4j
+abstract class PingLogFileSink implements PingLogSink {
+    private final Settings settings;
+    private final RotationInterval rotationInterval;
+    Path filePath;
+    int fileCount;
+
+    /**
+     * Rows and bytes of the active file
+     */
+    long rowCount;
+    long byteCount;
+
+    /**
+     * Time the active file was opened, or last modified if it had pings, to rotate it on time
+     */
+    private LocalDateTime fileOpened;
+    private volatile boolean recountRequested = true;
+    private long lastSyncNanos = System.nanoTime();
+    private boolean open;
+
+    PingLogFileSink(Settings settings) {
+        this.settings = settings;
+        this.rotationInterval = RotationInterval.of(settings.appProperties().getRotationInterval());
+    }
+
+    @Override
+    public void open(Path file) throws IOException {
+        close();
+        filePath = file;
+        fileCount = RotatedFiles.nextNumber(file.toAbsolutePath().getParent());
+        if (Files.exists(file) && Files.size(file) > 0 && !isOfFormat(file)) {
+            Path aside = getRotatedPath();
+            Files.move(file, aside);
+            log.warn("Ping log {} is not a {} ping log, as conntest.pinglog-format asks: moved it to {} and started a "
+                    + "new one. Set the format back to query it, or convert it with PingLogFormatConverter",
+                    file, getFormat(), aside);
+        }
+
+        openFile(file);
+        open = true;
+        recountRequested = true;
+    }
+
+    /**
+     * Append the pings, rotating the file when it is full, or when it has no room for the pings, such as a binary
+     * file with its dictionary full
+     */
+    @Override
+    public void write(List<PingLog> pingLogs) throws IOException, CsvException {
+        int offset = 0;
+        while (true) {
+            checkFileSizeAndRotate();
+            int written = append(offset == 0 ? pingLogs : pingLogs.subList(offset, pingLogs.size()));
+            offset += written;
+            rowCount += written;
+            if (offset == pingLogs.size())
+                return;
+
+            if (rowCount == 0)
+                throw new IOException("Ping does not fit in an empty ping log file: " + pingLogs.get(offset));
+            rotate();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushFile();
+    }
+
+    @Override
+    public void syncIfDue() throws IOException {
+        Durability durability = settings.durability();
+        if (durability == Durability.BATCH
+                || (durability == Durability.INTERVAL
+                && System.nanoTime() - lastSyncNanos >= settings.syncIntervalNanos()))
+            sync();
+    }
+
+    /**
+     * Force the pings flushed to the file to the disk
+     */
+    void sync() throws IOException {
+        long start = System.nanoTime();
+        syncFile();
+        lastSyncNanos = System.nanoTime();
+        settings.syncRecorder().accept(lastSyncNanos - start);
+    }
+
+    @Override
+    public void clear() throws IOException {
+        clearFile();
+        recount();
+    }
+
+    @Override
+    public void recount() {
+        recountRequested = true;
+    }
+
+    /**
+     * Force the file to the disk unless the durability is {@link Durability#NONE}, and close it. Closing it again
+     * does nothing.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!open)
+            return;
+
+        open = false;
+        try {
+            syncBeforeClose();
+        } finally {
+            closeFile();
+        }
+    }
+
+    /**
+     * Rotate the file if the rows or the bytes written reach {@code conntest.file-max-size-rows} or
+     * {@code conntest.file-max-size-kbytes}, or its interval is over. The check does not touch the file unless a
+     * recount was requested.
+     */
+    void checkFileSizeAndRotate() throws IOException {
+        if (recountRequested) {
+            recountRequested = false;
+            LocalDateTime now = LocalDateTime.now(settings.clock().get());
+            fileOpened = now;
+            if (rotationInterval != RotationInterval.NONE && Files.exists(filePath) && Files.size(filePath) > 0)
+                fileOpened = LocalDateTime.ofInstant(Files.getLastModifiedTime(filePath).toInstant(),
+                        settings.clock().get().getZone());
+            count();
+            opened();
+        }
+
+        if (isFileFull(settings.appProperties(), rowCount, byteCount)
+                || rotationInterval.isOver(fileOpened, LocalDateTime.now(settings.clock().get())))
+            rotate();
+    }
+
+    private void rotate() throws IOException {
+        syncBeforeClose();
+        closeFile();
+        Path rotatedFile = getRotatedPath();
+        Files.move(filePath, rotatedFile, StandardCopyOption.REPLACE_EXISTING);
+
+        openFile(filePath);
+        rowCount = 0;
+        byteCount = 0;
+        fileOpened = LocalDateTime.now(settings.clock().get());
+        opened();
+
+        log.info("Rotated file: {}", rotatedFile);
+        settings.rotationListener().accept(rotatedFile, null);
+    }
+
+    private Path getRotatedPath() {
+        String timestamp = LocalDateTime.now(settings.clock().get()).format(FORMATTER);
+        return filePath.toAbsolutePath().resolveSibling(String.format(ROTATED_FILENAME_FORMAT, timestamp, fileCount++));
+    }
+
+    private void syncBeforeClose() throws IOException {
+        if (settings.durability() == Durability.NONE)
+            return;
+
+        drain();
+        sync();
+    }
+
+    /**
+     * @return true if a file with some rows and bytes reached {@code conntest.file-max-size-rows} or
+     * {@code conntest.file-max-size-kbytes}
+     */
+    static boolean isFileFull(AppProperties appProperties, long rowCount, long byteCount) {
+        Long maxRows = appProperties.getFileMaxSizeRows();
+        Long maxKbytes = appProperties.getFileMaxSizeKbytes();
+
+        // a missing or non-positive limit means no limit
+        return (maxRows != null && maxRows > 0 && rowCount >= maxRows)
+                || (maxKbytes != null && maxKbytes > 0 && byteCount >= maxKbytes * 1024);
+    }
+
+    /**
+     * @return name of the format, for the logs
+     */
+    abstract String getFormat();
+
+    /**
+     * @param file non-empty file
+     * @return true if the file is written in the format of the sink
+     */
+    abstract boolean isOfFormat(Path file) throws IOException;
+
+    /**
+     * Open a file to append to it, creating it if missing
+     */
+    abstract void openFile(Path file) throws IOException;
+
+    /**
+     * Append pings to the file, adding their bytes to the byte counter
+     * @return amount of pings appended, fewer than the pings given if the file has no room for the rest
+     */
+    abstract int append(List<PingLog> pingLogs) throws IOException, CsvException;
+
+    /**
+     * Seed the row and byte counters from the file. It may read the whole file, so it is only done once per file.
+     */
+    abstract void count() throws IOException;
+
+    /**
+     * Called once the counters of the file are set, after it is counted or rotated
+     */
+    void opened() throws IOException {
+    }
+
+    /**
+     * Make the pings written visible to the readers
+     */
+    abstract void flushFile() throws IOException;
+
+    /**
+     * Write to the file whatever it keeps in memory, before it is forced to the disk and closed
+     */
+    void drain() throws IOException {
+        flushFile();
+    }
+
+    abstract void syncFile() throws IOException;
+
+    abstract void clearFile() throws IOException;
+
+    /**
+     * Flush and close the file
+     */
+    abstract void closeFile() throws IOException;
+}
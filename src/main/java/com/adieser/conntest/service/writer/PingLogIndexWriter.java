@@ -0,0 +1,153 @@
+package com.adieser.conntest.service.writer;
+
+import com.adieser.conntest.models.utils.PingLogIndex;
+import com.adieser.conntest.models.utils.PingLogScanner;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Builds the {@link PingLogIndex} of a CSV ping log as it is written: the writer adds the epoch second of every line
+ * and marks the offset after the lines it wrote, and a block is closed at the first mark after {@code rowsPerBlock}
+ * lines. The entries are appended to the index when the ping log is flushed, so they never point past its lines.
+ * <p>
+ * When the writer opens a ping log, its index is kept if it matches the file, and rebuilt from the file otherwise, as
+ * when it is missing; the lines after the last block are scanned again. A ping log that cannot be scanned, as one
+ * over 2 GB, is not indexed. Thread-safe.
+ */
+@Slf4j
+final class PingLogIndexWriter {
+    private final Path pingLog;
+    private final Path path;
+    private final int rowsPerBlock;
+    private ByteBuffer pending = ByteBuffer.allocate(PingLogIndex.ENTRY_SIZE * 16);
+    private boolean enabled = true;
+    private long blockStart;
+    private long blockRows;
+    private long blockMin;
+    private long blockMax;
+
+    /**
+     * @param pingLog ping log to index
+     * @param rowsPerBlock min lines per block
+     */
+    PingLogIndexWriter(Path pingLog, int rowsPerBlock) {
+        this.pingLog = pingLog;
+        this.path = PingLogIndex.getPath(pingLog);
+        this.rowsPerBlock = Math.max(1, rowsPerBlock);
+    }
+
+    /**
+     * Load the index of the ping log, or rebuild it if it does not match the file, and scan the lines after its last
+     * block
+     * @throws IOException if the index could not be written
+     */
+    synchronized void open() throws IOException {
+        enabled = true;
+        pending.clear();
+        resetBlock(0);
+        PingLogScanner scanner = Files.isRegularFile(pingLog) ? PingLogScanner.open(pingLog) : null;
+        if (scanner == null) {
+            if (Files.exists(pingLog)) {
+                // it cannot be mapped, the queries scan it without index
+                enabled = false;
+                Files.deleteIfExists(path);
+            } else {
+                clear();
+            }
+            return;
+        }
+
+        PingLogIndex index = PingLogIndex.read(pingLog, scanner.size());
+        if (index == null || !scanner.isLineStart(index.getEnd())) {
+            index = null;
+            writeHeader();
+        }
+        resetBlock(index != null ? index.getEnd() : 0);
+        if (!scanner.restrict(new long[]{blockStart, scanner.size()}))
+            return;
+
+        try {
+            while (scanner.next()) {
+                add(scanner.getEpochSecond());
+                mark(scanner.getOffset());
+            }
+        } catch (IllegalArgumentException e) {
+            log.warn("Ping log {} cannot be indexed: {}", pingLog, e.getMessage());
+            enabled = false;
+            pending.clear();
+            Files.deleteIfExists(path);
+            return;
+        }
+        if (index == null)
+            log.info("Rebuilt the index of {}", pingLog);
+        flush();
+    }
+
+    /**
+     * Add a line written
+     * @param epochSecond epoch second of its ping
+     */
+    synchronized void add(long epochSecond) {
+        blockRows++;
+        blockMin = Math.min(blockMin, epochSecond);
+        blockMax = Math.max(blockMax, epochSecond);
+    }
+
+    /**
+     * Close the block if it has enough lines
+     * @param offset offset after the lines written
+     */
+    synchronized void mark(long offset) {
+        if (!enabled || blockRows < rowsPerBlock)
+            return;
+
+        if (pending.remaining() < PingLogIndex.ENTRY_SIZE) {
+            ByteBuffer larger = ByteBuffer.allocate(pending.capacity() * 2);
+            pending.flip();
+            pending = larger.put(pending);
+        }
+        PingLogIndex.putEntry(pending, blockStart, offset, blockMin, blockMax);
+        resetBlock(offset);
+    }
+
+    /**
+     * Append the blocks closed to the index, once their lines are flushed
+     * @throws IOException if the index could not be written
+     */
+    synchronized void flush() throws IOException {
+        if (!enabled || pending.position() == 0)
+            return;
+
+        Files.write(path, Arrays.copyOf(pending.array(), pending.position()), StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND);
+        pending.clear();
+    }
+
+    /**
+     * Empty the index, as the ping log is emptied
+     * @throws IOException if the index could not be written
+     */
+    synchronized void clear() throws IOException {
+        pending.clear();
+        resetBlock(0);
+        if (enabled)
+            writeHeader();
+    }
+
+    private void writeHeader() throws IOException {
+        Files.write(path, PingLogIndex.newHeader().array());
+    }
+
+    private void resetBlock(long start) {
+        blockStart = start;
+        blockRows = 0;
+        blockMin = Long.MAX_VALUE;
+        blockMax = Long.MIN_VALUE;
+    }
+}
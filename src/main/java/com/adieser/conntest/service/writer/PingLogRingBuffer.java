@@ -0,0 +1,151 @@
+package com.adieser.conntest.service.writer;
+
+import com.adieser.conntest.models.PingLog;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free multi-producer, single-consumer ring of pings between the ping sessions and the writer thread.
+ * <p>
+ * The slots are allocated up front. A producer claims the next sequence with a CAS, copies the ping into the slot of
+ * that sequence and publishes it, so submitting neither locks nor allocates. The consumer takes the published slots
+ * in sequence order, uses them in place and releases them when it is done, and only then can producers reuse them.
+ */
+final class PingLogRingBuffer {
+    private final PingLog[] slots;
+    private final int mask;
+    private final WaitStrategy waitStrategy;
+
+    /**
+     * Sequence published in every slot, -1 if none yet
+     */
+    private final AtomicLongArray published;
+
+    /**
+     * Last sequence claimed by a producer
+     */
+    private final AtomicLong claimed = new AtomicLong(-1);
+
+    /**
+     * Last sequence released by the consumer
+     */
+    private final AtomicLong released = new AtomicLong(-1);
+
+    /**
+     * Next sequence to take, only accessed by the consumer
+     */
+    private long next;
+
+    /**
+     * @param capacity amount of slots, rounded up to a power of two
+     * @param waitStrategy how producers wait for room and the consumer waits for pings
+     */
+    PingLogRingBuffer(int capacity, WaitStrategy waitStrategy) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.slots = new PingLog[size];
+        for (int i = 0; i < size; i++)
+            slots[i] = new PingLog();
+        this.mask = size - 1;
+        this.waitStrategy = waitStrategy;
+        this.published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++)
+            published.set(i, -1);
+    }
+
+    /**
+     * Copy a ping into the next slot, if there is room
+     * @param pingLog ping to publish
+     * @return false if the ring is full
+     */
+    boolean tryPublish(PingLog pingLog) {
+        long current;
+        long sequence;
+        do {
+            current = claimed.get();
+            sequence = current + 1;
+            if (sequence - slots.length > released.get())
+                return false;
+        } while (!claimed.compareAndSet(current, sequence));
+
+        int index = (int) (sequence & mask);
+        PingLog slot = slots[index];
+        slot.setDateTime(pingLog.getDateTime());
+        slot.setIpAddress(pingLog.getIpAddress());
+        slot.setPingTime(pingLog.getPingTime());
+        published.lazySet(index, sequence);
+        return true;
+    }
+
+    /**
+     * Copy a ping into the next slot, waiting for room with the wait strategy
+     * @param pingLog ping to publish
+     * @throws InterruptedException if interrupted while waiting
+     */
+    void publish(PingLog pingLog) throws InterruptedException {
+        int attempt = 0;
+        while (!tryPublish(pingLog)) {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            waitStrategy.idle(attempt++);
+        }
+    }
+
+    /**
+     * Wait with the wait strategy for a ping to take. Consumer only.
+     * @param timeoutNanos max time to wait
+     * @return true if there is a ping to take
+     * @throws InterruptedException if interrupted while waiting
+     */
+    boolean await(long timeoutNanos) throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutNanos;
+        int attempt = 0;
+        while (!isAvailable()) {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            if (System.nanoTime() - deadline >= 0)
+                return false;
+            waitStrategy.idle(attempt++);
+        }
+        return true;
+    }
+
+    /**
+     * Take the published slots, in sequence order. They stay valid until {@link #release()}. Consumer only.
+     * @param batch list the slots are added to
+     * @param max max amount of slots to take
+     * @return amount of slots taken
+     */
+    int drainTo(List<PingLog> batch, int max) {
+        int taken = 0;
+        while (taken < max && isAvailable()) {
+            batch.add(slots[(int) (next & mask)]);
+            next++;
+            taken++;
+        }
+        return taken;
+    }
+
+    /**
+     * Give the slots taken back to the producers. Consumer only.
+     */
+    void release() {
+        released.lazySet(next - 1);
+    }
+
+    /**
+     * @return amount of pings published or being published and not released yet
+     */
+    int size() {
+        return (int) (claimed.get() - released.get());
+    }
+
+    int capacity() {
+        return slots.length;
+    }
+
+    private boolean isAvailable() {
+        return published.get((int) (next & mask)) == next;
+    }
+}
@@ -0,0 +1,93 @@
+package com.adieser.conntest.service.writer;
+
+import com.adieser.conntest.configurations.AppProperties;
+import com.adieser.conntest.models.PingLog;
+import com.opencsv.exceptions.CsvException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Where the {@link FileWriterService} writes the pings it takes from its queue: the active file of a format, see
+ * {@link CsvPingLogSink} and {@link RecordPingLogSink}, or the files of every target, see {@link ShardedPingLogWriter}.
+ * The sink is chosen once, when the service is built, so the write loop does not depend on the format, the sharding or
+ * the output of the ping log.
+ * <p>
+ * The service calls a sink holding its file lock, so a sink is not called by two threads at the same time.
+ */
+interface PingLogSink extends Closeable {
+
+    /**
+     * Open the active file to append pings to it, closing the one open, if any
+     * @param file active file of the ping log
+     * @throws IOException if the file could not be opened
+     */
+    void open(Path file) throws IOException;
+
+    /**
+     * Append pings, in order, rotating the file when it is full
+     * @param pingLogs pings to append. They may be reused by the caller once this returns
+     * @throws IOException if the file could not be written
+     * @throws InterruptedException if interrupted while handing the pings over to another thread
+     * @throws CsvException if opencsv could not write a ping
+     */
+    void write(List<PingLog> pingLogs) throws IOException, InterruptedException, CsvException;
+
+    /**
+     * Make the pings written visible to the readers
+     * @throws IOException if the file could not be written
+     */
+    void flush() throws IOException;
+
+    /**
+     * Force the pings flushed to the disk if the {@link Durability} asks for it after a flush
+     * @throws IOException if the file could not be forced
+     */
+    void syncIfDue() throws IOException;
+
+    /**
+     * Remove every ping from the active file
+     * @throws IOException if the file could not be written
+     */
+    void clear() throws IOException;
+
+    /**
+     * Count the rows and bytes of the active file again before the next write, as it was modified by someone else
+     */
+    default void recount() {
+    }
+
+    /**
+     * @return pings written but not in the file yet, for the formats that keep them in memory
+     */
+    default List<PingLog> getPending() {
+        return List.of();
+    }
+
+    /**
+     * @return true if the active file is written through a memory mapping
+     */
+    default boolean isMapped() {
+        return false;
+    }
+
+    /**
+     * What the sinks share
+     * @param appProperties source of the rotation limits, read on every check
+     * @param durability when the files are forced to the disk
+     * @param syncIntervalNanos min time between forcing the files, with {@link Durability#INTERVAL}
+     * @param clock clock of the rotations, which may be replaced
+     * @param syncRecorder receives the nanoseconds spent forcing the files to the disk
+     * @param rotationListener receives every rotated file, with the IP address of its target when sharded, null
+     * otherwise
+     */
+    record Settings(AppProperties appProperties, Durability durability, long syncIntervalNanos, Supplier<Clock> clock,
+                    LongConsumer syncRecorder, BiConsumer<Path, String> rotationListener) {
+    }
+}
@@ -0,0 +1,111 @@
+package com.adieser.conntest.service.writer;
+
+import com.adieser.conntest.models.PingLog;
+import com.adieser.conntest.models.PingLogRecordWriter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Sink of a ping log of a record format, written by a {@link PingLogRecordWriter}, such as a
+ * {@link com.adieser.conntest.models.binary.BinaryPingLogWriter} or a
+ * {@link com.adieser.conntest.models.columnar.ColumnarPingLogWriter}. The file is recognized by the magic number it
+ * starts with.
+ */
+final class RecordPingLogSink extends PingLogFileSink {
+    private final String format;
+    private final int magic;
+    private final Opener opener;
+    private PingLogRecordWriter recordWriter;
+
+    /**
+     * @param settings what the sinks share
+     * @param format name of the format, for the logs
+     * @param magic int the files of the format start with
+     * @param opener opens the writer of a file
+     */
+    RecordPingLogSink(Settings settings, String format, int magic, Opener opener) {
+        super(settings);
+        this.format = format;
+        this.magic = magic;
+        this.opener = opener;
+    }
+
+    @Override
+    String getFormat() {
+        return format;
+    }
+
+    @Override
+    boolean isOfFormat(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+            return channel.read(header, 0) == Integer.BYTES && header.getInt(0) == magic;
+        }
+    }
+
+    @Override
+    void openFile(Path file) throws IOException {
+        recordWriter = opener.open(file);
+    }
+
+    @Override
+    int append(List<PingLog> pingLogs) throws IOException {
+        int written = recordWriter.write(pingLogs);
+        byteCount = recordWriter.size();
+        return written;
+    }
+
+    @Override
+    void count() {
+        rowCount = recordWriter.getRecordCount();
+        byteCount = recordWriter.size();
+    }
+
+    /**
+     * The records are written straight to the file, and the pending pings once their block is complete
+     */
+    @Override
+    void flushFile() {
+    }
+
+    @Override
+    void drain() throws IOException {
+        recordWriter.flush();
+    }
+
+    @Override
+    void syncFile() throws IOException {
+        recordWriter.sync();
+    }
+
+    @Override
+    void clearFile() throws IOException {
+        recordWriter.clear();
+    }
+
+    @Override
+    void closeFile() throws IOException {
+        PingLogRecordWriter closing = recordWriter;
+        recordWriter = null;
+        if (closing != null)
+            closing.close();
+    }
+
+    @Override
+    public List<PingLog> getPending() {
+        return recordWriter != null ? recordWriter.getPending() : List.of();
+    }
+
+    /**
+     * Opens the writer of a file, creating the file if missing
+     */
+    @FunctionalInterface
+    interface Opener {
+        PingLogRecordWriter open(Path file) throws IOException;
+    }
+}
@@ -0,0 +1,112 @@
+package com.adieser.conntest.service.writer;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Deletes the rotated ping logs older than {@code conntest.retention-days}, and the oldest ones while all of them
+ * take more than {@code conntest.retention-max-mbytes}. The active files are never deleted. A file is as old as its
+ * rotation, from its name, see {@link RotatedFiles}.
+ */
+@Slf4j
+final class RetentionPolicy {
+    private final long retentionDays;
+    private final long maxBytes;
+    private final LongAdder deleted = new LongAdder();
+
+    /**
+     * @param retentionDays days the rotated files are kept, 0 or less to keep them forever
+     * @param maxBytes max bytes of all the rotated files, 0 or less for no limit
+     */
+    RetentionPolicy(long retentionDays, long maxBytes) {
+        this.retentionDays = retentionDays;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return true if the policy may delete files
+     */
+    boolean isEnabled() {
+        return retentionDays > 0 || maxBytes > 0;
+    }
+
+    /**
+     * @return true if the policy adds up the sizes of all the rotated files, so it applies to all their directories
+     */
+    boolean isSizeLimited() {
+        return maxBytes > 0;
+    }
+
+    /**
+     * Delete the rotated files out of the policy
+     * @param directories directories of the rotated files, whose sizes are added up
+     * @param now current time
+     * @return amount of files deleted
+     * @throws IOException if a directory could not be listed
+     */
+    int apply(List<Path> directories, LocalDateTime now) throws IOException {
+        List<Path> rotated = new ArrayList<>();
+        for (Path directory : directories)
+            rotated.addAll(RotatedFiles.list(directory));
+        rotated.sort(Comparator.comparing(RotatedFiles::getTimestamp));
+
+        LocalDateTime oldest = retentionDays > 0 ? now.minusDays(retentionDays) : LocalDateTime.MIN;
+        long total = 0;
+        List<Long> sizes = new ArrayList<>(rotated.size());
+        for (Path file : rotated) {
+            long size = size(file);
+            sizes.add(size);
+            total += size;
+        }
+
+        int count = 0;
+        for (int i = 0; i < rotated.size(); i++) {
+            Path file = rotated.get(i);
+            boolean expired = RotatedFiles.getTimestamp(file).isBefore(oldest);
+            boolean overSize = maxBytes > 0 && total > maxBytes;
+            if (!expired && !overSize)
+                break;
+
+            if (delete(file)) {
+                total -= sizes.get(i);
+                count++;
+                log.info("Deleted rotated file by the retention policy: {}", file);
+            }
+        }
+        deleted.add(count);
+
+        return count;
+    }
+
+    /**
+     * @return amount of files deleted
+     */
+    long getDeleted() {
+        return deleted.sum();
+    }
+
+    private static long size(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static boolean delete(Path file) {
+        try {
+            return Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.error("Failed to delete rotated file {}: {}", file, e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.adieser.conntest.service.writer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static com.adieser.conntest.service.writer.FileWriterService.FORMATTER;
+
+/**
+ * Rotated ping logs of a directory, named {@code ping_<timestamp>_<n>.log} (see
+ * {@link FileWriterService#ROTATED_FILENAME_FORMAT}), where the timestamp is the time of the rotation and {@code n}
+ * grows with every rotation of the directory, also across restarts.
+ */
+final class RotatedFiles {
+    static final Pattern ROTATED_FILENAME = Pattern.compile("ping_(\\d{4}-\\d{2}-\\d{2}_\\d{2}-\\d{2}-\\d{2})_(\\d+)\\.log");
+
+    private RotatedFiles() {
+    }
+
+    /**
+     * @param directory directory of the rotated files
+     * @return the rotated files, oldest first, empty if the directory does not exist
+     * @throws IOException if the directory could not be listed
+     */
+    static List<Path> list(Path directory) throws IOException {
+        if (!Files.isDirectory(directory))
+            return List.of();
+
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(file -> ROTATED_FILENAME.matcher(file.getFileName().toString()).matches())
+                    .sorted(Comparator.comparing(RotatedFiles::getTimestamp).thenComparingLong(RotatedFiles::getNumber))
+                    .toList();
+        }
+    }
+
+    /**
+     * @param directory directory of the rotated files
+     * @return the number of the next rotated file, after the highest one in the directory
+     * @throws IOException if the directory could not be listed
+     */
+    static int nextNumber(Path directory) throws IOException {
+        return (int) list(directory).stream()
+                .mapToLong(RotatedFiles::getNumber)
+                .max()
+                .orElse(0) + 1;
+    }
+
+    /**
+     * @param file rotated file
+     * @return time the file was rotated, from its name
+     */
+    static LocalDateTime getTimestamp(Path file) {
+        Matcher matcher = ROTATED_FILENAME.matcher(file.getFileName().toString());
+        if (!matcher.matches())
+            return LocalDateTime.MIN;
+
+        try {
+            return LocalDateTime.parse(matcher.group(1), FORMATTER);
+        } catch (DateTimeParseException e) {
+            return LocalDateTime.MIN;
+        }
+    }
+
+    private static long getNumber(Path file) {
+        Matcher matcher = ROTATED_FILENAME.matcher(file.getFileName().toString());
+        return matcher.matches() ? Long.parseLong(matcher.group(2)) : 0;
+    }
+}
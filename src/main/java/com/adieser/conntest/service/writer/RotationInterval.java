@@ -0,0 +1,53 @@
+package com.adieser.conntest.service.writer;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Locale;
+
+/**
+ * When the {@link FileWriterService} rotates the ping log on time, in addition to its limits of rows and bytes. A
+ * file is rotated when the first ping of a new period is written to it, so the periods follow the clock and not the
+ * time the file was opened.
+ */
+public enum RotationInterval {
+    /**
+     * Only rotated on rows and bytes
+     */
+    NONE(null),
+    /**
+     * Rotated when the hour changes
+     */
+    HOURLY(ChronoUnit.HOURS),
+    /**
+     * Rotated when the day changes
+     */
+    DAILY(ChronoUnit.DAYS);
+
+    private final ChronoUnit unit;
+
+    RotationInterval(ChronoUnit unit) {
+        this.unit = unit;
+    }
+
+    /**
+     * @param opened time the file was opened or last written before it was opened
+     * @param now current time
+     * @return true if the file belongs to a period that is over
+     */
+    public boolean isOver(LocalDateTime opened, LocalDateTime now) {
+        return unit != null && opened.truncatedTo(unit).isBefore(now.truncatedTo(unit));
+    }
+
+    /**
+     * Find an interval by its property value
+     * @param name none, hourly or daily. Case-insensitive
+     * @return the interval, {@link #NONE} if the name is not set
+     * @throws IllegalArgumentException if there is no interval with that name
+     */
+    public static RotationInterval of(String name) {
+        if (name == null || name.isBlank())
+            return NONE;
+
+        return valueOf(name.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,314 @@
+package com.adieser.conntest.service.writer;
+
+import com.adieser.conntest.models.utils.CompressedPingLog;
+import com.adieser.conntest.models.utils.PingLogSegment;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Merges adjacent small rotated ping logs of a directory into larger ones, so a range of history is read from fewer
+ * files. A rotated file is small if it takes less than a quarter of the target bytes on the disk; a run of at least
+ * {@code minFiles} adjacent small files, up to the target bytes, is merged into a single file with its lines sorted by
+ * target and time, optionally compressed (see {@link CompressedPingLog}).
+ * <p>
+ * The lines are sorted in memory in chunks of at most {@code sortBytes} raw bytes, since the files may be compressed
+ * and take far less on the disk than their lines. A run with more lines is sorted by chunks written to temporary
+ * files, which are then merged.
+ * <p>
+ * The merged file takes the name of the newest file of the run, so the rotated files keep their order and numbering,
+ * and then the other files are deleted: if the application stops in between, pings may be duplicated but never lost.
+ * The files are read at most at {@code bytesPerSecond}, so the compaction does not take the disk from the writer.
+ */
+@Slf4j
+final class SegmentCompactor {
+    private static final String TEMPORARY_SUFFIX = ".compact.tmp";
+    private static final long SORT_BYTES = 8L * 1024 * 1024;
+    private static final Comparator<String> TARGET_AND_TIME = Comparator
+            .comparing(SegmentCompactor::getTarget)
+            .thenComparing(SegmentCompactor::getTime);
+
+    private final long targetBytes;
+    private final int minFiles;
+    private final long bytesPerSecond;
+    private final int blockBytes;
+    private final long sortBytes;
+    private final LongAdder merged = new LongAdder();
+
+    /**
+     * @param targetBytes max bytes on the disk of a merged file
+     * @param minFiles min adjacent small files to merge
+     * @param bytesPerSecond max bytes read per second, 0 or less for no limit
+     * @param blockBytes raw bytes of lines per compressed block, 0 to write the merged files plain
+     */
+    SegmentCompactor(long targetBytes, int minFiles, long bytesPerSecond, int blockBytes) {
+        this(targetBytes, minFiles, bytesPerSecond, blockBytes, SORT_BYTES);
+    }
+
+    /**
+     * @param sortBytes max raw bytes of lines sorted in memory
+     */
+    SegmentCompactor(long targetBytes, int minFiles, long bytesPerSecond, int blockBytes, long sortBytes) {
+        this.targetBytes = targetBytes;
+        this.minFiles = Math.max(2, minFiles);
+        this.bytesPerSecond = bytesPerSecond;
+        this.blockBytes = blockBytes;
+        this.sortBytes = Math.max(1, sortBytes);
+    }
+
+    /**
+     * Merge the runs of small rotated files of a directory
+     * @param directory directory of the rotated files
+     * @param active file being written, never merged even if it has the name of a rotated one
+     * @return amount of files merged
+     * @throws IOException if the directory could not be listed, or the thread was interrupted
+     */
+    int compact(Path directory, Path active) throws IOException {
+        List<Path> rotated = RotatedFiles.list(directory).stream()
+                .filter(file -> !file.toAbsolutePath().equals(active.toAbsolutePath()))
+                .toList();
+        int count = 0;
+        for (List<Path> run : findRuns(rotated)) {
+            try {
+                merge(run);
+                count += run.size();
+            } catch (InterruptedIOException e) {
+                throw e;
+            } catch (IOException e) {
+                log.error("Failed to compact rotated files {}: {}", run, e.getMessage());
+            }
+        }
+        merged.add(count);
+
+        return count;
+    }
+
+    /**
+     * @param rotated rotated files, oldest first
+     * @return the runs of adjacent small files to merge
+     */
+    List<List<Path>> findRuns(List<Path> rotated) {
+        List<List<Path>> runs = new ArrayList<>();
+        List<Path> run = new ArrayList<>();
+        long runBytes = 0;
+        for (Path file : rotated) {
+            long size = size(file);
+            if (size < 0 || size >= targetBytes / 4 || runBytes + size > targetBytes) {
+                addRun(runs, run);
+                run = new ArrayList<>();
+                runBytes = 0;
+                if (size < 0 || size >= targetBytes / 4)
+                    continue;
+            }
+            run.add(file);
+            runBytes += size;
+        }
+        addRun(runs, run);
+
+        return runs;
+    }
+
+    private void addRun(List<List<Path>> runs, List<Path> run) {
+        if (run.size() >= minFiles)
+            runs.add(run);
+    }
+
+    /**
+     * Write the lines of the files, sorted, over the newest one, and delete the others
+     */
+    private void merge(List<Path> run) throws IOException {
+        Path newest = run.get(run.size() - 1);
+        Path temporary = newest.resolveSibling(newest.getFileName() + TEMPORARY_SUFFIX);
+        Path compressed = newest.resolveSibling(newest.getFileName() + TEMPORARY_SUFFIX + ".deflate");
+        List<Path> chunks = new ArrayList<>();
+        long count = 0;
+        try {
+            List<String> lines = new ArrayList<>();
+            long lineBytes = 0;
+            Throttle throttle = new Throttle(bytesPerSecond);
+            for (Path file : run) {
+                try (BufferedReader reader = new BufferedReader(PingLogSegment.newReader(file))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (line.isEmpty())
+                            continue;
+                        lines.add(line);
+                        lineBytes += line.length() + 1L;
+                        count++;
+                        throttle.acquire(line.length() + 1L);
+                        if (lineBytes >= sortBytes) {
+                            spill(lines, newest, chunks);
+                            lineBytes = 0;
+                        }
+                    }
+                }
+            }
+
+            if (chunks.isEmpty()) {
+                writeSorted(lines, temporary);
+            } else {
+                if (!lines.isEmpty())
+                    spill(lines, newest, chunks);
+                mergeSorted(chunks, temporary);
+            }
+
+            Path result = temporary;
+            if (blockBytes > 0) {
+                CompressedPingLog.compress(temporary, compressed, blockBytes);
+                result = compressed;
+            }
+            Files.move(result, newest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+            Files.deleteIfExists(compressed);
+            for (Path chunk : chunks)
+                Files.deleteIfExists(chunk);
+        }
+        for (Path file : run.subList(0, run.size() - 1))
+            Files.deleteIfExists(file);
+
+        log.info("Compacted {} rotated files into {}: {} lines", run.size(), newest, count);
+    }
+
+    /**
+     * Write the lines sorted to a new chunk next to the newest file, and empty them
+     */
+    private static void spill(List<String> lines, Path newest, List<Path> chunks) throws IOException {
+        Path chunk = newest.resolveSibling(newest.getFileName() + TEMPORARY_SUFFIX + chunks.size());
+        chunks.add(chunk);
+        writeSorted(lines, chunk);
+        lines.clear();
+    }
+
+    private static void writeSorted(List<String> lines, Path file) throws IOException {
+        lines.sort(TARGET_AND_TIME);
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            for (String line : lines) {
+                writer.write(line);
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Merge sorted chunks into a file, keeping the order of the chunks for equal lines
+     */
+    private static void mergeSorted(List<Path> chunks, Path file) throws IOException {
+        PriorityQueue<Chunk> heads = new PriorityQueue<>(Comparator
+                .comparing((Chunk chunk) -> chunk.line, TARGET_AND_TIME)
+                .thenComparingInt(chunk -> chunk.order));
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            for (int i = 0; i < chunks.size(); i++) {
+                Chunk chunk = new Chunk(Files.newBufferedReader(chunks.get(i)), i);
+                try {
+                    if (chunk.next())
+                        heads.add(chunk);
+                    else
+                        chunk.reader.close();
+                } catch (IOException e) {
+                    chunk.reader.close();
+                    throw e;
+                }
+            }
+            while (!heads.isEmpty()) {
+                Chunk chunk = heads.poll();
+                writer.write(chunk.line);
+                writer.newLine();
+                if (chunk.next())
+                    heads.add(chunk);
+                else
+                    chunk.reader.close();
+            }
+        } finally {
+            for (Chunk chunk : heads)
+                chunk.reader.close();
+        }
+    }
+
+    /**
+     * @return amount of files merged
+     */
+    long getMerged() {
+        return merged.sum();
+    }
+
+    private static String getTarget(String line) {
+        int first = line.indexOf(',');
+        int second = first < 0 ? -1 : line.indexOf(',', first + 1);
+        return second < 0 ? "" : line.substring(first + 1, second);
+    }
+
+    private static String getTime(String line) {
+        int first = line.indexOf(',');
+        return first < 0 ? line : line.substring(0, first);
+    }
+
+    private static long size(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Sorted chunk being merged, with its next line
+     */
+    private static final class Chunk {
+        private final BufferedReader reader;
+        private final int order;
+        private String line;
+
+        private Chunk(BufferedReader reader, int order) {
+            this.reader = reader;
+            this.order = order;
+        }
+
+        boolean next() throws IOException {
+            line = reader.readLine();
+            return line != null;
+        }
+    }
+
+    /**
+     * Sleeps while the bytes read are ahead of the rate since it was created
+     */
+    private static final class Throttle {
+        private final long bytesPerSecond;
+        private final long start = System.nanoTime();
+        private long bytes;
+
+        private Throttle(long bytesPerSecond) {
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        void acquire(long read) throws InterruptedIOException {
+            if (bytesPerSecond <= 0)
+                return;
+
+            bytes += read;
+            long aheadNanos = bytes * TimeUnit.SECONDS.toNanos(1) / bytesPerSecond - (System.nanoTime() - start);
+            // sleep in steps of at least 10 ms
+            if (aheadNanos < TimeUnit.MILLISECONDS.toNanos(10))
+                return;
+            try {
+                TimeUnit.NANOSECONDS.sleep(aheadNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Compaction interrupted");
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.adieser.conntest.service.writer;
+
+import com.adieser.conntest.models.utils.CompressedPingLog;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compresses rotated CSV ping logs into {@link CompressedPingLog}s in the background. The compressed file is written
+ * next to the rotated one and moved over it, so readers see either the whole plain file or the whole compressed one,
+ * with the same name.
+ */
+@Slf4j
+final class SegmentCompressor {
+    private static final String TEMPORARY_SUFFIX = ".deflate.tmp";
+
+    private final Executor executor;
+    private final int blockBytes;
+    private final Set<Path> inProgress = ConcurrentHashMap.newKeySet();
+    private final LongAdder rawBytes = new LongAdder();
+    private final LongAdder compressedBytes = new LongAdder();
+
+    /**
+     * @param executor runs the compressions
+     * @param blockBytes raw bytes of lines per compressed block
+     */
+    SegmentCompressor(Executor executor, int blockBytes) {
+        this.executor = executor;
+        this.blockBytes = blockBytes;
+    }
+
+    /**
+     * Compress a rotated file in the background
+     */
+    void submit(Path rotatedFile) {
+        if (inProgress.add(rotatedFile))
+            executor.execute(() -> compressQuietly(rotatedFile));
+    }
+
+    /**
+     * Compress in the background the rotated files of a directory that are still plain, as the ones rotated before
+     * the application stopped
+     */
+    void submitRotated(Path directory) {
+        List<Path> rotated;
+        try {
+            rotated = RotatedFiles.list(directory);
+        } catch (IOException e) {
+            log.error("Failed to list the rotated ping logs: {}", e.getMessage());
+            return;
+        }
+        for (Path file : rotated) {
+            if (!CompressedPingLog.isCompressed(file))
+                submit(file);
+        }
+    }
+
+    /**
+     * Compress in the calling thread the rotated files of a directory that are still plain
+     * @throws IOException if the directory could not be listed
+     */
+    void compressRotated(Path directory) throws IOException {
+        for (Path file : RotatedFiles.list(directory))
+            compressQuietly(file);
+    }
+
+    /**
+     * Compress a file and replace it with the compressed one, unless it already is compressed
+     * @param file plain or segment ping log
+     * @return true if it was compressed
+     * @throws IOException if it could not be compressed, the file is left as it was
+     */
+    boolean compress(Path file) throws IOException {
+        if (!Files.isRegularFile(file) || CompressedPingLog.isCompressed(file))
+            return false;
+
+        Path temporary = file.resolveSibling(file.getFileName() + TEMPORARY_SUFFIX);
+        try {
+            long size = Files.size(file);
+            CompressedPingLog.compress(file, temporary, blockBytes);
+            long compressed = Files.size(temporary);
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            rawBytes.add(size);
+            compressedBytes.add(compressed);
+            log.info("Compressed rotated file: {}, {} to {} bytes", file, size, compressed);
+            return true;
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Replace a compressed file with its plain lines, so it can be appended to
+     * @param file compressed ping log
+     * @throws IOException if it could not be decompressed, the file is left as it was
+     */
+    static void decompress(Path file) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + TEMPORARY_SUFFIX);
+        try {
+            try (Reader reader = CompressedPingLog.newReader(file);
+                 Writer writer = Files.newBufferedWriter(temporary)) {
+                reader.transferTo(writer);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Decompressed ping log to append to it: {}", file);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * @return raw bytes of lines per compressed block
+     */
+    int getBlockBytes() {
+        return blockBytes;
+    }
+
+    /**
+     * @return bytes of the files compressed
+     */
+    long getRawBytes() {
+        return rawBytes.sum();
+    }
+
+    /**
+     * @return bytes of the compressed files
+     */
+    long getCompressedBytes() {
+        return compressedBytes.sum();
+    }
+
+    /**
+     * Compress a file, logging the error if it could not be compressed
+     */
+    void compressQuietly(Path file) {
+        try {
+            compress(file);
+        } catch (IOException e) {
+            log.error("Failed to compress rotated file {}: {}", file, e.getMessage());
+        } finally {
+            inProgress.remove(file);
+        }
+    }
+}
@@ -0,0 +1,487 @@
+package com.adieser.conntest.service.writer;
+
+import com.adieser.conntest.configurations.AppProperties;
+import com.adieser.conntest.models.PingLog;
+import com.adieser.conntest.models.binary.BinaryPingLogFormat;
+import com.adieser.conntest.models.utils.PingLogShards;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static com.adieser.conntest.models.FilePingLogRepository.SAVE_PING_ERROR_MSG;
+import static com.adieser.conntest.service.writer.FileWriterService.FORMATTER;
+import static com.adieser.conntest.service.writer.FileWriterService.ROTATED_FILENAME_FORMAT;
+
+/**
+ * Writes the pings of every target to a file of its own, see {@link PingLogShards}, as CSV lines encoded by a
+ * {@link PingLogCsvEncoder}. Every file is rotated in the directory of its target on the same limits and
+ * {@link RotationInterval} as a single ping log, and forced to the disk according to the {@link Durability}. Every
+ * active file has its own sparse time index, see {@link PingLogIndexWriter}.
+ * <p>
+ * With partitions, every partition owns the targets whose IP address hashes to it and writes them on a thread of its
+ * own, so the files of targets in different partitions are written in parallel, and the caller only hands the pings
+ * over. A partition takes everything waiting in its queue, writes it and flushes the files it touched once. Without
+ * partitions the pings are written and flushed on the calling thread.
+ * <p>
+ * At most {@code conntest.writer-open-shards} files are open. Opening another one closes the least recently written
+ * one, flushed and forced as on rotation, which is reopened when its target is written again; its counters are kept,
+ * so it is not read again.
+ */
+@Slf4j
+final class ShardedPingLogWriter implements PingLogSink {
+    private static final int PARTITION_QUEUE_CAPACITY = 64;
+    private static final long PARTITION_POLL_MILLIS = 100;
+    private static final long CLOSE_TIMEOUT_SECONDS = 10;
+    private static final int DEFAULT_OPEN_SHARDS = 256;
+
+    private final AppProperties appProperties;
+    private final Durability durability;
+    private final long syncIntervalNanos;
+    private final Supplier<Clock> clock;
+    private final LongConsumer syncRecorder;
+    private final BiConsumer<Path, String> rotationListener;
+    private final RotationInterval rotationInterval;
+    private final int indexRows;
+    private final int maxOpenShards;
+    private final Map<String, Shard> shards = new ConcurrentHashMap<>();
+    /**
+     * Shards with their file open, least recently written first. Its lock is taken before the ones of the shards.
+     */
+    private final LinkedHashMap<Shard, Boolean> openShards = new LinkedHashMap<>(16, 0.75f, true);
+    private Path directory;
+    private String filename;
+    private Partition[] partitions;
+    private ExecutorService partitionExecutor;
+    private volatile boolean running;
+
+    /**
+     * @param settings what the sinks share. The amount of partitions is read from its properties, the files of a
+     * partition are forced at most every sync interval with {@link Durability#INTERVAL}
+     */
+    ShardedPingLogWriter(Settings settings) {
+        this.appProperties = settings.appProperties();
+        this.durability = settings.durability();
+        this.syncIntervalNanos = settings.syncIntervalNanos();
+        this.clock = settings.clock();
+        this.syncRecorder = settings.syncRecorder();
+        this.rotationListener = settings.rotationListener();
+        this.rotationInterval = RotationInterval.of(appProperties.getRotationInterval());
+        Integer indexIntervalRows = appProperties.getIndexIntervalRows();
+        this.indexRows = indexIntervalRows != null && indexIntervalRows > 0 ? indexIntervalRows : 0;
+        Integer writerOpenShards = appProperties.getWriterOpenShards();
+        this.maxOpenShards = writerOpenShards != null && writerOpenShards > 0 ? writerOpenShards : DEFAULT_OPEN_SHARDS;
+    }
+
+    /**
+     * Start writing the files of the targets, in the directories of the targets under
+     * {@code conntest.pinglogs-path}, named as the active file. The files open are closed first.
+     */
+    @Override
+    public void open(Path file) throws IOException {
+        close();
+        directory = PingLogShards.getShardsDirectory(appProperties.getPingLogsPath());
+        filename = file.getFileName().toString();
+        Files.createDirectories(directory);
+        running = true;
+
+        Integer partitionCount = appProperties.getWriterPartitions();
+        if (partitionCount == null || partitionCount <= 0) {
+            partitions = new Partition[] {new Partition(null)};
+            partitionExecutor = null;
+            return;
+        }
+
+        partitions = new Partition[partitionCount];
+        AtomicInteger threads = new AtomicInteger();
+        partitionExecutor = Executors.newFixedThreadPool(partitionCount, runnable -> {
+            Thread thread = new Thread(runnable, "ping-log-partition-" + threads.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < partitionCount; i++) {
+            partitions[i] = new Partition(new ArrayBlockingQueue<>(PARTITION_QUEUE_CAPACITY));
+            partitionExecutor.execute(partitions[i]);
+        }
+    }
+
+    /**
+     * Write pings to the files of their targets. With partitions copies of the pings are handed over to them, waiting
+     * while the queue of a partition is full, otherwise they are written and flushed before returning.
+     * @param pingLogs pings to write. They may be reused by the caller once this returns
+     */
+    @Override
+    public void write(List<PingLog> pingLogs) throws IOException, InterruptedException {
+        if (partitionExecutor == null) {
+            partitions[0].write(pingLogs);
+            partitions[0].flush();
+            return;
+        }
+
+        List<List<PingLog>> byPartition = new ArrayList<>(partitions.length);
+        for (int i = 0; i < partitions.length; i++)
+            byPartition.add(new ArrayList<>());
+        for (PingLog pingLog : pingLogs) {
+            // the pings given may be reused, as the slots of the ring, before the partitions write them
+            byPartition.get(Math.floorMod(pingLog.getIpAddress().hashCode(), partitions.length)).add(PingLog.builder()
+                    .dateTime(pingLog.getDateTime())
+                    .ipAddress(pingLog.getIpAddress())
+                    .pingTime(pingLog.getPingTime())
+                    .build());
+        }
+        for (int i = 0; i < partitions.length; i++) {
+            if (!byPartition.get(i).isEmpty())
+                partitions[i].queue.put(byPartition.get(i));
+        }
+    }
+
+    /**
+     * The files are flushed by the partitions, or by {@link #write(List)} without them
+     */
+    @Override
+    public void flush() {
+    }
+
+    /**
+     * The files are forced to the disk by the partitions that write them
+     */
+    @Override
+    public void syncIfDue() {
+    }
+
+    /**
+     * Force the flushed pings of every file to the disk
+     */
+    void sync() throws IOException {
+        for (Shard shard : shards.values())
+            shard.sync();
+    }
+
+    /**
+     * Empty the active file of every target, the ones not written since the writer was opened too
+     */
+    @Override
+    public void clear() throws IOException {
+        Set<Path> cleared = new HashSet<>();
+        for (Shard shard : shards.values()) {
+            shard.clear();
+            cleared.add(shard.filePath);
+        }
+        for (Path file : PingLogShards.listShardFiles(directory, filename)) {
+            if (!cleared.contains(file))
+                Files.write(file, new byte[0]);
+        }
+    }
+
+    /**
+     * @return amount of targets written since the writer was opened
+     */
+    int getShardCount() {
+        return shards.size();
+    }
+
+    /**
+     * @return amount of targets with a file open
+     */
+    int getOpenShardCount() {
+        synchronized (openShards) {
+            return openShards.size();
+        }
+    }
+
+    /**
+     * Stop the partitions once they have written the pings in their queues, and close the files. Closing it again
+     * does nothing.
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        if (partitionExecutor != null) {
+            partitionExecutor.shutdown();
+            try {
+                if (!partitionExecutor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS))
+                    log.warn("Ping log partitions did not finish writing in {} seconds", CLOSE_TIMEOUT_SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            partitionExecutor = null;
+        }
+
+        IOException failure = null;
+        for (Shard shard : shards.values()) {
+            try {
+                shard.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        shards.clear();
+        synchronized (openShards) {
+            openShards.clear();
+        }
+        if (failure != null)
+            throw failure;
+    }
+
+    /**
+     * Get the shard of a target with its file open, closing the least recently written ones over the limit
+     */
+    private Shard getShard(String ipAddress) throws IOException {
+        Shard shard;
+        try {
+            shard = shards.computeIfAbsent(ipAddress, ip -> {
+                try {
+                    return new Shard(ip, PingLogShards.getShardDirectory(directory, ip).resolve(filename));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        synchronized (openShards) {
+            shard.open();
+            openShards.put(shard, Boolean.TRUE);
+            Iterator<Shard> eldest = openShards.keySet().iterator();
+            while (openShards.size() > maxOpenShards) {
+                Shard closing = eldest.next();
+                eldest.remove();
+                closing.close();
+            }
+        }
+        return shard;
+    }
+
+    /**
+     * Writer of a share of the targets. Its encoder and sets belong to its thread, or to the caller without partitions.
+     */
+    private final class Partition implements Runnable {
+        private final BlockingQueue<List<PingLog>> queue;
+        private final PingLogCsvEncoder encoder = new PingLogCsvEncoder();
+        private final Set<Shard> written = new LinkedHashSet<>();
+        private final Set<Shard> unsynced = new HashSet<>();
+        private long lastSyncNanos = System.nanoTime();
+
+        private Partition(BlockingQueue<List<PingLog>> queue) {
+            this.queue = queue;
+        }
+
+        @Override
+        public void run() {
+            List<List<PingLog>> batches = new ArrayList<>();
+            while (running || !queue.isEmpty()) {
+                try {
+                    List<PingLog> first = queue.poll(PARTITION_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (first == null)
+                        continue;
+
+                    batches.add(first);
+                    queue.drainTo(batches);
+                    for (List<PingLog> batch : batches)
+                        write(batch);
+                    flush();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    log.error("Ping log partition interrupted: {}", e.getMessage());
+                    return;
+                } catch (IOException e) {
+                    // the pings of the batch are lost, the partition keeps writing the next ones
+                    log.error(SAVE_PING_ERROR_MSG, e);
+                    written.clear();
+                } finally {
+                    batches.clear();
+                }
+            }
+        }
+
+        private void write(List<PingLog> pingLogs) throws IOException {
+            LocalDateTime now = rotationInterval != RotationInterval.NONE ? LocalDateTime.now(clock.get()) : null;
+            for (PingLog pingLog : pingLogs) {
+                Shard shard = getShard(pingLog.getIpAddress());
+                shard.write(pingLog, encoder, now);
+                written.add(shard);
+            }
+        }
+
+        /**
+         * Flush the files written since the last flush, and force them to the disk if the durability asks for it
+         */
+        private void flush() throws IOException {
+            for (Shard shard : written)
+                shard.flush();
+            if (durability == Durability.BATCH || durability == Durability.INTERVAL)
+                unsynced.addAll(written);
+            written.clear();
+
+            if (durability == Durability.BATCH
+                    || (durability == Durability.INTERVAL && System.nanoTime() - lastSyncNanos >= syncIntervalNanos)) {
+                long start = System.nanoTime();
+                for (Shard shard : unsynced)
+                    shard.sync();
+                unsynced.clear();
+                lastSyncNanos = System.nanoTime();
+                syncRecorder.accept(lastSyncNanos - start);
+            }
+        }
+    }
+
+    /**
+     * Active file of a target. It is written by a single partition, and also cleared, forced and closed by other
+     * threads. Its counters outlive its file being closed to bound the files open.
+     */
+    private final class Shard {
+        private final String ipAddress;
+        private final Path filePath;
+        private final PingLogIndexWriter index;
+        private FileChannel channel;
+        private BufferedWriter writer;
+        private boolean counted;
+        private long rowCount;
+        private long byteCount;
+        private int fileCount;
+        private LocalDateTime opened;
+
+        private Shard(String ipAddress, Path filePath) throws IOException {
+            this.ipAddress = ipAddress;
+            this.filePath = filePath;
+            this.index = indexRows > 0 ? new PingLogIndexWriter(filePath, indexRows) : null;
+            Files.createDirectories(filePath.getParent());
+            this.fileCount = RotatedFiles.nextNumber(filePath.getParent());
+        }
+
+        /**
+         * Open the file if it is closed. The first time, or after a rotation, it is counted and its index loaded.
+         */
+        synchronized void open() throws IOException {
+            if (isOpen())
+                return;
+
+            // the channel is kept to force the file to the disk
+            channel = FileChannel.open(filePath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+            writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8));
+            if (counted)
+                return;
+
+            counted = true;
+            byteCount = channel.size();
+            rowCount = 0;
+            opened = LocalDateTime.now(clock.get());
+            if (byteCount > 0) {
+                try (Stream<String> lines = Files.lines(filePath)) {
+                    rowCount = lines.count();
+                }
+                opened = LocalDateTime.ofInstant(Files.getLastModifiedTime(filePath).toInstant(),
+                        clock.get().getZone());
+            }
+            if (index != null)
+                index.open();
+        }
+
+        /**
+         * @param now current time, null if the files are not rotated on time
+         */
+        synchronized void write(PingLog pingLog, PingLogCsvEncoder encoder, LocalDateTime now) throws IOException {
+            // closed by another partition since it was got, it is tracked again the next time it is got
+            open();
+            if (PingLogFileSink.isFileFull(appProperties, rowCount, byteCount)
+                    || (now != null && rotationInterval.isOver(opened, now)))
+                rotate();
+
+            encoder.encode(pingLog);
+            byteCount += encoder.length();
+            encoder.writeTo(writer);
+            rowCount++;
+            if (index != null) {
+                index.add(BinaryPingLogFormat.toEpochSecond(pingLog.getDateTime()));
+                index.mark(byteCount);
+            }
+        }
+
+        synchronized void flush() throws IOException {
+            if (!isOpen())
+                return;
+
+            writer.flush();
+            if (index != null)
+                index.flush();
+        }
+
+        synchronized void sync() throws IOException {
+            if (isOpen())
+                channel.force(false);
+        }
+
+        /**
+         * Truncate the file through its channel, which appends at the new end, or empty it if it is closed
+         */
+        synchronized void clear() throws IOException {
+            if (isOpen()) {
+                writer.flush();
+                channel.truncate(0);
+            } else {
+                Files.write(filePath, new byte[0]);
+            }
+            rowCount = 0;
+            byteCount = 0;
+            if (index != null)
+                index.clear();
+        }
+
+        synchronized void close() throws IOException {
+            if (!isOpen())
+                return;
+
+            writer.flush();
+            if (durability != Durability.NONE)
+                channel.force(false);
+            writer.close();
+        }
+
+        private void rotate() throws IOException {
+            close();
+            String timestamp = LocalDateTime.now(clock.get()).format(FORMATTER);
+            Path rotatedFile = filePath.resolveSibling(String.format(ROTATED_FILENAME_FORMAT, timestamp, fileCount++));
+            Files.move(filePath, rotatedFile, StandardCopyOption.REPLACE_EXISTING);
+            counted = false;
+            open();
+
+            log.info("Rotated file: {}", rotatedFile);
+            rotationListener.accept(rotatedFile, ipAddress);
+        }
+
+        private boolean isOpen() {
+            return channel != null && channel.isOpen();
+        }
+    }
+}
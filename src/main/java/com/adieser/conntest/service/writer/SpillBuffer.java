@@ -0,0 +1,143 @@
+package com.adieser.conntest.service.writer;
+
+import com.adieser.conntest.models.PingLog;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+/**
+ * Temporary on-disk FIFO of pings, used by the {@link FileWriterService} to keep the pings that do not fit in its
+ * queue. Pings are appended as text lines and read back in the same order. The file is truncated every time it is
+ * fully drained, so it only grows while the writer is behind.
+ */
+class SpillBuffer implements Closeable {
+    private Path file;
+    private BufferedWriter out;
+    private BufferedReader in;
+
+    /**
+     * Pings appended and not drained yet
+     */
+    private long pending;
+
+    /**
+     * The file is created in the temporary directory on the first append
+     */
+    SpillBuffer() {
+    }
+
+    SpillBuffer(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Append a ping to the end of the buffer
+     * @param pingLog ping to append
+     * @throws IOException if the file could not be written
+     */
+    synchronized void append(PingLog pingLog) throws IOException {
+        if (out == null)
+            open();
+
+        out.write(pingLog.getDateTime().toString());
+        out.write(',');
+        out.write(pingLog.getIpAddress());
+        out.write(',');
+        out.write(PingLog.formatPingTime(pingLog.getPingTime()));
+        out.newLine();
+        pending++;
+    }
+
+    /**
+     * Move pings from the head of the buffer to a collection
+     * @param target collection the pings are added to
+     * @param max max amount of pings to move
+     * @return amount of pings moved
+     * @throws IOException if the file could not be read
+     */
+    synchronized int drainTo(Collection<? super PingLog> target, int max) throws IOException {
+        if (pending == 0)
+            return 0;
+
+        out.flush();
+        int drained = 0;
+        String line;
+        while (drained < max && pending > 0 && (line = in.readLine()) != null) {
+            target.add(parse(line));
+            pending--;
+            drained++;
+        }
+
+        if (pending == 0)
+            truncate();
+
+        return drained;
+    }
+
+    /**
+     * @return amount of pings in the buffer
+     */
+    synchronized long size() {
+        return pending;
+    }
+
+    synchronized boolean isEmpty() {
+        return pending == 0;
+    }
+
+    /**
+     * Close the file and delete it. Pings still in the buffer are lost.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        closeStreams();
+        pending = 0;
+        if (file != null)
+            Files.deleteIfExists(file);
+    }
+
+    private void open() throws IOException {
+        if (file == null) {
+            file = Files.createTempFile("conntest-spill-", ".csv");
+            file.toFile().deleteOnExit();
+        }
+        out = Files.newBufferedWriter(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        in = Files.newBufferedReader(file);
+    }
+
+    private void truncate() throws IOException {
+        closeStreams();
+        open();
+    }
+
+    private void closeStreams() throws IOException {
+        try {
+            if (in != null)
+                in.close();
+        } finally {
+            if (out != null)
+                out.close();
+            in = null;
+            out = null;
+        }
+    }
+
+    private static PingLog parse(String line) {
+        int first = line.indexOf(',');
+        int second = line.indexOf(',', first + 1);
+
+        return PingLog.builder()
+                .dateTime(LocalDateTime.parse(line.substring(0, first)))
+                .ipAddress(line.substring(first + 1, second))
+                .pingTime(Double.parseDouble(line.substring(second + 1)))
+                .build();
+    }
+}
@@ -0,0 +1,67 @@
+package com.adieser.conntest.service.writer;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * How a thread waits on the {@link PingLogRingBuffer}: the writer thread for pings to write, and a producer for room
+ * when the ring is full and the overflow policy is {@link OverflowPolicy#BLOCK}
+ */
+public enum WaitStrategy {
+    /**
+     * Spin on the CPU. The lowest latency, but the waiting thread keeps a core busy
+     */
+    BUSY_SPIN {
+        @Override
+        void idle(int attempt) {
+            Thread.onSpinWait();
+        }
+    },
+    /**
+     * Spin for a while, then yield the CPU to other threads
+     */
+    YIELD {
+        @Override
+        void idle(int attempt) {
+            if (attempt < SPIN_TRIES)
+                Thread.onSpinWait();
+            else
+                Thread.yield();
+        }
+    },
+    /**
+     * Spin for a while, then sleep for short periods. Barely uses the CPU when idle
+     */
+    PARK {
+        @Override
+        void idle(int attempt) {
+            if (attempt < SPIN_TRIES)
+                Thread.onSpinWait();
+            else
+                LockSupport.parkNanos(PARK_NANOS);
+        }
+    };
+
+    private static final int SPIN_TRIES = 100;
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    /**
+     * Wait a bit before checking the condition again
+     * @param attempt amount of times the condition was checked before, 0 on the first wait
+     */
+    abstract void idle(int attempt);
+
+    /**
+     * Find a strategy by its property value
+     * @param name busy-spin, yield or park. Case-insensitive
+     * @return the strategy, {@link #PARK} if the name is not set
+     * @throws IllegalArgumentException if there is no strategy with that name
+     */
+    public static WaitStrategy of(String name) {
+        if (name == null || name.isBlank())
+            return PARK;
+
+        return valueOf(name.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+    }
+}
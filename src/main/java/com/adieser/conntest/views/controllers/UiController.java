@@ -364,14 +364,14 @@ public class UiController {
                     setTextFill(Color.GRAY);
                 } else {
                     setText(item);
-                    setTextFill(getColorForPingTime(Long.valueOf(item)));
+                    setTextFill(getColorForPingTime(Double.valueOf(item)));
                 }
                 setFont(Font.font("", FontWeight.BOLD, 12));
                 setAlignment(Pos.CENTER);
             }
 
-            private Color getColorForPingTime(Long pingTime) {
-                if (pingTime == null || pingTime.equals(-1L)) {
+            private Color getColorForPingTime(Double pingTime) {
+                if (pingTime == null || pingTime < 0) {
                     return Color.RED;
                 } else if (pingTime <= 20) {
                     return Color.web("#2E8B57");
@@ -426,7 +426,7 @@ public class UiController {
 
             for (PingLog pingLog : pingLogs) {
                 LocalDateTime dateTime = pingLog.getDateTime();
-                String pingTime = String.valueOf(pingLog.getPingTime());
+                String pingTime = PingLog.formatPingTime(pingLog.getPingTime());
 
                 combinedMap.putIfAbsent(dateTime, new ArrayList<>(Collections.nCopies(pingLogsByIp.size(), "...")));
                 combinedMap.get(dateTime).set(i, pingTime);
@@ -501,7 +501,8 @@ public class UiController {
         if (extract.getPingLogs() != null && extract.getPingLogs().size() >= 2) {
             PingLog lowest = extract.getPingLogs().get(0);
             PingLog highest = extract.getPingLogs().get(1);
-            column.setText(lowest.getPingTime() + " / " + highest.getPingTime() + " ms");
+            column.setText(PingLog.formatPingTime(lowest.getPingTime()) + " / "
+                    + PingLog.formatPingTime(highest.getPingTime()) + " ms");
         }else{
             column.setText("0 / 0 ms");
         }
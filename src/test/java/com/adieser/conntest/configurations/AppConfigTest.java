@@ -0,0 +1,105 @@
+package com.adieser.conntest.configurations;
+
+import com.adieser.conntest.interceptors.RequestLoggingInterceptor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.slf4j.Logger;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AppConfigTest {
+    private static final int SESSIONS = 500;
+
+    @Mock
+    RequestLoggingInterceptor requestLoggingInterceptor;
+    @Mock
+    AppProperties appProperties;
+    @Mock
+    Logger logger;
+
+    @Test
+    void probeExecutor_platform() {
+        // Given
+        when(appProperties.getProbeExecutor()).thenReturn("platform");
+        AppConfig underTest = new AppConfig(requestLoggingInterceptor, appProperties, logger);
+
+        // When
+        ExecutorService probeExecutor = underTest.probeExecutor();
+
+        // Then
+        assertInstanceOf(ThreadPoolExecutor.class, probeExecutor);
+        probeExecutor.shutdownNow();
+    }
+
+    @Test
+    void probeExecutor_virtual() {
+        // Given
+        when(appProperties.getProbeExecutor()).thenReturn(AppConfig.VIRTUAL_PROBE_EXECUTOR);
+        AppConfig underTest = new AppConfig(requestLoggingInterceptor, appProperties, logger);
+
+        // When
+        ExecutorService probeExecutor = underTest.probeExecutor();
+
+        // Then, the executor is available whether the runtime supports virtual threads or not
+        assertNotNull(probeExecutor);
+        probeExecutor.shutdownNow();
+    }
+
+    @Test
+    void probeExecutor_auto() {
+        // Given
+        when(appProperties.getProbeExecutor()).thenReturn(AppConfig.AUTO_PROBE_EXECUTOR);
+        AppConfig underTest = new AppConfig(requestLoggingInterceptor, appProperties, logger);
+
+        // When
+        ExecutorService probeExecutor = underTest.probeExecutor();
+
+        // Then, it picks virtual threads if the runtime has them and does not warn otherwise
+        assertNotNull(probeExecutor);
+        verifyNoInteractions(logger);
+        probeExecutor.shutdownNow();
+    }
+
+    /**
+     * Every ping session keeps its task busy, so all of them must run at the same time instead of waiting in a queue
+     */
+    @Test
+    void newPlatformProbeExecutor_runsAllSessionsConcurrently() throws InterruptedException {
+        // Given
+        ExecutorService probeExecutor = AppConfig.newPlatformProbeExecutor();
+        CountDownLatch started = new CountDownLatch(SESSIONS);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // When
+        for (int i = 0; i < SESSIONS; i++) {
+            probeExecutor.execute(() -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+
+        // Then
+        try {
+            assertTrue(started.await(10, TimeUnit.SECONDS), "Not all the sessions were started");
+        } finally {
+            release.countDown();
+            probeExecutor.shutdown();
+        }
+    }
+}
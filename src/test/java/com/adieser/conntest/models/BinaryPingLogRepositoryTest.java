@@ -0,0 +1,121 @@
+package com.adieser.conntest.models;
+
+import com.adieser.conntest.configurations.AppProperties;
+import com.adieser.conntest.models.binary.BinaryPingLogWriter;
+import com.adieser.conntest.models.utils.PingLogFileValidator;
+import com.adieser.conntest.service.writer.FileWriterService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.List;
+
+import static com.adieser.conntest.models.FilePingLogRepository.CLEAN_PINGLOG_FILE_MSG;
+import static com.adieser.utils.TestUtils.CLOUD_IP_ADDRESS;
+import static com.adieser.utils.TestUtils.DEFAULT_LOG_DATE_TIME;
+import static com.adieser.utils.TestUtils.LOCAL_IP_ADDRESS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BinaryPingLogRepositoryTest {
+    @Mock
+    Logger logger;
+
+    @Mock
+    FileWriterService fileWriterServiceMock;
+
+    @Mock
+    PingLogFileValidator pingLogFileValidatorMock;
+
+    @Mock
+    AppProperties appPropertiesMock;
+
+    @TempDir
+    Path tempDir;
+
+    BinaryPingLogRepository underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new BinaryPingLogRepository(pingLogFileValidatorMock, appPropertiesMock, logger, fileWriterServiceMock);
+    }
+
+    @Test
+    void findPingLogsByDateTimeRangeByIp() throws IOException {
+        // Given
+        givenPingLogs(List.of(
+                pingLog(0, LOCAL_IP_ADDRESS, 13),
+                pingLog(0, CLOUD_IP_ADDRESS, 20),
+                pingLog(100, LOCAL_IP_ADDRESS, -1),
+                pingLog(200, LOCAL_IP_ADDRESS, 15),
+                pingLog(300, LOCAL_IP_ADDRESS, 17)));
+
+        // When
+        List<PingLog> result = underTest.findPingLogsByDateTimeRangeByIp(
+                DEFAULT_LOG_DATE_TIME.plusSeconds(100), DEFAULT_LOG_DATE_TIME.plusSeconds(200), LOCAL_IP_ADDRESS);
+        BigDecimal lost = underTest.findLostPingLogsAvgByIP(LOCAL_IP_ADDRESS);
+
+        // Then
+        assertEquals(List.of(pingLog(100, LOCAL_IP_ADDRESS, -1), pingLog(200, LOCAL_IP_ADDRESS, 15)), result);
+        assertEquals(new BigDecimal("0.25"), lost);
+    }
+
+    @Test
+    void findAllPingLogs_emptyFile() throws IOException {
+        // Given
+        when(appPropertiesMock.getPingLogsPath()).thenReturn(tempDir.toString());
+        when(appPropertiesMock.getPinglogsFilename()).thenReturn("ping.bin");
+        tempDir.resolve("ping.bin").toFile().createNewFile();
+
+        // When, Then
+        assertEquals(List.of(), underTest.findAllPingLogs());
+    }
+
+    @Test
+    void clearPingLogFile() throws InterruptedException, IOException {
+        // When
+        underTest.clearPingLogFile();
+
+        // Then
+        verify(fileWriterServiceMock).clear();
+    }
+
+    @Test
+    void clearPingLogFile_IOException() throws IOException {
+        // Given
+        IOException exception = new IOException("error");
+        doThrow(exception).when(fileWriterServiceMock).clear();
+
+        // When, Then
+        InterruptedException thrown = assertThrows(InterruptedException.class, () -> underTest.clearPingLogFile());
+        assertEquals(CLEAN_PINGLOG_FILE_MSG, thrown.getMessage());
+        verify(logger).error(CLEAN_PINGLOG_FILE_MSG, exception);
+    }
+
+    private void givenPingLogs(List<PingLog> pingLogs) throws IOException {
+        when(appPropertiesMock.getPingLogsPath()).thenReturn(tempDir.toString());
+        when(appPropertiesMock.getPinglogsFilename()).thenReturn("ping.bin");
+        try (BinaryPingLogWriter writer = new BinaryPingLogWriter(tempDir.resolve("ping.bin"), 1024)) {
+            writer.write(pingLogs);
+        }
+    }
+
+    private static PingLog pingLog(int seconds, String ipAddress, double pingTime) {
+        return PingLog.builder()
+                .dateTime(DEFAULT_LOG_DATE_TIME.plusSeconds(seconds))
+                .ipAddress(ipAddress)
+                .pingTime(pingTime)
+                .build();
+    }
+}
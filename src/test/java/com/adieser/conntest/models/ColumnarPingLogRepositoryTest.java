@@ -0,0 +1,185 @@
+package com.adieser.conntest.models;
+
+import com.adieser.conntest.configurations.AppProperties;
+import com.adieser.conntest.models.columnar.ColumnarPingLogWriter;
+import com.adieser.conntest.models.utils.PingLogFileValidator;
+import com.adieser.conntest.service.writer.FileWriterService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.adieser.utils.TestUtils.CLOUD_IP_ADDRESS;
+import static com.adieser.utils.TestUtils.DEFAULT_LOG_DATE_TIME;
+import static com.adieser.utils.TestUtils.LOCAL_IP_ADDRESS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ColumnarPingLogRepositoryTest {
+    @Mock
+    Logger logger;
+
+    @Mock
+    FileWriterService fileWriterServiceMock;
+
+    @Mock
+    PingLogFileValidator pingLogFileValidatorMock;
+
+    @TempDir
+    Path tempDir;
+
+    ColumnarPingLogRepository underTest;
+
+    CsvPingLogRepository csvRepository;
+
+    @BeforeEach
+    void setUp() {
+        underTest = new ColumnarPingLogRepository(pingLogFileValidatorMock, properties("ping.col"), logger,
+                fileWriterServiceMock);
+        csvRepository = new CsvPingLogRepository(pingLogFileValidatorMock, properties("ping.log"), logger,
+                fileWriterServiceMock);
+    }
+
+    /**
+     * The answers from the headers of the blocks, the decoded blocks and the pending pings are the same as the ones
+     * of the CSV repository on the same pings
+     */
+    @Test
+    void queries_sameAsCsv() throws IOException {
+        // Given
+        givenPingLogs(320);
+        LocalDateTime start = DEFAULT_LOG_DATE_TIME.plusSeconds(45);
+        LocalDateTime end = DEFAULT_LOG_DATE_TIME.plusSeconds(290);
+
+        for (String ip : List.of(LOCAL_IP_ADDRESS, CLOUD_IP_ADDRESS)) {
+            // When, Then
+            assertEquals(csvRepository.findAvgLatencyByIp(ip), underTest.findAvgLatencyByIp(ip));
+            assertEquals(csvRepository.findAvgLatencyByDateTimeRangeByIp(start, end, ip),
+                    underTest.findAvgLatencyByDateTimeRangeByIp(start, end, ip));
+            assertEquals(csvRepository.findLostPingLogsAvgByIP(ip), underTest.findLostPingLogsAvgByIP(ip));
+            assertEquals(csvRepository.findLostPingLogsAvgByDateTimeRangeByIp(start, end, ip),
+                    underTest.findLostPingLogsAvgByDateTimeRangeByIp(start, end, ip));
+            assertEquals(csvRepository.findMaxMinPingLogOfAll(ip), underTest.findMaxMinPingLogOfAll(ip));
+            assertEquals(csvRepository.findMaxMinPingLogByDateTimeRangeByIp(start, end, ip),
+                    underTest.findMaxMinPingLogByDateTimeRangeByIp(start, end, ip));
+            assertEquals(csvRepository.findPingLogsByDateTimeRangeByIp(start, end, ip),
+                    underTest.findPingLogsByDateTimeRangeByIp(start, end, ip));
+            assertEquals(csvRepository.findLostPingsByIp(ip), underTest.findLostPingsByIp(ip));
+        }
+        assertEquals(csvRepository.findAllPingLogs(), underTest.findAllPingLogs());
+    }
+
+    @Test
+    void findAvgLatencyByIp_noPings() throws IOException {
+        // Given
+        givenPingLogs(0);
+
+        // When, Then
+        assertEquals(csvRepository.findAvgLatencyByIp(LOCAL_IP_ADDRESS), underTest.findAvgLatencyByIp(LOCAL_IP_ADDRESS));
+        assertEquals(List.of(), underTest.findMaxMinPingLogOfAll(LOCAL_IP_ADDRESS));
+    }
+
+    @Test
+    void clearPingLogFile() throws InterruptedException, IOException {
+        // When
+        underTest.clearPingLogFile();
+
+        // Then
+        verify(fileWriterServiceMock).clear();
+    }
+
+    /**
+     * Every ping saved is found, either in a block or pending, while the writer moves the pending pings to blocks
+     */
+    @Test
+    void findAllPingLogs_whileWriting() throws Exception {
+        // Given
+        AppProperties properties = properties("ping.col");
+        properties.setPingLogsPath(tempDir + "/");
+        properties.setPinglogFormat("columnar");
+        properties.setColumnarBlockSize(4);
+        ExecutorService executor = Executors.newCachedThreadPool();
+        FileWriterService fileWriterService = new FileWriterService(logger, executor, properties,
+                Clock.systemDefaultZone());
+        fileWriterService.init();
+        ColumnarPingLogRepository repository = new ColumnarPingLogRepository(pingLogFileValidatorMock, properties,
+                logger, fileWriterService);
+
+        try {
+            // When
+            int found = 0;
+            for (int i = 0; i < 500; i++) {
+                fileWriterService.submit(PingLog.builder()
+                        .dateTime(DEFAULT_LOG_DATE_TIME.plusSeconds(i / 2))
+                        .ipAddress(i % 2 == 0 ? LOCAL_IP_ADDRESS : CLOUD_IP_ADDRESS)
+                        .pingTime(10)
+                        .build());
+                int previous = found;
+                found = repository.findAllPingLogs().size();
+
+                // Then
+                assertTrue(found >= previous, "found " + found + " pings after " + previous);
+            }
+        } finally {
+            fileWriterService.cleanUp();
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Write the pings to both files, the last ones are pending in the writer of the columnar file
+     */
+    private void givenPingLogs(int seconds) throws IOException {
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+        List<PingLog> pingLogs = new ArrayList<>();
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < seconds; i++) {
+            for (String ip : List.of(LOCAL_IP_ADDRESS, CLOUD_IP_ADDRESS)) {
+                double pingTime = i % 13 == 0 ? -1 : (i * 37 % 100) / 4.0 + (ip.equals(LOCAL_IP_ADDRESS) ? 0.5 : 10);
+                PingLog pingLog = PingLog.builder()
+                        .dateTime(DEFAULT_LOG_DATE_TIME.plusSeconds(i))
+                        .ipAddress(ip)
+                        .pingTime(pingTime)
+                        .build();
+                pingLogs.add(pingLog);
+                lines.add(formatter.format(pingLog.getDateTime()) + "," + ip + ","
+                        + PingLog.formatPingTime(pingTime));
+            }
+        }
+        Files.write(tempDir.resolve("ping.log"), lines);
+
+        // full blocks of 50 pings by target, the rest is pending
+        int written = seconds / 50 * 50 * 2;
+        try (ColumnarPingLogWriter writer = new ColumnarPingLogWriter(tempDir.resolve("ping.col"), 50)) {
+            writer.write(pingLogs.subList(0, written));
+        }
+        List<PingLog> pending = pingLogs.subList(written, pingLogs.size());
+        when(fileWriterServiceMock.openWithPending(any())).thenAnswer(invocation ->
+                invocation.<FileWriterService.PendingOpener<?>>getArgument(0).open(pending));
+    }
+
+    private AppProperties properties(String filename) {
+        AppProperties properties = new AppProperties();
+        properties.setPingLogsPath(tempDir.toString());
+        properties.setPinglogsFilename(filename);
+        return properties;
+    }
+}
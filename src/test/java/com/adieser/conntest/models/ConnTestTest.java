@@ -1,27 +1,37 @@
 package com.adieser.conntest.models;
 
 import com.adieser.conntest.models.utils.Reachable;
+import com.adieser.conntest.service.scheduler.ProbeScheduler;
 import com.adieser.utils.TestUtils;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.slf4j.Logger;
 
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Stream;
 
+import static com.adieser.conntest.models.ConnTest.PING_PERIOD_MILLIS;
 import static com.adieser.conntest.models.ConnTest.PING_SESSION_INTERRUPTED_MSG;
+import static com.adieser.conntest.models.ConnTest.PROBE_DEADLINE_NANOS;
+import static com.adieser.utils.TestUtils.DEFAULT_LOG_DATE_TIME;
 import static com.adieser.utils.TestUtils.DEFAULT_PING_TIME;
 import static com.adieser.utils.TestUtils.LOCAL_IP_ADDRESS;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.atLeastOnce;
-import static org.mockito.Mockito.doNothing;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -32,7 +42,7 @@ class ConnTestTest {
     @Mock
     Logger logger;
     @Mock
-    ExecutorService executorService;
+    ProbeScheduler probeScheduler;
     @Mock
     PingLogRepository pingLogRepository;
     @Mock
@@ -41,89 +51,183 @@ class ConnTestTest {
     @Test
     void testStartPingSession() {
         // when
-        ConnTest underTest = new ConnTest(executorService, LOCAL_IP_ADDRESS, logger, pingLogRepository, pingUtils);
-        doNothing().when(executorService).execute(any());
+        ConnTest underTest = new ConnTest(probeScheduler, LOCAL_IP_ADDRESS, logger, pingLogRepository, pingUtils);
 
         // then
         underTest.startPingSession();
 
         // assert
-        verify(executorService, times(1)).execute(any());
+        verify(probeScheduler, times(1)).register(eq(PING_PERIOD_MILLIS), any());
+        assertTrue(underTest.running);
     }
 
     @Test
     void testStopPingSession() {
         // when
-        ConnTest underTest = new ConnTest(executorService, LOCAL_IP_ADDRESS, logger, pingLogRepository, pingUtils);
+        ProbeScheduler.Registration registration = mock(ProbeScheduler.Registration.class);
+        when(probeScheduler.register(anyLong(), any())).thenReturn(registration);
+        ConnTest underTest = new ConnTest(probeScheduler, LOCAL_IP_ADDRESS, logger, pingLogRepository, pingUtils);
+        underTest.startPingSession();
 
         // then
         underTest.stopPingSession();
 
         // assert
         assertFalse(underTest.running);
+        verify(registration, times(1)).cancel();
     }
 
     @Test
-    @SuppressWarnings("squid:S2925")
-    void testPingSessionSuccess() throws InterruptedException {
+    void testOnTickSuccess() throws InterruptedException {
         PingLog defaultPingLog = TestUtils.getDefaultPingLog();
 
         // when
-        ConnTest underTestSpy = spy(new ConnTest(executorService, LOCAL_IP_ADDRESS, logger, pingLogRepository, pingUtils));
-        doReturn(DEFAULT_PING_TIME).when(underTestSpy).ping();
-        when(underTestSpy.buildPingLog()).thenReturn(defaultPingLog);
-        doNothing().when(pingLogRepository).savePingLog(any());
+        ConnTest underTestSpy = spy(new ConnTest(probeScheduler, LOCAL_IP_ADDRESS, logger, pingLogRepository, pingUtils));
+        underTestSpy.running = true;
+        doReturn(CompletableFuture.completedFuture(DEFAULT_PING_TIME)).when(underTestSpy).ping();
+        doReturn(defaultPingLog).when(underTestSpy).buildPingLog(DEFAULT_LOG_DATE_TIME);
+        when(pingLogRepository.savePingLog(any())).thenReturn(true);
+
+        // then
+        underTestSpy.onTick(tick(0));
+
+        // assert
+        verify(underTestSpy, times(1)).ping();
+        verify(pingLogRepository, times(1)).savePingLog(defaultPingLog);
+        assertEquals(0, underTestSpy.getProbesInFlight());
+        assertEquals(0, underTestSpy.getRejectedPings());
+    }
+
+    /**
+     * Pings the repository does not accept are counted, and a run of them is warned about once
+     */
+    @Test
+    void testOnTickRejected() throws InterruptedException {
+        // when
+        ConnTest underTestSpy = spy(new ConnTest(probeScheduler, LOCAL_IP_ADDRESS, logger, pingLogRepository, pingUtils));
+        underTestSpy.running = true;
+        doReturn(CompletableFuture.completedFuture(DEFAULT_PING_TIME)).when(underTestSpy).ping();
+        when(pingLogRepository.savePingLog(any())).thenReturn(false, false, true, false);
+
+        // then
+        for (int i = 0; i < 4; i++)
+            underTestSpy.onTick(tick(i));
+
+        // assert
+        assertEquals(3, underTestSpy.getRejectedPings());
+        verify(logger, times(2)).warn("Pings of IP {} are not being saved", LOCAL_IP_ADDRESS);
+    }
+
+    @Test
+    void testOnTickNotRunning() throws InterruptedException {
+        // when
+        ConnTest underTest = new ConnTest(probeScheduler, LOCAL_IP_ADDRESS, logger, pingLogRepository, pingUtils);
 
         // then
-        new Thread(underTestSpy::pingSession).start();
-        Thread.sleep(2000);
-        underTestSpy.running = false;
+        underTest.onTick(tick(0));
 
         // assert
-        verify(underTestSpy, atLeastOnce()).ping();
-        verify(pingLogRepository, atLeastOnce()).savePingLog(defaultPingLog);
+        verify(pingLogRepository, never()).savePingLog(any());
     }
 
+    /**
+     * A tick arriving while the previous probe is pending sends its own probe, and the results are saved in
+     * sequence order even if the second probe returns first
+     */
     @Test
-    @SuppressWarnings("squid:S2925")
-    void testPingSessionInterruptedException() throws InterruptedException {
+    void testOnTickOverlappingProbesSavedInOrder() throws InterruptedException {
         // when
-        ConnTest underTestSpy = spy(new ConnTest(executorService, LOCAL_IP_ADDRESS, logger, pingLogRepository, pingUtils));
-        doReturn(DEFAULT_PING_TIME).when(underTestSpy).ping();
-        doNothing().when(pingLogRepository).savePingLog(any());
+        CompletableFuture<Long> slowProbe = new CompletableFuture<>();
+        when(pingUtils.probeAsync(LOCAL_IP_ADDRESS))
+                .thenReturn(slowProbe)
+                .thenReturn(CompletableFuture.completedFuture(412_000L));
+        ConnTest underTest = new ConnTest(probeScheduler, LOCAL_IP_ADDRESS, logger, pingLogRepository, pingUtils);
+        underTest.running = true;
 
         // then
-        Thread thread = new Thread(underTestSpy::pingSession);
-        thread.start();
-        thread.interrupt();
+        underTest.onTick(tick(0));
+        underTest.onTick(tick(1));
 
-        Thread.sleep(50); // Give time to the interruption to finish until verifying the result
+        // assert, nothing is saved while the first probe is pending
+        verify(pingLogRepository, never()).savePingLog(any());
+        assertEquals(2, underTest.getProbesInFlight());
+
+        slowProbe.complete(-1L);
+
+        ArgumentCaptor<PingLog> saved = ArgumentCaptor.forClass(PingLog.class);
+        verify(pingLogRepository, times(2)).savePingLog(saved.capture());
+        assertEquals(DEFAULT_LOG_DATE_TIME, saved.getAllValues().get(0).getDateTime());
+        assertEquals(-1L, saved.getAllValues().get(0).getPingTime());
+        assertEquals(DEFAULT_LOG_DATE_TIME.plusSeconds(1), saved.getAllValues().get(1).getDateTime());
+        assertTrue(saved.getAllValues().get(1).getPingTime() >= 0);
+    }
+
+    /**
+     * A probe that never returns is saved as lost once its deadline passes, and it does not hold back the next ones
+     */
+    @Test
+    void testOnTickProbePastDeadlineSavedAsLost() throws InterruptedException {
+        // when
+        when(pingUtils.probeAsync(LOCAL_IP_ADDRESS))
+                .thenReturn(new CompletableFuture<>())
+                .thenReturn(CompletableFuture.completedFuture(412_000L));
+        ConnTest underTest = new ConnTest(probeScheduler, LOCAL_IP_ADDRESS, logger, pingLogRepository, pingUtils);
+        underTest.running = true;
+
+        // then, the first tick was scheduled long enough ago for its probe to be past the deadline
+        underTest.onTick(new ProbeScheduler.Tick(0, System.nanoTime() - PROBE_DEADLINE_NANOS, DEFAULT_LOG_DATE_TIME, 0));
+        underTest.onTick(tick(1));
+
+        // assert
+        ArgumentCaptor<PingLog> saved = ArgumentCaptor.forClass(PingLog.class);
+        verify(pingLogRepository, times(2)).savePingLog(saved.capture());
+        assertEquals(-1L, saved.getAllValues().get(0).getPingTime());
+        assertTrue(saved.getAllValues().get(1).getPingTime() >= 0);
+        assertEquals(0, underTest.getProbesInFlight());
+    }
+
+    @Test
+    void testOnTickInterruptedException() throws InterruptedException {
+        // when
+        ConnTest underTestSpy = spy(new ConnTest(probeScheduler, LOCAL_IP_ADDRESS, logger, pingLogRepository, pingUtils));
+        underTestSpy.running = true;
+        doReturn(CompletableFuture.completedFuture(DEFAULT_PING_TIME)).when(underTestSpy).ping();
+        doThrow(InterruptedException.class).when(pingLogRepository).savePingLog(any());
+
+        // then
+        underTestSpy.onTick(tick(0));
 
         // assert
         verify(logger, times(1)).warn(PING_SESSION_INTERRUPTED_MSG);
+        assertTrue(Thread.interrupted());
     }
 
     @ParameterizedTest
     @MethodSource("testPingSuccess")
-    @SuppressWarnings("squid:S2925")
-    void testPing(boolean isReachable) {
+    void testPing(long roundTripNanos, double expectedPingTime) {
         // when
-        ConnTest underTestSpy = spy(new ConnTest(executorService, LOCAL_IP_ADDRESS, logger, pingLogRepository, pingUtils));
-        when(pingUtils.isReachable(LOCAL_IP_ADDRESS)).thenReturn(isReachable);
+        ConnTest underTestSpy = spy(new ConnTest(probeScheduler, LOCAL_IP_ADDRESS, logger, pingLogRepository, pingUtils));
+        when(pingUtils.probeAsync(LOCAL_IP_ADDRESS)).thenReturn(CompletableFuture.completedFuture(roundTripNanos));
 
         // then
-        long ping = underTestSpy.ping();
+        double ping = underTestSpy.ping().join();
 
         /* assert
-            ping != -1 means ping success, i.e. it is reachable
+            the round trip is kept with microsecond resolution, -1 means it is not reachable
          */
-        assertEquals(isReachable, ping != -1L);
+        assertEquals(expectedPingTime, ping);
     }
 
-    static Stream<Boolean> testPingSuccess() {
+    static Stream<Arguments> testPingSuccess() {
         return Stream.of(
-                true,
-                false
+                Arguments.of(13_000_000L, 13),
+                Arguments.of(412_345L, 0.412),
+                Arguments.of(1_250_999L, 1.25),
+                Arguments.of(-1L, -1)
         );
     }
+
+    private static ProbeScheduler.Tick tick(long sequence) {
+        return new ProbeScheduler.Tick(sequence, System.nanoTime(), DEFAULT_LOG_DATE_TIME.plusSeconds(sequence), 0);
+    }
 }
@@ -1,11 +1,13 @@
 package com.adieser.conntest.models;
 
 import com.adieser.conntest.configurations.AppProperties;
+import com.adieser.conntest.models.utils.CompressedPingLog;
 import com.adieser.conntest.models.utils.PingLogFileValidator;
 import com.adieser.conntest.service.writer.FileWriterService;
 import com.opencsv.bean.CsvToBean;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -18,17 +20,26 @@ import org.slf4j.Logger;
 import java.io.BufferedReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.nio.file.FileSystemException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
 
+import static com.adieser.conntest.models.CsvPingLogRepository.SCANNER_CSV_READER;
 import static com.adieser.utils.TestUtils.CLOUD_IP_ADDRESS;
+import static com.adieser.utils.TestUtils.DEFAULT_LOG_DATE_TIME;
 import static com.adieser.utils.TestUtils.LOCAL_IP_ADDRESS;
 import static com.adieser.utils.TestUtils.getDefaultPingLog;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
@@ -40,6 +51,8 @@ import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -96,6 +109,29 @@ class CsvPingLogRepositoryTest {
         assertEquals(pingLogs.get(0), pingLogsResult.get(0));
     }
 
+    /**
+     * The pings are parsed as they are counted, and the file is closed once the query is done
+     */
+    @Test
+    void findLostPingLogsAvgByIP_streamsAndCloses() throws IOException {
+        // Given
+        Reader reader = spy(new StringReader(String.join("\n",
+                "2023-10-06 02:08:35," + LOCAL_IP_ADDRESS + ",0.4",
+                "2023-10-06 02:08:35," + CLOUD_IP_ADDRESS + ",-1",
+                "2023-10-06 02:08:36," + LOCAL_IP_ADDRESS + ",-1",
+                "2023-10-06 02:08:37," + LOCAL_IP_ADDRESS + ",0.5",
+                "2023-10-06 02:08:38," + LOCAL_IP_ADDRESS + ",0.6")));
+        doReturn(reader).when(underTestSpy).getReader();
+
+        // When
+        BigDecimal lost = underTestSpy.findLostPingLogsAvgByIP(LOCAL_IP_ADDRESS);
+
+        // Then
+        assertEquals(new BigDecimal("0.25"), lost);
+        verify(reader).close();
+        verify(underTestSpy, never()).readAll();
+    }
+
     /**
      * Test IOException case
      */
@@ -220,14 +256,196 @@ class CsvPingLogRepositoryTest {
         verify(logger).error(eq(CsvPingLogRepository.CLEAN_PINGLOG_FILE_MSG), any(IOException.class));
     }
 
+    /**
+     * A compressed ping log is read as a plain one, inflating only the blocks of a range
+     */
+    @Test
+    void findPingLogsByDateTimeRange_compressed(@TempDir Path tempDir) throws IOException {
+        // Given
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            String dateTime = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").format(DEFAULT_LOG_DATE_TIME.plusSeconds(i));
+            lines.add(dateTime + "," + LOCAL_IP_ADDRESS + "," + (i % 11 == 0 ? "-1" : "0.4" + i % 10));
+        }
+        Path plain = tempDir.resolve("plain.log");
+        Files.write(plain, lines);
+        CompressedPingLog.compress(plain, tempDir.resolve("ping.log"), 1024);
+        when(appPropertiesMock.getPingLogsPath()).thenReturn(tempDir.toString());
+        when(appPropertiesMock.getPinglogsFilename()).thenReturn("plain.log");
+        LocalDateTime start = DEFAULT_LOG_DATE_TIME.plusSeconds(100);
+        LocalDateTime end = DEFAULT_LOG_DATE_TIME.plusSeconds(130);
+        List<PingLog> expectedAll = underTestSpy.findAllPingLogs();
+        List<PingLog> expectedRange = underTestSpy.findPingLogsByDateTimeRange(start, end);
+        when(appPropertiesMock.getPinglogsFilename()).thenReturn("ping.log");
+
+        // When
+        List<PingLog> all = underTestSpy.findAllPingLogs();
+        List<PingLog> range = underTestSpy.findPingLogsByDateTimeRange(start, end);
+
+        // Then
+        assertEquals(600, all.size());
+        assertEquals(expectedAll, all);
+        assertEquals(31, range.size());
+        assertEquals(expectedRange, range);
+    }
+
+    /**
+     * The scanner answers every query as the opencsv reader does, with a range not on whole seconds
+     */
+    @Test
+    void queries_scannerSameAsOpencsv(@TempDir Path tempDir) throws IOException {
+        // Given
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            String dateTime = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").format(DEFAULT_LOG_DATE_TIME.plusSeconds(i));
+            lines.add(dateTime + "," + LOCAL_IP_ADDRESS + "," + (i % 11 == 0 ? "-1" : "0.4" + i % 10));
+            lines.add(dateTime + "," + CLOUD_IP_ADDRESS + "," + (i % 7 == 0 ? "-1" : 13 + i % 5));
+        }
+        Files.write(tempDir.resolve("ping.log"), lines);
+        AppProperties properties = new AppProperties();
+        properties.setPingLogsPath(tempDir.toString());
+        properties.setPinglogsFilename("ping.log");
+        properties.setCsvReader("opencsv");
+        CsvPingLogRepository opencsv = new CsvPingLogRepository(pingLogFileValidatorMock, properties, logger,
+                fileWriterServiceMock);
+        AppProperties scannerProperties = new AppProperties();
+        scannerProperties.setPingLogsPath(tempDir.toString());
+        scannerProperties.setPinglogsFilename("ping.log");
+        CsvPingLogRepository underTest = new CsvPingLogRepository(pingLogFileValidatorMock, scannerProperties, logger,
+                fileWriterServiceMock);
+        LocalDateTime start = DEFAULT_LOG_DATE_TIME.plusSeconds(100).plusNanos(500_000_000);
+        LocalDateTime end = DEFAULT_LOG_DATE_TIME.plusSeconds(230);
+
+        for (String ip : List.of(LOCAL_IP_ADDRESS, CLOUD_IP_ADDRESS, "10.0.0.1")) {
+            // When, Then
+            assertEquals(opencsv.findPingLogByIp(ip), underTest.findPingLogByIp(ip));
+            assertEquals(opencsv.findPingLogsByDateTimeRangeByIp(start, end, ip),
+                    underTest.findPingLogsByDateTimeRangeByIp(start, end, ip));
+            assertEquals(opencsv.findLostPingsByIp(ip), underTest.findLostPingsByIp(ip));
+            assertEquals(opencsv.findLostPingsByDateTimeRangeByIp(start, end, ip),
+                    underTest.findLostPingsByDateTimeRangeByIp(start, end, ip));
+            assertEquals(opencsv.findMaxMinPingLogOfAll(ip), underTest.findMaxMinPingLogOfAll(ip));
+            assertEquals(opencsv.findAvgLatencyByIp(ip), underTest.findAvgLatencyByIp(ip));
+            assertEquals(opencsv.findAvgLatencyByDateTimeRangeByIp(start, end, ip),
+                    underTest.findAvgLatencyByDateTimeRangeByIp(start, end, ip));
+            assertEquals(opencsv.findLostPingLogsAvgByIP(ip), underTest.findLostPingLogsAvgByIP(ip));
+            assertEquals(opencsv.findLostPingLogsAvgByDateTimeRangeByIp(start, end, ip),
+                    underTest.findLostPingLogsAvgByDateTimeRangeByIp(start, end, ip));
+        }
+        assertEquals(260, underTest.findPingLogsByDateTimeRange(start, end).size());
+        assertEquals(opencsv.findPingLogsByDateTimeRange(start, end), underTest.findPingLogsByDateTimeRange(start, end));
+    }
+
+    /**
+     * Benchmark of the scanner against opencsv, on the average latency of a target, which only parses ping times, and
+     * the pings of a target in a range, which are built. The scanner takes less time and allocates a fraction of the
+     * bytes. It runs in its own JVM, the one of the tests has JDK classes instrumented by the mocks of other tests.
+     */
+    @Test
+    void queries_scannerFasterThanOpencsv() throws Exception {
+        // Given
+        Process benchmark = new ProcessBuilder(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"),
+                CsvPingLogRepositoryTest.class.getName())
+                .redirectErrorStream(true)
+                .start();
+
+        // When
+        String output = new String(benchmark.getInputStream().readAllBytes()).trim();
+
+        // Then, nanoseconds and bytes allocated of the scanner and of opencsv
+        assertTrue(benchmark.waitFor(2, TimeUnit.MINUTES));
+        assertEquals(0, benchmark.exitValue(), output);
+        String[] results = output.substring(output.lastIndexOf('\n') + 1).split(" ");
+        long scannerNanos = Long.parseLong(results[0]);
+        long scannerBytes = Long.parseLong(results[1]);
+        long opencsvNanos = Long.parseLong(results[2]);
+        long opencsvBytes = Long.parseLong(results[3]);
+        assertTrue(scannerNanos < opencsvNanos, "scanner " + scannerNanos + " ns, opencsv " + opencsvNanos + " ns");
+        assertTrue(scannerBytes * 10 < opencsvBytes,
+                "scanner " + scannerBytes + " bytes, opencsv " + opencsvBytes + " bytes");
+    }
+
+    /**
+     * Run the queries of the benchmark on 50000 pings of 10 targets with each reader, after warming it up, and print
+     * the nanoseconds and bytes allocated of the scanner and of opencsv
+     * @param args not used
+     */
+    public static void main(String[] args) throws Exception {
+        Path directory = Files.createTempDirectory("ping-log-benchmark");
+        Path pingLog = directory.resolve("ping.log");
+        try {
+            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+            List<String> lines = new ArrayList<>();
+            for (int i = 0; i < 50_000; i++) {
+                lines.add(formatter.format(DEFAULT_LOG_DATE_TIME.plusSeconds(i / 10)) + ",10.0.0." + i % 10 + ","
+                        + (i % 97 == 0 ? "-1" : String.valueOf(i % 1000 / 10.0)));
+            }
+            Files.write(pingLog, lines);
+
+            long[] scanner = measure(benchmarkRepository(directory, SCANNER_CSV_READER));
+            long[] opencsv = measure(benchmarkRepository(directory, "opencsv"));
+            System.out.println(scanner[0] + " " + scanner[1] + " " + opencsv[0] + " " + opencsv[1]);
+        } finally {
+            Files.deleteIfExists(pingLog);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    private static CsvPingLogRepository benchmarkRepository(Path directory, String csvReader) {
+        AppProperties properties = new AppProperties();
+        properties.setPingLogsPath(directory.toString());
+        properties.setPinglogsFilename("ping.log");
+        properties.setCsvReader(csvReader);
+        properties.setIndexIntervalRows(0);
+        return new CsvPingLogRepository(null, properties, null, null);
+    }
+
+    /**
+     * @return nanoseconds and bytes allocated by 5 rounds of the queries, after 3 rounds of warm-up
+     */
+    private static long[] measure(CsvPingLogRepository repository) throws IOException {
+        com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        for (int round = 0; round < 3; round++)
+            runQueries(repository);
+
+        long bytes = threadMXBean.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int round = 0; round < 5; round++)
+            runQueries(repository);
+        return new long[] {System.nanoTime() - start, threadMXBean.getThreadAllocatedBytes(threadId) - bytes};
+    }
+
+    private static void runQueries(CsvPingLogRepository repository) throws IOException {
+        repository.findAvgLatencyByIp("10.0.0.3");
+        repository.findPingLogsByDateTimeRangeByIp(DEFAULT_LOG_DATE_TIME.plusSeconds(2000),
+                DEFAULT_LOG_DATE_TIME.plusSeconds(6000), "10.0.0.7");
+    }
+
+    @Test
+    void clearPingLogFile_mapped() throws Exception {
+        // when
+        when(fileWriterServiceMock.isMapped()).thenReturn(true);
+
+        //then
+        assertDoesNotThrow(underTestSpy::clearPingLogFile);
+
+        // assert
+        verify(fileWriterServiceMock).clear();
+        verify(underTestSpy, never()).getFileWriter(false);
+    }
+
     @ParameterizedTest
     @MethodSource("findAvgLatencyByIpPingLogProvider")
     void testFindAvgLatencyByIp(List<PingLog> pingLogs, BigDecimal expectedAvg) throws IOException {
 
         // When
-        doReturn(mock(List.class))
+        doReturn(Stream.empty())
                 .when(underTestSpy)
-                .readAll();
+                .streamByIp(LOCAL_IP_ADDRESS);
 
         doReturn(pingLogs.stream())
                 .when(underTestSpy)
@@ -249,9 +467,9 @@ class CsvPingLogRepositoryTest {
         LocalDateTime start = mock(LocalDateTime.class);
         LocalDateTime end = mock(LocalDateTime.class);
 
-        doReturn(mock(List.class))
+        doReturn(Stream.empty())
                 .when(underTestSpy)
-                .readAll();
+                .streamRangeByIp(start, end, LOCAL_IP_ADDRESS);
 
         doReturn(pingLogs.stream())
                 .when(underTestSpy)
@@ -0,0 +1,198 @@
+package com.adieser.conntest.models;
+
+import com.adieser.conntest.configurations.AppProperties;
+import com.adieser.conntest.models.memory.PingLogMemoryStore;
+import com.adieser.conntest.models.utils.PingLogFileValidator;
+import com.adieser.conntest.service.writer.FileWriterService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static com.adieser.utils.TestUtils.CLOUD_IP_ADDRESS;
+import static com.adieser.utils.TestUtils.DEFAULT_LOG_DATE_TIME;
+import static com.adieser.utils.TestUtils.LOCAL_IP_ADDRESS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class InMemoryPingLogRepositoryTest {
+    @Mock
+    Logger logger;
+
+    @Mock
+    FileWriterService fileWriterServiceMock;
+
+    @Mock
+    PingLogFileValidator pingLogFileValidatorMock;
+
+    @TempDir
+    Path tempDir;
+
+    CsvPingLogRepository csvRepository;
+
+    @BeforeEach
+    void setUp() {
+        AppProperties properties = new AppProperties();
+        properties.setPingLogsPath(tempDir.toString());
+        properties.setPinglogsFilename("ping.log");
+        csvRepository = new CsvPingLogRepository(pingLogFileValidatorMock, properties, logger, fileWriterServiceMock);
+    }
+
+    /**
+     * The answers from memory are the same as the ones of the file
+     */
+    @Test
+    void queries_sameAsFile() throws IOException {
+        // Given
+        givenPingLogs(600);
+        InMemoryPingLogRepository underTest = new InMemoryPingLogRepository(csvRepository,
+                new PingLogMemoryStore(1024 * 1024, 64), logger, Clock.systemDefaultZone());
+        underTest.load();
+        LocalDateTime start = DEFAULT_LOG_DATE_TIME.plusSeconds(100).plusNanos(1);
+        LocalDateTime end = DEFAULT_LOG_DATE_TIME.plusSeconds(230);
+
+        for (String ip : List.of(LOCAL_IP_ADDRESS, CLOUD_IP_ADDRESS, "10.0.0.1")) {
+            // When, Then
+            assertEquals(csvRepository.findPingLogByIp(ip), underTest.findPingLogByIp(ip));
+            assertEquals(csvRepository.findPingLogsByDateTimeRangeByIp(start, end, ip),
+                    underTest.findPingLogsByDateTimeRangeByIp(start, end, ip));
+            assertEquals(csvRepository.findLostPingsByIp(ip), underTest.findLostPingsByIp(ip));
+            assertEquals(csvRepository.findLostPingsByDateTimeRangeByIp(start, end, ip),
+                    underTest.findLostPingsByDateTimeRangeByIp(start, end, ip));
+            assertEquals(csvRepository.findMaxMinPingLogOfAll(ip), underTest.findMaxMinPingLogOfAll(ip));
+            assertEquals(csvRepository.findMaxMinPingLogByDateTimeRangeByIp(start, end, ip),
+                    underTest.findMaxMinPingLogByDateTimeRangeByIp(start, end, ip));
+            assertEquals(csvRepository.findAvgLatencyByIp(ip), underTest.findAvgLatencyByIp(ip));
+            assertEquals(csvRepository.findAvgLatencyByDateTimeRangeByIp(start, end, ip),
+                    underTest.findAvgLatencyByDateTimeRangeByIp(start, end, ip));
+            assertEquals(csvRepository.findLostPingLogsAvgByIP(ip), underTest.findLostPingLogsAvgByIP(ip));
+            assertEquals(csvRepository.findLostPingLogsAvgByDateTimeRangeByIp(start, end, ip),
+                    underTest.findLostPingLogsAvgByDateTimeRangeByIp(start, end, ip));
+        }
+        assertEquals(new HashSet<>(csvRepository.findAllPingLogs()), new HashSet<>(underTest.findAllPingLogs()));
+        assertEquals(new HashSet<>(csvRepository.findPingLogsByDateTimeRange(start, end)),
+                new HashSet<>(underTest.findPingLogsByDateTimeRange(start, end)));
+    }
+
+    /**
+     * The queries on the recent pings are answered from memory, the ones on evicted pings from the file
+     */
+    @Test
+    void queries_evicted() throws IOException {
+        // Given, room for 4 chunks of 64 pings, the last 88 seconds of the 2 targets
+        givenPingLogs(600);
+        PingLogRepository fileRepository = mock(PingLogRepository.class);
+        when(fileRepository.findAllPingLogs()).thenReturn(csvRepository.findAllPingLogs());
+        InMemoryPingLogRepository underTest = new InMemoryPingLogRepository(fileRepository,
+                new PingLogMemoryStore(4 * 64 * 12, 64), logger, Clock.systemDefaultZone());
+        underTest.load();
+        LocalDateTime recent = DEFAULT_LOG_DATE_TIME.plusSeconds(550);
+        LocalDateTime end = DEFAULT_LOG_DATE_TIME.plusSeconds(599);
+
+        // When
+        List<PingLog> recentPings = underTest.findPingLogsByDateTimeRangeByIp(recent, end, LOCAL_IP_ADDRESS);
+        underTest.findPingLogsByDateTimeRangeByIp(DEFAULT_LOG_DATE_TIME, end, LOCAL_IP_ADDRESS);
+        underTest.findAvgLatencyByIp(LOCAL_IP_ADDRESS);
+
+        // Then
+        assertEquals(csvRepository.findPingLogsByDateTimeRangeByIp(recent, end, LOCAL_IP_ADDRESS), recentPings);
+        verify(fileRepository, never()).findPingLogsByDateTimeRangeByIp(recent, end, LOCAL_IP_ADDRESS);
+        verify(fileRepository).findPingLogsByDateTimeRangeByIp(DEFAULT_LOG_DATE_TIME, end, LOCAL_IP_ADDRESS);
+        verify(fileRepository).findAvgLatencyByIp(LOCAL_IP_ADDRESS);
+    }
+
+    /**
+     * The pings saved are kept in memory once the file repository accepted them, and the memory is cleared with it
+     */
+    @Test
+    void savePingLog_andClear() throws Exception {
+        // Given
+        PingLogRepository fileRepository = mock(PingLogRepository.class);
+        when(fileRepository.savePingLog(any())).thenReturn(true, false);
+        InMemoryPingLogRepository underTest = new InMemoryPingLogRepository(fileRepository,
+                new PingLogMemoryStore(1024 * 1024, 64), logger, Clock.systemDefaultZone());
+        underTest.load();
+        PingLog saved = PingLog.builder().dateTime(DEFAULT_LOG_DATE_TIME).ipAddress(LOCAL_IP_ADDRESS).pingTime(0.412)
+                .build();
+        PingLog dropped = PingLog.builder().dateTime(DEFAULT_LOG_DATE_TIME.plusSeconds(1)).ipAddress(LOCAL_IP_ADDRESS)
+                .pingTime(0.5).build();
+
+        // When
+        underTest.savePingLog(saved);
+        underTest.savePingLog(dropped);
+
+        // Then
+        assertEquals(List.of(saved), underTest.findPingLogByIp(LOCAL_IP_ADDRESS));
+
+        // When
+        underTest.clearPingLogFile();
+
+        // Then
+        verify(fileRepository).clearPingLogFile();
+        assertTrue(underTest.findPingLogByIp(LOCAL_IP_ADDRESS).isEmpty());
+    }
+
+    /**
+     * When the file is rotated the memory drops its pings, and covers the time after the last ping saved, so the pings
+     * saved before are read from the new file
+     */
+    @Test
+    void rotated_coversAfterLastSaved() throws Exception {
+        // Given
+        PingLogRepository fileRepository = mock(PingLogRepository.class);
+        when(fileRepository.savePingLog(any())).thenReturn(true);
+        PingLogMemoryStore store = new PingLogMemoryStore(1024 * 1024, 64);
+        InMemoryPingLogRepository underTest = new InMemoryPingLogRepository(fileRepository, store, logger,
+                Clock.systemDefaultZone());
+        underTest.load();
+        for (int i = 0; i < 10; i++)
+            underTest.savePingLog(PingLog.builder().dateTime(DEFAULT_LOG_DATE_TIME.plusSeconds(i))
+                    .ipAddress(LOCAL_IP_ADDRESS).pingTime(1).build());
+
+        // When
+        underTest.rotated(null);
+        PingLog next = PingLog.builder().dateTime(DEFAULT_LOG_DATE_TIME.plusSeconds(10)).ipAddress(LOCAL_IP_ADDRESS)
+                .pingTime(2).build();
+        underTest.savePingLog(next);
+        LocalDateTime start = DEFAULT_LOG_DATE_TIME.plusSeconds(10);
+        LocalDateTime end = DEFAULT_LOG_DATE_TIME.plusSeconds(20);
+        List<PingLog> recentPings = underTest.findPingLogsByDateTimeRangeByIp(start, end, LOCAL_IP_ADDRESS);
+        underTest.findPingLogsByDateTimeRangeByIp(DEFAULT_LOG_DATE_TIME, end, LOCAL_IP_ADDRESS);
+
+        // Then
+        assertEquals(List.of(next), recentPings);
+        assertEquals(1, store.getSeries(LOCAL_IP_ADDRESS).size());
+        verify(fileRepository, never()).findPingLogsByDateTimeRangeByIp(start, end, LOCAL_IP_ADDRESS);
+        verify(fileRepository).findPingLogsByDateTimeRangeByIp(DEFAULT_LOG_DATE_TIME, end, LOCAL_IP_ADDRESS);
+    }
+
+    private void givenPingLogs(int seconds) throws IOException {
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < seconds; i++) {
+            String dateTime = formatter.format(DEFAULT_LOG_DATE_TIME.plusSeconds(i));
+            lines.add(dateTime + "," + LOCAL_IP_ADDRESS + "," + (i % 11 == 0 ? "-1" : "0.4" + i % 10));
+            lines.add(dateTime + "," + CLOUD_IP_ADDRESS + "," + (i % 7 == 0 ? "-1" : 13 + (i * 37 % 100) / 8.0));
+        }
+        Files.write(tempDir.resolve("ping.log"), lines);
+    }
+}
@@ -0,0 +1,146 @@
+package com.adieser.conntest.models;
+
+import com.adieser.conntest.configurations.AppProperties;
+import com.adieser.conntest.models.utils.PingLogFileValidator;
+import com.adieser.conntest.models.utils.PingLogShards;
+import com.adieser.conntest.service.writer.FileWriterService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static com.adieser.utils.TestUtils.CLOUD_IP_ADDRESS;
+import static com.adieser.utils.TestUtils.DEFAULT_LOG_DATE_TIME;
+import static com.adieser.utils.TestUtils.LOCAL_IP_ADDRESS;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class ShardedPingLogRepositoryTest {
+    @Mock
+    Logger logger;
+
+    @Mock
+    FileWriterService fileWriterServiceMock;
+
+    @Mock
+    PingLogFileValidator pingLogFileValidatorMock;
+
+    @TempDir
+    Path tempDir;
+
+    ShardedPingLogRepository underTest;
+
+    CsvPingLogRepository csvRepository;
+
+    @BeforeEach
+    void setUp() {
+        AppProperties properties = new AppProperties();
+        properties.setPingLogsPath(tempDir.toString());
+        properties.setPinglogsFilename("ping.log");
+        underTest = new ShardedPingLogRepository(pingLogFileValidatorMock, properties, logger, fileWriterServiceMock);
+        csvRepository = new CsvPingLogRepository(pingLogFileValidatorMock, properties, logger, fileWriterServiceMock);
+    }
+
+    /**
+     * The answers from the files of the targets are the same as the ones of the CSV repository on the same pings
+     */
+    @Test
+    void queries_sameAsCsv() throws IOException {
+        // Given
+        givenPingLogs(120);
+        LocalDateTime start = DEFAULT_LOG_DATE_TIME.plusSeconds(45);
+        LocalDateTime end = DEFAULT_LOG_DATE_TIME.plusSeconds(90);
+
+        for (String ip : List.of(LOCAL_IP_ADDRESS, CLOUD_IP_ADDRESS)) {
+            // When, Then
+            assertEquals(csvRepository.findPingLogByIp(ip), underTest.findPingLogByIp(ip));
+            assertEquals(csvRepository.findAvgLatencyByIp(ip), underTest.findAvgLatencyByIp(ip));
+            assertEquals(csvRepository.findAvgLatencyByDateTimeRangeByIp(start, end, ip),
+                    underTest.findAvgLatencyByDateTimeRangeByIp(start, end, ip));
+            assertEquals(csvRepository.findLostPingLogsAvgByIP(ip), underTest.findLostPingLogsAvgByIP(ip));
+            assertEquals(csvRepository.findMaxMinPingLogOfAll(ip), underTest.findMaxMinPingLogOfAll(ip));
+            assertEquals(csvRepository.findPingLogsByDateTimeRangeByIp(start, end, ip),
+                    underTest.findPingLogsByDateTimeRangeByIp(start, end, ip));
+            assertEquals(csvRepository.findLostPingsByIp(ip), underTest.findLostPingsByIp(ip));
+        }
+        assertEquals(new HashSet<>(csvRepository.findAllPingLogs()), new HashSet<>(underTest.findAllPingLogs()));
+        assertEquals(new HashSet<>(csvRepository.findPingLogsByDateTimeRange(start, end)),
+                new HashSet<>(underTest.findPingLogsByDateTimeRange(start, end)));
+    }
+
+    /**
+     * A query on a target does not read the file of another target
+     */
+    @Test
+    void findAvgLatencyByIp_readsOwnFile() throws IOException {
+        // Given, a line that cannot be parsed in the file of the cloud target
+        givenPingLogs(10);
+        Files.writeString(shardFile(CLOUD_IP_ADDRESS), "not a ping\n", StandardOpenOption.APPEND);
+
+        // When, Then
+        assertDoesNotThrow(() -> underTest.findAvgLatencyByIp(LOCAL_IP_ADDRESS));
+        assertEquals(10, underTest.findPingLogByIp(LOCAL_IP_ADDRESS).size());
+        assertThrows(RuntimeException.class, () -> underTest.findAllPingLogs());
+    }
+
+    @Test
+    void findPingLogByIp_unknownTarget() throws IOException {
+        // When, Then
+        assertEquals(List.of(), underTest.findPingLogByIp(LOCAL_IP_ADDRESS));
+        assertEquals(List.of(), underTest.findAllPingLogs());
+    }
+
+    @Test
+    void clearPingLogFile() throws InterruptedException, IOException {
+        // When
+        underTest.clearPingLogFile();
+
+        // Then
+        verify(fileWriterServiceMock).clear();
+    }
+
+    /**
+     * Write the pings to a single file and to the files of their targets
+     */
+    private void givenPingLogs(int seconds) throws IOException {
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+        List<String> lines = new ArrayList<>();
+        List<String> localLines = new ArrayList<>();
+        List<String> cloudLines = new ArrayList<>();
+        for (int i = 0; i < seconds; i++) {
+            for (String ip : List.of(LOCAL_IP_ADDRESS, CLOUD_IP_ADDRESS)) {
+                double pingTime = i % 13 == 0 ? -1 : (i * 37 % 100) / 4.0 + (ip.equals(LOCAL_IP_ADDRESS) ? 0.5 : 10);
+                String line = formatter.format(DEFAULT_LOG_DATE_TIME.plusSeconds(i)) + "," + ip + ","
+                        + PingLog.formatPingTime(pingTime);
+                lines.add(line);
+                (ip.equals(LOCAL_IP_ADDRESS) ? localLines : cloudLines).add(line);
+            }
+        }
+        Files.write(tempDir.resolve("ping.log"), lines);
+        Files.createDirectories(shardFile(LOCAL_IP_ADDRESS).getParent());
+        Files.write(shardFile(LOCAL_IP_ADDRESS), localLines);
+        Files.createDirectories(shardFile(CLOUD_IP_ADDRESS).getParent());
+        Files.write(shardFile(CLOUD_IP_ADDRESS), cloudLines);
+    }
+
+    private Path shardFile(String ipAddress) {
+        return PingLogShards.getShardDirectory(PingLogShards.getShardsDirectory(tempDir.toString()), ipAddress)
+                .resolve("ping.log");
+    }
+}
@@ -0,0 +1,243 @@
+package com.adieser.conntest.models;
+
+import com.adieser.conntest.configurations.AppProperties;
+import com.adieser.conntest.models.memory.PingLogStatistics;
+import com.adieser.conntest.models.utils.PingLogFileValidator;
+import com.adieser.conntest.service.writer.FileWriterService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import static com.adieser.utils.TestUtils.CLOUD_IP_ADDRESS;
+import static com.adieser.utils.TestUtils.DEFAULT_LOG_DATE_TIME;
+import static com.adieser.utils.TestUtils.LOCAL_IP_ADDRESS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class StatisticsPingLogRepositoryTest {
+    @Mock
+    Logger logger;
+
+    @Mock
+    FileWriterService fileWriterServiceMock;
+
+    @Mock
+    PingLogFileValidator pingLogFileValidatorMock;
+
+    @Mock
+    PingLogRepository repositoryMock;
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * The running statistics are the same as the ones read from the file
+     */
+    @Test
+    void statistics_sameAsFile() throws IOException {
+        // Given
+        givenPingLogs(600);
+        AppProperties properties = new AppProperties();
+        properties.setPingLogsPath(tempDir.toString());
+        properties.setPinglogsFilename("ping.log");
+        CsvPingLogRepository csvRepository = new CsvPingLogRepository(pingLogFileValidatorMock, properties, logger,
+                fileWriterServiceMock);
+        StatisticsPingLogRepository underTest = new StatisticsPingLogRepository(csvRepository, new PingLogStatistics(),
+                logger);
+
+        // When
+        underTest.load();
+
+        // Then
+        for (String ip : List.of(LOCAL_IP_ADDRESS, CLOUD_IP_ADDRESS, "10.0.0.1")) {
+            assertEquals(csvRepository.findAvgLatencyByIp(ip), underTest.findAvgLatencyByIp(ip));
+            assertEquals(csvRepository.findLostPingLogsAvgByIP(ip), underTest.findLostPingLogsAvgByIP(ip));
+            assertEquals(csvRepository.findMaxMinPingLogOfAll(ip), underTest.findMaxMinPingLogOfAll(ip));
+        }
+    }
+
+    /**
+     * The pings accepted by the repository are added to the statistics, which are answered without reading the pings
+     */
+    @Test
+    void savePingLog_updatesStatistics() throws Exception {
+        // Given
+        PingLog first = pingLog(0, 13);
+        when(repositoryMock.findAllPingLogs()).thenReturn(List.of(first));
+        when(repositoryMock.savePingLog(any())).thenReturn(true, true, false);
+        StatisticsPingLogRepository underTest = new StatisticsPingLogRepository(repositoryMock,
+                new PingLogStatistics(), logger);
+        underTest.load();
+        PingLog lowest = pingLog(1, 11);
+        PingLog lost = pingLog(2, -1);
+
+        // When
+        underTest.savePingLog(lowest);
+        underTest.savePingLog(lost);
+        underTest.savePingLog(pingLog(3, 1));
+
+        // Then
+        assertEquals(new BigDecimal("7.67"), underTest.findAvgLatencyByIp(LOCAL_IP_ADDRESS));
+        assertEquals(new BigDecimal("0.34"), underTest.findLostPingLogsAvgByIP(LOCAL_IP_ADDRESS));
+        assertEquals(List.of(lowest, first), underTest.findMaxMinPingLogOfAll(LOCAL_IP_ADDRESS));
+        verify(repositoryMock, never()).findAvgLatencyByIp(anyString());
+        verify(repositoryMock, never()).findLostPingLogsAvgByIP(anyString());
+        verify(repositoryMock, never()).findMaxMinPingLogOfAll(anyString());
+    }
+
+    /**
+     * The statistics are cleared with the file, and loaded from the new datasource
+     */
+    @Test
+    void clearAndChangeDatasource() throws Exception {
+        // Given
+        when(repositoryMock.findAllPingLogs()).thenReturn(List.of(pingLog(0, 13)), List.of(pingLog(1, 20)));
+        StatisticsPingLogRepository underTest = new StatisticsPingLogRepository(repositoryMock,
+                new PingLogStatistics(), logger);
+        underTest.load();
+
+        // When
+        underTest.clearPingLogFile();
+
+        // Then
+        verify(repositoryMock).clearPingLogFile();
+        assertEquals(new BigDecimal("0.00"), underTest.findAvgLatencyByIp(LOCAL_IP_ADDRESS));
+        assertEquals(BigDecimal.ZERO, underTest.findLostPingLogsAvgByIP(LOCAL_IP_ADDRESS));
+        assertEquals(List.of(), underTest.findMaxMinPingLogOfAll(LOCAL_IP_ADDRESS));
+
+        // When
+        underTest.changeDatasource("other.log");
+
+        // Then
+        verify(repositoryMock).changeDatasource("other.log");
+        assertEquals(new BigDecimal("20.00"), underTest.findAvgLatencyByIp(LOCAL_IP_ADDRESS));
+    }
+
+    /**
+     * The statistics of a target restart when its file is rotated, and the ones of every target when the file of all
+     * of them is
+     */
+    @Test
+    void rotated_restartsStatistics() throws Exception {
+        // Given
+        PingLog cloud = PingLog.builder().dateTime(DEFAULT_LOG_DATE_TIME).ipAddress(CLOUD_IP_ADDRESS).pingTime(20)
+                .build();
+        when(repositoryMock.findAllPingLogs()).thenReturn(List.of(pingLog(0, 13), cloud));
+        when(repositoryMock.savePingLog(any())).thenReturn(true);
+        StatisticsPingLogRepository underTest = new StatisticsPingLogRepository(repositoryMock,
+                new PingLogStatistics(), logger);
+        underTest.load();
+
+        // When
+        underTest.rotated(LOCAL_IP_ADDRESS);
+        underTest.savePingLog(pingLog(1, 11));
+
+        // Then
+        assertEquals(new BigDecimal("11.00"), underTest.findAvgLatencyByIp(LOCAL_IP_ADDRESS));
+        assertEquals(new BigDecimal("20.00"), underTest.findAvgLatencyByIp(CLOUD_IP_ADDRESS));
+
+        // When
+        underTest.rotated(null);
+
+        // Then
+        assertEquals(new BigDecimal("0.00"), underTest.findAvgLatencyByIp(LOCAL_IP_ADDRESS));
+        assertEquals(List.of(), underTest.findMaxMinPingLogOfAll(CLOUD_IP_ADDRESS));
+        verify(repositoryMock, never()).findAvgLatencyByIp(anyString());
+    }
+
+    /**
+     * A ping saved while the statistics are loaded waits for the load, so it is not counted twice when the load finds
+     * it in the file
+     */
+    @Test
+    void savePingLog_whileLoading() throws Exception {
+        // Given, a file the saves append to, read once the save is waiting
+        List<PingLog> file = new CopyOnWriteArrayList<>();
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch saving = new CountDownLatch(1);
+        when(repositoryMock.savePingLog(any())).thenAnswer(invocation -> file.add(invocation.getArgument(0)));
+        when(repositoryMock.findAllPingLogs()).thenAnswer(invocation -> {
+            reading.countDown();
+            saving.await();
+            return new ArrayList<>(file);
+        });
+        PingLogStatistics statistics = new PingLogStatistics();
+        StatisticsPingLogRepository underTest = new StatisticsPingLogRepository(repositoryMock, statistics, logger);
+        Thread loading = new Thread(underTest::load);
+        loading.start();
+        reading.await();
+
+        // When
+        Thread saver = new Thread(() -> {
+            try {
+                underTest.savePingLog(pingLog(0, 13));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        saver.start();
+        while (saver.getState() == Thread.State.RUNNABLE || saver.getState() == Thread.State.NEW)
+            Thread.onSpinWait();
+        saving.countDown();
+        loading.join();
+        saver.join();
+
+        // Then
+        assertEquals(1, statistics.get(LOCAL_IP_ADDRESS).count());
+    }
+
+    /**
+     * If the statistics cannot be loaded, they are read from the pings
+     */
+    @Test
+    void load_failed() throws IOException {
+        // Given
+        when(repositoryMock.findAllPingLogs()).thenThrow(new IOException("Unreadable"));
+        when(repositoryMock.findAvgLatencyByIp(LOCAL_IP_ADDRESS)).thenReturn(new BigDecimal("13.00"));
+        StatisticsPingLogRepository underTest = new StatisticsPingLogRepository(repositoryMock,
+                new PingLogStatistics(), logger);
+
+        // When
+        underTest.load();
+
+        // Then
+        assertEquals(new BigDecimal("13.00"), underTest.findAvgLatencyByIp(LOCAL_IP_ADDRESS));
+    }
+
+    private static PingLog pingLog(int second, double pingTime) {
+        return PingLog.builder()
+                .dateTime(DEFAULT_LOG_DATE_TIME.plusSeconds(second))
+                .ipAddress(LOCAL_IP_ADDRESS)
+                .pingTime(pingTime)
+                .build();
+    }
+
+    private void givenPingLogs(int seconds) throws IOException {
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < seconds; i++) {
+            String dateTime = formatter.format(DEFAULT_LOG_DATE_TIME.plusSeconds(i));
+            lines.add(dateTime + "," + LOCAL_IP_ADDRESS + "," + (i % 11 == 0 ? "-1" : "0.4" + i % 10));
+            lines.add(dateTime + "," + CLOUD_IP_ADDRESS + "," + (i % 7 == 0 ? "-1" : 13 + (i * 37 % 100) / 8.0));
+        }
+        Files.write(tempDir.resolve("ping.log"), lines);
+    }
+}
@@ -0,0 +1,153 @@
+package com.adieser.conntest.models.binary;
+
+import com.adieser.conntest.models.PingLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.adieser.utils.TestUtils.CLOUD_IP_ADDRESS;
+import static com.adieser.utils.TestUtils.DEFAULT_LOG_DATE_TIME;
+import static com.adieser.utils.TestUtils.LOCAL_IP_ADDRESS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryPingLogWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void write_readAll() throws IOException {
+        // Given
+        Path file = tempDir.resolve("ping.bin");
+        List<PingLog> pingLogs = List.of(
+                pingLog(0, LOCAL_IP_ADDRESS, 13),
+                pingLog(0, CLOUD_IP_ADDRESS, 0.412),
+                pingLog(1, LOCAL_IP_ADDRESS, -1));
+
+        // When
+        try (BinaryPingLogWriter underTest = new BinaryPingLogWriter(file, 1024)) {
+            assertEquals(3, underTest.write(pingLogs));
+            assertEquals(3, underTest.getRecordCount());
+            assertEquals(1024 + 3 * BinaryPingLogFormat.RECORD_SIZE, underTest.size());
+        }
+
+        // Then
+        try (BinaryPingLogReader reader = new BinaryPingLogReader(file)) {
+            assertEquals(pingLogs, reader.readAll());
+        }
+    }
+
+    /**
+     * Reopening a file keeps its dictionary and drops a partially written record
+     */
+    @Test
+    void write_reopen() throws IOException {
+        // Given
+        Path file = tempDir.resolve("ping.bin");
+        try (BinaryPingLogWriter writer = new BinaryPingLogWriter(file, 1024)) {
+            writer.write(List.of(pingLog(0, LOCAL_IP_ADDRESS, 13)));
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[5]));
+        }
+
+        // When
+        try (BinaryPingLogWriter underTest = new BinaryPingLogWriter(file, 64)) {
+            underTest.write(List.of(pingLog(1, CLOUD_IP_ADDRESS, 7), pingLog(2, LOCAL_IP_ADDRESS, 8)));
+        }
+
+        // Then
+        assertEquals(1024 + 3 * BinaryPingLogFormat.RECORD_SIZE, Files.size(file));
+        try (BinaryPingLogReader reader = new BinaryPingLogReader(file)) {
+            assertEquals(List.of(pingLog(0, LOCAL_IP_ADDRESS, 13), pingLog(1, CLOUD_IP_ADDRESS, 7),
+                    pingLog(2, LOCAL_IP_ADDRESS, 8)), reader.readAll());
+        }
+    }
+
+    @Test
+    void write_dictionaryFull() throws IOException {
+        // Given, room for one target only
+        Path file = tempDir.resolve("ping.bin");
+        try (BinaryPingLogWriter underTest = new BinaryPingLogWriter(file, 32)) {
+
+            // When
+            int written = underTest.write(List.of(
+                    pingLog(0, LOCAL_IP_ADDRESS, 13),
+                    pingLog(0, CLOUD_IP_ADDRESS, 7),
+                    pingLog(1, LOCAL_IP_ADDRESS, 8)));
+
+            // Then
+            assertEquals(1, written);
+            assertEquals(1, underTest.getRecordCount());
+        }
+    }
+
+    @Test
+    void clear() throws IOException {
+        // Given
+        Path file = tempDir.resolve("ping.bin");
+        try (BinaryPingLogWriter underTest = new BinaryPingLogWriter(file, 32)) {
+            underTest.write(List.of(pingLog(0, LOCAL_IP_ADDRESS, 13)));
+
+            // When
+            underTest.clear();
+            int written = underTest.write(List.of(pingLog(1, CLOUD_IP_ADDRESS, 7)));
+
+            // Then
+            assertEquals(1, written);
+        }
+        try (BinaryPingLogReader reader = new BinaryPingLogReader(file)) {
+            assertEquals(List.of(pingLog(1, CLOUD_IP_ADDRESS, 7)), reader.readAll());
+        }
+    }
+
+    /**
+     * The range read includes the records out of order by up to the max disorder
+     */
+    @Test
+    void readRange() throws IOException {
+        // Given
+        Path file = tempDir.resolve("ping.bin");
+        List<PingLog> pingLogs = new ArrayList<>();
+        for (int i = 0; i < 12_000; i++) {
+            pingLogs.add(pingLog(i, LOCAL_IP_ADDRESS, i % 100));
+            if (i == 5_150)
+                pingLogs.add(pingLog(5_100, CLOUD_IP_ADDRESS, 13));
+        }
+        try (BinaryPingLogWriter writer = new BinaryPingLogWriter(file, 1024)) {
+            writer.write(pingLogs);
+        }
+
+        // When
+        List<PingLog> range;
+        try (BinaryPingLogReader underTest = new BinaryPingLogReader(file)) {
+            range = underTest.readRange(DEFAULT_LOG_DATE_TIME.plusSeconds(5_000), DEFAULT_LOG_DATE_TIME.plusSeconds(5_100));
+        }
+
+        // Then
+        List<PingLog> inRange = range.stream()
+                .filter(pingLog -> !pingLog.getDateTime().isBefore(DEFAULT_LOG_DATE_TIME.plusSeconds(5_000))
+                        && !pingLog.getDateTime().isAfter(DEFAULT_LOG_DATE_TIME.plusSeconds(5_100)))
+                .toList();
+        assertEquals(102, inRange.size());
+        assertEquals(1, inRange.stream().filter(pingLog -> pingLog.getIpAddress().equals(CLOUD_IP_ADDRESS)).count());
+        assertTrue(range.size() < 1_000);
+    }
+
+    private static PingLog pingLog(int seconds, String ipAddress, double pingTime) {
+        return PingLog.builder()
+                .dateTime(DEFAULT_LOG_DATE_TIME.plusSeconds(seconds))
+                .ipAddress(ipAddress)
+                .pingTime(pingTime)
+                .build();
+    }
+}
@@ -0,0 +1,51 @@
+package com.adieser.conntest.models.binary;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PingLogFormatConverterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void csvToBinary_binaryToCsv() throws IOException {
+        // Given
+        Path csv = tempDir.resolve("ping.log");
+        Files.write(csv, List.of(
+                "2023-10-06 02:08:35,192.168.1.1,13",
+                "2023-10-06 02:08:35,8.8.8.8,0.412",
+                "2023-10-06 02:08:36,192.168.1.1,-1",
+                "2023-10-06 02:08:36,8.8.8.8,21.5"));
+        Path binary = tempDir.resolve("ping.bin");
+        Path back = tempDir.resolve("back.log");
+
+        // When
+        long toBinary = PingLogFormatConverter.csvToBinary(csv, binary, 1024);
+        long toCsv = PingLogFormatConverter.binaryToCsv(binary, back);
+
+        // Then
+        assertEquals(4, toBinary);
+        assertEquals(4, toCsv);
+        assertArrayEquals(Files.readAllBytes(csv), Files.readAllBytes(back));
+    }
+
+    @Test
+    void binaryToCsv_existingFile() throws IOException {
+        // Given
+        Path binary = tempDir.resolve("ping.bin");
+        Path csv = Files.createFile(tempDir.resolve("ping.log"));
+
+        // When, Then
+        assertThrows(IOException.class, () -> PingLogFormatConverter.binaryToCsv(binary, csv));
+    }
+}
@@ -0,0 +1,111 @@
+package com.adieser.conntest.models.columnar;
+
+import com.adieser.conntest.models.PingLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static com.adieser.utils.TestUtils.CLOUD_IP_ADDRESS;
+import static com.adieser.utils.TestUtils.DEFAULT_LOG_DATE_TIME;
+import static com.adieser.utils.TestUtils.LOCAL_IP_ADDRESS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ColumnarPingLogWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Full blocks are written as soon as they are full, the rest when the writer is closed
+     */
+    @Test
+    void write_blocksByTarget() throws IOException {
+        // Given
+        Path file = tempDir.resolve("ping.col");
+        List<PingLog> pingLogs = List.of(
+                pingLog(0, LOCAL_IP_ADDRESS, 13),
+                pingLog(0, CLOUD_IP_ADDRESS, 20),
+                pingLog(1, LOCAL_IP_ADDRESS, -1),
+                pingLog(1, CLOUD_IP_ADDRESS, 21),
+                pingLog(2, LOCAL_IP_ADDRESS, 14));
+
+        try (ColumnarPingLogWriter underTest = new ColumnarPingLogWriter(file, 2)) {
+            // When
+            assertEquals(5, underTest.write(pingLogs));
+
+            // Then
+            assertEquals(5, underTest.getRecordCount());
+            assertEquals(List.of(pingLogs.get(4)), underTest.getPending());
+            try (ColumnarPingLogReader reader = new ColumnarPingLogReader(file)) {
+                assertEquals(List.of(pingLogs.get(0), pingLogs.get(2), pingLogs.get(1), pingLogs.get(3)),
+                        reader.readAll());
+            }
+        }
+
+        try (ColumnarPingLogReader reader = new ColumnarPingLogReader(file)) {
+            assertEquals(5, reader.readAll().size());
+        }
+    }
+
+    /**
+     * Reopening a file keeps its blocks and drops an incomplete one
+     */
+    @Test
+    void write_reopen() throws IOException {
+        // Given
+        Path file = tempDir.resolve("ping.col");
+        try (ColumnarPingLogWriter writer = new ColumnarPingLogWriter(file, 10)) {
+            writer.write(List.of(pingLog(0, LOCAL_IP_ADDRESS, 13)));
+        }
+        long size = Files.size(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[] {0, 11, '1', '9', '2'}));
+        }
+
+        // When
+        try (ColumnarPingLogWriter underTest = new ColumnarPingLogWriter(file, 10)) {
+            assertEquals(1, underTest.getRecordCount());
+            assertEquals(size, underTest.size());
+            underTest.write(List.of(pingLog(1, LOCAL_IP_ADDRESS, 14)));
+        }
+
+        // Then
+        try (ColumnarPingLogReader reader = new ColumnarPingLogReader(file)) {
+            assertEquals(List.of(pingLog(0, LOCAL_IP_ADDRESS, 13), pingLog(1, LOCAL_IP_ADDRESS, 14)), reader.readAll());
+        }
+    }
+
+    @Test
+    void clear() throws IOException {
+        // Given
+        Path file = tempDir.resolve("ping.col");
+        try (ColumnarPingLogWriter underTest = new ColumnarPingLogWriter(file, 1)) {
+            underTest.write(List.of(pingLog(0, LOCAL_IP_ADDRESS, 13), pingLog(1, CLOUD_IP_ADDRESS, 13)));
+
+            // When
+            underTest.clear();
+
+            // Then
+            assertEquals(0, underTest.getRecordCount());
+            assertEquals(ColumnarPingLogReader.HEADER_SIZE, underTest.size());
+        }
+        try (ColumnarPingLogReader reader = new ColumnarPingLogReader(file)) {
+            assertEquals(List.of(), reader.readAll());
+        }
+    }
+
+    private static PingLog pingLog(int seconds, String ipAddress, double pingTime) {
+        return PingLog.builder()
+                .dateTime(DEFAULT_LOG_DATE_TIME.plusSeconds(seconds))
+                .ipAddress(ipAddress)
+                .pingTime(pingTime)
+                .build();
+    }
+}
@@ -0,0 +1,179 @@
+package com.adieser.conntest.models.memory;
+
+import com.adieser.conntest.models.PingLog;
+import com.adieser.conntest.models.binary.BinaryPingLogFormat;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.adieser.utils.TestUtils.CLOUD_IP_ADDRESS;
+import static com.adieser.utils.TestUtils.DEFAULT_LOG_DATE_TIME;
+import static com.adieser.utils.TestUtils.LOCAL_IP_ADDRESS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PingLogMemoryStoreTest {
+    private static final long START = BinaryPingLogFormat.toEpochSecond(DEFAULT_LOG_DATE_TIME);
+
+    /**
+     * The pings of a range are found across chunks, bounds included
+     */
+    @Test
+    void forEach_range() {
+        // Given
+        PingLogMemoryStore underTest = new PingLogMemoryStore(1024 * 1024, 16);
+        for (int i = 0; i < 100; i++)
+            underTest.add(pingLog(LOCAL_IP_ADDRESS, i, i % 10 == 0 ? -1 : i / 10.0));
+
+        // When
+        List<Long> times = new ArrayList<>();
+        List<Integer> micros = new ArrayList<>();
+        underTest.getSeries(LOCAL_IP_ADDRESS).forEach(START + 15, START + 40, (epochSecond, pingMicros) -> {
+            times.add(epochSecond);
+            micros.add(pingMicros);
+        });
+
+        // Then
+        assertEquals(26, times.size());
+        assertEquals(START + 15, times.get(0));
+        assertEquals(START + 40, times.get(25));
+        assertEquals(1500, micros.get(0));
+        assertEquals(BinaryPingLogFormat.toMicros(-1), micros.get(5));
+        assertTrue(underTest.covers(LOCAL_IP_ADDRESS, Long.MIN_VALUE));
+    }
+
+    /**
+     * The oldest chunk of all is evicted when the store is full, and its target no longer covers its time
+     */
+    @Test
+    void add_evictsOldest() {
+        // Given, room for 2 chunks of 4 pings
+        PingLogMemoryStore underTest = new PingLogMemoryStore(2 * 4 * 12, 4);
+        for (int i = 0; i < 4; i++)
+            underTest.add(pingLog(LOCAL_IP_ADDRESS, i, 1));
+        underTest.add(pingLog(CLOUD_IP_ADDRESS, 0, 13));
+
+        // When
+        underTest.add(pingLog(LOCAL_IP_ADDRESS, 4, 1));
+
+        // Then
+        assertEquals(1, underTest.getSeries(LOCAL_IP_ADDRESS).size());
+        assertEquals(START + 4, underTest.getSeries(LOCAL_IP_ADDRESS).getCoveredFrom());
+        assertFalse(underTest.covers(LOCAL_IP_ADDRESS, START));
+        assertTrue(underTest.covers(LOCAL_IP_ADDRESS, START + 4));
+        assertTrue(underTest.covers(CLOUD_IP_ADDRESS, Long.MIN_VALUE));
+        assertFalse(underTest.covers(START));
+        assertEquals(2 * 4 * 12, underTest.getBytes());
+    }
+
+    /**
+     * With more targets than full chunks fit in the store, every target starts with a small chunk, so none is evicted
+     */
+    @Test
+    void add_moreTargetsThanChunks() {
+        // Given, room for 4 chunks of 4096 pings
+        PingLogMemoryStore underTest = new PingLogMemoryStore(4 * 4096 * 12, 4096);
+
+        // When
+        for (int i = 0; i < 100; i++)
+            underTest.add(pingLog("10.0." + i / 256 + "." + i % 256, 0, 1));
+
+        // Then
+        assertEquals(100, underTest.getIpAddresses().size());
+        for (PingLogSeries series : underTest.getSeries()) {
+            assertEquals(1, series.size());
+            assertEquals(Long.MIN_VALUE, series.getCoveredFrom());
+        }
+        assertEquals(100 * PingLogSeries.INITIAL_CHUNK_SIZE * 12, underTest.getBytes());
+        assertTrue(underTest.covers(Long.MIN_VALUE));
+    }
+
+    /**
+     * Every chunk of a series is twice the previous one, up to the chunk size
+     */
+    @Test
+    void add_growsChunks() {
+        // Given
+        PingLogMemoryStore underTest = new PingLogMemoryStore(1024 * 1024, 256);
+
+        // When, chunks of 64, 128, 256 and 256 pings
+        for (int i = 0; i < 64 + 128 + 256 + 1; i++)
+            underTest.add(pingLog(LOCAL_IP_ADDRESS, i, 1));
+
+        // Then
+        assertEquals(64 + 128 + 256 + 1, underTest.getSeries(LOCAL_IP_ADDRESS).size());
+        assertEquals((64 + 128 + 256 + 256) * 12, underTest.getBytes());
+    }
+
+    /**
+     * A ping older than the last one of its target is not kept, and its time is not covered anymore
+     */
+    @Test
+    void add_outOfOrder() {
+        // Given
+        PingLogMemoryStore underTest = new PingLogMemoryStore(1024 * 1024, 16);
+        underTest.add(pingLog(LOCAL_IP_ADDRESS, 10, 1));
+
+        // When
+        underTest.add(pingLog(LOCAL_IP_ADDRESS, 5, 1));
+
+        // Then
+        assertEquals(1, underTest.getSeries(LOCAL_IP_ADDRESS).size());
+        assertFalse(underTest.covers(LOCAL_IP_ADDRESS, START + 5));
+        assertTrue(underTest.covers(LOCAL_IP_ADDRESS, START + 6));
+    }
+
+    @Test
+    void clear() {
+        // Given
+        PingLogMemoryStore underTest = new PingLogMemoryStore(1024 * 1024, 16);
+        underTest.add(pingLog(LOCAL_IP_ADDRESS, 0, 1));
+
+        // When
+        underTest.clear(START + 60);
+
+        // Then
+        assertEquals(List.of(), new ArrayList<>(underTest.getSeries()));
+        assertFalse(underTest.covers(LOCAL_IP_ADDRESS, START));
+        assertTrue(underTest.covers(START + 60));
+    }
+
+    /**
+     * Clearing a target frees its chunks and covers it from the time given, the other targets are kept
+     */
+    @Test
+    void clear_target() {
+        // Given
+        PingLogMemoryStore underTest = new PingLogMemoryStore(1024 * 1024, 16);
+        for (int i = 0; i < 20; i++)
+            underTest.add(pingLog(LOCAL_IP_ADDRESS, i, 1));
+        underTest.add(pingLog(CLOUD_IP_ADDRESS, 0, 13));
+
+        // When
+        underTest.clear(LOCAL_IP_ADDRESS, START + 20);
+
+        // Then
+        assertEquals(0, underTest.getSeries(LOCAL_IP_ADDRESS).size());
+        assertFalse(underTest.covers(LOCAL_IP_ADDRESS, START + 19));
+        assertTrue(underTest.covers(LOCAL_IP_ADDRESS, START + 20));
+        assertEquals(1, underTest.getSeries(CLOUD_IP_ADDRESS).size());
+        assertEquals(16 * 12, underTest.getBytes());
+
+        // When
+        underTest.add(pingLog(LOCAL_IP_ADDRESS, 20, 1));
+
+        // Then
+        assertEquals(1, underTest.getSeries(LOCAL_IP_ADDRESS).size());
+        assertEquals(2 * 16 * 12, underTest.getBytes());
+    }
+
+    private static PingLog pingLog(String ipAddress, int second, double pingTime) {
+        return PingLog.builder()
+                .dateTime(DEFAULT_LOG_DATE_TIME.plusSeconds(second))
+                .ipAddress(ipAddress)
+                .pingTime(pingTime)
+                .build();
+    }
+}
@@ -0,0 +1,112 @@
+package com.adieser.conntest.models.utils;
+
+import com.adieser.conntest.models.binary.BinaryPingLogFormat;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.adieser.utils.TestUtils.CLOUD_IP_ADDRESS;
+import static com.adieser.utils.TestUtils.DEFAULT_LOG_DATE_TIME;
+import static com.adieser.utils.TestUtils.LOCAL_IP_ADDRESS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompressedPingLogTest {
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * The lines are the same once inflated, and take a fraction of their size
+     */
+    @Test
+    void compress_roundTrip() throws IOException {
+        // Given
+        List<String> lines = givenLines(3600);
+        Path source = tempDir.resolve("ping.log");
+        Files.write(source, lines);
+        Path target = tempDir.resolve("ping.deflate");
+
+        // When
+        int blocks = CompressedPingLog.compress(source, target, 4096);
+
+        // Then
+        assertTrue(blocks > 10);
+        assertTrue(CompressedPingLog.isCompressed(target));
+        assertFalse(CompressedPingLog.isCompressed(source));
+        assertTrue(Files.size(target) * 4 < Files.size(source));
+        assertEquals(lines, readLines(CompressedPingLog.newReader(target)));
+        // read as any other ping log
+        assertEquals(lines, readLines(PingLogSegment.newReader(target)));
+    }
+
+    /**
+     * Only the blocks with times within the range are inflated, and they have every line of the range
+     */
+    @Test
+    void newReader_range() throws IOException {
+        // Given
+        List<String> lines = givenLines(3600);
+        Path source = tempDir.resolve("ping.log");
+        Files.write(source, lines);
+        Path target = tempDir.resolve("ping.deflate");
+        CompressedPingLog.compress(source, target, 4096);
+        LocalDateTime start = DEFAULT_LOG_DATE_TIME.plusSeconds(1800);
+        LocalDateTime end = DEFAULT_LOG_DATE_TIME.plusSeconds(1860);
+
+        // When
+        List<String> read = readLines(CompressedPingLog.newReader(target, BinaryPingLogFormat.toEpochSecond(start),
+                BinaryPingLogFormat.toEpochSecond(end)));
+
+        // Then
+        List<String> expected = lines.stream()
+                .filter(line -> line.compareTo(FORMATTER.format(start)) >= 0
+                        && line.compareTo(FORMATTER.format(end.plusSeconds(1))) < 0)
+                .toList();
+        assertEquals(122, expected.size());
+        assertTrue(read.containsAll(expected));
+        assertTrue(read.size() < lines.size() / 10);
+    }
+
+    @Test
+    void compress_empty() throws IOException {
+        // Given
+        Path source = tempDir.resolve("ping.log");
+        Files.write(source, new byte[0]);
+        Path target = tempDir.resolve("ping.deflate");
+
+        // When
+        int blocks = CompressedPingLog.compress(source, target, 4096);
+
+        // Then
+        assertEquals(0, blocks);
+        assertEquals(List.of(), readLines(PingLogSegment.newReader(target)));
+    }
+
+    private static List<String> givenLines(int seconds) {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < seconds; i++) {
+            String dateTime = FORMATTER.format(DEFAULT_LOG_DATE_TIME.plusSeconds(i));
+            lines.add(dateTime + "," + LOCAL_IP_ADDRESS + "," + (i % 17 == 0 ? "-1" : "0." + (400 + i % 7)));
+            lines.add(dateTime + "," + CLOUD_IP_ADDRESS + "," + (13 + i % 3));
+        }
+        return lines;
+    }
+
+    private static List<String> readLines(Reader reader) throws IOException {
+        try (BufferedReader lines = new BufferedReader(reader)) {
+            return lines.lines().toList();
+        }
+    }
+}
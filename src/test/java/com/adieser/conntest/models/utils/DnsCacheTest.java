@@ -0,0 +1,171 @@
+package com.adieser.conntest.models.utils;
+
+import com.adieser.conntest.configurations.AppProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.slf4j.Logger;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class DnsCacheTest {
+    private static final String HOST = "gateway.local";
+    private static final long TTL_SECONDS = 30L;
+    private static final long NEGATIVE_TTL_SECONDS = 5L;
+
+    @Mock
+    ExecutorService threadPoolExecutor;
+    @Mock
+    Logger logger;
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final InetAddress address = mock(InetAddress.class);
+    private final InetAddress refreshedAddress = mock(InetAddress.class);
+    private DnsCache underTest;
+
+    @BeforeEach
+    void setUp() {
+        AppProperties appProperties = new AppProperties();
+        appProperties.setDnsCacheTtlSeconds(TTL_SECONDS);
+        appProperties.setDnsCacheNegativeTtlSeconds(NEGATIVE_TTL_SECONDS);
+        underTest = spy(new DnsCache(appProperties, threadPoolExecutor, logger, nanos::get));
+    }
+
+    @Test
+    void resolve_missThenHit() throws UnknownHostException {
+        // Given
+        doReturn(address).when(underTest).lookup(HOST);
+
+        // When
+        InetAddress first = underTest.resolve(HOST);
+        InetAddress second = underTest.resolve(HOST);
+
+        // Then
+        assertEquals(address, first);
+        assertEquals(address, second);
+        verify(underTest, times(1)).lookup(HOST);
+        assertEquals(1, underTest.getMisses());
+        assertEquals(1, underTest.getHits());
+        verify(threadPoolExecutor, never()).execute(any());
+    }
+
+    /**
+     * An expired entry is served right away and refreshed in the background, only once while the refresh is pending
+     */
+    @Test
+    void resolve_expiredServesStaleAndRefreshes() throws UnknownHostException {
+        // Given
+        doReturn(address).doReturn(refreshedAddress).when(underTest).lookup(HOST);
+        underTest.resolve(HOST);
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(TTL_SECONDS));
+
+        // When
+        InetAddress stale = underTest.resolve(HOST);
+        underTest.resolve(HOST);
+
+        // Then
+        assertEquals(address, stale);
+        assertEquals(2, underTest.getStaleHits());
+        ArgumentCaptor<Runnable> refresh = ArgumentCaptor.forClass(Runnable.class);
+        verify(threadPoolExecutor, times(1)).execute(refresh.capture());
+
+        refresh.getValue().run();
+
+        assertEquals(refreshedAddress, underTest.resolve(HOST));
+        assertEquals(1, underTest.getRefreshes());
+        assertEquals(2, underTest.getStaleHits());
+    }
+
+    @Test
+    void resolve_failedRefreshKeepsLastKnownAddress() throws UnknownHostException {
+        // Given
+        doReturn(address).doThrow(UnknownHostException.class).when(underTest).lookup(HOST);
+        underTest.resolve(HOST);
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(TTL_SECONDS));
+        underTest.resolve(HOST);
+        ArgumentCaptor<Runnable> refresh = ArgumentCaptor.forClass(Runnable.class);
+        verify(threadPoolExecutor).execute(refresh.capture());
+
+        // When
+        refresh.getValue().run();
+
+        // Then, the address is kept and the refresh is retried after the negative ttl
+        assertEquals(address, underTest.resolve(HOST));
+        assertEquals(1, underTest.getStaleHits());
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(NEGATIVE_TTL_SECONDS));
+        underTest.resolve(HOST);
+        verify(threadPoolExecutor, times(2)).execute(any());
+    }
+
+    /**
+     * A refresh failing unexpectedly, as on a SecurityException, does not keep the entry from being refreshed again
+     */
+    @Test
+    void resolve_refreshFailingUnexpectedlyIsRetried() throws UnknownHostException {
+        // Given
+        doReturn(address).doThrow(SecurityException.class).doReturn(refreshedAddress).when(underTest).lookup(HOST);
+        underTest.resolve(HOST);
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(TTL_SECONDS));
+        underTest.resolve(HOST);
+        ArgumentCaptor<Runnable> refresh = ArgumentCaptor.forClass(Runnable.class);
+        verify(threadPoolExecutor).execute(refresh.capture());
+
+        // When
+        refresh.getValue().run();
+        underTest.resolve(HOST);
+
+        // Then, the stale address is still served and refreshed on the next hit
+        verify(threadPoolExecutor, times(2)).execute(refresh.capture());
+        refresh.getValue().run();
+        assertEquals(refreshedAddress, underTest.resolve(HOST));
+    }
+
+    @Test
+    void resolve_unknownHostIsCached() throws UnknownHostException {
+        // Given
+        doThrow(UnknownHostException.class).when(underTest).lookup(HOST);
+
+        // When & Then
+        assertThrows(UnknownHostException.class, () -> underTest.resolve(HOST));
+        assertThrows(UnknownHostException.class, () -> underTest.resolve(HOST));
+        verify(underTest, times(1)).lookup(HOST);
+    }
+
+    @Test
+    void bindTo_registersCounters() throws UnknownHostException {
+        // Given
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        doReturn(address).when(underTest).lookup(HOST);
+        underTest.bindTo(registry);
+
+        // When
+        underTest.resolve(HOST);
+        underTest.resolve(HOST);
+        underTest.resolve(HOST);
+
+        // Then
+        assertEquals(2.0, registry.get("conntest.dns.cache.requests").tag("result", "hit").functionCounter().count());
+        assertEquals(1.0, registry.get("conntest.dns.cache.requests").tag("result", "miss").functionCounter().count());
+    }
+}
@@ -0,0 +1,136 @@
+package com.adieser.conntest.models.utils;
+
+import com.adieser.conntest.models.PingLog;
+import com.adieser.conntest.models.binary.BinaryPingLogFormat;
+import com.opencsv.bean.CsvToBeanBuilder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static com.adieser.utils.TestUtils.CLOUD_IP_ADDRESS;
+import static com.adieser.utils.TestUtils.DEFAULT_LOG_DATE_TIME;
+import static com.adieser.utils.TestUtils.LOCAL_IP_ADDRESS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PingLogScannerTest {
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Every line is read as the same ping opencsv reads
+     */
+    @Test
+    void toPingLog_sameAsOpencsv() {
+        // Given
+        String lines = givenLines(10_000) + "1999-12-31 23:59:59,::1,0.000\r\n2400-02-29 00:00:00,10.0.0.1,-1.5\n";
+        List<PingLog> expected = new CsvToBeanBuilder<PingLog>(new StringReader(lines))
+                .withType(PingLog.class)
+                .build()
+                .parse();
+        PingLogScanner underTest = new PingLogScanner(ByteBuffer.wrap(lines.getBytes(StandardCharsets.UTF_8)));
+
+        // When
+        List<PingLog> scanned = new ArrayList<>();
+        while (underTest.next())
+            scanned.add(underTest.toPingLog());
+
+        // Then
+        assertEquals(expected, scanned);
+    }
+
+    /**
+     * Only the pings of the target within the range are built, the bounds included
+     */
+    @Test
+    void stream_filtered() {
+        // Given
+        String lines = givenLines(100);
+        long from = BinaryPingLogFormat.toEpochSecond(DEFAULT_LOG_DATE_TIME.plusSeconds(10));
+        long to = BinaryPingLogFormat.toEpochSecond(DEFAULT_LOG_DATE_TIME.plusSeconds(19));
+        PingLogScanner underTest = new PingLogScanner(ByteBuffer.wrap(lines.getBytes(StandardCharsets.UTF_8)));
+
+        // When
+        List<PingLog> pingLogs = underTest.stream(PingLogScanner.toBytes(CLOUD_IP_ADDRESS), from, to).toList();
+
+        // Then
+        assertEquals(10, pingLogs.size());
+        assertTrue(pingLogs.stream().allMatch(pingLog -> pingLog.getIpAddress().equals(CLOUD_IP_ADDRESS)));
+        assertEquals(DEFAULT_LOG_DATE_TIME.plusSeconds(10), pingLogs.get(0).getDateTime());
+        assertEquals(DEFAULT_LOG_DATE_TIME.plusSeconds(19), pingLogs.get(9).getDateTime());
+        assertEquals(DEFAULT_LOG_DATE_TIME.getNano() == 0 ? from : from + 1,
+                PingLogScanner.toFirstEpochSecond(DEFAULT_LOG_DATE_TIME.plusSeconds(10)));
+        assertEquals(from + 1, PingLogScanner.toFirstEpochSecond(DEFAULT_LOG_DATE_TIME.plusSeconds(10).plusNanos(1)));
+    }
+
+    /**
+     * An unterminated last line is skipped while it is incomplete, any other malformed line fails
+     */
+    @Test
+    void next_malformed() {
+        String partial = "2023-10-06 02:08:35,192.168.1.1,13\n2023-10-06 02:08:3";
+        PingLogScanner underTest = new PingLogScanner(ByteBuffer.wrap(partial.getBytes(StandardCharsets.UTF_8)));
+        assertTrue(underTest.next());
+        assertFalse(underTest.next());
+
+        String malformed = "2023-10-06 02:08:35;192.168.1.1;13\n";
+        PingLogScanner malformedScanner = new PingLogScanner(ByteBuffer.wrap(malformed.getBytes(StandardCharsets.UTF_8)));
+        assertThrows(IllegalArgumentException.class, malformedScanner::next);
+    }
+
+    /**
+     * A segment is scanned up to its committed length, a compressed file is not scanned
+     */
+    @Test
+    void open() throws IOException {
+        // Given
+        byte[] lines = givenLines(10).getBytes(StandardCharsets.UTF_8);
+        ByteBuffer segment = ByteBuffer.allocate(PingLogSegment.HEADER_SIZE + lines.length + 1024);
+        PingLogSegment.initialize(segment);
+        segment.put(PingLogSegment.HEADER_SIZE, lines);
+        PingLogSegment.commit(segment, PingLogSegment.HEADER_SIZE + lines.length);
+        Path segmentFile = Files.write(tempDir.resolve("segment.log"), segment.array());
+        Path plainFile = Files.write(tempDir.resolve("plain.log"), lines);
+        Path compressedFile = tempDir.resolve("compressed.log");
+        CompressedPingLog.compress(plainFile, compressedFile, 4096);
+
+        // When
+        long segmentPings = PingLogScanner.open(segmentFile).stream(null, Long.MIN_VALUE, Long.MAX_VALUE).count();
+        long plainPings = PingLogScanner.open(plainFile).stream(null, Long.MIN_VALUE, Long.MAX_VALUE).count();
+
+        // Then
+        assertEquals(20, segmentPings);
+        assertEquals(20, plainPings);
+        assertNull(PingLogScanner.open(compressedFile));
+    }
+
+    private static String givenLines(int seconds) {
+        Random random = new Random(7);
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < seconds; i++) {
+            String dateTime = FORMATTER.format(DEFAULT_LOG_DATE_TIME.plusSeconds(i));
+            double micros = random.nextInt(2_000_000) / 1000.0;
+            lines.append(dateTime).append(',').append(LOCAL_IP_ADDRESS).append(',')
+                    .append(i % 17 == 0 ? "-1" : PingLog.formatPingTime(micros)).append('\n');
+            lines.append(dateTime).append(',').append(CLOUD_IP_ADDRESS).append(',')
+                    .append(random.nextInt(200)).append('\n');
+        }
+        return lines.toString();
+    }
+}
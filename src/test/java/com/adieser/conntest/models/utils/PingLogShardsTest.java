@@ -0,0 +1,34 @@
+package com.adieser.conntest.models.utils;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PingLogShardsTest {
+    private static final Path SHARDS_DIRECTORY = Path.of("pingLogs", PingLogShards.SHARDS_DIRECTORY);
+
+    /**
+     * Every target has a directory of its own right under the directory of the targets, whatever its name
+     */
+    @ParameterizedTest
+    @CsvSource(value = {
+            "192.168.1.1, 192.168.1.1",
+            "2001:db8::1, 2001_db8__1",
+            "example.com, example.com",
+            "., _",
+            "..,__",
+            "'', _",
+            "../etc, .._etc",
+    })
+    void getShardDirectory(String ipAddress, String directory) {
+        // When
+        Path shardDirectory = PingLogShards.getShardDirectory(SHARDS_DIRECTORY, ipAddress);
+
+        // Then
+        assertEquals(SHARDS_DIRECTORY.resolve(directory), shardDirectory);
+        assertEquals(SHARDS_DIRECTORY, shardDirectory.normalize().getParent());
+    }
+}
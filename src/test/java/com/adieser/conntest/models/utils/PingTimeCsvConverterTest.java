@@ -0,0 +1,56 @@
+package com.adieser.conntest.models.utils;
+
+import com.adieser.conntest.models.PingLog;
+import com.opencsv.exceptions.CsvDataTypeMismatchException;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PingTimeCsvConverterTest {
+
+    private final PingTimeCsvConverter converter = new PingTimeCsvConverter();
+
+    /**
+     * Millisecond values written before the microsecond resolution are read as they are
+     */
+    @ParameterizedTest
+    @MethodSource("pingTimes")
+    void convert_readsMillisecondsAndMicroseconds(String value, double expected) throws Exception {
+        assertEquals(expected, converter.convert(value));
+    }
+
+    @ParameterizedTest
+    @MethodSource("pingTimes")
+    void convertToWrite_roundTrips(String expected, double pingTime) {
+        assertEquals(expected, converter.convertToWrite(pingTime));
+    }
+
+    static Stream<Arguments> pingTimes() {
+        return Stream.of(
+                Arguments.of("13", 13),
+                Arguments.of("0", 0),
+                Arguments.of("-1", -1),
+                Arguments.of("0.412", 0.412),
+                Arguments.of("1.25", 1.25),
+                Arguments.of("250.001", 250.001)
+        );
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "abc", "1,5"})
+    void convert_invalidValue(String value) {
+        assertThrows(CsvDataTypeMismatchException.class, () -> converter.convert(value));
+    }
+
+    @ParameterizedTest
+    @ValueSource(doubles = {0.4124, 0.41249})
+    void formatPingTime_roundsToMicroseconds(double pingTime) {
+        assertEquals("0.412", PingLog.formatPingTime(pingTime));
+    }
+}
@@ -29,12 +29,14 @@ import static org.mockito.Mockito.when;
 class PingUtilsTest {
     @Mock
     Logger logger;
+    @Mock
+    DnsCache dnsCache;
 
     @ParameterizedTest
     @MethodSource("testPingSuccess")
     void testIsReachable(boolean isReachable) throws IOException {
         // when
-        PingUtils underTestSpy = spy(new PingUtils(logger));
+        PingUtils underTestSpy = spy(new PingUtils(logger, dnsCache));
         InetAddress inet = mock(InetAddress.class);
         when(inet.isReachable(anyInt())).thenReturn(isReachable);
         when(underTestSpy.getInet(LOCAL_IP_ADDRESS)).thenReturn(inet);
@@ -49,7 +51,7 @@ class PingUtilsTest {
     @Test
     void testIsReachableIOException() throws IOException {
         // when
-        PingUtils underTestSpy = spy(new PingUtils(logger));
+        PingUtils underTestSpy = spy(new PingUtils(logger, dnsCache));
         InetAddress inet = mock(InetAddress.class);
         when(inet.isReachable(anyInt())).thenThrow(IOException.class);
         when(underTestSpy.getInet(LOCAL_IP_ADDRESS)).thenReturn(inet);
@@ -64,7 +66,7 @@ class PingUtilsTest {
     @Test
     void testIsReachableUnknownHostException() throws UnknownHostException {
         // when
-        PingUtils underTestSpy = spy(new PingUtils(logger));
+        PingUtils underTestSpy = spy(new PingUtils(logger, dnsCache));
         when(underTestSpy.getInet(LOCAL_IP_ADDRESS)).thenThrow(UnknownHostException.class);
         doNothing().when(logger).error(any(String.class), any(), any());
 
@@ -75,6 +77,20 @@ class PingUtilsTest {
         verify(logger, times(1)).error(anyString(), anyString(), any(UnknownHostException.class));
     }
 
+    @Test
+    void testGetInetResolvesThroughCache() throws UnknownHostException {
+        // when
+        PingUtils underTest = new PingUtils(logger, dnsCache);
+        InetAddress inet = mock(InetAddress.class);
+        when(dnsCache.resolve(LOCAL_IP_ADDRESS)).thenReturn(inet);
+
+        // then
+        InetAddress resolved = underTest.getInet(LOCAL_IP_ADDRESS);
+
+        // assert
+        assertEquals(inet, resolved);
+    }
+
     static Stream<Boolean> testPingSuccess() {
         return Stream.of(
                 true,
@@ -0,0 +1,169 @@
+package com.adieser.conntest.models.utils;
+
+import com.adieser.conntest.configurations.AppProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.adieser.conntest.models.utils.TcpConnectReachable.NOT_REACHABLE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TcpConnectReachableTest {
+    private static final String LOOPBACK = "127.0.0.1";
+    private static final int PROBES_IN_FLIGHT = 1000;
+    private static final String PROBE_THREAD = "probe";
+
+    @Mock
+    Logger logger;
+    @Mock
+    AppProperties appProperties;
+    @Mock
+    ExecutorService threadPoolExecutor;
+
+    private TcpConnectReachable underTest;
+    private ServerSocket listener;
+    private ExecutorService probeExecutor;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        listener = new ServerSocket(0, PROBES_IN_FLIGHT, InetAddress.getByName(LOOPBACK));
+        DnsCache dnsCache = new DnsCache(new AppProperties(), threadPoolExecutor, logger);
+        probeExecutor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, PROBE_THREAD));
+        underTest = new TcpConnectReachable(logger, appProperties, dnsCache, probeExecutor);
+        underTest.start();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        underTest.stop();
+        listener.close();
+        probeExecutor.shutdownNow();
+    }
+
+    @Test
+    void isReachable_listeningPort() {
+        // Given
+        when(appProperties.getTcpProbePort()).thenReturn(listener.getLocalPort());
+
+        // When & Then
+        assertTrue(underTest.isReachable(LOOPBACK));
+    }
+
+    @Test
+    void probeAsync_listeningPort() {
+        // Given
+        when(appProperties.getTcpProbePort()).thenReturn(listener.getLocalPort());
+
+        // When & Then
+        assertTrue(underTest.probeAsync(LOOPBACK).join() >= 0);
+    }
+
+    /**
+     * The futures are completed on the probe executor, not on the I/O thread
+     */
+    @Test
+    void probeAsync_completedOnProbeExecutor() throws InterruptedException {
+        // Given, the probe executor is held until the dependent action is registered
+        when(appProperties.getTcpProbePort()).thenReturn(listener.getLocalPort());
+        CountDownLatch held = new CountDownLatch(1);
+        probeExecutor.execute(() -> {
+            try {
+                held.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        // When
+        CompletableFuture<String> completingThread = underTest.probeAsync(LOOPBACK)
+                .thenApply(nanos -> Thread.currentThread().getName());
+        held.countDown();
+
+        // Then
+        assertEquals(PROBE_THREAD, completingThread.join());
+    }
+
+    @Test
+    void connect_timesHandshake() {
+        // When
+        long handshakeNanos = underTest.connect(loopback(listener.getLocalPort()), 1000).join();
+
+        // Then
+        assertTrue(handshakeNanos > 0);
+    }
+
+    /**
+     * A closed port answers with a RST, so the host is reachable
+     */
+    @Test
+    void connect_refusedIsReachable() throws IOException {
+        // Given
+        int closedPort;
+        try (ServerSocket closed = new ServerSocket(0, 1, InetAddress.getByName(LOOPBACK))) {
+            closedPort = closed.getLocalPort();
+        }
+
+        // When
+        long handshakeNanos = underTest.connect(loopback(closedPort), 1000).join();
+
+        // Then
+        assertNotEquals(NOT_REACHABLE, handshakeNanos);
+    }
+
+    @Test
+    void connect_unresolvedIsNotReachable() {
+        // When
+        long handshakeNanos = underTest.connect(InetSocketAddress.createUnresolved("unknown.invalid", 80), 1000).join();
+
+        // Then
+        assertEquals(NOT_REACHABLE, handshakeNanos);
+    }
+
+    @Test
+    void connect_stopped() {
+        // Given
+        underTest.stop();
+
+        // When & Then
+        assertFalse(underTest.connect(loopback(listener.getLocalPort()), 1000).join() != NOT_REACHABLE);
+    }
+
+    @Test
+    void connect_manyProbesInFlight() {
+        // When
+        List<CompletableFuture<Long>> probes = new ArrayList<>();
+        for (int i = 0; i < PROBES_IN_FLIGHT; i++)
+            probes.add(underTest.connect(loopback(listener.getLocalPort()), 3000));
+
+        // Then
+        CompletableFuture.allOf(probes.toArray(CompletableFuture[]::new)).join();
+        long reachable = probes.stream()
+                .filter(probe -> probe.join() != NOT_REACHABLE)
+                .count();
+        assertEquals(PROBES_IN_FLIGHT, reachable);
+    }
+
+    private static InetSocketAddress loopback(int port) {
+        return new InetSocketAddress(LOOPBACK, port);
+    }
+}
@@ -0,0 +1,94 @@
+package com.adieser.conntest.models.utils.simulator;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Map;
+
+import static com.adieser.conntest.models.utils.simulator.ScenarioReachable.NOT_REACHABLE;
+import static com.adieser.utils.TestUtils.LOCAL_IP_ADDRESS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScenarioReachableTest {
+    private static final Instant START = Instant.parse("2023-10-06T00:00:00Z");
+
+    private final VirtualClock clock = new VirtualClock(START, ZoneOffset.UTC);
+
+    @Test
+    void probe_roundTripAroundBaseline() {
+        // Given
+        ScenarioReachable underTest = new ScenarioReachable(new ScenarioProfile(10, 1, 0, 0, 0, 0), clock);
+
+        // When
+        long sum = 0;
+        for (int i = 0; i < 1000; i++) {
+            long roundTrip = underTest.probe(LOCAL_IP_ADDRESS);
+            assertTrue(roundTrip > 0, "a probe was lost");
+            sum += roundTrip;
+            clock.advance(Duration.ofSeconds(1));
+        }
+
+        // Then
+        double averageMillis = sum / 1000 / 1e6;
+        assertTrue(averageMillis > 9.5 && averageMillis < 10.5, "average out of the baseline: " + averageMillis);
+    }
+
+    @Test
+    void probe_scheduledOutage() {
+        // Given, a 10 s outage at the end of every minute
+        ScenarioReachable underTest = new ScenarioReachable(new ScenarioProfile(10, 1, 0, 0, 60, 10), clock);
+
+        // When & Then
+        for (int second = 0; second < 120; second++) {
+            boolean outage = second % 60 >= 50;
+            assertEquals(outage, underTest.probe(LOCAL_IP_ADDRESS) == NOT_REACHABLE, "wrong result at " + second);
+            clock.advance(Duration.ofSeconds(1));
+        }
+    }
+
+    @Test
+    void probe_lossBurst() {
+        // Given, every probe out of a burst starts a new one
+        ScenarioReachable underTest = new ScenarioReachable(new ScenarioProfile(10, 1, 1, 5, 0, 0), clock);
+
+        // When & Then
+        for (int second = 0; second < 20; second++) {
+            assertEquals(NOT_REACHABLE, underTest.probe(LOCAL_IP_ADDRESS));
+            clock.advance(Duration.ofSeconds(1));
+        }
+        assertFalse(underTest.isReachable(LOCAL_IP_ADDRESS));
+    }
+
+    /**
+     * Two runs with the same profile produce the same results
+     */
+    @Test
+    void probe_reproducible() {
+        // Given
+        ScenarioReachable first = new ScenarioReachable(ScenarioProfile.FLAKY, clock);
+        ScenarioReachable second = new ScenarioReachable(ScenarioProfile.FLAKY, clock);
+
+        // When & Then
+        for (int i = 0; i < 100; i++) {
+            assertEquals(first.probe(LOCAL_IP_ADDRESS), second.probe(LOCAL_IP_ADDRESS));
+            clock.advance(Duration.ofSeconds(1));
+        }
+        assertNotEquals(first.probe(LOCAL_IP_ADDRESS), first.probe("8.8.8.8"));
+    }
+
+    @Test
+    void profileOf() {
+        ScenarioProfile custom = new ScenarioProfile(1, 0, 0, 0, 0, 0);
+
+        assertSame(ScenarioProfile.LAN, ScenarioProfile.of("lan", Map.of()));
+        assertSame(custom, ScenarioProfile.of("lan", Map.of("lan", custom)));
+        assertThrows(IllegalArgumentException.class, () -> ScenarioProfile.of("unknown", null));
+    }
+}
@@ -5,6 +5,7 @@ import com.adieser.conntest.models.ConnTest;
 import com.adieser.conntest.models.PingLog;
 import com.adieser.conntest.models.PingLogRepository;
 import com.adieser.conntest.models.utils.Reachable;
+import com.adieser.conntest.service.scheduler.ProbeScheduler;
 import com.adieser.utils.TestUtils;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -24,7 +25,6 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
 import java.util.stream.Stream;
 
 import static com.adieser.utils.TestUtils.CLOUD_IP_ADDRESS;
@@ -53,7 +53,7 @@ class ConnTestServiceImplTest {
     @Mock
     Logger logger;
     @Mock
-    ExecutorService executorService;
+    ProbeScheduler probeScheduler;
     @Mock
     PingLogRepository pingLogRepository;
     @Mock
@@ -65,7 +65,7 @@ class ConnTestServiceImplTest {
     void testTestLocalISPInternet() {
         // when
         ConnTestServiceImpl underTest =
-                spy(new ConnTestServiceImpl(executorService, logger, tracertProvider, pingLogRepository, pingUtils));
+                spy(new ConnTestServiceImpl(probeScheduler, logger, tracertProvider, pingLogRepository, pingUtils));
         List<String> localAndISPIpAddresses = new ArrayList<>(Arrays.asList(LOCAL_IP_ADDRESS, ISP_IP_ADDRESS));
         List<ConnTest> mockConnTests = List.of(mock(ConnTest.class),mock(ConnTest.class),mock(ConnTest.class));
 
@@ -91,7 +91,7 @@ class ConnTestServiceImplTest {
         String ip3 = "3.3.3.3";
 
         ConnTestServiceImpl underTest =
-                spy(new ConnTestServiceImpl(executorService, logger, tracertProvider, pingLogRepository, pingUtils));
+                spy(new ConnTestServiceImpl(probeScheduler, logger, tracertProvider, pingLogRepository, pingUtils));
         List<String> ipAddresses = new ArrayList<>(Arrays.asList(ip1, ip2, ip3));
 
         ConnTest localConnMock = mock(ConnTest.class);
@@ -129,7 +129,7 @@ class ConnTestServiceImplTest {
     void testStopTests(boolean areTestRunning) {
         // when
         ConnTestServiceImpl underTest =
-                new ConnTestServiceImpl(executorService, logger, tracertProvider, pingLogRepository, pingUtils);
+                new ConnTestServiceImpl(probeScheduler, logger, tracertProvider, pingLogRepository, pingUtils);
         List<ConnTest> mockConnTests = List.of(mock(ConnTest.class),mock(ConnTest.class),mock(ConnTest.class));
 
         if(areTestRunning)
@@ -154,7 +154,7 @@ class ConnTestServiceImplTest {
     void testGetPings(List<PingLog> pingLogs) throws IOException {
         // when
         ConnTestServiceImpl underTest =
-                new ConnTestServiceImpl(executorService, logger, tracertProvider, pingLogRepository, pingUtils);
+                new ConnTestServiceImpl(probeScheduler, logger, tracertProvider, pingLogRepository, pingUtils);
         doReturn(pingLogs).when(pingLogRepository).findAllPingLogs();
 
         // then
@@ -168,7 +168,7 @@ class ConnTestServiceImplTest {
     void testGetPingsIOException() throws IOException {
         // when
         ConnTestServiceImpl underTest =
-                new ConnTestServiceImpl(executorService, logger, tracertProvider, pingLogRepository, pingUtils);
+                new ConnTestServiceImpl(probeScheduler, logger, tracertProvider, pingLogRepository, pingUtils);
         doThrow(IOException.class).when(pingLogRepository).findAllPingLogs();
 
         // then assert
@@ -180,7 +180,7 @@ class ConnTestServiceImplTest {
     void testGetPingsByDateTimeRange(List<PingLog> pingLogs) throws IOException {
         // when
         ConnTestServiceImpl underTest =
-                new ConnTestServiceImpl(executorService, logger, tracertProvider, pingLogRepository, pingUtils);
+                new ConnTestServiceImpl(probeScheduler, logger, tracertProvider, pingLogRepository, pingUtils);
         doReturn(pingLogs).when(pingLogRepository).findPingLogsByDateTimeRange(START, END);
 
         // then
@@ -197,7 +197,7 @@ class ConnTestServiceImplTest {
     void testGetPingsByDateTimeRangeIOException() throws IOException {
         // when
         ConnTestServiceImpl underTest =
-                new ConnTestServiceImpl(executorService, logger, tracertProvider, pingLogRepository, pingUtils);
+                new ConnTestServiceImpl(probeScheduler, logger, tracertProvider, pingLogRepository, pingUtils);
         doThrow(IOException.class).when(pingLogRepository).findPingLogsByDateTimeRange(START, END);
 
         // then assert
@@ -209,7 +209,7 @@ class ConnTestServiceImplTest {
     void testGetPingsByIp(List<PingLog> pingLogs) throws IOException {
         // when
         ConnTestServiceImpl underTest =
-                new ConnTestServiceImpl(executorService, logger, tracertProvider, pingLogRepository, pingUtils);
+                new ConnTestServiceImpl(probeScheduler, logger, tracertProvider, pingLogRepository, pingUtils);
         doReturn(pingLogs).when(pingLogRepository).findPingLogByIp(LOCAL_IP_ADDRESS);
 
         // then
@@ -223,7 +223,7 @@ class ConnTestServiceImplTest {
     void testGetPingsByIpIOException() throws IOException {
         // when
         ConnTestServiceImpl underTest =
-                new ConnTestServiceImpl(executorService, logger, tracertProvider, pingLogRepository, pingUtils);
+                new ConnTestServiceImpl(probeScheduler, logger, tracertProvider, pingLogRepository, pingUtils);
         doThrow(IOException.class).when(pingLogRepository).findPingLogByIp(LOCAL_IP_ADDRESS);
 
         // then assert
@@ -235,7 +235,7 @@ class ConnTestServiceImplTest {
     void testGetPingsByDateTimeRangeByIp(List<PingLog> pingLogs) throws IOException {
         // when
         ConnTestServiceImpl underTest =
-                new ConnTestServiceImpl(executorService, logger, tracertProvider, pingLogRepository, pingUtils);
+                new ConnTestServiceImpl(probeScheduler, logger, tracertProvider, pingLogRepository, pingUtils);
         doReturn(pingLogs).when(pingLogRepository).findPingLogsByDateTimeRangeByIp(
                 START,
                 END,
@@ -257,7 +257,7 @@ class ConnTestServiceImplTest {
     void testGetPingsByDateTimeRangeByIpIOException() throws IOException {
         // when
         ConnTestServiceImpl underTest =
-                new ConnTestServiceImpl(executorService, logger, tracertProvider, pingLogRepository, pingUtils);
+                new ConnTestServiceImpl(probeScheduler, logger, tracertProvider, pingLogRepository, pingUtils);
         doThrow(IOException.class).when(pingLogRepository).findPingLogsByDateTimeRangeByIp(START,END,LOCAL_IP_ADDRESS);
 
         // then assert
@@ -271,7 +271,7 @@ class ConnTestServiceImplTest {
         List<PingLog> lostPingLogs = List.of(TestUtils.getDefaultLostPingLog());
 
         ConnTestServiceImpl underTest =
-                new ConnTestServiceImpl(executorService, logger, tracertProvider, pingLogRepository, pingUtils);
+                new ConnTestServiceImpl(probeScheduler, logger, tracertProvider, pingLogRepository, pingUtils);
         doReturn(lostPingLogs).when(pingLogRepository).findLostPingsByIp(LOCAL_IP_ADDRESS);
 
         // then
@@ -291,7 +291,7 @@ class ConnTestServiceImplTest {
         List<PingLog> lostPingLogs = List.of(TestUtils.getDefaultLostPingLog());
 
         ConnTestServiceImpl underTest =
-                new ConnTestServiceImpl(executorService, logger, tracertProvider, pingLogRepository, pingUtils);
+                new ConnTestServiceImpl(probeScheduler, logger, tracertProvider, pingLogRepository, pingUtils);
         doReturn(lostPingLogs).when(pingLogRepository).findLostPingsByDateTimeRangeByIp(
                 START,
                 END,
@@ -317,7 +317,7 @@ class ConnTestServiceImplTest {
     void testGetPingsLostAvgByIp() throws IOException {
         // when
         ConnTestServiceImpl underTest =
-                new ConnTestServiceImpl(executorService, logger, tracertProvider, pingLogRepository, pingUtils);
+                new ConnTestServiceImpl(probeScheduler, logger, tracertProvider, pingLogRepository, pingUtils);
         BigDecimal avg = new BigDecimal("0.2");
         doReturn(avg).when(pingLogRepository).findLostPingLogsAvgByIP(LOCAL_IP_ADDRESS);
 
@@ -332,7 +332,7 @@ class ConnTestServiceImplTest {
     void testGetPingsLostAvgByIpIOException() throws IOException {
         // when
         ConnTestServiceImpl underTest =
-                new ConnTestServiceImpl(executorService, logger, tracertProvider, pingLogRepository, pingUtils);
+                new ConnTestServiceImpl(probeScheduler, logger, tracertProvider, pingLogRepository, pingUtils);
         doThrow(IOException.class).when(pingLogRepository).findLostPingLogsAvgByIP(LOCAL_IP_ADDRESS);
 
         // then assert
@@ -343,7 +343,7 @@ class ConnTestServiceImplTest {
     void testGetPingsLostAvgByDateTimeRangeByIp() throws IOException {
         // when
         ConnTestServiceImpl underTest =
-                new ConnTestServiceImpl(executorService, logger, tracertProvider, pingLogRepository, pingUtils);
+                new ConnTestServiceImpl(probeScheduler, logger, tracertProvider, pingLogRepository, pingUtils);
         BigDecimal avg = new BigDecimal("0.2");
         doReturn(avg).when(pingLogRepository).findLostPingLogsAvgByDateTimeRangeByIp(
                 START,
@@ -366,7 +366,7 @@ class ConnTestServiceImplTest {
     void testGetPingsLostAvgByDateTimeRangeByIpIOException() throws IOException {
         // when
         ConnTestServiceImpl underTest =
-                new ConnTestServiceImpl(executorService, logger, tracertProvider, pingLogRepository, pingUtils);
+                new ConnTestServiceImpl(probeScheduler, logger, tracertProvider, pingLogRepository, pingUtils);
         doThrow(IOException.class).when(pingLogRepository).findLostPingLogsAvgByDateTimeRangeByIp(START,
                 END,
                 LOCAL_IP_ADDRESS);
@@ -381,7 +381,7 @@ class ConnTestServiceImplTest {
     void testCreateResponse(){
         // when
         ConnTestServiceImpl underTest =
-                new ConnTestServiceImpl(executorService, logger, tracertProvider, pingLogRepository, pingUtils);
+                new ConnTestServiceImpl(probeScheduler, logger, tracertProvider, pingLogRepository, pingUtils);
         List<PingLog> pingLogs = List.of(getDefaultPingLog());
 
         // then
@@ -401,7 +401,7 @@ class ConnTestServiceImplTest {
     void testGetLocalAndISPIpAddresses() throws IOException {
         // when
         ConnTestServiceImpl underTest =
-                spy(new ConnTestServiceImpl(executorService, logger, tracertProvider, pingLogRepository, pingUtils));
+                spy(new ConnTestServiceImpl(probeScheduler, logger, tracertProvider, pingLogRepository, pingUtils));
         BufferedReader bufferedReader = mock(BufferedReader.class);
         when(bufferedReader.readLine())
                 .thenReturn("")
@@ -429,7 +429,7 @@ class ConnTestServiceImplTest {
     void testGetLocalAndISPIpAddressesIOException() throws IOException {
         // when
         ConnTestServiceImpl underTest =
-                spy(new ConnTestServiceImpl(executorService, logger, tracertProvider, pingLogRepository, pingUtils));
+                spy(new ConnTestServiceImpl(probeScheduler, logger, tracertProvider, pingLogRepository, pingUtils));
         BufferedReader bufferedReader = mock(BufferedReader.class);
         when(bufferedReader.readLine()).thenThrow(IOException.class);
 
@@ -446,7 +446,7 @@ class ConnTestServiceImplTest {
     void testGetConnTestsFromIpAddresses() {
         // when
         ConnTestServiceImpl underTest =
-                new ConnTestServiceImpl(executorService, logger, tracertProvider, pingLogRepository, pingUtils);
+                new ConnTestServiceImpl(probeScheduler, logger, tracertProvider, pingLogRepository, pingUtils);
         List<String> ipAddresses = List.of(LOCAL_IP_ADDRESS, ISP_IP_ADDRESS);
 
         // then
@@ -462,7 +462,7 @@ class ConnTestServiceImplTest {
     void testExecuteTracert() throws IOException {
         // when
         ConnTestServiceImpl underTest =
-                spy(new ConnTestServiceImpl(executorService, logger, tracertProvider, pingLogRepository, pingUtils));
+                spy(new ConnTestServiceImpl(probeScheduler, logger, tracertProvider, pingLogRepository, pingUtils));
         Optional<BufferedReader> mockReader = mock(Optional.class);
         doReturn(mockReader).when(tracertProvider).executeTracert();
 
@@ -478,10 +478,10 @@ class ConnTestServiceImplTest {
     void testGetIpAddressesFromActiveTests(){
         // when
         ConnTestServiceImpl underTest =
-                spy(new ConnTestServiceImpl(executorService, logger, tracertProvider, pingLogRepository, pingUtils));
+                spy(new ConnTestServiceImpl(probeScheduler, logger, tracertProvider, pingLogRepository, pingUtils));
         List<String> ipAddresses = List.of("IP_1", "IP_2", "IP_3");
         underTest.tests = ipAddresses.stream()
-                .map(ip -> new ConnTest(executorService, ip, logger, pingLogRepository, pingUtils))
+                .map(ip -> new ConnTest(probeScheduler, ip, logger, pingLogRepository, pingUtils))
                 .toList();
 
         // then
@@ -499,7 +499,7 @@ class ConnTestServiceImplTest {
     void testClearPinglogFile() throws InterruptedException {
         // when
         ConnTestServiceImpl underTest =
-                new ConnTestServiceImpl(executorService, logger, tracertProvider, pingLogRepository, pingUtils);
+                new ConnTestServiceImpl(probeScheduler, logger, tracertProvider, pingLogRepository, pingUtils);
 
         // then
         underTest.clearPingLogFile();
@@ -512,7 +512,7 @@ class ConnTestServiceImplTest {
     void testGetMaxMinPingLog() throws IOException {
         // when
         ConnTestServiceImpl underTest =
-                new ConnTestServiceImpl(executorService, logger, tracertProvider, pingLogRepository, pingUtils);
+                new ConnTestServiceImpl(probeScheduler, logger, tracertProvider, pingLogRepository, pingUtils);
         doReturn(
                 List.of(getDefaultPingLog(),
                         getDefaultPingLog()))
@@ -532,7 +532,7 @@ class ConnTestServiceImplTest {
     void testGetMaxMinPingLogByDateTimeRangeByIp() throws IOException {
         // when
         ConnTestServiceImpl underTest =
-                new ConnTestServiceImpl(executorService, logger, tracertProvider, pingLogRepository, pingUtils);
+                new ConnTestServiceImpl(probeScheduler, logger, tracertProvider, pingLogRepository, pingUtils);
         doReturn(
                 List.of(getDefaultPingLog(),
                         getDefaultPingLog()))
@@ -556,7 +556,7 @@ class ConnTestServiceImplTest {
     void testGetAvgLatencyByIp() throws IOException {
         // when
         ConnTestServiceImpl underTest =
-                new ConnTestServiceImpl(executorService, logger, tracertProvider, pingLogRepository, pingUtils);
+                new ConnTestServiceImpl(probeScheduler, logger, tracertProvider, pingLogRepository, pingUtils);
         BigDecimal avg = new BigDecimal("0.2");
         doReturn(avg).when(pingLogRepository).findAvgLatencyByIp(LOCAL_IP_ADDRESS);
 
@@ -571,7 +571,7 @@ class ConnTestServiceImplTest {
     void testGetAvgLatencyByDateTimeRangeByIp() throws IOException {
         // when
         ConnTestServiceImpl underTest =
-                new ConnTestServiceImpl(executorService, logger, tracertProvider, pingLogRepository, pingUtils);
+                new ConnTestServiceImpl(probeScheduler, logger, tracertProvider, pingLogRepository, pingUtils);
         BigDecimal avg = new BigDecimal("0.2");
         doReturn(avg).when(pingLogRepository).findAvgLatencyByDateTimeRangeByIp(
                 START,
@@ -595,7 +595,7 @@ class ConnTestServiceImplTest {
     void testChangeDataSource() throws IOException {
         // when
         ConnTestServiceImpl underTest =
-                new ConnTestServiceImpl(executorService, logger, tracertProvider, pingLogRepository, pingUtils);
+                new ConnTestServiceImpl(probeScheduler, logger, tracertProvider, pingLogRepository, pingUtils);
         Object newDataSource = "newFileName";
 
         // then
@@ -0,0 +1,137 @@
+package com.adieser.conntest.service.scheduler;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.slf4j.Logger;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+@ExtendWith(MockitoExtension.class)
+class ProbeSchedulerTest {
+    @Mock
+    Logger logger;
+
+    private final ExecutorService probeExecutor = Executors.newCachedThreadPool();
+    private ProbeScheduler underTest;
+
+    @AfterEach
+    void tearDown() {
+        if (underTest != null)
+            underTest.stop();
+        probeExecutor.shutdownNow();
+    }
+
+    /**
+     * All the sessions tick in phase, on whole seconds, with consecutive sequence numbers
+     */
+    @Test
+    void register_ticksOnSecondBoundaries() {
+        // Given
+        List<ProbeScheduler.Tick> first = new CopyOnWriteArrayList<>();
+        List<ProbeScheduler.Tick> second = new CopyOnWriteArrayList<>();
+        underTest = new ProbeScheduler(probeExecutor, Clock.systemDefaultZone(), logger);
+        underTest.start();
+
+        // When
+        underTest.register(1000, first::add);
+        underTest.register(1000, second::add);
+
+        // Then
+        await().atMost(5, TimeUnit.SECONDS).until(() -> first.size() >= 2 && second.size() >= 2);
+
+        for (int i = 0; i < 2; i++) {
+            LocalDateTime dateTime = first.get(i).dateTime();
+            assertEquals(0, dateTime.getNano(), "tick is not on a second boundary");
+            assertEquals(i, first.get(i).sequence());
+            assertEquals(dateTime, second.get(i).dateTime(), "sessions are out of phase");
+        }
+        assertEquals(first.get(0).dateTime().plusSeconds(1), first.get(1).dateTime());
+    }
+
+    @Test
+    void cancel_stopsTicks() throws InterruptedException {
+        // Given
+        List<ProbeScheduler.Tick> ticks = new CopyOnWriteArrayList<>();
+        underTest = new ProbeScheduler(probeExecutor, Clock.systemDefaultZone(), logger);
+        underTest.start();
+        ProbeScheduler.Registration registration = underTest.register(100, ticks::add);
+        await().atMost(2, TimeUnit.SECONDS).until(() -> !ticks.isEmpty());
+
+        // When
+        registration.cancel();
+        Thread.sleep(200);
+        int ticksAfterCancel = ticks.size();
+        Thread.sleep(300);
+
+        // Then
+        assertEquals(ticksAfterCancel, ticks.size());
+    }
+
+    /**
+     * When the wheel thread is blocked for longer than a period, the stale ticks are recorded as missed and the
+     * sequence keeps counting them
+     */
+    @Test
+    void fire_recordsMissedTicks() {
+        // Given, an executor that runs the ticks in the wheel thread, so a slow tick blocks the wheel
+        ExecutorService inlineExecutor = mock(ExecutorService.class);
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(0)).run();
+            return null;
+        }).when(inlineExecutor).execute(any());
+
+        List<ProbeScheduler.Tick> ticks = new CopyOnWriteArrayList<>();
+        underTest = new ProbeScheduler(inlineExecutor, Clock.systemDefaultZone(), logger);
+        underTest.start();
+
+        // When
+        ProbeScheduler.Registration registration = underTest.register(100, tick -> {
+            ticks.add(tick);
+            if (tick.sequence() == 0)
+                sleep(450);
+        });
+
+        // Then
+        await().atMost(3, TimeUnit.SECONDS).until(() -> ticks.size() >= 2);
+
+        ProbeScheduler.Tick afterOverrun = ticks.get(1);
+        assertTrue(afterOverrun.missedBefore() >= 3, "missed ticks not recorded");
+        assertEquals(1 + afterOverrun.missedBefore(), afterOverrun.sequence());
+        assertEquals(afterOverrun.missedBefore(), registration.getMissedTicks());
+        assertTrue(underTest.getMissedTicks() >= afterOverrun.missedBefore());
+    }
+
+    @Test
+    void register_invalidPeriod() {
+        // Given
+        underTest = new ProbeScheduler(probeExecutor, Clock.systemDefaultZone(), logger);
+
+        // When & Then
+        assertThrows(IllegalArgumentException.class, () -> underTest.register(150, tick -> {}));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.adieser.conntest.service.simulator;
+
+import com.adieser.conntest.configurations.AppProperties;
+import com.adieser.conntest.models.PingLog;
+import com.adieser.conntest.models.PingLogRepository;
+import com.adieser.conntest.models.utils.simulator.ScenarioProfile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.slf4j.Logger;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+@ExtendWith(MockitoExtension.class)
+class VirtualLoadSimulatorTest {
+    private static final Instant START = Instant.parse("2023-10-06T00:00:00Z");
+    private static final int TARGETS = 50;
+    private static final int SECONDS = 120;
+
+    @Mock
+    PingLogRepository pingLogRepository;
+    @Mock
+    Logger logger;
+
+    private final ExecutorService probeExecutor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void tearDown() {
+        probeExecutor.shutdownNow();
+    }
+
+    /**
+     * Every target gets one ping per virtual second, saved in order with the virtual timestamps
+     */
+    @Test
+    void run_savesOnePingPerTargetAndSecond() throws InterruptedException {
+        // Given
+        Map<String, List<PingLog>> saved = new ConcurrentHashMap<>();
+        doAnswer(invocation -> {
+            PingLog pingLog = invocation.getArgument(0);
+            saved.computeIfAbsent(pingLog.getIpAddress(), ip -> new CopyOnWriteArrayList<>()).add(pingLog);
+            return true;
+        }).when(pingLogRepository).savePingLog(any());
+
+        VirtualLoadSimulator underTest = new VirtualLoadSimulator(new AppProperties(), pingLogRepository,
+                probeExecutor, Clock.system(ZoneOffset.UTC), logger);
+
+        // When
+        VirtualLoadSimulator.Result result = underTest.run(VirtualLoadSimulator.targets(TARGETS), START,
+                Duration.ofSeconds(SECONDS), ScenarioProfile.OUTAGE, 4);
+
+        // Then
+        assertEquals((long) TARGETS * SECONDS, result.samples());
+        assertEquals(TARGETS, saved.size());
+        for (List<PingLog> pingLogs : saved.values()) {
+            assertEquals(SECONDS, pingLogs.size());
+            for (int i = 0; i < SECONDS; i++)
+                assertEquals(LocalDateTime.ofInstant(START.plusSeconds(i + 1L), ZoneOffset.UTC),
+                        pingLogs.get(i).getDateTime());
+        }
+        assertTrue(result.samplesPerSecond() > 0);
+    }
+
+    @Test
+    void targets() {
+        List<String> targets = VirtualLoadSimulator.targets(300);
+
+        assertEquals(300, targets.size());
+        assertEquals("10.0.0.1", targets.get(0));
+        assertEquals("10.0.1.44", targets.get(299));
+    }
+}
@@ -0,0 +1,267 @@
+package com.adieser.conntest.service.writer;
+
+import com.adieser.conntest.configurations.AppProperties;
+import com.adieser.conntest.models.PingLog;
+import com.adieser.utils.TestUtils;
+import com.opencsv.CSVWriter;
+import com.opencsv.bean.StatefulBeanToCsv;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.adieser.conntest.service.writer.FileWriterService.FORMATTER;
+import static com.adieser.conntest.service.writer.FileWriterService.ROTATED_FILENAME_FORMAT;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class CsvPingLogSinkTest {
+
+    @TempDir
+    Path tempDir;
+
+    private AppProperties properties;
+    private Clock clock;
+    private final List<Path> rotated = new ArrayList<>();
+
+    @BeforeEach
+    void setup() {
+        properties = new AppProperties();
+        Instant fixedInstant = LocalDateTime.of(2024, 12, 15, 11, 48)
+                .atZone(ZoneId.systemDefault())
+                .toInstant();
+        clock = Clock.fixed(fixedInstant, ZoneId.systemDefault());
+    }
+
+    @Test
+    void checkFileSizeAndRotate_notRotate() throws IOException {
+        // Given
+        Path testFilePath = tempDir.resolve("ping.log");
+        String content = "Test content\n";
+        Files.write(testFilePath, content.getBytes());
+        properties.setFileMaxSizeRows(10L);
+        CsvPingLogSink underTest = sink();
+        underTest.open(testFilePath);
+
+        // When
+        underTest.checkFileSizeAndRotate();
+
+        // Then
+        assertEquals(1, underTest.rowCount);
+        assertEquals(content.length(), underTest.byteCount);
+        assertEquals(List.of(), rotated);
+        try (var list = Files.list(tempDir)) {
+            assertEquals(1, list.count());
+        }
+    }
+
+    @Test
+    void checkFileSizeAndRotate_rotate() throws IOException {
+        // Given
+        Path testFilePath = tempDir.resolve("ping.log");
+        String content = "Test content\nTest content\nTest content\n";
+        Files.write(testFilePath, content.getBytes());
+        properties.setFileMaxSizeRows(2L);
+        CsvPingLogSink underTest = sink();
+        underTest.open(testFilePath);
+        BufferedWriter previous = underTest.writer;
+
+        // When
+        underTest.checkFileSizeAndRotate();
+
+        // Then
+        String timestamp = LocalDateTime.now(clock).format(FORMATTER);
+        Path rotatedFile = tempDir.resolve(String.format(ROTATED_FILENAME_FORMAT, timestamp, 1));
+        assertEquals(content, Files.readString(rotatedFile));
+        assertEquals(List.of(rotatedFile), rotated);
+        assertEquals(0, Files.size(testFilePath));
+
+        // Verify new writer was created
+        assertNotEquals(previous, underTest.writer);
+        assertEquals(0, underTest.rowCount);
+        assertEquals(0, underTest.byteCount);
+    }
+
+    /**
+     * Once seeded, the counters follow the writes and the file is not read again
+     */
+    @Test
+    void checkFileSizeAndRotate_countsWrittenRows() throws Exception {
+        // Given
+        Path testFilePath = tempDir.resolve("ping.log");
+        properties.setFileMaxSizeRows(3L);
+        CsvPingLogSink underTest = spy(sink());
+        underTest.open(testFilePath);
+
+        // When
+        for (int i = 0; i < 4; i++) {
+            underTest.write(List.of(TestUtils.getDefaultPingLog()));
+            underTest.flush();
+        }
+
+        // Then, the 4th ping went to a new file
+        verify(underTest, times(1)).count();
+        assertEquals(1, underTest.rowCount);
+        assertEquals(Files.size(testFilePath), underTest.byteCount);
+        try (var list = Files.list(tempDir)) {
+            assertEquals(2, list.count());
+        }
+    }
+
+    @Test
+    void checkFileSizeAndRotate_rotateOnBytes() throws IOException {
+        // Given
+        Path testFilePath = tempDir.resolve("ping.log");
+        Files.write(testFilePath, "x".repeat(1024).getBytes());
+        properties.setFileMaxSizeRows(100L);
+        properties.setFileMaxSizeKbytes(1L);
+        CsvPingLogSink underTest = sink();
+        underTest.open(testFilePath);
+
+        // When
+        underTest.checkFileSizeAndRotate();
+
+        // Then
+        assertEquals(1, rotated.size());
+        assertEquals(0, Files.size(testFilePath));
+    }
+
+    @Test
+    void recount_seedsCountersAgain() throws IOException {
+        // Given
+        Path testFilePath = tempDir.resolve("ping.log");
+        Files.write(testFilePath, "a\nb\n".getBytes());
+        properties.setFileMaxSizeRows(100L);
+        CsvPingLogSink underTest = sink();
+        underTest.open(testFilePath);
+        underTest.checkFileSizeAndRotate();
+        assertEquals(2, underTest.rowCount);
+
+        // When
+        Files.write(testFilePath, new byte[0]);
+        underTest.recount();
+        underTest.checkFileSizeAndRotate();
+
+        // Then
+        assertEquals(0, underTest.rowCount);
+        assertEquals(0, underTest.byteCount);
+    }
+
+    /**
+     * Clearing empties the file, which is appended to afterwards
+     */
+    @Test
+    void clear() throws Exception {
+        // Given
+        Path testFilePath = tempDir.resolve("ping.log");
+        CsvPingLogSink underTest = sink();
+        underTest.open(testFilePath);
+        underTest.write(List.of(TestUtils.getDefaultPingLog()));
+
+        // When
+        underTest.clear();
+        underTest.write(List.of(TestUtils.getDefaultPingLog()));
+        underTest.close();
+
+        // Then
+        assertEquals(1, Files.readAllLines(testFilePath).size());
+        assertFalse(underTest.isMapped());
+    }
+
+    /**
+     * A binary ping log is not a CSV one, it is moved aside
+     */
+    @Test
+    void open_movesOtherFormatAside() throws IOException {
+        // Given
+        Path testFilePath = tempDir.resolve("ping.log");
+        Files.write(testFilePath, new byte[] {0x43, 0x54, 0x50, 0x42, 0, 1});
+
+        // When
+        try (CsvPingLogSink underTest = sink()) {
+            underTest.open(testFilePath);
+        }
+
+        // Then
+        assertEquals(0, Files.size(testFilePath));
+        String timestamp = LocalDateTime.now(clock).format(FORMATTER);
+        assertTrue(Files.exists(tempDir.resolve(String.format(ROTATED_FILENAME_FORMAT, timestamp, 1))));
+    }
+
+    /**
+     * Switching from the mmap output back to the stream one converts the segment to a plain file, so the lines
+     * appended are not hidden after its padding
+     */
+    @Test
+    void open_streamAfterSegment() throws Exception {
+        // Given
+        Path testFilePath = tempDir.resolve("ping.log");
+        try (CsvPingLogSink mapped = sink(1024)) {
+            mapped.open(testFilePath);
+            mapped.write(List.of(TestUtils.getDefaultPingLog()));
+            mapped.flush();
+            assertTrue(mapped.isMapped());
+        }
+
+        // When
+        try (CsvPingLogSink underTest = sink()) {
+            underTest.open(testFilePath);
+            underTest.write(List.of(TestUtils.getDefaultPingLog()));
+        }
+
+        // Then
+        assertEquals(2, Files.readAllLines(testFilePath).size());
+    }
+
+    @Test
+    void getCsvWriter() {
+        // Given
+        BufferedWriter mockWriter = mock(BufferedWriter.class);
+
+        // When
+        CSVWriter csvWriter = sink().getCsvWriter(mockWriter);
+
+        // Then
+        assertThat(csvWriter).isNotNull();
+    }
+
+    @Test
+    void getStatefulBeanToCsv() {
+        // Given
+        CSVWriter mockCsvWriter = mock(CSVWriter.class);
+
+        // When
+        StatefulBeanToCsv<PingLog> statefulBeanToCsv = sink().getStatefulBeanToCsv(mockCsvWriter);
+
+        // When
+        assertNotNull(statefulBeanToCsv);
+        assertThat(statefulBeanToCsv).isInstanceOf(StatefulBeanToCsv.class);
+    }
+
+    private CsvPingLogSink sink() {
+        return sink(0);
+    }
+
+    private CsvPingLogSink sink(long segmentBytes) {
+        return new CsvPingLogSink(new PingLogSink.Settings(properties, Durability.NONE, 0, () -> clock,
+                nanos -> { }, (file, ip) -> rotated.add(file)), new PingLogCsvEncoder(), segmentBytes, 0);
+    }
+}
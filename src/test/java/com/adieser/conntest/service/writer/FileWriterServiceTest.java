@@ -5,16 +5,23 @@ import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.core.read.ListAppender;
 import com.adieser.conntest.configurations.AppProperties;
 import com.adieser.conntest.models.PingLog;
+import com.adieser.conntest.models.binary.BinaryPingLogReader;
+import com.adieser.conntest.models.columnar.ColumnarPingLogReader;
+import com.adieser.conntest.models.utils.CompressedPingLog;
+import com.adieser.conntest.models.utils.PingLogIndex;
+import com.adieser.conntest.models.utils.PingLogSegment;
 import com.adieser.utils.TestUtils;
-import com.opencsv.CSVWriter;
-import com.opencsv.bean.StatefulBeanToCsv;
 import com.opencsv.exceptions.CsvDataTypeMismatchException;
+import com.opencsv.exceptions.CsvException;
 import com.opencsv.exceptions.CsvRequiredFieldEmptyException;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
@@ -22,6 +29,7 @@ import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.nio.file.Files;
@@ -31,28 +39,28 @@ import java.time.Clock;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
 
 import static com.adieser.conntest.models.CsvPingLogRepository.SAVE_PING_ERROR_MSG;
-import static com.adieser.conntest.service.writer.FileWriterService.FORMATTER;
-import static com.adieser.conntest.service.writer.FileWriterService.ROTATED_FILENAME_FORMAT;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
-import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
-import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -70,10 +78,7 @@ class FileWriterServiceTest {
     BlockingQueue<PingLog> mockedQueue;
 
     @Mock
-    BufferedWriter mockedWriter;
-
-    @Mock
-    StatefulBeanToCsv<PingLog> mockedSbc;
+    PingLogSink mockedSink;
 
     @Mock
     Logger mockedLogger;
@@ -98,6 +103,7 @@ class FileWriterServiceTest {
                 .toInstant();
         fileWriterService.clock = Clock.fixed(fixedInstant, ZoneId.systemDefault());
         fileWriterService.queue = mockedQueue;
+        fileWriterService.sink = mockedSink;
     }
 
     @Test
@@ -112,26 +118,29 @@ class FileWriterServiceTest {
         verify(mockedQueue, times(1)).offer(any());
     }
 
+    /**
+     * The dropped pings are all counted, and warned about once per interval
+     */
     @Test
     void summit_error() {
         // Given
         when(mockedQueue.offer(any())).thenReturn(false);
 
         // When
-        fileWriterService.submit(PingLog.builder().build());
+        for (int i = 0; i < 3; i++)
+            fileWriterService.submit(PingLog.builder().build());
 
         // Then
-        verify(mockedQueue, times(1)).offer(any());
-
+        verify(mockedQueue, times(3)).offer(any());
+        assertEquals(3, fileWriterService.getDropped());
         assertEquals(1, logWatcher.list.size());
-        assertThat(logWatcher.list.get(0).getFormattedMessage()).contains("Failed to add data to the queue");
+        assertThat(logWatcher.list.get(0).getFormattedMessage())
+                .isEqualTo("1 pings dropped because the writer queue is full, 1 in total");
     }
 
     @Test
     void init() throws IOException {
         // Given
-        doReturn(mock(BufferedWriter.class)).when(fileWriterService).getWriter();
-        doReturn(mock(CSVWriter.class)).when(fileWriterService).getCsvWriter(any());
         doNothing().when(fileWriterService).createPingLogsDirectory();
         doNothing().when(threadPoolExecutor).execute(any(Runnable.class));
 
@@ -139,6 +148,7 @@ class FileWriterServiceTest {
         fileWriterService.init();
 
         // Then
+        verify(mockedSink, times(1)).open(fileWriterService.filePath);
         verify(threadPoolExecutor, times(1)).execute(any(Runnable.class));
     }
 
@@ -146,26 +156,50 @@ class FileWriterServiceTest {
     void init_IOException() throws IOException {
         // Given
         doNothing().when(fileWriterService).createPingLogsDirectory();
-        doThrow(IOException.class).when(fileWriterService).getWriter();
+        doThrow(IOException.class).when(mockedSink).open(any());
 
         // When & Then
         assertThrows(IOException.class, () -> fileWriterService.init());
     }
 
+    /**
+     * An active file left in another format, as a CSV ping log after switching to binary, is moved aside as a rotated
+     * file, so the application starts writing a new one
+     */
     @Test
-    @SuppressWarnings("squid:S2925")
-    void startWriting_success() throws IOException, CsvRequiredFieldEmptyException, CsvDataTypeMismatchException, InterruptedException {
+    void init_movesOtherFormatAside() throws Exception {
         // Given
-        doNothing().when(mockedWriter).flush();
-        doReturn(mockedWriter).when(fileWriterService).getWriter();
+        AppProperties properties = new AppProperties();
+        properties.setPingLogsPath(tempDir + "/");
+        properties.setPinglogsFilename("ping.log");
+        properties.setPinglogFormat("binary");
+        Files.write(tempDir.resolve("ping.log"), List.of("2023-10-06 02:08:00,192.168.1.1,13.0"));
+        FileWriterService underTest = new FileWriterService(mockedLogger, threadPoolExecutor, properties,
+                Clock.systemDefaultZone());
+
+        // When
+        underTest.init();
+        underTest.submit(pingLog(1));
+        underTest.writeBatch();
+        underTest.cleanUp();
 
-        doNothing().when(mockedSbc).write(any(PingLog.class));
-        doReturn(mockedSbc).when(fileWriterService).getStatefulBeanToCsv(any());
+        // Then
+        try (BinaryPingLogReader reader = new BinaryPingLogReader(tempDir.resolve("ping.log"))) {
+            assertEquals(List.of(pingLog(1)), reader.readAll());
+        }
+        try (Stream<Path> files = Files.list(tempDir)) {
+            Path aside = files.filter(file -> file.getFileName().toString().startsWith("ping_")).findFirst()
+                    .orElseThrow();
+            assertEquals(List.of("2023-10-06 02:08:00,192.168.1.1,13.0"), Files.readAllLines(aside));
+        }
+    }
 
+    @Test
+    @SuppressWarnings("squid:S2925")
+    void startWriting_success() throws IOException, CsvException, InterruptedException {
+        // Given
         doNothing().when(fileWriterService).createPingLogsDirectory();
         doNothing().when(threadPoolExecutor).execute(any(Runnable.class));
-
-        doNothing().when(fileWriterService).checkFileSizeAndRotate();
         fileWriterService.queue = new LinkedBlockingQueue<>();
 
         fileWriterService.init();
@@ -178,39 +212,104 @@ class FileWriterServiceTest {
         fileWriterService.running = false;
 
         // Then
-        verify(fileWriterService, times(1)).checkFileSizeAndRotate();
-        verify(mockedSbc, times(1)).write(any(PingLog.class));
-        verify(mockedWriter, times(1)).flush();
+        verify(mockedSink, times(1)).write(anyList());
+        verify(mockedSink, times(1)).flush();
     }
 
-    @ParameterizedTest
-    @MethodSource("exceptionProvider")
-    void startWriting_Exceptions(Exception thrown) throws IOException, CsvRequiredFieldEmptyException, CsvDataTypeMismatchException {
+    /**
+     * In batch mode the pings available are written with a single write and a single flush
+     */
+    @Test
+    void startWriting_batch() throws IOException, CsvException, InterruptedException {
         // Given
-        if(thrown instanceof IOException)
-            doThrow(thrown.getClass()).when(fileWriterService).checkFileSizeAndRotate();
-        else {
-            doReturn(mockedSbc).when(fileWriterService).getStatefulBeanToCsv(any());
-            doReturn(mockedWriter).when(fileWriterService).getWriter();
-            doNothing().when(fileWriterService).createPingLogsDirectory();
-            doNothing().when(threadPoolExecutor).execute(any(Runnable.class));
-            doNothing().when(fileWriterService).checkFileSizeAndRotate();
+        when(appProperties.getWriterMode()).thenReturn(FileWriterService.BATCH_WRITER_MODE);
+        when(appProperties.getWriterBatchSize()).thenReturn(1000);
+        when(appProperties.getWriterBatchMaxDelayMillis()).thenReturn(10L);
+        doNothing().when(fileWriterService).createPingLogsDirectory();
 
-            doThrow(thrown.getClass()).when(mockedSbc).write(any(PingLog.class));
+        List<List<PingLog>> batches = new ArrayList<>();
+        doAnswer(invocation -> {
+            batches.add(new ArrayList<>(invocation.<List<PingLog>>getArgument(0)));
+            fileWriterService.running = false;
+            return null;
+        }).when(mockedSink).write(anyList());
 
-            LinkedBlockingQueue<PingLog> queue = new LinkedBlockingQueue<>();
-            queue.add(TestUtils.getDefaultPingLog());
-            fileWriterService.queue = queue;
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        fileWriterService.bindTo(registry);
+        fileWriterService.queue = new LinkedBlockingQueue<>();
+        for (int i = 0; i < 3; i++)
+            fileWriterService.submit(TestUtils.getDefaultPingLog());
+        fileWriterService.init();
 
-            fileWriterService.init();
-        }
+        // When
+        fileWriterService.startWriting();
+
+        // Then
+        assertEquals(1, batches.size());
+        assertEquals(3, batches.get(0).size());
+        verify(mockedSink, times(1)).flush();
+        verify(mockedSink, times(1)).syncIfDue();
+        assertEquals(1, registry.get("conntest.writer.batch.size").summary().count());
+        assertEquals(3.0, registry.get("conntest.writer.batch.size").summary().totalAmount());
+        assertEquals(1, registry.get("conntest.writer.flush").timer().count());
+    }
+
+    @Test
+    void writeBatch_limitedToBatchSize() throws Exception {
+        // Given
+        when(appProperties.getWriterBatchSize()).thenReturn(2);
+        when(appProperties.getWriterBatchMaxDelayMillis()).thenReturn(0L);
+        doNothing().when(fileWriterService).createPingLogsDirectory();
+
+        List<Integer> batchSizes = new ArrayList<>();
+        doAnswer(invocation -> batchSizes.add(invocation.<List<PingLog>>getArgument(0).size()))
+                .when(mockedSink).write(anyList());
+
+        fileWriterService.queue = new LinkedBlockingQueue<>();
+        for (int i = 0; i < 5; i++)
+            fileWriterService.submit(TestUtils.getDefaultPingLog());
+        fileWriterService.init();
+
+        // When
+        fileWriterService.writeBatch();
+
+        // Then
+        assertEquals(List.of(2), batchSizes);
+        assertEquals(3, fileWriterService.queue.size());
+        verify(mockedSink, times(1)).flush();
+    }
+
+    /**
+     * A failed write loses its ping and reopens the file, and the writer goes on with the next pings
+     */
+    @ParameterizedTest
+    @MethodSource("exceptionProvider")
+    void startWriting_Exceptions(Exception thrown) throws IOException, CsvException, InterruptedException {
+        // Given
+        List<List<PingLog>> written = new ArrayList<>();
+        doThrow(thrown.getClass()).doAnswer(invocation -> {
+            written.add(new ArrayList<>(invocation.<List<PingLog>>getArgument(0)));
+            fileWriterService.running = false;
+            return null;
+        }).when(mockedSink).write(anyList());
+
+        LinkedBlockingQueue<PingLog> queue = new LinkedBlockingQueue<>();
+        PingLog next = TestUtils.getDefaultPingLog();
+        next.setPingTime(20);
+        queue.add(TestUtils.getDefaultPingLog());
+        queue.add(next);
+        fileWriterService.queue = queue;
+        fileWriterService.writeRetryMillis = 0;
+        fileWriterService.running = true;
 
         // When
         fileWriterService.startWriting();
 
         // Then
-        assertEquals(1, logWatcher.list.size());
         assertThat(logWatcher.list.get(0).getFormattedMessage()).contains(SAVE_PING_ERROR_MSG);
+        assertThat(logWatcher.list.get(1).getFormattedMessage()).isEqualTo("1 pings were not written");
+        verify(mockedSink).open(any());
+        assertEquals(List.of(List.of(next)), written);
     }
 
     @Test
@@ -227,101 +326,735 @@ class FileWriterServiceTest {
     }
 
     @Test
-    void checkFileSizeAndRotate_notRotate() throws IOException {
+    void submit_dropNewest() {
+        // Given
+        FileWriterService underTest = boundedService(2, "drop-newest");
+
+        // When
+        List<Boolean> accepted = new ArrayList<>();
+        for (int i = 0; i < 3; i++)
+            accepted.add(underTest.submit(pingLog(i)));
+
+        // Then
+        assertEquals(List.of(true, true, false), accepted);
+        assertEquals(List.of(pingLog(0), pingLog(1)), new ArrayList<>(underTest.queue));
+        assertEquals(1, underTest.getDropped());
+        assertEquals(2, underTest.getHighWaterMark());
+    }
+
+    @Test
+    void submit_dropOldest() {
+        // Given
+        FileWriterService underTest = boundedService(2, "drop-oldest");
+
+        // When
+        List<Boolean> accepted = new ArrayList<>();
+        for (int i = 0; i < 3; i++)
+            accepted.add(underTest.submit(pingLog(i)));
+
+        // Then
+        assertEquals(List.of(true, true, true), accepted);
+        assertEquals(List.of(pingLog(1), pingLog(2)), new ArrayList<>(underTest.queue));
+        assertEquals(1, underTest.getDropped());
+    }
+
+    @Test
+    void submit_block() throws InterruptedException {
+        // Given
+        FileWriterService underTest = boundedService(1, "block");
+        underTest.submit(pingLog(0));
+
+        // When
+        Thread producer = new Thread(() -> underTest.submit(pingLog(1)));
+        producer.start();
+        producer.join(200);
+
+        // Then, the producer waits until there is room
+        assertTrue(producer.isAlive());
+        assertEquals(pingLog(0), underTest.queue.take());
+        producer.join(5000);
+        assertFalse(producer.isAlive());
+        assertEquals(pingLog(1), underTest.queue.poll());
+        assertEquals(0, underTest.getDropped());
+    }
+
+    /**
+     * Spilled pings are written after the ones in the queue, and the pings submitted while there are spilled pings
+     * are spilled too, so the order is kept
+     */
+    @Test
+    void submit_spill() throws Exception {
+        // Given
+        FileWriterService underTest = boundedService(2, "spill");
+        underTest.init();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        underTest.bindTo(registry);
+
+        // When
+        for (int i = 0; i < 5; i++)
+            assertTrue(underTest.submit(pingLog(i)));
+
+        // Then
+        assertEquals(2, underTest.getQueueDepth());
+        assertEquals(3, underTest.getSpilled());
+        assertEquals(3.0, registry.get("conntest.writer.spill.depth").gauge().value());
+        assertEquals(2.0, registry.get("conntest.writer.queue.high.water").gauge().value());
+
+        // When, the writer catches up
+        underTest.writeBatch();
+        underTest.submit(pingLog(5));
+        underTest.writeBatch();
+        underTest.cleanUp();
+
+        // Then
+        List<String> lines = Files.readAllLines(tempDir.resolve("ping.log"));
+        assertEquals(6, lines.size());
+        for (int i = 0; i < 6; i++)
+            assertThat(lines.get(i)).startsWith("2023-10-06 02:08:0" + i);
+        assertEquals(0.0, registry.get("conntest.writer.spill.depth").gauge().value());
+        assertEquals(0.0, registry.get("conntest.writer.queue.dropped").functionCounter().count());
+    }
+
+    /**
+     * With the ring the pings are written in order, and the time spent submitting them is recorded
+     */
+    @Test
+    void submit_ring() throws Exception {
         // Given
-        Path testFilePath = tempDir.resolve("ping.log");
-        Files.createFile(testFilePath);
+        FileWriterService underTest = boundedService(4, "block", "ring");
+        underTest.init();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        underTest.bindTo(registry);
+
+        // When
+        for (int i = 0; i < 4; i++)
+            assertTrue(underTest.submit(pingLog(i)));
+        underTest.writeBatch();
+        for (int i = 4; i < 6; i++)
+            assertTrue(underTest.submit(pingLog(i)));
+        underTest.writeBatch();
+        underTest.cleanUp();
+
+        // Then
+        List<String> lines = Files.readAllLines(tempDir.resolve("ping.log"));
+        assertEquals(6, lines.size());
+        for (int i = 0; i < 6; i++)
+            assertThat(lines.get(i)).startsWith("2023-10-06 02:08:0" + i);
+        assertEquals(0, underTest.getQueueDepth());
+        assertEquals(4, underTest.getHighWaterMark());
+        assertEquals(6, registry.get("conntest.writer.submit").timer().count());
+    }
+
+    @Test
+    void submit_ringFull() {
+        // Given, drop-oldest is not possible on the ring
+        FileWriterService underTest = boundedService(2, "drop-oldest", "ring");
+
+        // When
+        List<Boolean> accepted = new ArrayList<>();
+        for (int i = 0; i < 3; i++)
+            accepted.add(underTest.submit(pingLog(i)));
 
-        String content = "Test content\n";
-        Files.write(testFilePath, content.getBytes());
+        // Then
+        assertEquals(List.of(true, true, false), accepted);
+        assertEquals(1, underTest.getDropped());
+    }
+
+    /**
+     * In the binary format the file is rotated when the dictionary of its header is full, and cleared keeping it
+     */
+    @Test
+    void writeBatch_binary() throws Exception {
+        // Given, room in the header for fewer than 100 targets
+        AppProperties properties = new AppProperties();
+        properties.setPingLogsPath(tempDir + "/");
+        properties.setPinglogsFilename("ping.bin");
+        properties.setPinglogFormat("binary");
+        properties.setBinaryHeaderKbytes(1);
+        properties.setWriterBatchSize(1000);
+        FileWriterService underTest = new FileWriterService(mockedLogger, threadPoolExecutor, properties,
+                Clock.systemDefaultZone());
+        underTest.init();
 
-        when(appProperties.getFileMaxSizeRows()).thenReturn(10L);
-        when(appProperties.getPingLogsPath()).thenReturn(tempDir.toString());
-        when(appProperties.getPinglogsFilename()).thenReturn("ping.log");
+        // When
+        for (int i = 0; i < 200; i++)
+            underTest.submit(PingLog.builder()
+                    .dateTime(LocalDateTime.of(2023, 10, 6, 2, 8, 0))
+                    .ipAddress("10.0.0." + i)
+                    .pingTime(i)
+                    .build());
+        underTest.writeBatch();
+
+        // Then
+        List<PingLog> pingLogs = new ArrayList<>();
+        try (Stream<Path> files = Files.list(tempDir)) {
+            for (Path file : files.sorted().toList()) {
+                try (BinaryPingLogReader reader = new BinaryPingLogReader(file)) {
+                    pingLogs.addAll(reader.readAll());
+                }
+            }
+        }
+        assertEquals(200, pingLogs.size());
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(3, files.count());
+        }
 
         // When
-        fileWriterService.checkFileSizeAndRotate();
+        underTest.clear();
+        underTest.cleanUp();
 
         // Then
-        verify(mockedWriter, never()).close();
-        try(var list = Files.list(tempDir)) {
-            assertEquals(1, list.count());
+        try (BinaryPingLogReader reader = new BinaryPingLogReader(tempDir.resolve("ping.bin"))) {
+            assertEquals(0, reader.getRecordCount());
         }
     }
 
+    /**
+     * In the columnar format the pings of an incomplete block are pending until the writer is closed
+     */
     @Test
-    void checkFileSizeAndRotate_rotate() throws IOException {
+    void writeBatch_columnar() throws Exception {
         // Given
-        Path testFilePath = tempDir.resolve("ping.log");
-        Files.createFile(testFilePath);
+        AppProperties properties = new AppProperties();
+        properties.setPingLogsPath(tempDir + "/");
+        properties.setPinglogsFilename("ping.col");
+        properties.setPinglogFormat("columnar");
+        properties.setColumnarBlockSize(4);
+        FileWriterService underTest = new FileWriterService(mockedLogger, threadPoolExecutor, properties,
+                Clock.systemDefaultZone());
+        underTest.init();
+
+        // When
+        for (int i = 0; i < 6; i++)
+            underTest.submit(pingLog(i));
+        underTest.writeBatch();
+
+        // Then
+        assertEquals(List.of(pingLog(4), pingLog(5)), underTest.getPendingPingLogs());
+        try (ColumnarPingLogReader reader = new ColumnarPingLogReader(tempDir.resolve("ping.col"))) {
+            assertEquals(4, reader.readAll().size());
+        }
+
+        // When
+        underTest.cleanUp();
+
+        // Then
+        try (ColumnarPingLogReader reader = new ColumnarPingLogReader(tempDir.resolve("ping.col"))) {
+            assertEquals(6, reader.readAll().size());
+        }
+    }
 
-        String content = "Test content\nTest content\nTest content\n";
-        Files.write(testFilePath, content.getBytes());
+    /**
+     * Sharded by target, the pings of every target are in its own file, written by the partitions, and cleared
+     * through the writer
+     */
+    @Test
+    void writeBatch_sharded() throws Exception {
+        // Given
+        AppProperties properties = new AppProperties();
+        properties.setPingLogsPath(tempDir + "/");
+        properties.setPinglogsFilename("ping.log");
+        properties.setPinglogSharding("target");
+        properties.setWriterPartitions(2);
+        FileWriterService underTest = new FileWriterService(mockedLogger, threadPoolExecutor, properties,
+                Clock.systemDefaultZone());
+        underTest.init();
+        Path localFile = tempDir.resolve("targets").resolve(TestUtils.LOCAL_IP_ADDRESS).resolve("ping.log");
+        Path cloudFile = tempDir.resolve("targets").resolve(TestUtils.CLOUD_IP_ADDRESS).resolve("ping.log");
 
-        when(appProperties.getFileMaxSizeRows()).thenReturn(2L);
-        when(appProperties.getPingLogsPath()).thenReturn(tempDir.toString());
-        when(appProperties.getPinglogsFilename()).thenReturn("ping.log");
+        // When
+        for (int i = 0; i < 3; i++) {
+            underTest.submit(pingLog(i));
+            underTest.submit(PingLog.builder()
+                    .dateTime(pingLog(i).getDateTime())
+                    .ipAddress(TestUtils.CLOUD_IP_ADDRESS)
+                    .pingTime(20)
+                    .build());
+        }
+        underTest.writeBatch();
+        underTest.cleanUp();
 
-        fileWriterService.filePath = testFilePath;
-        fileWriterService.writer = mockedWriter;
-        doReturn(mock(BufferedWriter.class)).when(fileWriterService).getWriter();
+        // Then
+        assertFalse(Files.exists(tempDir.resolve("ping.log")));
+        assertEquals(3, Files.readAllLines(localFile).size());
+        assertEquals(3, Files.readAllLines(cloudFile).size());
+        assertTrue(Files.readAllLines(cloudFile).stream().allMatch(line -> line.contains(TestUtils.CLOUD_IP_ADDRESS)));
 
         // When
-        fileWriterService.checkFileSizeAndRotate();
+        underTest.resetPath();
+        underTest.clear();
+        underTest.cleanUp();
 
         // Then
-        verify(mockedWriter).close();
-        try(var list = Files.list(tempDir)) {
-            assertEquals(1, list.count());
+        assertEquals(0, Files.size(localFile));
+        assertEquals(0, Files.size(cloudFile));
+    }
+
+    /**
+     * With the ring, the partitions write the pings handed over even after their slots are reused
+     */
+    @Test
+    void writeBatch_ringSharded() throws Exception {
+        // Given
+        AppProperties properties = new AppProperties();
+        properties.setWriterQueue("ring");
+        properties.setPingLogsPath(tempDir + "/");
+        properties.setPinglogsFilename("ping.log");
+        properties.setWriterQueueCapacity(4);
+        properties.setWriterOverflowPolicy("block");
+        properties.setPinglogSharding("target");
+        properties.setWriterPartitions(2);
+        FileWriterService underTest = new FileWriterService(mockedLogger, threadPoolExecutor, properties,
+                Clock.systemDefaultZone());
+        underTest.init();
+        Path localFile = tempDir.resolve("targets").resolve(TestUtils.LOCAL_IP_ADDRESS).resolve("ping.log");
+
+        // When, the slots are published again right after every batch is handed over
+        for (int batch = 0; batch < 5; batch++) {
+            for (int i = 0; i < 4; i++)
+                assertTrue(underTest.submit(pingLog(batch * 4 + i)));
+            underTest.writeBatch();
         }
-        assertFalse(Files.exists(testFilePath));
-
-        String timestamp = LocalDateTime.now(fileWriterService.clock).format(FORMATTER);
-        assertTrue(
-                Files.exists(
-                        tempDir.resolve(
-                                String.format(ROTATED_FILENAME_FORMAT,
-                                        timestamp,
-                                        1)
-                        ))
-        );
+        underTest.cleanUp();
 
-        // Verify new writer was created
-        assertNotEquals(mockedWriter, fileWriterService.writer);
+        // Then
+        List<String> lines = Files.readAllLines(localFile);
+        assertEquals(20, lines.size());
+        for (int i = 0; i < 20; i++)
+            assertThat(lines.get(i)).startsWith(String.format("2023-10-06 02:08:%02d", i));
     }
 
+    /**
+     * A rotated file is compressed in the background, and keeps its name and lines
+     */
     @Test
-    void cleanUp_success() throws IOException {
+    void writeBatch_compressesRotated() throws Exception {
         // Given
-        BufferedWriter mockWriter = mock(BufferedWriter.class);
-        doReturn(mockWriter).when(fileWriterService).getWriter();
-        doNothing().when(fileWriterService).createPingLogsDirectory();
+        AppProperties properties = new AppProperties();
+        properties.setPingLogsPath(tempDir + "/");
+        properties.setPinglogsFilename("ping.log");
+        properties.setFileMaxSizeRows(2L);
+        properties.setRotatedCompression("deflate");
+        FileWriterService underTest = new FileWriterService(mockedLogger, threadPoolExecutor, properties,
+                Clock.systemDefaultZone());
+        // the maintenance runs on the thread that rotates
+        underTest.maintenanceExecutor = Runnable::run;
+        underTest.init();
 
-        fileWriterService.init();
+        // When
+        for (int i = 0; i < 3; i++) {
+            underTest.submit(pingLog(i));
+            underTest.writeBatch();
+        }
+        underTest.cleanUp();
+
+        // Then
+        List<Path> rotated;
+        try (Stream<Path> files = Files.list(tempDir)) {
+            rotated = files.filter(file -> file.getFileName().toString().startsWith("ping_")).toList();
+        }
+        assertEquals(1, rotated.size());
+        assertTrue(CompressedPingLog.isCompressed(rotated.get(0)));
+        try (BufferedReader reader = new BufferedReader(PingLogSegment.newReader(rotated.get(0)))) {
+            assertEquals(2, reader.lines().count());
+        }
+        assertFalse(CompressedPingLog.isCompressed(tempDir.resolve("ping.log")));
+    }
+
+    /**
+     * The rotation listeners are told every rotation, with no target when the file is not sharded, even if one of them
+     * fails
+     */
+    @Test
+    void writeBatch_notifiesRotation() throws Exception {
+        // Given
+        AppProperties properties = new AppProperties();
+        properties.setPingLogsPath(tempDir + "/");
+        properties.setPinglogsFilename("ping.log");
+        properties.setFileMaxSizeRows(2L);
+        FileWriterService underTest = new FileWriterService(mockedLogger, threadPoolExecutor, properties,
+                Clock.systemDefaultZone());
+        // the rotated files are not maintained
+        underTest.maintenanceExecutor = task -> { };
+        List<String> rotatedTargets = new ArrayList<>();
+        underTest.addRotationListener(ipAddress -> {
+            throw new IllegalStateException("failed");
+        });
+        underTest.addRotationListener(rotatedTargets::add);
+        underTest.init();
 
         // When
-        fileWriterService.cleanUp();
+        for (int i = 0; i < 5; i++) {
+            underTest.submit(pingLog(i));
+            underTest.writeBatch();
+        }
+        underTest.cleanUp();
 
         // Then
-        assertFalse(fileWriterService.running);
-        verify(mockWriter, times(1)).close();
+        assertEquals(Arrays.asList(null, null), rotatedTargets);
     }
 
+    /**
+     * The files rotated while a maintenance waits to start are maintained by it
+     */
     @Test
-    void cleanUp_notNull() {
+    void writeBatch_coalescesMaintenance() throws Exception {
+        // Given
+        AppProperties properties = new AppProperties();
+        properties.setPingLogsPath(tempDir + "/");
+        properties.setPinglogsFilename("ping.log");
+        properties.setFileMaxSizeRows(1L);
+        properties.setRotatedCompression("deflate");
+        FileWriterService underTest = new FileWriterService(mockedLogger, threadPoolExecutor, properties,
+                Clock.systemDefaultZone());
+        List<Runnable> maintenances = new ArrayList<>();
+        underTest.maintenanceExecutor = maintenances::add;
+        underTest.init();
+        maintenances.remove(0).run();
+
         // When
-        fileWriterService.cleanUp();
+        for (int i = 0; i < 4; i++) {
+            underTest.submit(pingLog(i));
+            underTest.writeBatch();
+        }
+        underTest.cleanUp();
 
         // Then
-        assertFalse(fileWriterService.running);
+        assertEquals(1, maintenances.size());
+        maintenances.get(0).run();
+        List<Path> rotated;
+        try (Stream<Path> files = Files.list(tempDir)) {
+            rotated = files.filter(file -> file.getFileName().toString().startsWith("ping_")).toList();
+        }
+        assertEquals(3, rotated.size());
+        for (Path file : rotated)
+            assertTrue(CompressedPingLog.isCompressed(file));
     }
 
+    /**
+     * The file is rotated when the hour changes, numbered after the files rotated before a restart, and the rotated
+     * files older than the retention are deleted
+     */
     @Test
-    void cleanUp_ioException() throws IOException {
+    void writeBatch_rotatesHourly() throws Exception {
+        // Given
+        AppProperties properties = new AppProperties();
+        properties.setPingLogsPath(tempDir + "/");
+        properties.setPinglogsFilename("ping.log");
+        properties.setRotationInterval("hourly");
+        properties.setRetentionDays(1L);
+        Files.writeString(tempDir.resolve("ping_2023-10-01_02-00-00_6.log"), "expired\n");
+        Files.writeString(tempDir.resolve("ping_2023-10-06_01-00-00_7.log"), "kept\n");
+        LocalDateTime start = LocalDateTime.of(2023, 10, 6, 2, 59, 30);
+        FileWriterService underTest = new FileWriterService(mockedLogger, threadPoolExecutor, properties,
+                Clock.fixed(start.atZone(ZoneId.systemDefault()).toInstant(), ZoneId.systemDefault()));
+        // the maintenance runs on the thread that rotates
+        underTest.maintenanceExecutor = Runnable::run;
+        underTest.init();
+
+        // When
+        underTest.submit(pingLog(0));
+        underTest.writeBatch();
+        underTest.clock = Clock.fixed(start.plusMinutes(1).atZone(ZoneId.systemDefault()).toInstant(),
+                ZoneId.systemDefault());
+        underTest.submit(pingLog(1));
+        underTest.writeBatch();
+        underTest.cleanUp();
+
+        // Then
+        List<String> rotated;
+        try (Stream<Path> files = Files.list(tempDir)) {
+            rotated = files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith("ping_"))
+                    .sorted()
+                    .toList();
+        }
+        assertEquals(List.of("ping_2023-10-06_01-00-00_7.log", "ping_2023-10-06_03-00-30_8.log"), rotated);
+        try (BufferedReader reader = new BufferedReader(PingLogSegment.newReader(tempDir.resolve(rotated.get(1))))) {
+            assertEquals(1, reader.lines().count());
+        }
+        assertEquals(1, Files.readAllLines(tempDir.resolve("ping.log")).size());
+    }
+
+    /**
+     * The small rotated files are merged in the background after every rotation
+     */
+    @Test
+    void writeBatch_compactsRotated() throws Exception {
+        // Given
+        AppProperties properties = new AppProperties();
+        properties.setPingLogsPath(tempDir + "/");
+        properties.setPinglogsFilename("ping.log");
+        properties.setFileMaxSizeRows(2L);
+        properties.setRotatedCompression("none");
+        properties.setCompactionTargetMbytes(1L);
+        properties.setCompactionMinFiles(2);
+        FileWriterService underTest = new FileWriterService(mockedLogger, threadPoolExecutor, properties,
+                Clock.systemDefaultZone());
+        // the maintenance runs on the thread that rotates
+        underTest.maintenanceExecutor = Runnable::run;
+        underTest.init();
+
+        // When
+        for (int i = 0; i < 5; i++) {
+            underTest.submit(pingLog(i));
+            underTest.writeBatch();
+        }
+        underTest.cleanUp();
+
+        // Then
+        List<Path> rotated;
+        try (Stream<Path> files = Files.list(tempDir)) {
+            rotated = files.filter(file -> file.getFileName().toString().startsWith("ping_")).toList();
+        }
+        assertEquals(1, rotated.size());
+        assertTrue(rotated.get(0).getFileName().toString().endsWith("_2.log"));
+        assertEquals(4, Files.readAllLines(rotated.get(0)).size());
+        assertEquals(1, Files.readAllLines(tempDir.resolve("ping.log")).size());
+    }
+
+    /**
+     * The written lines are indexed in blocks, rebuilt on startup if the index is missing, and emptied with the file
+     */
+    @Test
+    void writeBatch_indexesTimes() throws Exception {
+        // Given
+        AppProperties properties = new AppProperties();
+        properties.setPingLogsPath(tempDir + "/");
+        properties.setPinglogsFilename("ping.log");
+        properties.setIndexIntervalRows(2);
+        Path pingLog = tempDir.resolve("ping.log");
+        FileWriterService underTest = new FileWriterService(mockedLogger, threadPoolExecutor, properties,
+                Clock.systemDefaultZone());
+        underTest.init();
+
+        // When
+        for (int i = 0; i < 5; i++) {
+            underTest.submit(pingLog(i));
+            underTest.writeBatch();
+        }
+
+        // Then
+        PingLogIndex index = PingLogIndex.read(pingLog, Files.size(pingLog));
+        assertNotNull(index);
+        assertEquals(2, index.getBlockCount());
+        assertEquals(4 * Files.size(pingLog) / 5, index.getEnd());
+
+        // When
+        underTest.cleanUp();
+        Files.delete(PingLogIndex.getPath(pingLog));
+        underTest = new FileWriterService(mockedLogger, threadPoolExecutor, properties, Clock.systemDefaultZone());
+        underTest.init();
+        underTest.submit(pingLog(5));
+        underTest.writeBatch();
+
+        // Then
+        assertEquals(3, PingLogIndex.read(pingLog, Files.size(pingLog)).getBlockCount());
+
+        // When
+        underTest.clear();
+
+        // Then
+        assertEquals(0, PingLogIndex.read(pingLog, 0).getBlockCount());
+        underTest.cleanUp();
+    }
+
+    /**
+     * Through a mapping, the lines are committed by every batch, and the segment is trimmed when rotated
+     */
+    @Test
+    void writeBatch_mapped() throws Exception {
+        // Given
+        AppProperties properties = new AppProperties();
+        properties.setPingLogsPath(tempDir + "/");
+        properties.setPinglogsFilename("ping.log");
+        properties.setWriterOutput("mmap");
+        properties.setFileMaxSizeRows(4L);
+        FileWriterService underTest = new FileWriterService(mockedLogger, threadPoolExecutor, properties,
+                Clock.systemDefaultZone());
+        // the rotated files are not maintained
+        underTest.maintenanceExecutor = task -> { };
+        underTest.init();
+
+        // When
+        for (int i = 0; i < 3; i++)
+            underTest.submit(pingLog(i));
+        underTest.writeBatch();
+
+        // Then
+        assertTrue(underTest.isMapped());
+        assertEquals(3, readSegmentLines(tempDir.resolve("ping.log")).size());
+
+        // When
+        for (int i = 3; i < 6; i++)
+            underTest.submit(pingLog(i));
+        underTest.writeBatch();
+        underTest.submit(pingLog(6));
+        underTest.writeBatch();
+
+        // Then
+        List<Path> rotated;
+        try (Stream<Path> files = Files.list(tempDir)) {
+            rotated = files.filter(file -> !file.endsWith("ping.log") && !file.endsWith("ping.log.idx")).toList();
+        }
+        assertEquals(1, rotated.size());
+        assertEquals(6, readSegmentLines(rotated.get(0)).size());
+        assertEquals(List.of("2023-10-06 02:08:06,192.168.1.1,13"), readSegmentLines(tempDir.resolve("ping.log")));
+
+        // When
+        underTest.clear();
+        underTest.cleanUp();
+
+        // Then
+        assertEquals(List.of(), readSegmentLines(tempDir.resolve("ping.log")));
+    }
+
+    private static List<String> readSegmentLines(Path file) throws IOException {
+        try (BufferedReader reader = new BufferedReader(PingLogSegment.newReader(file))) {
+            return reader.lines().toList();
+        }
+    }
+
+    /**
+     * The file is forced to the disk after every batch, on an interval, or when rotated, and when closed
+     */
+    @ParameterizedTest
+    @CsvSource({"none, 0, 0", "batch, 4, 5", "interval, 1, 2", "rotation, 1, 2"})
+    void writeBatch_durability(String durability, long syncsWritten, long syncsClosed) throws Exception {
+        // Given, rotated on the third batch
+        AppProperties properties = new AppProperties();
+        properties.setPingLogsPath(tempDir + "/");
+        properties.setPinglogsFilename("ping.log");
+        properties.setFileMaxSizeRows(2L);
+        properties.setWriterDurability(durability);
+        properties.setWriterSyncIntervalMillis(3_600_000L);
+        FileWriterService underTest = new FileWriterService(mockedLogger, threadPoolExecutor, properties,
+                Clock.systemDefaultZone());
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        underTest.bindTo(registry);
+        // the rotated files are not maintained
+        underTest.maintenanceExecutor = task -> { };
+        underTest.init();
+
+        // When
+        for (int i = 0; i < 3; i++) {
+            underTest.submit(pingLog(i));
+            underTest.writeBatch();
+        }
+
+        // Then
+        Timer syncTimer = registry.get("conntest.writer.sync").tag("durability", durability).timer();
+        assertEquals(syncsWritten, syncTimer.count());
+
+        // When
+        underTest.cleanUp();
+
+        // Then
+        assertEquals(syncsClosed, syncTimer.count());
+    }
+
+    /**
+     * Closing the service while the writing thread writes columnar blocks and forces them leaves a readable file
+     */
+    @Test
+    void cleanUp_whileWriting() throws Exception {
+        // Given
+        AppProperties properties = new AppProperties();
+        properties.setPingLogsPath(tempDir + "/");
+        properties.setPinglogsFilename("ping.col");
+        properties.setPinglogFormat("columnar");
+        properties.setColumnarBlockSize(4);
+        properties.setWriterDurability("batch");
+        properties.setWriterBatchMaxDelayMillis(0L);
+        FileWriterService underTest = new FileWriterService(mockedLogger, threadPoolExecutor, properties,
+                Clock.systemDefaultZone());
+        underTest.init();
+        AtomicInteger submitted = new AtomicInteger();
+        List<Exception> failures = new ArrayList<>();
+        Thread writing = new Thread(() -> {
+            try {
+                while (underTest.running) {
+                    underTest.submit(pingLog(submitted.getAndIncrement() % 60));
+                    underTest.writeBatch();
+                }
+            } catch (Exception e) {
+                failures.add(e);
+            }
+        });
+        writing.start();
+        while (submitted.get() < 1000)
+            Thread.onSpinWait();
+
+        // When
+        underTest.cleanUp();
+        writing.join(5000);
+
+        // Then
+        assertEquals(List.of(), failures);
+        try (ColumnarPingLogReader reader = new ColumnarPingLogReader(tempDir.resolve("ping.col"))) {
+            int read = reader.readAll().size();
+            assertTrue(read >= 1000 - 4 && read <= submitted.get());
+        }
+    }
+
+    /**
+     * Changing the path closes the writer of the previous file, with its index, before writing to the new one
+     */
+    @Test
+    void resetPath_closesPreviousWriter() throws Exception {
+        // Given
+        AppProperties properties = new AppProperties();
+        properties.setPingLogsPath(tempDir + "/");
+        properties.setPinglogsFilename("ping.log");
+        properties.setIndexIntervalRows(1);
+        FileWriterService underTest = new FileWriterService(mockedLogger, threadPoolExecutor, properties,
+                Clock.systemDefaultZone());
+        underTest.init();
+        underTest.submit(pingLog(0));
+        underTest.writeBatch();
+        BufferedWriter previous = ((CsvPingLogSink) underTest.sink).writer;
+
+        // When
+        properties.setPinglogsFilename("other.log");
+        underTest.resetPath();
+        underTest.submit(pingLog(1));
+        underTest.writeBatch();
+        underTest.cleanUp();
+
+        // Then
+        assertThrows(IOException.class, () -> previous.write("x"));
+        assertEquals(1, Files.readAllLines(tempDir.resolve("ping.log")).size());
+        assertEquals(1, Files.readAllLines(tempDir.resolve("other.log")).size());
+        assertEquals(1, PingLogIndex.read(tempDir.resolve("ping.log"), Files.size(tempDir.resolve("ping.log")))
+                .getBlockCount());
+    }
+
+    private FileWriterService boundedService(int capacity, String policy) {
+        return boundedService(capacity, policy, "blocking");
+    }
+
+    private FileWriterService boundedService(int capacity, String policy, String queue) {
+        AppProperties properties = new AppProperties();
+        properties.setWriterQueue(queue);
+        properties.setPingLogsPath(tempDir + "/");
+        properties.setPinglogsFilename("ping.log");
+        properties.setWriterQueueCapacity(capacity);
+        properties.setWriterOverflowPolicy(policy);
+
+        return new FileWriterService(mockedLogger, threadPoolExecutor, properties, Clock.systemDefaultZone());
+    }
+
+    private static PingLog pingLog(int second) {
+        return PingLog.builder()
+                .dateTime(LocalDateTime.of(2023, 10, 6, 2, 8, second))
+                .ipAddress(TestUtils.LOCAL_IP_ADDRESS)
+                .pingTime(13)
+                .build();
+    }
+
+    @Test
+    void cleanUp_success() throws IOException {
         // Given
-        BufferedWriter mockWriter = mock(BufferedWriter.class);
-        doReturn(mockWriter).when(fileWriterService).getWriter();
-        doThrow(IOException.class).when(mockWriter).close();
         doNothing().when(fileWriterService).createPingLogsDirectory();
 
         fileWriterService.init();
@@ -331,33 +1064,33 @@ class FileWriterServiceTest {
 
         // Then
         assertFalse(fileWriterService.running);
-        assertEquals(2, logWatcher.list.size());
-        assertThat(logWatcher.list.get(1).getFormattedMessage()).contains("Error closing the file");
+        verify(mockedSink, times(1)).close();
     }
 
     @Test
-    void getCsvWriter() {
-        // Given
-        BufferedWriter mockWriter = mock(BufferedWriter.class);
-
+    void cleanUp_notNull() {
         // When
-        CSVWriter csvWriter = fileWriterService.getCsvWriter(mockWriter);
+        fileWriterService.cleanUp();
 
         // Then
-        assertThat(csvWriter).isNotNull();
+        assertFalse(fileWriterService.running);
     }
 
     @Test
-    void getStatefulBeanToCsv() {
+    void cleanUp_ioException() throws IOException {
         // Given
-        CSVWriter mockCsvWriter = mock(CSVWriter.class);
+        doThrow(IOException.class).when(mockedSink).close();
+        doNothing().when(fileWriterService).createPingLogsDirectory();
 
-        // When
-        StatefulBeanToCsv<PingLog> statefulBeanToCsv = fileWriterService.getStatefulBeanToCsv(mockCsvWriter);
+        fileWriterService.init();
 
         // When
-        assertNotNull(statefulBeanToCsv);
-        assertThat(statefulBeanToCsv).isInstanceOf(StatefulBeanToCsv.class);
+        fileWriterService.cleanUp();
+
+        // Then
+        assertFalse(fileWriterService.running);
+        assertEquals(2, logWatcher.list.size());
+        assertThat(logWatcher.list.get(1).getFormattedMessage()).contains("Error closing the file");
     }
 
     @Test
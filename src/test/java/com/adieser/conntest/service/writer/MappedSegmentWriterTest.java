@@ -0,0 +1,156 @@
+package com.adieser.conntest.service.writer;
+
+import com.adieser.conntest.models.utils.PingLogSegment;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class MappedSegmentWriterTest {
+    private static final String LINE = "2023-10-06 02:08:35,192.168.1.1,0.412\n";
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Readers see the lines committed by a flush, not the ones written after it
+     */
+    @Test
+    void flush_commits() throws IOException {
+        // Given
+        Path file = tempDir.resolve("ping.log");
+        try (MappedSegmentWriter underTest = new MappedSegmentWriter(file, 1024)) {
+            underTest.write(LINE);
+
+            // When
+            underTest.flush();
+            underTest.write(LINE);
+
+            // Then
+            assertEquals(List.of(LINE.trim()), readLines(file));
+            assertEquals(LINE.length(), underTest.getCommittedBytes());
+            assertEquals(1, underTest.countLines());
+            assertEquals(1024, Files.size(file));
+        }
+
+        // the file is trimmed when closed
+        assertEquals(List.of(LINE.trim(), LINE.trim()), readLines(file));
+        assertEquals(PingLogSegment.HEADER_SIZE + 2L * LINE.length(), Files.size(file));
+    }
+
+    /**
+     * The file is grown when full, and a reopened segment is appended to
+     */
+    @Test
+    void write_growsAndReopens() throws IOException {
+        // Given
+        Path file = tempDir.resolve("ping.log");
+        try (MappedSegmentWriter writer = new MappedSegmentWriter(file, 64)) {
+            for (int i = 0; i < 10; i++)
+                writer.write(LINE);
+        }
+
+        // When
+        try (MappedSegmentWriter underTest = new MappedSegmentWriter(file, 64)) {
+            underTest.write(LINE.toCharArray(), 0, LINE.length());
+            underTest.flush();
+
+            // Then
+            assertEquals(11, underTest.countLines());
+        }
+        assertEquals(11, readLines(file).size());
+    }
+
+    /**
+     * Once closed, the mappings of a grown segment are released, so it is trimmed, and moved and deleted as on
+     * rotation, also on the platforms that cannot do it while it is mapped
+     */
+    @Test
+    void close_releasesMappings() throws IOException {
+        // Given
+        Path file = tempDir.resolve("ping.log");
+        MappedSegmentWriter underTest = new MappedSegmentWriter(file, 64);
+        for (int i = 0; i < 10; i++)
+            underTest.write(LINE);
+
+        // When
+        underTest.close();
+        underTest.close();
+
+        // Then
+        assertEquals(PingLogSegment.HEADER_SIZE + 10L * LINE.length(), Files.size(file));
+        Path rotated = Files.move(file, tempDir.resolve("ping_1.log"));
+        Files.delete(rotated);
+        assertFalse(Files.exists(rotated));
+    }
+
+    /**
+     * A ping log written without mapping keeps its lines when it becomes a segment
+     */
+    @Test
+    void open_convertsCsv() throws IOException {
+        // Given
+        Path file = tempDir.resolve("ping.log");
+        Files.writeString(file, LINE);
+
+        // When
+        try (MappedSegmentWriter underTest = new MappedSegmentWriter(file, 1024)) {
+            underTest.write(LINE);
+        }
+
+        // Then
+        assertEquals(List.of(LINE.trim(), LINE.trim()), readLines(file));
+    }
+
+    /**
+     * A segment becomes a plain ping log with its committed lines, without the header nor the padding
+     */
+    @Test
+    void toPlain() throws IOException {
+        // Given
+        Path file = tempDir.resolve("ping.log");
+        try (MappedSegmentWriter writer = new MappedSegmentWriter(file, 1024)) {
+            writer.write(LINE);
+            writer.write(LINE);
+            writer.flush();
+
+            // When
+            MappedSegmentWriter.toPlain(file);
+        }
+
+        // Then
+        assertFalse(PingLogSegment.isSegment(file));
+        assertEquals(LINE + LINE, Files.readString(file));
+    }
+
+    @Test
+    void clear() throws IOException {
+        // Given
+        Path file = tempDir.resolve("ping.log");
+        try (MappedSegmentWriter underTest = new MappedSegmentWriter(file, 1024)) {
+            underTest.write(LINE);
+            underTest.flush();
+
+            // When
+            underTest.clear();
+
+            // Then
+            assertEquals(List.of(), readLines(file));
+            assertEquals(0, underTest.countLines());
+        }
+    }
+
+    private static List<String> readLines(Path file) throws IOException {
+        try (Reader reader = PingLogSegment.newReader(file)) {
+            return new BufferedReader(reader).lines().toList();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.adieser.conntest.service.writer;
+
+import com.adieser.conntest.models.PingLog;
+import com.opencsv.CSVWriter;
+import com.opencsv.ICSVWriter;
+import com.opencsv.bean.ColumnPositionMappingStrategy;
+import com.opencsv.bean.StatefulBeanToCsv;
+import com.opencsv.bean.StatefulBeanToCsvBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.adieser.utils.TestUtils.DEFAULT_LOG_DATE_TIME;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PingLogCsvEncoderTest {
+
+    /**
+     * The lines are the same as the ones written by opencsv, character by character
+     */
+    @Test
+    void encode_sameAsOpencsv() throws Exception {
+        // Given
+        List<PingLog> pingLogs = new ArrayList<>();
+        double[] pingTimes = {-1, 0, 13, 0.412, -0.412, 1.5, 1.01, 0.001, 999.999, 12345678, 2.0004, 2.0005, 1e-9};
+        for (double pingTime : pingTimes)
+            pingLogs.add(pingLog(DEFAULT_LOG_DATE_TIME, "192.168.1.1", pingTime));
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < 10_000; i++)
+            pingLogs.add(pingLog(DEFAULT_LOG_DATE_TIME.plusSeconds(random.nextLong(100_000_000L)),
+                    "10.0." + random.nextInt(256) + "." + random.nextInt(256),
+                    random.nextDouble() < 0.1 ? -1 : random.nextInt(1_000_000) / 1000.0));
+        pingLogs.add(pingLog(LocalDateTime.of(1, 1, 1, 0, 0, 0), "::1", 7));
+        pingLogs.add(pingLog(LocalDateTime.of(10_000, 12, 31, 23, 59, 59), "host", 7));
+        pingLogs.add(pingLog(null, null, 7));
+
+        // When
+        StringWriter expected = new StringWriter();
+        opencsv(expected).write(pingLogs);
+        StringWriter actual = new StringWriter();
+        PingLogCsvEncoder underTest = new PingLogCsvEncoder();
+        for (PingLog pingLog : pingLogs)
+            underTest.encode(pingLog);
+        underTest.writeTo(actual);
+
+        // Then
+        assertEquals(expected.toString(), actual.toString());
+        assertEquals(0, underTest.length());
+    }
+
+    /**
+     * Benchmark of the allocations of the encoder: once warmed up, it does not allocate. It runs in its own JVM, the
+     * one of the tests has JDK classes instrumented by the mocks of other tests.
+     */
+    @Test
+    void encode_allocationFree() throws Exception {
+        // Given
+        Process benchmark = new ProcessBuilder(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"),
+                PingLogCsvEncoderTest.class.getName())
+                .redirectErrorStream(true)
+                .start();
+
+        // When
+        String output = new String(benchmark.getInputStream().readAllBytes()).trim();
+
+        // Then, 100000 pings encoded with less than a byte per ping
+        assertTrue(benchmark.waitFor(1, TimeUnit.MINUTES));
+        assertEquals(0, benchmark.exitValue(), output);
+        long allocated = Long.parseLong(output);
+        assertTrue(allocated < 100_000, "allocated " + allocated + " bytes");
+    }
+
+    /**
+     * Encode 100000 pings after warming up
+     * @param args not used
+     */
+    public static void main(String[] args) throws Exception {
+        com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        PingLog[] pingLogs = new PingLog[1000];
+        for (int i = 0; i < pingLogs.length; i++)
+            pingLogs[i] = pingLog(DEFAULT_LOG_DATE_TIME.plusSeconds(i / 100), "10.0.0." + (i % 100), i / 7.0);
+        PingLogCsvEncoder encoder = new PingLogCsvEncoder();
+        Writer discard = Writer.nullWriter();
+        for (int round = 0; round < 200; round++)
+            encodeAll(encoder, pingLogs, discard);
+
+        long threadId = Thread.currentThread().getId();
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int round = 0; round < 100; round++)
+            encodeAll(encoder, pingLogs, discard);
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+
+        System.out.println(allocated);
+    }
+
+    private static void encodeAll(PingLogCsvEncoder encoder, PingLog[] pingLogs, Writer writer) throws Exception {
+        for (PingLog pingLog : pingLogs)
+            encoder.encode(pingLog);
+        encoder.writeTo(writer);
+    }
+
+    private static StatefulBeanToCsv<PingLog> opencsv(Writer writer) {
+        ColumnPositionMappingStrategy<PingLog> strategy = new ColumnPositionMappingStrategy<>();
+        strategy.setType(PingLog.class);
+        CSVWriter csvWriter = new CSVWriter(writer, ICSVWriter.DEFAULT_SEPARATOR, ICSVWriter.NO_QUOTE_CHARACTER,
+                ICSVWriter.DEFAULT_ESCAPE_CHARACTER, ICSVWriter.DEFAULT_LINE_END);
+        return new StatefulBeanToCsvBuilder<PingLog>(csvWriter)
+                .withMappingStrategy(strategy)
+                .build();
+    }
+
+    private static PingLog pingLog(LocalDateTime dateTime, String ip, double pingTime) {
+        return PingLog.builder()
+                .dateTime(dateTime)
+                .ipAddress(ip)
+                .pingTime(pingTime)
+                .build();
+    }
+}
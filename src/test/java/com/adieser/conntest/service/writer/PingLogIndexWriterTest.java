@@ -0,0 +1,147 @@
+package com.adieser.conntest.service.writer;
+
+import com.adieser.conntest.models.PingLog;
+import com.adieser.conntest.models.binary.BinaryPingLogFormat;
+import com.adieser.conntest.models.utils.PingLogIndex;
+import com.adieser.conntest.models.utils.PingLogScanner;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+import static com.adieser.utils.TestUtils.CLOUD_IP_ADDRESS;
+import static com.adieser.utils.TestUtils.DEFAULT_LOG_DATE_TIME;
+import static com.adieser.utils.TestUtils.LOCAL_IP_ADDRESS;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PingLogIndexWriterTest {
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final long START = BinaryPingLogFormat.toEpochSecond(DEFAULT_LOG_DATE_TIME);
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * A missing index is rebuilt from the ping log, and a range query only scans the blocks of its range
+     */
+    @Test
+    void open_rebuildsMissing() throws IOException {
+        // Given
+        Path pingLog = tempDir.resolve("ping.log");
+        Files.writeString(pingLog, givenLines(0, 500));
+        PingLogIndexWriter underTest = new PingLogIndexWriter(pingLog, 100);
+
+        // When
+        underTest.open();
+
+        // Then
+        long size = Files.size(pingLog);
+        PingLogIndex index = PingLogIndex.read(pingLog, size);
+        assertNotNull(index);
+        assertEquals(10, index.getBlockCount());
+        assertEquals(size, index.getEnd());
+        long[] ranges = index.getRanges(START + 100, START + 149, size);
+        assertEquals(2, ranges.length);
+        assertEquals(givenLines(0, 100).length(), ranges[0]);
+        assertEquals(givenLines(0, 150).length(), ranges[1]);
+        assertEquals(scan(pingLog, false, 100, 149), scan(pingLog, true, 100, 149));
+        assertEquals(100, scan(pingLog, true, 100, 149).size());
+    }
+
+    /**
+     * The blocks closed are appended to the index when flushed, and the index is kept when the ping log is opened
+     * again, but if it does not match the file anymore
+     */
+    @Test
+    void mark_appendedOnFlush() throws IOException {
+        // Given
+        Path pingLog = tempDir.resolve("ping.log");
+        Files.writeString(pingLog, givenLines(0, 75));
+        PingLogIndexWriter underTest = new PingLogIndexWriter(pingLog, 100);
+        underTest.open();
+        long size = Files.size(pingLog);
+        assertEquals(1, PingLogIndex.read(pingLog, size).getBlockCount());
+
+        // When, the writer appends the lines of 50 seconds
+        String lines = givenLines(75, 125);
+        Files.writeString(pingLog, lines, StandardOpenOption.APPEND);
+        for (int i = 0; i < 50; i++) {
+            underTest.add(START + 75 + i);
+            underTest.add(START + 75 + i);
+            underTest.mark(size + givenLines(75, 76 + i).length());
+        }
+        size = Files.size(pingLog);
+        int blocksBeforeFlush = PingLogIndex.read(pingLog, size).getBlockCount();
+        underTest.flush();
+
+        // Then, the 50 lines left by open and the first 50 written are the second block
+        assertEquals(1, blocksBeforeFlush);
+        assertEquals(2, PingLogIndex.read(pingLog, size).getBlockCount());
+        byte[] index = Files.readAllBytes(PingLogIndex.getPath(pingLog));
+        new PingLogIndexWriter(pingLog, 100).open();
+        assertArrayEquals(index, Files.readAllBytes(PingLogIndex.getPath(pingLog)));
+        assertEquals(scan(pingLog, false, 60, 110), scan(pingLog, true, 60, 110));
+
+        // When, the ping log is replaced
+        Files.writeString(pingLog, givenLines(0, 30));
+        assertNull(PingLogIndex.read(pingLog, Files.size(pingLog)));
+        new PingLogIndexWriter(pingLog, 10).open();
+
+        // Then
+        assertEquals(6, PingLogIndex.read(pingLog, Files.size(pingLog)).getBlockCount());
+    }
+
+    /**
+     * A ping older than the pings of its block is found by the queries on its time
+     */
+    @Test
+    void getRanges_outOfOrder() throws IOException {
+        // Given
+        Path pingLog = tempDir.resolve("ping.log");
+        String late = FORMATTER.format(DEFAULT_LOG_DATE_TIME.plusSeconds(5)) + "," + CLOUD_IP_ADDRESS + ",-1\n";
+        Files.writeString(pingLog, givenLines(0, 300) + late + givenLines(300, 310));
+        new PingLogIndexWriter(pingLog, 10).open();
+
+        // When
+        List<PingLog> pingLogs = scan(pingLog, true, 5, 5);
+
+        // Then
+        assertEquals(3, pingLogs.size());
+        assertEquals(-1, pingLogs.get(2).getPingTime());
+        // the blocks of the second 5 and of the late ping, and the line not indexed
+        assertEquals(6, PingLogIndex.read(pingLog, Files.size(pingLog)).getRanges(START + 5, START + 5,
+                Files.size(pingLog)).length);
+    }
+
+    private static List<PingLog> scan(Path pingLog, boolean indexed, int fromSecond, int toSecond) throws IOException {
+        PingLogScanner scanner = PingLogScanner.open(pingLog);
+        long from = START + fromSecond;
+        long to = START + toSecond;
+        if (indexed)
+            assertTrue(scanner.restrict(PingLogIndex.read(pingLog, scanner.size()).getRanges(from, to, scanner.size())));
+
+        return scanner.stream(null, from, to).toList();
+    }
+
+    /**
+     * Lines of the 2 targets, one per second
+     */
+    private static String givenLines(int fromSecond, int toSecond) {
+        StringBuilder lines = new StringBuilder();
+        for (int i = fromSecond; i < toSecond; i++) {
+            String dateTime = FORMATTER.format(DEFAULT_LOG_DATE_TIME.plusSeconds(i));
+            lines.append(dateTime).append(',').append(LOCAL_IP_ADDRESS).append(",0.4").append(i % 10).append('\n');
+            lines.append(dateTime).append(',').append(CLOUD_IP_ADDRESS).append(",13.").append(i % 10).append('\n');
+        }
+        return lines.toString();
+    }
+}
@@ -0,0 +1,120 @@
+package com.adieser.conntest.service.writer;
+
+import com.adieser.conntest.models.PingLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.adieser.utils.TestUtils.DEFAULT_LOG_DATE_TIME;
+import static com.adieser.utils.TestUtils.LOCAL_IP_ADDRESS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PingLogRingBufferTest {
+
+    @Test
+    void tryPublish_fullUntilReleased() throws InterruptedException {
+        // Given, the capacity is rounded up to 4
+        PingLogRingBuffer underTest = new PingLogRingBuffer(3, WaitStrategy.PARK);
+        for (int i = 0; i < 4; i++)
+            assertTrue(underTest.tryPublish(pingLog(LOCAL_IP_ADDRESS, i)));
+
+        // When
+        boolean publishedWhenFull = underTest.tryPublish(pingLog(LOCAL_IP_ADDRESS, 4));
+        List<PingLog> batch = new ArrayList<>();
+        int taken = underTest.drainTo(batch, 10);
+        boolean publishedBeforeRelease = underTest.tryPublish(pingLog(LOCAL_IP_ADDRESS, 4));
+        underTest.release();
+
+        // Then
+        assertEquals(4, underTest.capacity());
+        assertFalse(publishedWhenFull);
+        assertEquals(4, taken);
+        assertFalse(publishedBeforeRelease);
+        assertTrue(underTest.tryPublish(pingLog(LOCAL_IP_ADDRESS, 4)));
+        assertEquals(1, underTest.size());
+        assertTrue(underTest.await(0));
+    }
+
+    /**
+     * The ping is copied into a preallocated slot, the producer keeps its own object
+     */
+    @Test
+    void tryPublish_copiesIntoSlot() {
+        // Given
+        PingLogRingBuffer underTest = new PingLogRingBuffer(2, WaitStrategy.BUSY_SPIN);
+        PingLog pingLog = pingLog(LOCAL_IP_ADDRESS, 1);
+
+        // When
+        underTest.tryPublish(pingLog);
+        List<PingLog> batch = new ArrayList<>();
+        underTest.drainTo(batch, 1);
+
+        // Then
+        assertEquals(pingLog, batch.get(0));
+        assertNotSame(pingLog, batch.get(0));
+    }
+
+    /**
+     * Every ping of concurrent producers is taken once, and the pings of every producer in order. Busy-spin is left
+     * out, it needs a core per waiting thread.
+     */
+    @ParameterizedTest
+    @EnumSource(value = WaitStrategy.class, names = {"YIELD", "PARK"})
+    void publish_concurrentProducers(WaitStrategy waitStrategy) throws Exception {
+        // Given
+        int producers = 4;
+        int pingsPerProducer = 10_000;
+        PingLogRingBuffer underTest = new PingLogRingBuffer(64, waitStrategy);
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+
+        // When
+        List<Future<?>> futures = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            String ip = "10.0.0." + p;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < pingsPerProducer; i++)
+                    underTest.publish(pingLog(ip, i));
+                return null;
+            }));
+        }
+
+        int[] nextExpected = new int[producers];
+        List<PingLog> batch = new ArrayList<>();
+        int total = 0;
+        while (total < producers * pingsPerProducer && underTest.await(TimeUnit.SECONDS.toNanos(10))) {
+            underTest.drainTo(batch, 16);
+            for (PingLog pingLog : batch) {
+                int producer = pingLog.getIpAddress().charAt(pingLog.getIpAddress().length() - 1) - '0';
+                assertEquals(nextExpected[producer]++, (int) pingLog.getPingTime());
+            }
+            total += batch.size();
+            batch.clear();
+            underTest.release();
+        }
+
+        // Then
+        for (Future<?> future : futures)
+            future.get(10, TimeUnit.SECONDS);
+        executor.shutdown();
+        assertEquals(producers * pingsPerProducer, total);
+        assertEquals(0, underTest.size());
+    }
+
+    private static PingLog pingLog(String ip, int sequence) {
+        return PingLog.builder()
+                .dateTime(DEFAULT_LOG_DATE_TIME)
+                .ipAddress(ip)
+                .pingTime(sequence)
+                .build();
+    }
+}
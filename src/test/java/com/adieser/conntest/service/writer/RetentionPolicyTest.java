@@ -0,0 +1,77 @@
+package com.adieser.conntest.service.writer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RetentionPolicyTest {
+    private static final LocalDateTime NOW = LocalDateTime.of(2023, 10, 6, 2, 8, 35);
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Only the rotated files older than the retention are deleted, never the active one
+     */
+    @Test
+    void apply_retentionDays() throws IOException {
+        // Given
+        Path active = givenFile(tempDir, "ping.log", 10);
+        Path expired = givenFile(tempDir, "ping_2023-10-03_01-00-00_1.log", 10);
+        Path kept = givenFile(tempDir, "ping_2023-10-05_03-00-00_2.log", 10);
+        RetentionPolicy underTest = new RetentionPolicy(2, 0);
+
+        // When
+        int deleted = underTest.apply(List.of(tempDir), NOW);
+
+        // Then
+        assertEquals(1, deleted);
+        assertEquals(1, underTest.getDeleted());
+        assertFalse(Files.exists(expired));
+        assertTrue(Files.exists(kept));
+        assertTrue(Files.exists(active));
+    }
+
+    /**
+     * The oldest rotated files of all the directories are deleted until they fit in the max size
+     */
+    @Test
+    void apply_maxBytes() throws IOException {
+        // Given
+        Path first = Files.createDirectory(tempDir.resolve("first"));
+        Path second = Files.createDirectory(tempDir.resolve("second"));
+        Path oldest = givenFile(first, "ping_2023-10-06_01-00-00_1.log", 100);
+        Path older = givenFile(second, "ping_2023-10-06_01-30-00_1.log", 100);
+        Path newer = givenFile(first, "ping_2023-10-06_02-00-00_2.log", 100);
+        RetentionPolicy underTest = new RetentionPolicy(0, 150);
+
+        // When
+        int deleted = underTest.apply(List.of(first, second), NOW);
+
+        // Then
+        assertEquals(2, deleted);
+        assertFalse(Files.exists(oldest));
+        assertFalse(Files.exists(older));
+        assertTrue(Files.exists(newer));
+    }
+
+    @Test
+    void isEnabled() {
+        assertFalse(new RetentionPolicy(0, 0).isEnabled());
+        assertTrue(new RetentionPolicy(1, 0).isEnabled());
+        assertTrue(new RetentionPolicy(0, 1).isEnabled());
+    }
+
+    private static Path givenFile(Path directory, String name, int size) throws IOException {
+        return Files.write(directory.resolve(name), new byte[size]);
+    }
+}
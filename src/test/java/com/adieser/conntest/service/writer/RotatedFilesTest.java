@@ -0,0 +1,56 @@
+package com.adieser.conntest.service.writer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RotatedFilesTest {
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Only the rotated files are listed, oldest first, and the next number follows the highest one
+     */
+    @Test
+    void list_andNextNumber() throws IOException {
+        // Given
+        for (String name : List.of("ping.log", "ping_2023-10-06_03-00-00_10.log", "ping_2023-10-06_02-00-00_9.log",
+                "ping_2023-10-06_02-00-00_8.log", "ping_2023-10-06_04-00-00_11.log.deflate.tmp"))
+            Files.writeString(tempDir.resolve(name), "");
+
+        // When
+        List<String> rotated = RotatedFiles.list(tempDir).stream()
+                .map(file -> file.getFileName().toString())
+                .toList();
+
+        // Then
+        assertEquals(List.of("ping_2023-10-06_02-00-00_8.log", "ping_2023-10-06_02-00-00_9.log",
+                "ping_2023-10-06_03-00-00_10.log"), rotated);
+        assertEquals(11, RotatedFiles.nextNumber(tempDir));
+        assertEquals(1, RotatedFiles.nextNumber(tempDir.resolve("missing")));
+        assertEquals(LocalDateTime.of(2023, 10, 6, 3, 0), RotatedFiles.getTimestamp(
+                tempDir.resolve("ping_2023-10-06_03-00-00_10.log")));
+    }
+
+    @Test
+    void rotationInterval_isOver() {
+        LocalDateTime opened = LocalDateTime.of(2023, 10, 6, 23, 59, 59);
+
+        assertFalse(RotationInterval.NONE.isOver(opened, opened.plusDays(2)));
+        assertFalse(RotationInterval.HOURLY.isOver(opened, opened.minusMinutes(1)));
+        assertTrue(RotationInterval.HOURLY.isOver(opened, opened.plusSeconds(1)));
+        assertTrue(RotationInterval.DAILY.isOver(opened, opened.plusSeconds(1)));
+        assertFalse(RotationInterval.DAILY.isOver(opened.minusHours(1), opened));
+        assertEquals(RotationInterval.DAILY, RotationInterval.of(" Daily "));
+        assertEquals(RotationInterval.NONE, RotationInterval.of(null));
+    }
+}
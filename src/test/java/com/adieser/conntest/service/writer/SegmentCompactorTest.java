@@ -0,0 +1,129 @@
+package com.adieser.conntest.service.writer;
+
+import com.adieser.conntest.models.utils.CompressedPingLog;
+import com.adieser.conntest.models.utils.PingLogSegment;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SegmentCompactorTest {
+    @TempDir
+    Path tempDir;
+
+    /**
+     * The small files are merged into the newest one, sorted by target and time, and compressed
+     */
+    @Test
+    void compact_mergesSorted() throws IOException {
+        // Given
+        Path active = givenFile("ping.log", "2023-10-06 02:08:40,8.8.8.8,13");
+        givenFile("ping_2023-10-06_02-00-00_1.log",
+                "2023-10-06 02:08:35,8.8.8.8,13", "2023-10-06 02:08:35,192.168.1.1,0.4");
+        givenFile("ping_2023-10-06_02-05-00_2.log",
+                "2023-10-06 02:08:36,8.8.8.8,-1", "2023-10-06 02:08:36,192.168.1.1,0.5");
+        Path newest = givenFile("ping_2023-10-06_02-08-37_3.log", "2023-10-06 02:08:37,192.168.1.1,0.6");
+        SegmentCompactor underTest = new SegmentCompactor(1024 * 1024, 2, 0, 4096);
+
+        // When
+        int merged = underTest.compact(tempDir, active);
+
+        // Then
+        assertEquals(3, merged);
+        assertEquals(3, underTest.getMerged());
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(List.of(active, newest), files.sorted().toList());
+        }
+        assertTrue(CompressedPingLog.isCompressed(newest));
+        assertEquals(List.of(
+                "2023-10-06 02:08:35,192.168.1.1,0.4",
+                "2023-10-06 02:08:36,192.168.1.1,0.5",
+                "2023-10-06 02:08:37,192.168.1.1,0.6",
+                "2023-10-06 02:08:35,8.8.8.8,13",
+                "2023-10-06 02:08:36,8.8.8.8,-1"), readLines(newest));
+        assertEquals(1, Files.readAllLines(active).size());
+    }
+
+    /**
+     * With more lines than the sort bytes, the lines are sorted in chunks which are merged, and the chunks deleted
+     */
+    @Test
+    void compact_mergesChunks() throws IOException {
+        // Given
+        Path active = givenFile("ping.log", "2023-10-06 02:08:40,8.8.8.8,13");
+        givenFile("ping_2023-10-06_02-00-00_1.log",
+                "2023-10-06 02:08:35,8.8.8.8,13", "2023-10-06 02:08:35,192.168.1.1,0.4",
+                "2023-10-06 02:08:35,10.0.0.1,1");
+        givenFile("ping_2023-10-06_02-05-00_2.log",
+                "2023-10-06 02:08:36,8.8.8.8,-1", "2023-10-06 02:08:36,192.168.1.1,0.5",
+                "2023-10-06 02:08:36,10.0.0.1,2");
+        Path newest = givenFile("ping_2023-10-06_02-08-37_3.log",
+                "2023-10-06 02:08:37,192.168.1.1,0.6", "2023-10-06 02:08:37,10.0.0.1,3");
+        // two lines per chunk
+        SegmentCompactor underTest = new SegmentCompactor(1024 * 1024, 2, 0, 0, 64);
+
+        // When
+        int merged = underTest.compact(tempDir, active);
+
+        // Then
+        assertEquals(3, merged);
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(List.of(active, newest), files.sorted().toList());
+        }
+        assertEquals(List.of(
+                "2023-10-06 02:08:35,10.0.0.1,1",
+                "2023-10-06 02:08:36,10.0.0.1,2",
+                "2023-10-06 02:08:37,10.0.0.1,3",
+                "2023-10-06 02:08:35,192.168.1.1,0.4",
+                "2023-10-06 02:08:36,192.168.1.1,0.5",
+                "2023-10-06 02:08:37,192.168.1.1,0.6",
+                "2023-10-06 02:08:35,8.8.8.8,13",
+                "2023-10-06 02:08:36,8.8.8.8,-1"), Files.readAllLines(newest));
+    }
+
+    /**
+     * Large files split the runs, runs are limited to the target bytes and need the min files to be merged
+     */
+    @Test
+    void findRuns() throws IOException {
+        // Given
+        Path first = givenFile("ping_2023-10-06_01-00-00_1.log", new byte[100]);
+        Path second = givenFile("ping_2023-10-06_02-00-00_2.log", new byte[100]);
+        Path large = givenFile("ping_2023-10-06_03-00-00_3.log", new byte[300]);
+        Path third = givenFile("ping_2023-10-06_04-00-00_4.log", new byte[200]);
+        Path fourth = givenFile("ping_2023-10-06_05-00-00_5.log", new byte[200]);
+        Path fifth = givenFile("ping_2023-10-06_06-00-00_6.log", new byte[200]);
+        Path sixth = givenFile("ping_2023-10-06_07-00-00_7.log", new byte[100]);
+        SegmentCompactor underTest = new SegmentCompactor(1000, 3, 0, 0);
+
+        // When
+        List<List<Path>> runs = underTest.findRuns(List.of(first, second, large, third, fourth, fifth, sixth));
+
+        // Then
+        assertEquals(List.of(List.of(third, fourth, fifth, sixth)), runs);
+        assertFalse(runs.get(0).contains(large));
+    }
+
+    private Path givenFile(String name, String... lines) throws IOException {
+        return Files.write(tempDir.resolve(name), List.of(lines));
+    }
+
+    private Path givenFile(String name, byte[] content) throws IOException {
+        return Files.write(tempDir.resolve(name), content);
+    }
+
+    private static List<String> readLines(Path file) throws IOException {
+        try (BufferedReader reader = new BufferedReader(PingLogSegment.newReader(file))) {
+            return reader.lines().toList();
+        }
+    }
+}
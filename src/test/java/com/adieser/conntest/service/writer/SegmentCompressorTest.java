@@ -0,0 +1,101 @@
+package com.adieser.conntest.service.writer;
+
+import com.adieser.conntest.models.utils.CompressedPingLog;
+import com.adieser.conntest.models.utils.PingLogSegment;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SegmentCompressorTest {
+    @TempDir
+    Path tempDir;
+
+    /**
+     * A rotated file is replaced by its compressed version, with the same name and lines, only once
+     */
+    @Test
+    void compress_replaces() throws IOException {
+        // Given
+        List<String> lines = givenLines(1000);
+        Path rotated = tempDir.resolve("ping_2023-10-06_02-08-35_1.log");
+        Files.write(rotated, lines);
+        SegmentCompressor underTest = new SegmentCompressor(Runnable::run, 4096);
+
+        // When
+        boolean compressed = underTest.compress(rotated);
+
+        // Then
+        assertTrue(compressed);
+        assertTrue(CompressedPingLog.isCompressed(rotated));
+        assertEquals(lines, readLines(rotated));
+        assertTrue(underTest.getCompressedBytes() * 4 < underTest.getRawBytes());
+        assertFalse(underTest.compress(rotated));
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    /**
+     * Only the rotated files still plain are compressed, not the active file
+     */
+    @Test
+    void submitRotated() throws IOException {
+        // Given
+        List<String> lines = givenLines(10);
+        Path active = tempDir.resolve("ping.log");
+        Path first = tempDir.resolve("ping_2023-10-06_02-08-35_1.log");
+        Path second = tempDir.resolve("ping_2023-10-06_03-08-35_2.log");
+        for (Path file : List.of(active, first, second))
+            Files.write(file, lines);
+        SegmentCompressor underTest = new SegmentCompressor(Runnable::run, 4096);
+        underTest.compress(first);
+
+        // When
+        underTest.submitRotated(tempDir);
+
+        // Then
+        assertFalse(CompressedPingLog.isCompressed(active));
+        assertTrue(CompressedPingLog.isCompressed(first));
+        assertTrue(CompressedPingLog.isCompressed(second));
+        assertEquals(2 * Files.size(active), underTest.getRawBytes());
+    }
+
+    @Test
+    void decompress() throws IOException {
+        // Given
+        List<String> lines = givenLines(100);
+        Path file = tempDir.resolve("ping.log");
+        Files.write(file, lines);
+        new SegmentCompressor(Runnable::run, 4096).compress(file);
+
+        // When
+        SegmentCompressor.decompress(file);
+
+        // Then
+        assertEquals(lines, Files.readAllLines(file));
+    }
+
+    private static List<String> givenLines(int seconds) {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < seconds; i++)
+            lines.add(String.format("2023-10-06 02:%02d:%02d,192.168.1.1,0.4%02d", i / 60 % 60, i % 60, i % 13));
+        return lines;
+    }
+
+    private static List<String> readLines(Path file) throws IOException {
+        try (BufferedReader reader = new BufferedReader(PingLogSegment.newReader(file))) {
+            return reader.lines().toList();
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.adieser.conntest.service.writer;
+
+import com.adieser.conntest.configurations.AppProperties;
+import com.adieser.conntest.models.PingLog;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
+
+import static com.adieser.utils.TestUtils.CLOUD_IP_ADDRESS;
+import static com.adieser.utils.TestUtils.LOCAL_IP_ADDRESS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardedPingLogWriterTest {
+    private static final String IPV6_ADDRESS = "2001:db8::1";
+
+    @TempDir
+    Path tempDir;
+    Path shardsDir;
+    List<String> rotatedTargets;
+
+    @BeforeEach
+    void setUp() {
+        shardsDir = tempDir.resolve("targets");
+        rotatedTargets = new ArrayList<>();
+    }
+
+    /**
+     * Without partitions the lines of every target are in its own file once written
+     */
+    @Test
+    void write_inline() throws IOException, InterruptedException {
+        // Given
+        AtomicLong syncs = new AtomicLong();
+        try (ShardedPingLogWriter underTest = open(new AppProperties(), Durability.BATCH,
+                nanos -> syncs.incrementAndGet())) {
+
+            // When
+            underTest.write(List.of(pingLog(0, LOCAL_IP_ADDRESS), pingLog(0, CLOUD_IP_ADDRESS),
+                    pingLog(1, LOCAL_IP_ADDRESS), pingLog(1, IPV6_ADDRESS)));
+
+            // Then
+            assertEquals(3, underTest.getShardCount());
+            assertEquals(List.of(line(0, LOCAL_IP_ADDRESS), line(1, LOCAL_IP_ADDRESS)),
+                    Files.readAllLines(shardsDir.resolve(LOCAL_IP_ADDRESS).resolve("ping.log")));
+            assertEquals(List.of(line(0, CLOUD_IP_ADDRESS)),
+                    Files.readAllLines(shardsDir.resolve(CLOUD_IP_ADDRESS).resolve("ping.log")));
+            assertEquals(List.of(line(1, IPV6_ADDRESS)),
+                    Files.readAllLines(shardsDir.resolve("2001_db8__1").resolve("ping.log")));
+            assertEquals(1, syncs.get());
+        }
+    }
+
+    /**
+     * The partitions write the pings handed over to them before they stop, keeping the order of every target
+     */
+    @Test
+    void write_partitions() throws IOException, InterruptedException {
+        // Given
+        AppProperties properties = new AppProperties();
+        properties.setWriterPartitions(3);
+        List<String> targets = new ArrayList<>();
+        for (int i = 0; i < 20; i++)
+            targets.add("10.0.0." + i);
+        ShardedPingLogWriter underTest = open(properties, Durability.NONE, nanos -> { });
+
+        // When
+        for (int second = 0; second < 30; second++) {
+            List<PingLog> batch = new ArrayList<>();
+            for (String target : targets)
+                batch.add(pingLog(second, target));
+            underTest.write(batch);
+        }
+        underTest.close();
+
+        // Then
+        for (String target : targets) {
+            List<String> lines = Files.readAllLines(shardsDir.resolve(target).resolve("ping.log"));
+            assertEquals(30, lines.size());
+            for (int second = 0; second < 30; second++)
+                assertEquals(line(second, target), lines.get(second));
+        }
+    }
+
+    /**
+     * With more targets than files open, the least recently written files are closed and reopened, appending to the
+     * lines written before
+     */
+    @Test
+    void write_moreTargetsThanOpenShards() throws IOException, InterruptedException {
+        // Given
+        AppProperties properties = new AppProperties();
+        properties.setWriterOpenShards(2);
+        properties.setFileMaxSizeRows(4L);
+        List<String> targets = new ArrayList<>();
+        for (int i = 0; i < 5; i++)
+            targets.add("10.0.0." + i);
+        try (ShardedPingLogWriter underTest = open(properties, Durability.NONE, nanos -> { })) {
+
+            // When
+            for (int second = 0; second < 6; second++) {
+                for (String target : targets) {
+                    underTest.write(List.of(pingLog(second, target)));
+
+                    // Then
+                    assertTrue(underTest.getOpenShardCount() <= 2);
+                }
+            }
+            assertEquals(5, underTest.getShardCount());
+        }
+
+        // Then, every file was rotated on the rows written before it was closed
+        for (String target : targets) {
+            Path directory = shardsDir.resolve(target);
+            assertEquals(List.of(line(4, target), line(5, target)), Files.readAllLines(directory.resolve("ping.log")));
+            try (Stream<Path> files = Files.list(directory)) {
+                assertEquals(2, files.filter(file -> !file.toString().endsWith(".idx")).count());
+            }
+        }
+    }
+
+    /**
+     * Every file is rotated in the directory of its target, on its own rows, and the rotation tells its target
+     */
+    @Test
+    void write_rotates() throws IOException, InterruptedException {
+        // Given
+        AppProperties properties = new AppProperties();
+        properties.setFileMaxSizeRows(2L);
+        try (ShardedPingLogWriter underTest = open(properties, Durability.NONE, nanos -> { })) {
+
+            // When
+            for (int second = 0; second < 5; second++)
+                underTest.write(List.of(pingLog(second, LOCAL_IP_ADDRESS)));
+            underTest.write(List.of(pingLog(5, CLOUD_IP_ADDRESS)));
+        }
+
+        // Then
+        Path local = shardsDir.resolve(LOCAL_IP_ADDRESS);
+        assertEquals(List.of(line(4, LOCAL_IP_ADDRESS)), Files.readAllLines(local.resolve("ping.log")));
+        try (Stream<Path> files = Files.list(local)) {
+            assertEquals(3, files.filter(file -> !file.toString().endsWith(".idx")).count());
+        }
+        try (Stream<Path> files = Files.list(shardsDir.resolve(CLOUD_IP_ADDRESS))) {
+            assertEquals(1, files.filter(file -> !file.toString().endsWith(".idx")).count());
+        }
+        assertEquals(List.of(LOCAL_IP_ADDRESS, LOCAL_IP_ADDRESS), rotatedTargets);
+    }
+
+    /**
+     * Clearing empties the files open by the writer and the ones of earlier runs, and the open ones are appended to
+     */
+    @Test
+    void clear() throws IOException, InterruptedException {
+        // Given
+        Path earlier = shardsDir.resolve(CLOUD_IP_ADDRESS).resolve("ping.log");
+        Files.createDirectories(earlier.getParent());
+        Files.write(earlier, List.of(line(0, CLOUD_IP_ADDRESS)));
+        try (ShardedPingLogWriter underTest = open(new AppProperties(), Durability.NONE, nanos -> { })) {
+            underTest.write(List.of(pingLog(0, LOCAL_IP_ADDRESS)));
+
+            // When
+            underTest.clear();
+            underTest.write(List.of(pingLog(1, LOCAL_IP_ADDRESS)));
+        }
+
+        // Then
+        assertEquals(List.of(line(1, LOCAL_IP_ADDRESS)),
+                Files.readAllLines(shardsDir.resolve(LOCAL_IP_ADDRESS).resolve("ping.log")));
+        assertTrue(Files.readAllLines(earlier).isEmpty());
+    }
+
+    private ShardedPingLogWriter open(AppProperties properties, Durability durability, LongConsumer syncRecorder)
+            throws IOException {
+        properties.setPingLogsPath(tempDir + "/");
+        ShardedPingLogWriter writer = new ShardedPingLogWriter(new PingLogSink.Settings(properties, durability, 0,
+                Clock::systemDefaultZone, syncRecorder, (file, ip) -> rotatedTargets.add(ip)));
+        writer.open(tempDir.resolve("ping.log"));
+        return writer;
+    }
+
+    private static PingLog pingLog(int second, String ipAddress) {
+        return PingLog.builder()
+                .dateTime(LocalDateTime.of(2023, 10, 6, 2, 8, second))
+                .ipAddress(ipAddress)
+                .pingTime(13)
+                .build();
+    }
+
+    private static String line(int second, String ipAddress) {
+        return String.format("2023-10-06 02:08:%02d,%s,13", second, ipAddress);
+    }
+}
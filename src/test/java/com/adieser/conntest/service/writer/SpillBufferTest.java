@@ -0,0 +1,71 @@
+package com.adieser.conntest.service.writer;
+
+import com.adieser.conntest.models.PingLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.adieser.utils.TestUtils.DEFAULT_LOG_DATE_TIME;
+import static com.adieser.utils.TestUtils.LOCAL_IP_ADDRESS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpillBufferTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void drainTo_inOrder() throws IOException {
+        // Given
+        Path file = tempDir.resolve("spill.csv");
+        SpillBuffer underTest = new SpillBuffer(file);
+        List<PingLog> appended = List.of(pingLog(0, 13), pingLog(1, 0.412), pingLog(2, -1));
+        for (PingLog pingLog : appended)
+            underTest.append(pingLog);
+
+        // When
+        List<PingLog> first = new ArrayList<>();
+        List<PingLog> rest = new ArrayList<>();
+        int firstDrained = underTest.drainTo(first, 2);
+        underTest.append(pingLog(3, 7));
+        int restDrained = underTest.drainTo(rest, 10);
+
+        // Then
+        assertEquals(2, firstDrained);
+        assertEquals(appended.subList(0, 2), first);
+        assertEquals(2, restDrained);
+        assertEquals(List.of(appended.get(2), pingLog(3, 7)), rest);
+        assertTrue(underTest.isEmpty());
+        assertEquals(0, Files.size(file));
+    }
+
+    @Test
+    void close_deletesFile() throws IOException {
+        // Given
+        Path file = tempDir.resolve("spill.csv");
+        SpillBuffer underTest = new SpillBuffer(file);
+        underTest.append(pingLog(0, 13));
+
+        // When
+        underTest.close();
+
+        // Then
+        assertFalse(Files.exists(file));
+        assertEquals(0, underTest.size());
+    }
+
+    private static PingLog pingLog(int seconds, double pingTime) {
+        return PingLog.builder()
+                .dateTime(DEFAULT_LOG_DATE_TIME.plusSeconds(seconds))
+                .ipAddress(LOCAL_IP_ADDRESS)
+                .pingTime(pingTime)
+                .build();
+    }
+}
@@ -26,9 +26,10 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
-import static com.adieser.conntest.controllers.responses.ErrorResponse.MAX_IP_ADDRESSES_EXCEEDED;
+import static com.adieser.conntest.controllers.responses.ErrorResponse.maxIpAddressesExceeded;
 import static com.adieser.utils.TestUtils.DEFAULT_LOG_DATE_TIME;
 import static com.adieser.utils.TestUtils.DEFAULT_PING_TIME;
 import static com.adieser.utils.TestUtils.LOCAL_IP_ADDRESS;
@@ -57,6 +58,7 @@ class ConnTestControllerIntegrationTest {
 
     private static final LocalDateTime START = DEFAULT_LOG_DATE_TIME.minusHours(1);
     private static final LocalDateTime END = DEFAULT_LOG_DATE_TIME.plusHours(1);
+    private static final int MAX_TARGETS = 5000;
 
     @Test
     void testLocalIspCloud() throws Exception {
@@ -93,7 +95,7 @@ class ConnTestControllerIntegrationTest {
         );
 
         // assert
-        if(ipAddresses.size() < 4){
+        if(ipAddresses.size() <= MAX_TARGETS){
             resultActions
                     .andExpect(status().isOk())
                     .andExpect(jsonPath("$._links.stopTestSession.href")
@@ -105,7 +107,7 @@ class ConnTestControllerIntegrationTest {
             resultActions
                     .andExpect(status().isBadRequest())
                     .andExpect(jsonPath("$.errorCode").value(1))
-                    .andExpect(jsonPath("$.errorMessage").value(MAX_IP_ADDRESSES_EXCEEDED.getErrorMessage()));
+                    .andExpect(jsonPath("$.errorMessage").value(maxIpAddressesExceeded(MAX_TARGETS).getErrorMessage()));
         }
     }
 
@@ -718,7 +720,10 @@ class ConnTestControllerIntegrationTest {
     static Stream<List<String>> ipAddressesProvider() {
         return Stream.of(
                 List.of("1.1.1.1", "2.2.2.2", "3.3.3.3"),
-                List.of("1.1.1.1", "2.2.2.2", "3.3.3.3", "4.4.4.4")
+                List.of("1.1.1.1", "2.2.2.2", "3.3.3.3", "4.4.4.4"),
+                IntStream.rangeClosed(0, MAX_TARGETS)
+                        .mapToObj(i -> "10.0." + (i / 256) + "." + (i % 256))
+                        .toList()
         );
     }
 
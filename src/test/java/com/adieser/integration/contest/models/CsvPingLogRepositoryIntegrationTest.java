@@ -240,8 +240,8 @@ class CsvPingLogRepositoryIntegrationTest{
         List<PingLog> maxMinPingLog = csvPingLogRepository.findMaxMinPingLogOfAll(LOCAL_IP_ADDRESS);
 
         if(expectedMinPing != null) {
-            assertEquals(expectedMinPing, maxMinPingLog.get(0).getPingTime(), "wrong min ping");
-            assertEquals(expectedMaxPing, maxMinPingLog.get(1).getPingTime(), "wrong max ping");
+            assertEquals(expectedMinPing.doubleValue(), maxMinPingLog.get(0).getPingTime(), "wrong min ping");
+            assertEquals(expectedMaxPing.doubleValue(), maxMinPingLog.get(1).getPingTime(), "wrong max ping");
         }
         else
             assertTrue(maxMinPingLog.isEmpty());
@@ -306,6 +306,55 @@ class CsvPingLogRepositoryIntegrationTest{
         assertEquals(BigDecimal.valueOf(20L).setScale(2, RoundingMode.HALF_UP), avgLatency);
     }
 
+    /**
+     * Sub-millisecond pings are averaged without being truncated to whole milliseconds
+     */
+    @Test
+    void testFindAvgLatencyByIpSubMillisecond() throws IOException {
+        writePingLog(DEFAULT_LOG_DATE_TIME, LOCAL_IP_ADDRESS, 0.412);
+        writePingLog(DEFAULT_LOG_DATE_TIME, LOCAL_IP_ADDRESS, 0.588);
+        writePingLog(DEFAULT_LOG_DATE_TIME, LOCAL_IP_ADDRESS, 1);
+
+        BigDecimal avgLatency = csvPingLogRepository.findAvgLatencyByIp(LOCAL_IP_ADDRESS);
+
+        assertEquals(new BigDecimal("0.67"), avgLatency);
+    }
+
+    @Test
+    void testFindMaxMinPingLogSubMillisecond() throws IOException {
+        writePingLog(DEFAULT_LOG_DATE_TIME, LOCAL_IP_ADDRESS, 0.412);
+        writePingLog(DEFAULT_LOG_DATE_TIME, LOCAL_IP_ADDRESS, 0.098);
+        writePingLog(DEFAULT_LOG_DATE_TIME, LOCAL_IP_ADDRESS, -1);
+
+        List<PingLog> maxMinPingLog = csvPingLogRepository.findMaxMinPingLogOfAll(LOCAL_IP_ADDRESS);
+
+        assertEquals(0.098, maxMinPingLog.get(0).getPingTime(), "wrong min ping");
+        assertEquals(0.412, maxMinPingLog.get(1).getPingTime(), "wrong max ping");
+    }
+
+    /**
+     * Pings are written with microsecond resolution, and whole milliseconds keep the format of the files written
+     * before
+     */
+    @Test
+    void testPingLogFileMicrosecondFormat() throws IOException {
+        csvPingLogRepository.savePingLog(PingLog.builder()
+                .dateTime(DEFAULT_LOG_DATE_TIME)
+                .ipAddress(LOCAL_IP_ADDRESS)
+                .pingTime(0.412)
+                .build());
+        savePingLog(csvPingLogRepository);
+
+        await()
+                .atMost(400, TimeUnit.MILLISECONDS)
+                .until(() -> readPingLog().size(), equalTo(2));
+
+        List<String> lines = Files.readAllLines(Paths.get(PINGLOGS_DIR, appProperties.getPinglogsFilename()));
+
+        assertEquals("2023-10-06 02:08:35," + LOCAL_IP_ADDRESS + ",0.412", lines.get(0));
+        assertEquals("2023-10-06 02:08:35," + LOCAL_IP_ADDRESS + ",13", lines.get(1));
+    }
+
     @ParameterizedTest
     @MethodSource("thereIsFailedPingsProvider")
     void testFindAvgLatencyByDateTimeRangeByIp(boolean emptyFailedPingLogs) throws IOException {
@@ -425,11 +474,11 @@ class CsvPingLogRepositoryIntegrationTest{
     /**
      * Write a ping directly in the file, bypassing the repository
      */
-    private void writePingLog(LocalDateTime pingDateTime, String ipAddress, long pingTime) throws IOException{
+    private void writePingLog(LocalDateTime pingDateTime, String ipAddress, double pingTime) throws IOException{
         String pingLogDate = pingDateTime.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
 
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(PINGLOGS_DIR + "/" + appProperties.getPinglogsFilename(), true))) {
-            writer.write(pingLogDate + "," + ipAddress + "," + pingTime + "\n");
+            writer.write(pingLogDate + "," + ipAddress + "," + PingLog.formatPingTime(pingTime) + "\n");
         }
     }
 
@@ -448,7 +497,7 @@ class CsvPingLogRepositoryIntegrationTest{
                     PingLog.builder()
                             .dateTime(LocalDateTime.parse(pinLogLine[0], DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")))
                             .ipAddress(pinLogLine[1])
-                            .pingTime(Long.parseLong(pinLogLine[2]))
+                            .pingTime(Double.parseDouble(pinLogLine[2]))
                             .build()
                 );
             }
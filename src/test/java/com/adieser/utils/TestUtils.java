@@ -14,7 +14,7 @@ public class TestUtils {
     public static final String CLOUD_IP_ADDRESS = "8.8.8.8";
     public static final String ISP_IP_ADDRESS = "130.101.75.1";
     public static final LocalDateTime DEFAULT_LOG_DATE_TIME = LocalDateTime.of(2023, 10, 6, 2, 8, 35);
-    public static final Long DEFAULT_PING_TIME = 13L;
+    public static final double DEFAULT_PING_TIME = 13;
 
     public static PingLog getDefaultPingLog() {
         return PingLog.builder()
@@ -28,7 +28,7 @@ public class TestUtils {
         return PingLog.builder()
                 .ipAddress(LOCAL_IP_ADDRESS)
                 .dateTime(DEFAULT_LOG_DATE_TIME)
-                .pingTime(-1L)
+                .pingTime(-1)
                 .build();
     }
 